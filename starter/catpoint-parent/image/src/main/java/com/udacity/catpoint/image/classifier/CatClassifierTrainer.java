@@ -0,0 +1,130 @@
+package com.udacity.catpoint.image.classifier;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Offline trainer for {@link CatModel}. Fits a logistic regression with L2 regularization on labelled
+ * images and prints an accuracy report, including leave-one-out accuracy so small training sets
+ * aren't only scored against images the model has already seen.
+ *
+ * Usage: CatClassifierTrainer [model output file] [cat|notcat]=[image file or directory]...
+ * For example, from the catpoint-parent directory:
+ *      CatClassifierTrainer cat-model.properties cat=sample-cat.jpg notcat=sample-not-cat.jpg notcat=sample-not-a-cat-fail.jpg
+ */
+public final class CatClassifierTrainer {
+
+    private static final int EPOCHS = 2000;
+    private static final float LEARNING_RATE = 0.5f;
+    private static final float L2 = 0.001f;
+
+    private CatClassifierTrainer() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: CatClassifierTrainer <model output> <cat|notcat>=<image or dir>...");
+            System.exit(1);
+        }
+        List<Example> examples = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            String[] labelAndPath = args[i].split("=", 2);
+            boolean cat = switch (labelAndPath[0]) {
+                case "cat" -> true;
+                case "notcat" -> false;
+                default -> throw new IllegalArgumentException("Unknown label " + labelAndPath[0]);
+            };
+            for (Path image : listImages(Path.of(labelAndPath[1]))) {
+                BufferedImage decoded = ImageIO.read(image.toFile());
+                if (decoded == null) {
+                    System.err.println("Skipping unreadable image " + image);
+                    continue;
+                }
+                examples.add(new Example(image, CatFeatures.extract(decoded), cat));
+            }
+        }
+
+        CatModel model = train(examples);
+        try (OutputStream os = Files.newOutputStream(Path.of(args[0]))) {
+            model.save(os);
+        }
+        printReport(model, examples);
+    }
+
+    /**
+     * Fits a model to the examples with full-batch gradient descent.
+     */
+    public static CatModel train(List<Example> examples) {
+        float[] weights = new float[CatFeatures.LENGTH];
+        float bias = 0f;
+        float[] gradient = new float[CatFeatures.LENGTH];
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            CatModel current = new CatModel(weights, bias);
+            float biasGradient = 0f;
+            for (int i = 0; i < gradient.length; i++) {
+                gradient[i] = L2 * weights[i];
+            }
+            for (Example example : examples) {
+                float error = current.probability(example.features()) - (example.cat() ? 1f : 0f);
+                for (int i = 0; i < gradient.length; i++) {
+                    gradient[i] += error * example.features()[i] / examples.size();
+                }
+                biasGradient += error / examples.size();
+            }
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] -= LEARNING_RATE * gradient[i];
+            }
+            bias -= LEARNING_RATE * biasGradient;
+        }
+        return new CatModel(weights, bias);
+    }
+
+    private static void printReport(CatModel model, List<Example> examples) {
+        int correct = 0;
+        int looCorrect = 0;
+        int[][] confusion = new int[2][2];
+        System.out.println("image\tlabel\tscore\tleave-one-out score");
+        for (int i = 0; i < examples.size(); i++) {
+            Example example = examples.get(i);
+            float score = model.probability(example.features());
+
+            List<Example> others = new ArrayList<>(examples);
+            others.remove(i);
+            float looScore = train(others).probability(example.features());
+
+            boolean predicted = score >= 0.5f;
+            if (predicted == example.cat()) {
+                correct++;
+            }
+            if ((looScore >= 0.5f) == example.cat()) {
+                looCorrect++;
+            }
+            confusion[example.cat() ? 1 : 0][predicted ? 1 : 0]++;
+            System.out.printf("%s\t%s\t%.1f%%\t%.1f%%%n", example.image().getFileName(),
+                    example.cat() ? "cat" : "notcat", score * 100, looScore * 100);
+        }
+        System.out.printf("training accuracy: %d/%d%n", correct, examples.size());
+        System.out.printf("leave-one-out accuracy: %d/%d%n", looCorrect, examples.size());
+        System.out.printf("confusion (actual x predicted): notcat=[%d, %d] cat=[%d, %d]%n",
+                confusion[0][0], confusion[0][1], confusion[1][0], confusion[1][1]);
+    }
+
+    private static List<Path> listImages(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            return files.filter(Files::isRegularFile).sorted().toList();
+        }
+    }
+
+    public record Example(Path image, float[] features, boolean cat) {
+    }
+}
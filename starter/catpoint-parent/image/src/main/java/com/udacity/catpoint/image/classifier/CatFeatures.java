@@ -0,0 +1,103 @@
+package com.udacity.catpoint.image.classifier;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Extracts a small, fixed-length feature vector from an image for the local cat classifier:
+ * 1. A joint RGB color histogram with 4 bins per channel (64 values)
+ * 2. A histogram of edge orientations on a 32x24 luma grid, weighted by edge strength (8 values)
+ * 3. The mean edge strength and the fraction of grid cells that lie on a strong edge (2 values)
+ *
+ * Large images are sampled with a stride so that roughly the same number of pixels is visited
+ * no matter the resolution, which keeps extraction time bounded.
+ */
+public final class CatFeatures {
+
+    public static final int LENGTH = 64 + 8 + 2;
+
+    private static final int GRID_WIDTH = 32;
+    private static final int GRID_HEIGHT = 24;
+    private static final int ORIENTATION_BINS = 8;
+    private static final int MAX_SAMPLES = 120_000;
+    private static final float STRONG_EDGE = 32f;
+
+    private CatFeatures() {
+    }
+
+    /**
+     * @param image Image to describe
+     * @return feature vector of length {@link #LENGTH}
+     */
+    public static float[] extract(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stride = Math.max(1, (int) Math.sqrt((double) width * height / MAX_SAMPLES));
+
+        float[] features = new float[LENGTH];
+        float[] gridSums = new float[GRID_WIDTH * GRID_HEIGHT];
+        int[] gridCounts = new int[GRID_WIDTH * GRID_HEIGHT];
+        int[] row = new int[width];
+        int samples = 0;
+
+        for (int y = 0; y < height; y += stride) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = (y * GRID_HEIGHT / height) * GRID_WIDTH;
+            for (int x = 0; x < width; x += stride) {
+                int rgb = row[x];
+                int r = (rgb >> 16) & 0xff;
+                int g = (rgb >> 8) & 0xff;
+                int b = rgb & 0xff;
+                features[(r >> 6) * 16 + (g >> 6) * 4 + (b >> 6)]++;
+
+                int cell = cellRow + x * GRID_WIDTH / width;
+                gridSums[cell] += (r * 77 + g * 150 + b * 29) >> 8;
+                gridCounts[cell]++;
+                samples++;
+            }
+        }
+        for (int i = 0; i < 64; i++) {
+            features[i] /= samples;
+        }
+        for (int i = 0; i < gridSums.length; i++) {
+            if (gridCounts[i] > 0) {
+                gridSums[i] /= gridCounts[i];
+            }
+        }
+
+        addEdgeFeatures(gridSums, features);
+        return features;
+    }
+
+    private static void addEdgeFeatures(float[] luma, float[] features) {
+        float totalMagnitude = 0f;
+        int strongEdges = 0;
+        int cells = 0;
+        for (int y = 1; y < GRID_HEIGHT - 1; y++) {
+            for (int x = 1; x < GRID_WIDTH - 1; x++) {
+                int i = y * GRID_WIDTH + x;
+                float gx = luma[i + 1] - luma[i - 1];
+                float gy = luma[i + GRID_WIDTH] - luma[i - GRID_WIDTH];
+                float magnitude = (float) Math.sqrt(gx * gx + gy * gy);
+                //unsigned orientation in [0, pi), so light-to-dark and dark-to-light edges share a bin
+                double angle = Math.atan2(gy, gx);
+                if (angle < 0) {
+                    angle += Math.PI;
+                }
+                int bin = Math.min(ORIENTATION_BINS - 1, (int) (angle / Math.PI * ORIENTATION_BINS));
+                features[64 + bin] += magnitude;
+                totalMagnitude += magnitude;
+                if (magnitude > STRONG_EDGE) {
+                    strongEdges++;
+                }
+                cells++;
+            }
+        }
+        if (totalMagnitude > 0f) {
+            for (int i = 0; i < ORIENTATION_BINS; i++) {
+                features[64 + i] /= totalMagnitude;
+            }
+        }
+        features[72] = totalMagnitude / cells / 255f;
+        features[73] = (float) strongEdges / cells;
+    }
+}
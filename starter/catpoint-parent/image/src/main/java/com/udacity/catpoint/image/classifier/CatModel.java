@@ -0,0 +1,80 @@
+package com.udacity.catpoint.image.classifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Properties;
+
+/**
+ * Logistic regression model over {@link CatFeatures}. Models are stored as properties files
+ * with a "bias" key and a comma separated "weights" key, so they can be trained offline with
+ * {@link CatClassifierTrainer} and shipped as a resource.
+ */
+public final class CatModel {
+
+    private static final String DEFAULT_MODEL = "cat-model.properties";
+
+    private final float[] weights;
+    private final float bias;
+
+    public CatModel(float[] weights, float bias) {
+        if (weights.length != CatFeatures.LENGTH) {
+            throw new IllegalArgumentException("Expected " + CatFeatures.LENGTH + " weights but got " + weights.length);
+        }
+        this.weights = weights.clone();
+        this.bias = bias;
+    }
+
+    /**
+     * @return the model bundled with this module, trained on the sample images
+     */
+    public static CatModel loadDefault() {
+        try (InputStream is = CatModel.class.getResourceAsStream(DEFAULT_MODEL)) {
+            if (is == null) {
+                throw new IllegalStateException("Bundled cat model " + DEFAULT_MODEL + " is missing");
+            }
+            return load(is);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to read bundled cat model", ioe);
+        }
+    }
+
+    public static CatModel load(InputStream is) throws IOException {
+        Properties props = new Properties();
+        props.load(is);
+        String[] values = props.getProperty("weights", "").split(",");
+        float[] weights = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            weights[i] = Float.parseFloat(values[i].trim());
+        }
+        return new CatModel(weights, Float.parseFloat(props.getProperty("bias", "0")));
+    }
+
+    public void save(OutputStream os) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("bias", Float.toString(bias));
+        props.setProperty("weights", toCsv(weights));
+        props.store(os, "Local cat classifier, see CatClassifierTrainer");
+    }
+
+    /**
+     * @param features Feature vector from {@link CatFeatures#extract}
+     * @return probability between 0 and 1 that the features describe a cat
+     */
+    public float probability(float[] features) {
+        float z = bias;
+        for (int i = 0; i < weights.length; i++) {
+            z += weights[i] * features[i];
+        }
+        return (float) (1.0 / (1.0 + Math.exp(-z)));
+    }
+
+    private static String toCsv(float[] values) {
+        String[] strings = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            strings[i] = Float.toString(values[i]);
+        }
+        return String.join(",", strings);
+    }
+}
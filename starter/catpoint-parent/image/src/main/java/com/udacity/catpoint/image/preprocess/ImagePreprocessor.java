@@ -0,0 +1,272 @@
+package com.udacity.catpoint.image.preprocess;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Prepares camera frames for display and upload: area-averaging resize, grayscale conversion and
+ * JPEG encoding with a quality picked to fit a byte budget.
+ *
+ * The kernels work on one row at a time with separate float arrays per channel. The inner loops are
+ * plain array arithmetic with no branches or method calls, which is the shape HotSpot's C2 compiler
+ * turns into SIMD instructions on its own, and only O(width) scratch memory is needed per call.
+ */
+public class ImagePreprocessor {
+
+    private static final float[] JPEG_QUALITIES = {0.9f, 0.8f, 0.7f, 0.6f, 0.5f, 0.4f, 0.3f};
+
+    private final int maxWidth;
+    private final int maxHeight;
+    private final boolean grayscale;
+    private final int targetBytes;
+
+    /**
+     * @param maxWidth Frames wider than this are scaled down, keeping the aspect ratio
+     * @param maxHeight Frames taller than this are scaled down, keeping the aspect ratio
+     * @param grayscale True to drop color information before encoding
+     * @param targetBytes Size the encoded JPEG should fit into, if any of the tried qualities allows it
+     */
+    public ImagePreprocessor(int maxWidth, int maxHeight, boolean grayscale, int targetBytes) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.grayscale = grayscale;
+        this.targetBytes = targetBytes;
+    }
+
+    /**
+     * Downscales, optionally converts to grayscale and encodes the frame as a JPEG.
+     * @param image Frame to prepare
+     * @return JPEG bytes
+     */
+    public byte[] prepareForUpload(BufferedImage image) {
+        BufferedImage prepared = downscale(image, maxWidth, maxHeight);
+        if (grayscale) {
+            prepared = toGrayscale(prepared);
+        }
+        return encodeJpeg(prepared, targetBytes);
+    }
+
+    /**
+     * Scales the image down so that it fits in maxWidth x maxHeight, keeping its aspect ratio.
+     * Images that already fit are returned unchanged.
+     */
+    public static BufferedImage downscale(BufferedImage image, int maxWidth, int maxHeight) {
+        double scale = Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight());
+        if (scale >= 1.0) {
+            return image;
+        }
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        return resize(image, width, height);
+    }
+
+    /**
+     * Resizes the image to exactly width x height. Each output pixel is the area-weighted average of
+     * the source pixels it covers, which gives the same quality as Image.SCALE_SMOOTH when shrinking.
+     * @return a new TYPE_INT_RGB image
+     */
+    public static BufferedImage resize(BufferedImage image, int width, int height) {
+        int srcWidth = image.getWidth();
+        int srcHeight = image.getHeight();
+        float scaleX = (float) srcWidth / width;
+        float scaleY = (float) srcHeight / height;
+
+        //horizontal footprint of every output column, computed once per call
+        int[] firstColumn = new int[width];
+        int[] lastColumn = new int[width];
+        float[] firstWeight = new float[width];
+        float[] lastWeight = new float[width];
+        for (int x = 0; x < width; x++) {
+            float start = x * scaleX;
+            float end = Math.min(srcWidth, (x + 1) * scaleX);
+            firstColumn[x] = (int) start;
+            lastColumn[x] = Math.min(srcWidth - 1, (int) Math.ceil(end) - 1);
+            firstWeight[x] = Math.min(end, firstColumn[x] + 1) - start;
+            lastWeight[x] = end - lastColumn[x];
+        }
+
+        int[] row = new int[srcWidth];
+        byte[] bytes = new byte[srcWidth * 3];
+        float[] red = new float[srcWidth];
+        float[] green = new float[srcWidth];
+        float[] blue = new float[srcWidth];
+        float[] sumRed = new float[srcWidth];
+        float[] sumGreen = new float[srcWidth];
+        float[] sumBlue = new float[srcWidth];
+        int[] out = new int[width];
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        for (int y = 0; y < height; y++) {
+            float start = y * scaleY;
+            float end = Math.min(srcHeight, (y + 1) * scaleY);
+            int firstRow = (int) start;
+            int lastRow = Math.min(srcHeight - 1, (int) Math.ceil(end) - 1);
+
+            Arrays.fill(sumRed, 0f);
+            Arrays.fill(sumGreen, 0f);
+            Arrays.fill(sumBlue, 0f);
+            for (int sy = firstRow; sy <= lastRow; sy++) {
+                float weight = Math.min(end, sy + 1) - Math.max(start, sy);
+                readRow(image, sy, row, bytes, red, green, blue);
+                accumulate(sumRed, red, weight, srcWidth);
+                accumulate(sumGreen, green, weight, srcWidth);
+                accumulate(sumBlue, blue, weight, srcWidth);
+            }
+
+            float rowArea = end - start;
+            for (int x = 0; x < width; x++) {
+                int first = firstColumn[x];
+                int last = lastColumn[x];
+                float r;
+                float g;
+                float b;
+                if (first == last) {
+                    r = sumRed[first] * firstWeight[x];
+                    g = sumGreen[first] * firstWeight[x];
+                    b = sumBlue[first] * firstWeight[x];
+                } else {
+                    r = sumRed[first] * firstWeight[x] + sumRed[last] * lastWeight[x];
+                    g = sumGreen[first] * firstWeight[x] + sumGreen[last] * lastWeight[x];
+                    b = sumBlue[first] * firstWeight[x] + sumBlue[last] * lastWeight[x];
+                    for (int sx = first + 1; sx < last; sx++) {
+                        r += sumRed[sx];
+                        g += sumGreen[sx];
+                        b += sumBlue[sx];
+                    }
+                }
+                float area = rowArea * (Math.min(srcWidth, (x + 1) * scaleX) - x * scaleX);
+                out[x] = pack(r / area, g / area, b / area);
+            }
+            result.setRGB(0, y, width, 1, out, 0, width);
+        }
+        return result;
+    }
+
+    /**
+     * Converts the image to 8 bit grayscale using ITU-R BT.601 luma weights.
+     */
+    public static BufferedImage toGrayscale(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        int[] row = new int[width];
+        byte[] bytes = new byte[width * 3];
+        float[] red = new float[width];
+        float[] green = new float[width];
+        float[] blue = new float[width];
+        int[] luma = new int[width];
+        for (int y = 0; y < height; y++) {
+            readRow(image, y, row, bytes, red, green, blue);
+            for (int x = 0; x < width; x++) {
+                luma[x] = (int) (0.299f * red[x] + 0.587f * green[x] + 0.114f * blue[x] + 0.5f);
+            }
+            gray.getRaster().setSamples(0, y, width, 1, 0, luma);
+        }
+        return gray;
+    }
+
+    /**
+     * Encodes the image as a JPEG at the highest quality whose output fits in targetBytes. If none of the
+     * qualities fit, the lowest-quality encoding is returned.
+     */
+    public static byte[] encodeJpeg(BufferedImage image, int targetBytes) {
+        BufferedImage opaque = withoutAlpha(image);
+        byte[] encoded = null;
+        for (float quality : JPEG_QUALITIES) {
+            encoded = encodeJpeg(opaque, quality);
+            if (encoded.length <= targetBytes) {
+                break;
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Encodes the image as a JPEG at the given quality, between 0 and 1.
+     */
+    public static byte[] encodeJpeg(BufferedImage image, float quality) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        try (ByteArrayOutputStream os = new ByteArrayOutputStream();
+             ImageOutputStream ios = ImageIO.createImageOutputStream(os)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(withoutAlpha(image), null, null), param);
+            ios.flush();
+            return os.toByteArray();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to encode JPEG", ioe);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    //the JPEG writer rejects images with an alpha channel
+    private static BufferedImage withoutAlpha(BufferedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        BufferedImage opaque = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        opaque.createGraphics().drawImage(image, 0, 0, null);
+        return opaque;
+    }
+
+    /**
+     * Reads one row into the channel arrays. The common camera layouts are read straight from the
+     * raster, skipping the per-pixel color model conversion that getRGB performs.
+     */
+    private static void readRow(BufferedImage image, int y, int[] row, byte[] bytes, float[] red, float[] green, float[] blue) {
+        int width = image.getWidth();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_3BYTE_BGR -> {
+                //data elements come back in band order, i.e. red, green, blue
+                image.getRaster().getDataElements(0, y, width, 1, bytes);
+                for (int x = 0; x < width; x++) {
+                    red[x] = bytes[x * 3] & 0xff;
+                    green[x] = bytes[x * 3 + 1] & 0xff;
+                    blue[x] = bytes[x * 3 + 2] & 0xff;
+                }
+            }
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB -> {
+                image.getRaster().getDataElements(0, y, width, 1, row);
+                unpack(row, red, green, blue, width);
+            }
+            default -> {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                unpack(row, red, green, blue, width);
+            }
+        }
+    }
+
+    private static void unpack(int[] row, float[] red, float[] green, float[] blue, int width) {
+        for (int x = 0; x < width; x++) {
+            int rgb = row[x];
+            red[x] = (rgb >> 16) & 0xff;
+            green[x] = (rgb >> 8) & 0xff;
+            blue[x] = rgb & 0xff;
+        }
+    }
+
+    private static void accumulate(float[] sum, float[] values, float weight, int width) {
+        for (int x = 0; x < width; x++) {
+            sum[x] += values[x] * weight;
+        }
+    }
+
+    private static int pack(float r, float g, float b) {
+        return (clamp(r) << 16) | (clamp(g) << 8) | clamp(b);
+    }
+
+    private static int clamp(float value) {
+        return Math.max(0, Math.min(255, (int) (value + 0.5f)));
+    }
+}
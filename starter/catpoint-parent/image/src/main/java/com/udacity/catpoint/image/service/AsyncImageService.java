@@ -0,0 +1,80 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ImageService decorator that runs asynchronous scans on its own bounded pool of daemon threads,
+ * so slow recognition calls never occupy the common pool or the caller's thread.
+ */
+public class AsyncImageService implements ImageService, AutoCloseable {
+
+    private final ImageService delegate;
+    private final ExecutorService executor;
+
+    /**
+     * @param delegate Service that performs the actual recognition
+     * @param maxConcurrency Maximum number of scans that may run at the same time
+     */
+    public AsyncImageService(ImageService delegate, int maxConcurrency) {
+        this.delegate = delegate;
+        this.executor = Executors.newFixedThreadPool(maxConcurrency, new DaemonThreadFactory());
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return delegate.imageContainsCat(image, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return delegate.imageContainsCat(cameraId, image, confidenceThreshhold);
+    }
+
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        return delegate.detectLabels(image);
+    }
+
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+        return delegate.encodedImageContainsCat(encodedImage, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageFileContainsCat(Path imageFile, float confidenceThreshhold) {
+        return delegate.imageFileContainsCat(imageFile, confidenceThreshhold);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        return CompletableFuture.supplyAsync(() -> delegate.imageContainsCat(image, confidenceThreshhold), executor);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> imageFileContainsCatAsync(Path imageFile, float confidenceThreshhold) {
+        return CompletableFuture.supplyAsync(() -> delegate.imageFileContainsCat(imageFile, confidenceThreshhold), executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "image-service-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
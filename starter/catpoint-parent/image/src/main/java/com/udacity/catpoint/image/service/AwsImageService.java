@@ -1,24 +1,30 @@
 package com.udacity.catpoint.image.service;
 
+import com.udacity.catpoint.image.preprocess.ImagePreprocessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
+import software.amazon.awssdk.services.rekognition.RekognitionClientBuilder;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsRequest;
 import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
 import software.amazon.awssdk.services.rekognition.model.Image;
+import software.amazon.awssdk.services.rekognition.model.Label;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
 import java.util.Properties;
-import java.util.stream.Collectors;
 
 /**
  * Image Recognition Service that can identify cats. Requires aws credentials to be entered in config.properties to work.
@@ -32,58 +38,147 @@ import java.util.stream.Collectors;
  *      aws.id=[your access key id]
  *      aws.secret=[your Secret access key]
  *      aws.region=[an aws region of choice. For example: us-east-2]
+ *
+ * Optional keys:
+ *      aws.endpoint=[url to send requests to instead of the regional endpoint, e.g. a local stand-in for testing]
+ *      aws.timeout.millis=[total time allowed for one detectLabels call, including retries]
  */
 public class AwsImageService implements ImageService{
 
     private Logger log = LoggerFactory.getLogger(AwsImageService.class);
 
-    //aws recommendation is to maintain only a single instance of client objects
-    private static RekognitionClient rekognitionClient;
+    //aws recommendation is to maintain only a single instance of client objects; it is thread-safe and shared by every call
+    private final RekognitionClient rekognitionClient;
 
+    //labels less confident than this are not worth the response size
+    private static final float LABEL_MIN_CONFIDENCE = 10.0f;
+
+    //raw frames are scaled down before upload; label detection doesn't need more than this
+    private final ImagePreprocessor preprocessor = new ImagePreprocessor(1024, 1024, false, 256 * 1024);
+
+    /**
+     * Creates the service from config.properties on the class path.
+     * @throws IllegalStateException if config.properties is missing
+     */
     public AwsImageService() {
+        this.rekognitionClient = loadClient();
+    }
+
+    /**
+     * Creates the service from the given properties instead of config.properties. Uses the same keys.
+     */
+    public AwsImageService(Properties props) {
+        this.rekognitionClient = buildClient(props);
+    }
+
+    private RekognitionClient loadClient() {
         Properties props = new Properties();
         try (InputStream is = getClass().getClassLoader().getResourceAsStream("config.properties")) {
+            if (is == null) {
+                throw new IllegalStateException("AWS Rekognition isn't configured, config.properties not found on the class path");
+            }
             props.load(is);
         } catch (IOException ioe ) {
-            log.error("Unable to initialize AWS Rekognition, no properties file found", ioe);
-            return;
+            throw new UncheckedIOException("Unable to read config.properties", ioe);
         }
+        return buildClient(props);
+    }
 
+    private static RekognitionClient buildClient(Properties props) {
         String awsId = props.getProperty("aws.id");
         String awsSecret = props.getProperty("aws.secret");
         String awsRegion = props.getProperty("aws.region");
+        String awsEndpoint = props.getProperty("aws.endpoint");
+        String awsTimeout = props.getProperty("aws.timeout.millis");
 
         AwsCredentials awsCredentials = AwsBasicCredentials.create(awsId, awsSecret);
-        rekognitionClient = RekognitionClient.builder()
+        RekognitionClientBuilder builder = RekognitionClient.builder()
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
-                .region(Region.of(awsRegion))
-                .build();
+                .region(Region.of(awsRegion));
+        if (awsEndpoint != null) {
+            builder.endpointOverride(URI.create(awsEndpoint));
+        }
+        if (awsTimeout != null) {
+            builder.overrideConfiguration(ClientOverrideConfiguration.builder()
+                    .apiCallTimeout(Duration.ofMillis(Long.parseLong(awsTimeout)))
+                    .build());
+        }
+        return builder.build();
     }
 
     /**
-     * Returns true if the provided image contains a cat.
+     * Returns true if the provided image contains a cat. The image is scaled down and re-encoded as a
+     * JPEG before upload, so prefer {@link #encodedImageContainsCat(ByteBuffer, float)} when the encoded bytes are available.
      * @param image Image to scan
      * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
      * @return boolean
      */
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
         Image awsImage = null;
-        try (ByteArrayOutputStream os = new ByteArrayOutputStream()) {
-            ImageIO.write(image, "jpg", os);
-            awsImage = Image.builder().bytes(SdkBytes.fromByteArray(os.toByteArray())).build();
-        } catch (IOException ioe) {
+        try {
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(preprocessor.prepareForUpload(image))).build();
+        } catch (UncheckedIOException ioe) {
             log.error("Error building image byte array", ioe);
             return false;
         }
-        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(confidenceThreshhold).build();
+        return detectCat(awsImage, confidenceThreshhold);
+    }
+
+    /**
+     * Returns true if the provided encoded image contains a cat. The bytes are sent to Rekognition as-is,
+     * without being decoded or re-encoded. Heap buffers that wrap a whole array are passed without copying.
+     * @param encodedImage JPEG or PNG bytes between the buffer's position and limit
+     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
+     * @return boolean
+     */
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+        return detectCat(Image.builder().bytes(toSdkBytes(encodedImage)).build(), confidenceThreshhold);
+    }
+
+    /**
+     * Returns every label Rekognition finds with at least 10% confidence. Use the result to answer any
+     * number of threshhold questions instead of calling imageContainsCat once per threshhold.
+     * @param image Image to scan
+     * @return detected labels, or an empty result if the image couldn't be encoded
+     */
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        Image awsImage;
+        try {
+            awsImage = Image.builder().bytes(SdkBytes.fromByteArrayUnsafe(preprocessor.prepareForUpload(image))).build();
+        } catch (UncheckedIOException ioe) {
+            log.error("Error building image byte array", ioe);
+            return LabelResult.EMPTY;
+        }
+        return detectLabels(awsImage, LABEL_MIN_CONFIDENCE);
+    }
+
+    private boolean detectCat(Image awsImage, float confidenceThreshhold) {
+        return detectLabels(awsImage, confidenceThreshhold).containsCat(confidenceThreshhold);
+    }
+
+    private LabelResult detectLabels(Image awsImage, float minConfidence) {
+        DetectLabelsRequest detectLabelsRequest = DetectLabelsRequest.builder().image(awsImage).minConfidence(minConfidence).build();
         DetectLabelsResponse response = rekognitionClient.detectLabels(detectLabelsRequest);
-        logLabelsForFun(response);
-        return response.labels().stream().filter(l -> l.name().toLowerCase().contains("cat")).findFirst().isPresent();
+        List<Label> labels = response.labels();
+        String[] names = new String[labels.size()];
+        float[] confidences = new float[labels.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = labels.get(i).name();
+            confidences[i] = labels.get(i).confidence();
+        }
+        LabelResult result = new LabelResult(names, confidences, minConfidence);
+        log.info(result.toString());
+        return result;
     }
 
-    private void logLabelsForFun(DetectLabelsResponse response) {
-        log.info(response.labels().stream()
-                .map(label -> String.format("%s(%.1f%%)", label.name(), label.confidence()))
-                .collect(Collectors.joining(", ")));
+    private static SdkBytes toSdkBytes(ByteBuffer encodedImage) {
+        if (encodedImage.hasArray() && encodedImage.arrayOffset() == 0 && encodedImage.position() == 0
+                && encodedImage.remaining() == encodedImage.array().length) {
+            return SdkBytes.fromByteArrayUnsafe(encodedImage.array());
+        }
+        //direct and memory-mapped buffers need exactly one copy into the request body
+        return SdkBytes.fromByteBuffer(encodedImage);
     }
 }
@@ -0,0 +1,391 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImageService decorator that remembers recognition results so that repeated camera frames don't
+ * have to be sent to the wrapped service again. Results are keyed on a perceptual hash of the image,
+ * so frames that only differ by noise or compression artifacts also hit the cache.
+ *
+ * The cache has two tiers:
+ * 1. A bounded in-memory tier with LRU eviction and a time-to-live for each entry
+ * 2. An optional disk tier, stored as an append-only text file, that survives restarts. It keeps at
+ *    most maxDiskEntries results, dropping the oldest, and the file is rewritten with only the live
+ *    results once it holds twice that many lines.
+ *
+ * Near-duplicate lookups in memory don't scan the tier: the 64 hash bits are split into maxDistance + 1
+ * chunks and each chunk value is indexed. Two hashes at most maxDistance bits apart differ in at most
+ * maxDistance chunks, so they share at least one, and only keys sharing a chunk with the frame are compared.
+ */
+public class CachingImageService implements ImageService {
+
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+    private static final int DEFAULT_MAX_DISTANCE = 4;
+    private static final int DEFAULT_MAX_DISK_ENTRIES = 4096;
+
+    private final Logger log = LoggerFactory.getLogger(CachingImageService.class);
+
+    private final ImageService delegate;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final int maxDistance;
+    private final Path diskCache;
+    private final int maxDiskEntries;
+
+    private final Map<CacheKey, CacheEntry> memory;
+    private final int chunks;
+    private final List<Map<Long, Set<CacheKey>>> chunkIndex;
+    //insertion order, guarded by itself; the eldest entry is dropped first when the tier is full
+    private final LinkedHashMap<CacheKey, CacheEntry> disk = new LinkedHashMap<>();
+    private int diskLines;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingImageService(ImageService delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL, DEFAULT_MAX_DISTANCE, null);
+    }
+
+    /**
+     * @param delegate Service used to recognize images that are not in the cache
+     * @param maxEntries Maximum number of results kept in memory
+     * @param ttl How long a result stays valid in either tier
+     * @param maxDistance Maximum number of differing hash bits for two frames to be treated as the same
+     * @param diskCache File used for the disk tier, or null to keep results in memory only
+     */
+    public CachingImageService(ImageService delegate, int maxEntries, Duration ttl, int maxDistance, Path diskCache) {
+        this(delegate, maxEntries, ttl, maxDistance, diskCache, DEFAULT_MAX_DISK_ENTRIES);
+    }
+
+    /**
+     * @param delegate Service used to recognize images that are not in the cache
+     * @param maxEntries Maximum number of results kept in memory
+     * @param ttl How long a result stays valid in either tier
+     * @param maxDistance Maximum number of differing hash bits for two frames to be treated as the same
+     * @param diskCache File used for the disk tier, or null to keep results in memory only
+     * @param maxDiskEntries Maximum number of results kept in the disk tier
+     */
+    public CachingImageService(ImageService delegate, int maxEntries, Duration ttl, int maxDistance, Path diskCache,
+                               int maxDiskEntries) {
+        if (maxDistance < 0 || maxDistance > 63) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and 63");
+        }
+        if (maxDiskEntries < 1) {
+            throw new IllegalArgumentException("maxDiskEntries must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttl.toMillis();
+        this.maxDistance = maxDistance;
+        this.diskCache = diskCache;
+        this.maxDiskEntries = maxDiskEntries;
+        this.chunks = maxDistance + 1;
+        this.chunkIndex = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            chunkIndex.add(new HashMap<>());
+        }
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                if (size() > CachingImageService.this.maxEntries) {
+                    unindex(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+        loadDiskCache();
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        CacheKey key = new CacheKey(PerceptualHash.of(image), confidenceThreshhold);
+        Boolean cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        return store(key, delegate.imageContainsCat(image, confidenceThreshhold));
+    }
+
+    /**
+     * Results are shared by every camera, but on a miss the camera id is passed on to the wrapped service.
+     */
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        CacheKey key = new CacheKey(PerceptualHash.of(image), confidenceThreshhold);
+        Boolean cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        return store(key, delegate.imageContainsCat(cameraId, image, confidenceThreshhold));
+    }
+
+    /**
+     * The frame still has to be decoded to compute its hash, but on a miss the original encoded bytes
+     * are forwarded so the wrapped service doesn't need to re-encode them.
+     */
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+        CacheKey key = new CacheKey(PerceptualHash.of(ImageService.decode(encodedImage)), confidenceThreshhold);
+        Boolean cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+        return store(key, delegate.encodedImageContainsCat(encodedImage, confidenceThreshhold));
+    }
+
+    /**
+     * Label results are not cached here; a LabelResult already answers any threshhold, so callers keep it themselves.
+     */
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        return delegate.detectLabels(image);
+    }
+
+    private Boolean lookup(CacheKey key) {
+        long now = System.currentTimeMillis();
+        Boolean cached = lookupMemory(key, now);
+        if (cached != null) {
+            memoryHits.incrementAndGet();
+            return cached;
+        }
+        CacheEntry onDisk;
+        synchronized (disk) {
+            onDisk = disk.get(key);
+        }
+        if (onDisk != null && !onDisk.isExpired(now, ttlMillis)) {
+            diskHits.incrementAndGet();
+            putMemory(key, onDisk);
+            return onDisk.catDetected();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private boolean store(CacheKey key, boolean catDetected) {
+        CacheEntry entry = new CacheEntry(catDetected, System.currentTimeMillis());
+        putMemory(key, entry);
+        putDisk(key, entry);
+        return catDetected;
+    }
+
+    /**
+     * @return Number of requests answered from the in-memory tier
+     */
+    public long getMemoryHitCount() {
+        return memoryHits.get();
+    }
+
+    /**
+     * @return Number of requests answered from the disk tier
+     */
+    public long getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    /**
+     * @return Number of requests answered from either tier, i.e. remote calls saved
+     */
+    public long getHitCount() {
+        return memoryHits.get() + diskHits.get();
+    }
+
+    /**
+     * @return Number of requests that had to be forwarded to the wrapped service
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Finds a live entry with the same threshold whose hash is within maxDistance bits of the key.
+     * Exact matches are checked first; otherwise only the keys sharing a hash chunk with it are compared.
+     */
+    private synchronized Boolean lookupMemory(CacheKey key, long now) {
+        CacheEntry exact = memory.get(key);
+        if (exact != null) {
+            if (!exact.isExpired(now, ttlMillis)) {
+                return exact.catDetected();
+            }
+            removeMemory(key);
+        }
+        List<CacheKey> expired = new ArrayList<>();
+        Boolean found = null;
+        for (int i = 0; i < chunks && found == null; i++) {
+            Set<CacheKey> candidates = chunkIndex.get(i).get(chunk(key.hash(), i));
+            if (candidates == null) {
+                continue;
+            }
+            for (CacheKey candidate : candidates) {
+                if (candidate.threshold() != key.threshold()
+                        || PerceptualHash.distance(candidate.hash(), key.hash()) > maxDistance) {
+                    continue;
+                }
+                CacheEntry entry = memory.get(candidate);
+                if (entry.isExpired(now, ttlMillis)) {
+                    expired.add(candidate);
+                } else {
+                    found = entry.catDetected();
+                    break;
+                }
+            }
+        }
+        expired.forEach(this::removeMemory);
+        return found;
+    }
+
+    private synchronized void putMemory(CacheKey key, CacheEntry entry) {
+        if (memory.put(key, entry) == null) {
+            for (int i = 0; i < chunks; i++) {
+                chunkIndex.get(i).computeIfAbsent(chunk(key.hash(), i), c -> new HashSet<>()).add(key);
+            }
+        }
+    }
+
+    private void removeMemory(CacheKey key) {
+        memory.remove(key);
+        unindex(key);
+    }
+
+    private void unindex(CacheKey key) {
+        for (int i = 0; i < chunks; i++) {
+            Map<Long, Set<CacheKey>> index = chunkIndex.get(i);
+            long value = chunk(key.hash(), i);
+            Set<CacheKey> keys = index.get(value);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                index.remove(value);
+            }
+        }
+    }
+
+    /**
+     * Returns the bits of the i'th chunk of the hash; the last chunk also takes the bits left over
+     * when 64 doesn't divide evenly.
+     */
+    private long chunk(long hash, int i) {
+        int width = Long.SIZE / chunks;
+        int shift = i * width;
+        if (i == chunks - 1) {
+            width = Long.SIZE - shift;
+        }
+        return width == Long.SIZE ? hash : (hash >>> shift) & ((1L << width) - 1);
+    }
+
+    private void loadDiskCache() {
+        if (diskCache == null || !Files.exists(diskCache)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (disk) {
+            try (BufferedReader reader = Files.newBufferedReader(diskCache, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    diskLines++;
+                    String[] parts = line.split(" ");
+                    if (parts.length != 4) {
+                        continue; //partially written line from an earlier crash
+                    }
+                    CacheKey key = new CacheKey(Long.parseUnsignedLong(parts[0], 16), Float.parseFloat(parts[1]));
+                    CacheEntry entry = new CacheEntry(Boolean.parseBoolean(parts[2]), Long.parseLong(parts[3]));
+                    if (!entry.isExpired(now, ttlMillis)) {
+                        putDiskEntry(key, entry);
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                log.warn("Unable to read recognition cache {}, starting empty", diskCache, e);
+                disk.clear();
+            }
+            if (diskLines >= 2 * maxDiskEntries) {
+                compactDiskCache(now);
+            }
+        }
+    }
+
+    private void putDisk(CacheKey key, CacheEntry entry) {
+        if (diskCache == null) {
+            return;
+        }
+        synchronized (disk) {
+            putDiskEntry(key, entry);
+            try (BufferedWriter writer = Files.newBufferedWriter(diskCache, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(diskLine(key, entry));
+                diskLines++;
+            } catch (IOException ioe) {
+                log.warn("Unable to write recognition cache {}", diskCache, ioe);
+            }
+            if (diskLines >= 2 * maxDiskEntries) {
+                compactDiskCache(System.currentTimeMillis());
+            }
+        }
+    }
+
+    /**
+     * Stores the entry as the newest in the disk tier and drops the oldest ones beyond maxDiskEntries.
+     * Callers hold the disk lock.
+     */
+    private void putDiskEntry(CacheKey key, CacheEntry entry) {
+        disk.remove(key);
+        disk.put(key, entry);
+        while (disk.size() > maxDiskEntries) {
+            disk.remove(disk.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Rewrites the file with only the live entries, writing a temporary file first and moving it into
+     * place so a crash part way leaves the old file. Callers hold the disk lock.
+     */
+    private void compactDiskCache(long now) {
+        disk.values().removeIf(entry -> entry.isExpired(now, ttlMillis));
+        Path compacted = diskCache.resolveSibling(diskCache.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+                for (Map.Entry<CacheKey, CacheEntry> e : disk.entrySet()) {
+                    writer.write(diskLine(e.getKey(), e.getValue()));
+                }
+            }
+            Files.move(compacted, diskCache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            diskLines = disk.size();
+        } catch (IOException ioe) {
+            log.warn("Unable to compact recognition cache {}", diskCache, ioe);
+        }
+    }
+
+    private static String diskLine(CacheKey key, CacheEntry entry) {
+        return String.format("%s %s %s %d%n",
+                Long.toHexString(key.hash()), key.threshold(), entry.catDetected(), entry.createdMillis());
+    }
+
+    private record CacheKey(long hash, float threshold) {
+    }
+
+    private record CacheEntry(boolean catDetected, long createdMillis) {
+        boolean isExpired(long now, long ttlMillis) {
+            return now - createdMillis > ttlMillis;
+        }
+    }
+}
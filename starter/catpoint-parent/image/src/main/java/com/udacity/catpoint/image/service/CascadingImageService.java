@@ -0,0 +1,171 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * ImageService that first asks a cheap local classifier and only calls the remote service when the
+ * local confidence is too close to the requested threshhold to trust. With a threshhold of 50 and
+ * margins of 30, for example, local scores below 20 are answered "no cat", scores of 80 or more are
+ * answered "cat", and anything in between is sent to the remote service.
+ *
+ * The local model has not been validated: the bundled one got none of three held-out frames right in
+ * leave-one-out testing, so frames it answers on its own may simply be wrong. Until a model has been
+ * measured on real camera frames, run with margins of 100, which send every frame to the remote service.
+ * Every remote answer is compared with what the local model alone would have said, and the agreement
+ * counts show whether narrowing the margins is safe.
+ */
+public class CascadingImageService implements ImageService {
+
+    /**
+     * Margin wide enough that no confidence between 0 and 100 is decided locally.
+     */
+    public static final float SHADOW_MARGIN = 100.0f;
+
+    private final LocalImageService local;
+    private final ImageService remote;
+    private final float lowerMargin;
+    private final float upperMargin;
+
+    private final TierMetrics localMetrics = new TierMetrics("local");
+    private final TierMetrics remoteMetrics = new TierMetrics("remote");
+    private final LongAdder localAgreements = new LongAdder();
+    private final LongAdder localDisagreements = new LongAdder();
+
+    /**
+     * Sends every frame to the remote service and only records how often the local classifier agrees,
+     * which is the safe setting for an unvalidated model.
+     */
+    public CascadingImageService(LocalImageService local, ImageService remote) {
+        this(local, remote, SHADOW_MARGIN, SHADOW_MARGIN);
+    }
+
+    /**
+     * @param local Classifier consulted for every frame
+     * @param remote Service consulted for frames inside the uncertainty band
+     * @param lowerMargin How far below the threshhold the local confidence must be to skip the remote call
+     * @param upperMargin How far at or above the threshhold the local confidence must be to skip the remote call
+     */
+    public CascadingImageService(LocalImageService local, ImageService remote, float lowerMargin, float upperMargin) {
+        if (lowerMargin < 0 || upperMargin < 0) {
+            throw new IllegalArgumentException("Margins must not be negative");
+        }
+        this.local = local;
+        this.remote = remote;
+        this.lowerMargin = lowerMargin;
+        this.upperMargin = upperMargin;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        long start = System.nanoTime();
+        float confidence = local.catConfidence(image);
+        Boolean localDecision = decideLocally(confidence, confidenceThreshhold, start);
+        if (localDecision != null) {
+            return localDecision;
+        }
+        return askRemote(confidence >= confidenceThreshhold, () -> remote.imageContainsCat(image, confidenceThreshhold));
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        long start = System.nanoTime();
+        float confidence = local.catConfidence(image);
+        Boolean localDecision = decideLocally(confidence, confidenceThreshhold, start);
+        if (localDecision != null) {
+            return localDecision;
+        }
+        return askRemote(confidence >= confidenceThreshhold,
+                () -> remote.imageContainsCat(cameraId, image, confidenceThreshhold));
+    }
+
+    /**
+     * Labels come from the remote service; the local classifier only knows about cats.
+     */
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        long start = System.nanoTime();
+        try {
+            return remote.detectLabels(image);
+        } finally {
+            remoteMetrics.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Decodes the frame once for the local classifier, but forwards the original bytes when the
+     * remote service is needed.
+     */
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+        long start = System.nanoTime();
+        float confidence = local.catConfidence(ImageService.decode(encodedImage));
+        Boolean localDecision = decideLocally(confidence, confidenceThreshhold, start);
+        if (localDecision != null) {
+            return localDecision;
+        }
+        return askRemote(confidence >= confidenceThreshhold,
+                () -> remote.encodedImageContainsCat(encodedImage, confidenceThreshhold));
+    }
+
+    /**
+     * @return metrics for frames answered by the local classifier
+     */
+    public TierMetrics getLocalMetrics() {
+        return localMetrics;
+    }
+
+    /**
+     * @return metrics for frames that had to be sent to the remote service
+     */
+    public TierMetrics getRemoteMetrics() {
+        return remoteMetrics;
+    }
+
+    public List<TierMetrics> getMetrics() {
+        return List.of(localMetrics, remoteMetrics);
+    }
+
+    /**
+     * @return number of remote answers that matched the local model's confidence compared with the threshhold
+     */
+    public long getLocalAgreementCount() {
+        return localAgreements.sum();
+    }
+
+    /**
+     * @return number of remote answers that the local model alone would have got wrong
+     */
+    public long getLocalDisagreementCount() {
+        return localDisagreements.sum();
+    }
+
+    /**
+     * @return the local decision, or null if the confidence falls in the uncertainty band
+     */
+    private Boolean decideLocally(float confidence, float confidenceThreshhold, long startNanos) {
+        if (confidence >= confidenceThreshhold + upperMargin) {
+            localMetrics.record(System.nanoTime() - startNanos);
+            return true;
+        }
+        if (confidence < confidenceThreshhold - lowerMargin) {
+            localMetrics.record(System.nanoTime() - startNanos);
+            return false;
+        }
+        return null;
+    }
+
+    private boolean askRemote(boolean localGuess, BooleanSupplier call) {
+        long start = System.nanoTime();
+        try {
+            boolean cat = call.getAsBoolean();
+            (cat == localGuess ? localAgreements : localDisagreements).increment();
+            return cat;
+        } finally {
+            remoteMetrics.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consecutive-failure circuit breaker. After failureThreshold failures in a row the circuit opens and
+ * calls are refused for openMillis. Once that time has passed a single trial call is let through:
+ * if it succeeds the circuit closes again, if it fails the circuit stays open for another openMillis.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+
+    /**
+     * @param failureThreshold Number of failures in a row that opens the circuit
+     * @param openMillis How long the circuit stays open before a trial call is allowed
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("Failure threshold must be at least 1");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * @return true if the caller may make the call. Callers that get true must report the outcome
+     * through recordSuccess or recordFailure.
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt >= openNanos) {
+                    state = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                //a trial call is already in flight
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+        state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
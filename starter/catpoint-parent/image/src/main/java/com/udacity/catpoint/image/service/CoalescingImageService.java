@@ -0,0 +1,162 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * ImageService decorator that coalesces concurrent requests for the same content. While a frame is
+ * being scanned, other callers asking about an identical frame at the same threshhold, from the same
+ * camera when one is given, wait for that scan and share its result instead of making their own call. Label requests for an identical frame
+ * share one call too. Nothing is kept once the scan finishes;
+ * use CachingImageService to reuse results over time.
+ *
+ * Frames are identified by a 64 bit hash of their dimensions and pixels, or of their encoded bytes.
+ */
+public class CoalescingImageService implements ImageService {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final ImageService delegate;
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CoalescingImageService(ImageService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return coalesce(new Key(Kind.PIXELS, null, hash(image), confidenceThreshhold),
+                () -> delegate.imageContainsCat(image, confidenceThreshhold));
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        //camera-aware delegates keep state per camera, so each camera's frame has to reach them
+        return coalesce(new Key(Kind.PIXELS, cameraId, hash(image), confidenceThreshhold),
+                () -> delegate.imageContainsCat(cameraId, image, confidenceThreshhold));
+    }
+
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+        return coalesce(new Key(Kind.ENCODED, null, hash(encodedImage), confidenceThreshhold),
+                () -> delegate.encodedImageContainsCat(encodedImage, confidenceThreshhold));
+    }
+
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        return coalesce(new Key(Kind.LABELS, null, hash(image), 0f), () -> delegate.detectLabels(image));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(Key key, Supplier<T> scan) {
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                //the kind in the key guarantees the shared result has the type this caller expects
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                //rethrow the scanning thread's exception as-is
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        calls.increment();
+        try {
+            T result = scan.get();
+            mine.complete(result);
+            return result;
+        } catch (Throwable e) {
+            //errors too, or the callers waiting on this scan would never return
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * @return Number of scans sent to the wrapped service
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * @return Number of requests that shared another request's scan
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * FNV-1a over the image's dimensions and pixels. The common camera layouts are read straight
+     * from the raster, a row at a time.
+     */
+    static long hash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long hash = mix(mix(FNV_OFFSET, width), height);
+        if (image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            byte[] row = new byte[width * 3];
+            for (int y = 0; y < height; y++) {
+                image.getRaster().getDataElements(0, y, width, 1, row);
+                for (byte b : row) {
+                    hash = mix(hash, b);
+                }
+            }
+            return hash;
+        }
+        int[] row = new int[width];
+        boolean intRaster = image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_INT_ARGB;
+        for (int y = 0; y < height; y++) {
+            if (intRaster) {
+                image.getRaster().getDataElements(0, y, width, 1, row);
+            } else {
+                image.getRGB(0, y, width, 1, row, 0, width);
+            }
+            for (int pixel : row) {
+                hash = mix(hash, pixel);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * FNV-1a over the bytes between the buffer's position and limit. The buffer itself is not moved.
+     */
+    static long hash(ByteBuffer encodedImage) {
+        long hash = FNV_OFFSET;
+        for (int i = encodedImage.position(); i < encodedImage.limit(); i++) {
+            hash = mix(hash, encodedImage.get(i));
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * FNV_PRIME;
+    }
+
+    private enum Kind {
+        PIXELS, ENCODED, LABELS
+    }
+
+    private record Key(Kind kind, String cameraId, long hash, float confidenceThreshhold) {
+    }
+}
@@ -12,4 +12,9 @@ public class FakeImageService implements ImageService {
     public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
         return r.nextBoolean();
     }
+
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        return new LabelResult(new String[]{"Cat"}, new float[]{r.nextFloat() * 100f}, 0f);
+    }
 }
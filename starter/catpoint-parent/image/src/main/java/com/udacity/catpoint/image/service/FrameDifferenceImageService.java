@@ -0,0 +1,172 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ImageService decorator that skips recognition when a camera's frame hasn't meaningfully changed
+ * since the last frame that was actually scanned. Each camera keeps a 32x24 luma thumbnail of its
+ * last scanned frame. A new frame is compared block by block and the previous result is reused
+ * when no 4x4 block of the thumbnail changed by more than the threshold, on average.
+ *
+ * Comparing blocks instead of the whole frame means a small object entering one corner of the
+ * scene still triggers a scan, while uniform sensor noise does not. The reference thumbnail is
+ * only replaced when a frame is scanned, so slow drift eventually triggers a scan too.
+ */
+public class FrameDifferenceImageService implements ImageService {
+
+    /**
+     * Camera used for frames that are scanned without a camera id.
+     */
+    public static final String DEFAULT_CAMERA = "default";
+
+    private static final int THUMB_WIDTH = 32;
+    private static final int THUMB_HEIGHT = 24;
+    private static final int BLOCK_SIZE = 4;
+    private static final float DEFAULT_THRESHOLD = 8.0f;
+
+    private final ImageService delegate;
+    private final float threshold;
+    private final Map<String, LastScan> lastScans = new ConcurrentHashMap<>();
+
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    public FrameDifferenceImageService(ImageService delegate) {
+        this(delegate, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param delegate Service used to scan frames that changed
+     * @param threshold Mean absolute luma difference (0-255) a block must exceed to count as changed
+     */
+    public FrameDifferenceImageService(ImageService delegate, float threshold) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(DEFAULT_CAMERA, image, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        int[] thumbnail = thumbnail(image);
+        Boolean previous = previousResult(cameraId, thumbnail, confidenceThreshhold);
+        if (previous != null) {
+            return previous;
+        }
+        return recordScan(cameraId, thumbnail, confidenceThreshhold,
+                delegate.imageContainsCat(cameraId, image, confidenceThreshhold));
+    }
+
+    /**
+     * Labels are always detected on the full frame; only the yes or no cat answer is gated.
+     */
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        return delegate.detectLabels(image);
+    }
+
+    /**
+     * The frame is decoded to build its thumbnail, but changed frames are forwarded as the original bytes.
+     */
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+        int[] thumbnail = thumbnail(ImageService.decode(encodedImage));
+        Boolean previous = previousResult(DEFAULT_CAMERA, thumbnail, confidenceThreshhold);
+        if (previous != null) {
+            return previous;
+        }
+        return recordScan(DEFAULT_CAMERA, thumbnail, confidenceThreshhold,
+                delegate.encodedImageContainsCat(encodedImage, confidenceThreshhold));
+    }
+
+    private Boolean previousResult(String cameraId, int[] thumbnail, float confidenceThreshhold) {
+        LastScan last = lastScans.get(cameraId);
+        if (last != null && last.confidenceThreshhold() == confidenceThreshhold
+                && maxBlockDifference(last.thumbnail(), thumbnail) <= threshold) {
+            skipped.incrementAndGet();
+            return last.catDetected();
+        }
+        return null;
+    }
+
+    private boolean recordScan(String cameraId, int[] thumbnail, float confidenceThreshhold, boolean catDetected) {
+        scanned.incrementAndGet();
+        lastScans.put(cameraId, new LastScan(thumbnail, confidenceThreshhold, catDetected));
+        return catDetected;
+    }
+
+    /**
+     * Forgets the reference frame for a camera, so its next frame is always scanned.
+     */
+    public void reset(String cameraId) {
+        lastScans.remove(cameraId);
+    }
+
+    /**
+     * @return Number of frames that were sent to the wrapped service
+     */
+    public long getScannedCount() {
+        return scanned.get();
+    }
+
+    /**
+     * @return Number of frames answered with the previous result because the scene hadn't changed
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * Averages the luma of the image over a THUMB_WIDTH x THUMB_HEIGHT grid.
+     */
+    static int[] thumbnail(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] sums = new int[THUMB_WIDTH * THUMB_HEIGHT];
+        int[] counts = new int[THUMB_WIDTH * THUMB_HEIGHT];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = (y * THUMB_HEIGHT / height) * THUMB_WIDTH;
+            for (int x = 0; x < width; x++) {
+                int cell = cellRow + x * THUMB_WIDTH / width;
+                sums[cell] += PerceptualHash.luma(row[x]);
+                counts[cell]++;
+            }
+        }
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = counts[i] == 0 ? 0 : sums[i] / counts[i];
+        }
+        return sums;
+    }
+
+    /**
+     * @return the largest mean absolute difference of any BLOCK_SIZE x BLOCK_SIZE block
+     */
+    static float maxBlockDifference(int[] a, int[] b) {
+        int max = 0;
+        for (int blockY = 0; blockY < THUMB_HEIGHT; blockY += BLOCK_SIZE) {
+            for (int blockX = 0; blockX < THUMB_WIDTH; blockX += BLOCK_SIZE) {
+                int sum = 0;
+                for (int y = blockY; y < blockY + BLOCK_SIZE; y++) {
+                    int offset = y * THUMB_WIDTH + blockX;
+                    for (int x = 0; x < BLOCK_SIZE; x++) {
+                        sum += Math.abs(a[offset + x] - b[offset + x]);
+                    }
+                }
+                max = Math.max(max, sum);
+            }
+        }
+        return (float) max / (BLOCK_SIZE * BLOCK_SIZE);
+    }
+
+    private record LastScan(int[] thumbnail, float confidenceThreshhold, boolean catDetected) {
+    }
+}
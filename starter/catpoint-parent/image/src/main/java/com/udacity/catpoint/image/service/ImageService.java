@@ -1,8 +1,180 @@
 package com.udacity.catpoint.image.service;
 
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public interface ImageService {
     boolean imageContainsCat(BufferedImage image, float confidenceThreshhold);
 
+    /**
+     * Returns true if the provided image from the given camera contains a cat. Services that keep
+     * per-camera state override this; the default implementation ignores the camera.
+     * @param cameraId Identifies the camera that produced the frame
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @return boolean
+     */
+    default boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return imageContainsCat(image, confidenceThreshhold);
+    }
+
+    /**
+     * Returns every label the service detects in the image, with its confidence, so that several
+     * threshhold or label questions can be answered from a single call. Every bundled service and
+     * decorator supports this; services that only answer yes or no about cats, such as lambdas, don't,
+     * and decorators that fall back to such a service answer with no labels instead.
+     * @param image Image to scan
+     * @return detected labels
+     * @throws UnsupportedOperationException if the service can't report labels
+     */
+    default LabelResult detectLabels(BufferedImage image) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not report labels");
+    }
+
+    /**
+     * Returns true if the provided encoded image (for example the bytes of a JPEG file) contains a cat.
+     * Services that can work with encoded bytes directly should override this to skip decoding; the
+     * default implementation decodes the bytes and scans the resulting pixels.
+     * @param encodedImage Encoded image bytes between the buffer's position and limit. The buffer's position is not changed.
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @return boolean
+     */
+    default boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+        return imageContainsCat(decode(encodedImage), confidenceThreshhold);
+    }
+
+    /**
+     * Returns true if the provided image file contains a cat. The file is memory-mapped and passed
+     * to {@link #encodedImageContainsCat(ByteBuffer, float)} without being decoded first.
+     * @param imageFile Path to an encoded image file
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @return boolean
+     */
+    default boolean imageFileContainsCat(Path imageFile, float confidenceThreshhold) {
+        try (FileChannel channel = FileChannel.open(imageFile, StandardOpenOption.READ)) {
+            return encodedImageContainsCat(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), confidenceThreshhold);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to read image file " + imageFile, ioe);
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #imageContainsCat(BufferedImage, float)}. The default implementation
+     * runs on the common pool; implementations that block on I/O should supply their own bounded executor.
+     * @param image Image to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @return future completed with true if the image contains a cat
+     */
+    default CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+        return CompletableFuture.supplyAsync(() -> imageContainsCat(image, confidenceThreshhold));
+    }
+
+    /**
+     * Asynchronous version of {@link #imageFileContainsCat(Path, float)}.
+     * @param imageFile Path to an encoded image file
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @return future completed with true if the image contains a cat
+     */
+    default CompletableFuture<Boolean> imageFileContainsCatAsync(Path imageFile, float confidenceThreshhold) {
+        return CompletableFuture.supplyAsync(() -> imageFileContainsCat(imageFile, confidenceThreshhold));
+    }
+
+    /**
+     * Scans several images, keeping at most maxConcurrency of them in flight at any time.
+     * @param images Images to scan
+     * @param confidenceThreshhold Minimum threshhold to consider for cat
+     * @param maxConcurrency Maximum number of scans running at once
+     * @return future completed with one result per image, in the same order as the input
+     */
+    default CompletableFuture<List<Boolean>> imageContainsCatAsync(List<BufferedImage> images, float confidenceThreshhold,
+                                                                   int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        Boolean[] results = new Boolean[images.size()];
+        CompletableFuture<List<Boolean>> all = new CompletableFuture<>();
+        if (images.isEmpty()) {
+            all.complete(Collections.emptyList());
+            return all;
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(images.size());
+        AtomicInteger permits = new AtomicInteger(maxConcurrency);
+        AtomicInteger drainRequests = new AtomicInteger();
+        //finished scans hand back a permit and ask for a drain instead of starting the next scan themselves,
+        //so scans that complete inline don't nest one call per image on the stack. Only one thread drains at
+        //a time; a request made while it runs makes it go round the loop again.
+        Runnable[] drain = new Runnable[1];
+        drain[0] = () -> {
+            if (drainRequests.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (permits.get() > 0 && next.get() < images.size() && !all.isDone()) {
+                    permits.decrementAndGet();
+                    int index = next.getAndIncrement();
+                    CompletableFuture<Boolean> scan;
+                    try {
+                        scan = imageContainsCatAsync(images.get(index), confidenceThreshhold);
+                    } catch (RuntimeException e) {
+                        all.completeExceptionally(e);
+                        break;
+                    }
+                    scan.whenComplete((cat, error) -> {
+                        if (error != null) {
+                            all.completeExceptionally(error);
+                            return;
+                        }
+                        results[index] = cat;
+                        if (remaining.decrementAndGet() == 0) {
+                            all.complete(List.of(results));
+                        } else {
+                            permits.incrementAndGet();
+                            drain[0].run();
+                        }
+                    });
+                }
+            } while (drainRequests.decrementAndGet() != 0);
+        };
+        drain[0].run();
+        return all;
+    }
+
+    /**
+     * Decodes the encoded image between the buffer's position and limit without moving the position.
+     */
+    static BufferedImage decode(ByteBuffer encodedImage) {
+        ByteBuffer view = encodedImage.duplicate();
+        byte[] bytes;
+        int offset;
+        if (view.hasArray()) {
+            bytes = view.array();
+            offset = view.arrayOffset() + view.position();
+        } else {
+            bytes = new byte[view.remaining()];
+            view.get(bytes);
+            offset = 0;
+        }
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(bytes, offset, encodedImage.remaining()));
+            if (image == null) {
+                throw new IllegalArgumentException("Unsupported image format");
+            }
+            return image;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to decode image", ioe);
+        }
+    }
 }
@@ -0,0 +1,94 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * Chooses an ImageService by name from the implementations registered with ServiceLoader, through the
+ * provides clause in module-info.java or META-INF/services on the class path.
+ *
+ * The name is checked right away, but the implementation is only created on the first scan, so
+ * configuring AwsImageService doesn't read credentials or build an SDK client at startup. Set
+ * -Dcatpoint.imageService.eager=true, or call load(name, true), to create it immediately instead, so a
+ * misconfigured service such as AwsImageService without config.properties fails at startup.
+ */
+public final class ImageServices {
+
+    /**
+     * System property naming the ImageService implementation to use, e.g. -Dcatpoint.imageService=LocalImageService
+     */
+    public static final String PROPERTY = "catpoint.imageService";
+
+    /**
+     * System property that, set to true, makes load() create the implementation right away
+     */
+    public static final String EAGER_PROPERTY = "catpoint.imageService.eager";
+
+    private static final String DEFAULT_PROVIDER = FakeImageService.class.getSimpleName();
+
+    private ImageServices() {
+    }
+
+    /**
+     * Chooses the implementation named by the catpoint.imageService system property, or FakeImageService
+     * if it isn't set. It is created on the first scan unless catpoint.imageService.eager is true.
+     */
+    public static ImageService load() {
+        return load(selectedProvider(), Boolean.getBoolean(EAGER_PROPERTY));
+    }
+
+    /**
+     * @return the name in the catpoint.imageService system property, or FakeImageService if it isn't set
+     */
+    public static String selectedProvider() {
+        return System.getProperty(PROPERTY, DEFAULT_PROVIDER);
+    }
+
+    /**
+     * Chooses an implementation that is created on the first scan.
+     * @param name Simple or fully qualified class name of a registered ImageService implementation
+     * @throws IllegalArgumentException if no implementation with that name is registered
+     */
+    public static ImageService load(String name) {
+        return load(name, false);
+    }
+
+    /**
+     * @param name Simple or fully qualified class name of a registered ImageService implementation
+     * @param eager True to create the implementation now rather than on the first scan
+     * @throws IllegalArgumentException if no implementation with that name is registered
+     * @throws IllegalStateException if eager and the implementation can't be created, e.g. because it
+     *      isn't configured. A lazily created one throws this from its first scan instead.
+     */
+    public static ImageService load(String name, boolean eager) {
+        //Provider.type() loads the class without running its constructor or static initializer
+        Optional<ServiceLoader.Provider<ImageService>> match = ServiceLoader.load(ImageService.class).stream()
+                .filter(p -> p.type().getSimpleName().equals(name) || p.type().getName().equals(name))
+                .findFirst();
+        ServiceLoader.Provider<ImageService> provider = match.orElseThrow(() -> new IllegalArgumentException(
+                "No ImageService named " + name + ", available: " + availableProviders()));
+        return eager ? create(provider) : new LazyImageService(provider);
+    }
+
+    /**
+     * @return simple class names of every registered ImageService implementation
+     */
+    public static List<String> availableProviders() {
+        return ServiceLoader.load(ImageService.class).stream()
+                .map(p -> p.type().getSimpleName())
+                .toList();
+    }
+
+    static ImageService create(ServiceLoader.Provider<ImageService> provider) {
+        try {
+            return provider.get();
+        } catch (ServiceConfigurationError e) {
+            //the loader wraps whatever the constructor threw
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IllegalStateException("Unable to create " + provider.type().getSimpleName() + ": "
+                    + cause.getMessage(), cause);
+        }
+    }
+}
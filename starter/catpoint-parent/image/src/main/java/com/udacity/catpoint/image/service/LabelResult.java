@@ -0,0 +1,115 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * Immutable set of labels detected in one image, with the confidence of each, sorted from most to
+ * least confident. Label names and confidences are kept in two parallel arrays rather than as objects.
+ *
+ * A result can answer any number of threshhold questions without going back to the service that
+ * produced it. Labels below the service's minimum confidence were never reported, so questions with a
+ * threshhold below {@link #getMinConfidence()} may miss labels that were present.
+ */
+public final class LabelResult {
+
+    public static final LabelResult EMPTY = new LabelResult(new String[0], new float[0], 0f);
+
+    private final String[] names;
+    private final float[] confidences;
+    private final float minConfidence;
+
+    /**
+     * @param names Label names, e.g. "Cat"
+     * @param confidences Confidence of each label, between 0 and 100, in the same order as names
+     * @param minConfidence Confidence below which the service didn't report labels
+     */
+    public LabelResult(String[] names, float[] confidences, float minConfidence) {
+        if (names.length != confidences.length) {
+            throw new IllegalArgumentException("Every label needs exactly one confidence");
+        }
+        Integer[] order = new Integer[names.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(confidences[b], confidences[a]));
+        this.names = new String[names.length];
+        this.confidences = new float[names.length];
+        for (int i = 0; i < order.length; i++) {
+            this.names[i] = names[order[i]];
+            this.confidences[i] = confidences[order[i]];
+        }
+        this.minConfidence = minConfidence;
+    }
+
+    /**
+     * Returns true if the image has a label whose name contains the given text, ignoring case, with at
+     * least the given confidence.
+     * @param label Text to look for in the label names, e.g. "cat"
+     * @param confidenceThreshhold Minimum confidence, between 0 and 100
+     */
+    public boolean contains(String label, float confidenceThreshhold) {
+        int index = indexOf(label);
+        return index >= 0 && confidences[index] >= confidenceThreshhold;
+    }
+
+    /**
+     * Returns true if the image contains a cat with at least the given confidence. Matches the same
+     * labels that ImageService.imageContainsCat does.
+     * @param confidenceThreshhold Minimum threshhold to consider for cat. For example, 90.0f would require 90% confidence minimum
+     */
+    public boolean containsCat(float confidenceThreshhold) {
+        return contains("cat", confidenceThreshhold);
+    }
+
+    /**
+     * @return the highest confidence of any label whose name contains the given text, ignoring case, or 0 if there is none
+     */
+    public float confidenceOf(String label) {
+        int index = indexOf(label);
+        return index >= 0 ? confidences[index] : 0f;
+    }
+
+    private int indexOf(String label) {
+        String wanted = label.toLowerCase(Locale.ROOT);
+        //sorted by confidence, so the first match is the best one
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].toLowerCase(Locale.ROOT).contains(wanted)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return name of the label at the given rank, 0 being the most confident
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @return confidence of the label at the given rank, 0 being the most confident
+     */
+    public float getConfidence(int index) {
+        return confidences[index];
+    }
+
+    public float getMinConfidence() {
+        return minConfidence;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (int i = 0; i < names.length; i++) {
+            joiner.add(String.format("%s(%.1f%%)", names[i], confidences[i]));
+        }
+        return joiner.toString();
+    }
+}
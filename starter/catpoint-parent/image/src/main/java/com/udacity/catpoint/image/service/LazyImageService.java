@@ -0,0 +1,83 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds a ServiceLoader provider and only instantiates it on the first scan, so an application started
+ * with AwsImageService configured doesn't read credentials or build an SDK client until a frame
+ * actually needs recognizing. A provider that fails to instantiate is tried again on the next scan.
+ */
+final class LazyImageService implements ImageService {
+
+    private final Logger log = LoggerFactory.getLogger(LazyImageService.class);
+
+    private final ServiceLoader.Provider<ImageService> provider;
+    private volatile ImageService delegate;
+
+    LazyImageService(ServiceLoader.Provider<ImageService> provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * @return the class that will be, or has been, instantiated
+     */
+    Class<? extends ImageService> getProviderType() {
+        return provider.type();
+    }
+
+    /**
+     * @return true once the first scan has created the implementation
+     */
+    boolean isCreated() {
+        return delegate != null;
+    }
+
+    private ImageService delegate() {
+        ImageService service = delegate;
+        if (service == null) {
+            synchronized (this) {
+                service = delegate;
+                if (service == null) {
+                    long start = System.nanoTime();
+                    service = ImageServices.create(provider);
+                    delegate = service;
+                    log.info("Created {} in {}ms", provider.type().getSimpleName(),
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+            }
+        }
+        return service;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return delegate().imageContainsCat(image, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return delegate().imageContainsCat(cameraId, image, confidenceThreshhold);
+    }
+
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        return delegate().detectLabels(image);
+    }
+
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+        return delegate().encodedImageContainsCat(encodedImage, confidenceThreshhold);
+    }
+
+    @Override
+    public boolean imageFileContainsCat(Path imageFile, float confidenceThreshhold) {
+        return delegate().imageFileContainsCat(imageFile, confidenceThreshhold);
+    }
+}
@@ -0,0 +1,51 @@
+package com.udacity.catpoint.image.service;
+
+import com.udacity.catpoint.image.classifier.CatFeatures;
+import com.udacity.catpoint.image.classifier.CatModel;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Image Recognition Service that runs entirely in-process. Uses a small logistic regression model over
+ * color and edge features, so it needs no network access or credentials, at the cost of being far less
+ * accurate than a remote service. New models can be trained with CatClassifierTrainer.
+ *
+ * Experimental: the bundled model is trained on three sample images and got none of them right in
+ * leave-one-out testing, so it is not a usable detector on its own. It is registered with ServiceLoader
+ * so it can be tried out with -Dcatpoint.imageService=LocalImageService, and is meant to sit in front of
+ * a remote service in CascadingImageService until a model has been validated on real camera frames.
+ */
+public class LocalImageService implements ImageService {
+
+    private final CatModel model;
+
+    public LocalImageService() {
+        this(CatModel.loadDefault());
+    }
+
+    public LocalImageService(CatModel model) {
+        this.model = model;
+    }
+
+    /**
+     * Returns the model's confidence that the image contains a cat.
+     * @param image Image to scan
+     * @return confidence between 0 and 100, on the same scale as the confidenceThreshhold
+     */
+    public float catConfidence(BufferedImage image) {
+        return model.probability(CatFeatures.extract(image)) * 100f;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return catConfidence(image) >= confidenceThreshhold;
+    }
+
+    /**
+     * The model only knows about cats, so the result has a single "Cat" label.
+     */
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        return new LabelResult(new String[]{"Cat"}, new float[]{catConfidence(image)}, 0f);
+    }
+}
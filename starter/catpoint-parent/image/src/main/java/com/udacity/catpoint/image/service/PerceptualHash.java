@@ -0,0 +1,71 @@
+package com.udacity.catpoint.image.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Computes a 64 bit difference hash (dHash) of an image. The image is reduced to a 9x8 grid of
+ * average luma values and each bit records whether a cell is brighter than its right neighbour,
+ * so small amounts of sensor noise or re-compression leave most of the bits unchanged.
+ */
+final class PerceptualHash {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Returns the difference hash of the provided image.
+     * @param image Image to hash
+     * @return 64 bit perceptual hash
+     */
+    static long of(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long[] sums = new long[GRID_WIDTH * GRID_HEIGHT];
+        int[] counts = new int[GRID_WIDTH * GRID_HEIGHT];
+        int[] row = new int[width];
+
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = (y * GRID_HEIGHT / height) * GRID_WIDTH;
+            for (int x = 0; x < width; x++) {
+                int cell = cellRow + x * GRID_WIDTH / width;
+                sums[cell] += luma(row[x]);
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0L;
+        for (int y = 0; y < GRID_HEIGHT; y++) {
+            for (int x = 0; x < GRID_WIDTH - 1; x++) {
+                int left = y * GRID_WIDTH + x;
+                hash <<= 1;
+                if (average(sums, counts, left) > average(sums, counts, left + 1)) {
+                    hash |= 1L;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the number of bits that differ between two hashes.
+     */
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    static int luma(int rgb) {
+        int r = (rgb >> 16) & 0xff;
+        int g = (rgb >> 8) & 0xff;
+        int b = rgb & 0xff;
+        //integer approximation of ITU-R BT.601 luma
+        return (r * 77 + g * 150 + b * 29) >> 8;
+    }
+
+    private static long average(long[] sums, int[] counts, int cell) {
+        return counts[cell] == 0 ? 0 : sums[cell] / counts[cell];
+    }
+}
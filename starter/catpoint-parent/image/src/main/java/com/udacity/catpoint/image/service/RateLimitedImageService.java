@@ -0,0 +1,140 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.rekognition.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.rekognition.model.ThrottlingException;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * ImageService decorator that keeps calls to the wrapped service under a rate limit. A call that finds
+ * the token bucket empty waits up to maxWaitMillis for a token; if none arrives in time the call is shed
+ * and answered by the fallback service. Throttling errors from the wrapped service are answered by the
+ * fallback as well, and empty the bucket so the following calls back off.
+ */
+public class RateLimitedImageService implements ImageService {
+
+    private final Logger log = LoggerFactory.getLogger(RateLimitedImageService.class);
+
+    private final ImageService delegate;
+    private final ImageService fallback;
+    private final TokenBucket bucket;
+    private final long maxWaitMillis;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    /**
+     * @param delegate Service to protect
+     * @param fallback Service that answers shed and throttled calls
+     * @param permitsPerSecond Sustained calls per second allowed through to the delegate
+     * @param burst Calls that may go through at once after an idle period
+     * @param maxWaitMillis How long a call may wait for a token. 0 sheds immediately when the bucket is empty
+     */
+    public RateLimitedImageService(ImageService delegate, ImageService fallback, double permitsPerSecond, int burst, long maxWaitMillis) {
+        this.delegate = delegate;
+        this.fallback = fallback;
+        this.bucket = new TokenBucket(permitsPerSecond, burst);
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return scan(service -> service.imageContainsCat(image, confidenceThreshhold));
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return scan(service -> service.imageContainsCat(cameraId, image, confidenceThreshhold));
+    }
+
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+        return scan(service -> service.encodedImageContainsCat(encodedImage, confidenceThreshhold));
+    }
+
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        return scan(service -> service.detectLabels(image), () -> fallbackLabels(image));
+    }
+
+    /**
+     * A fallback that only answers yes or no can't report labels, so the degraded answer is then an
+     * empty result, as AwsImageService gives for a frame it can't encode.
+     */
+    private LabelResult fallbackLabels(BufferedImage image) {
+        try {
+            return fallback.detectLabels(image);
+        } catch (UnsupportedOperationException e) {
+            log.warn("Fallback can't report labels, answering with none", e);
+            return LabelResult.EMPTY;
+        }
+    }
+
+    private <T> T scan(Function<ImageService, T> call) {
+        return scan(call, () -> call.apply(fallback));
+    }
+
+    private <T> T scan(Function<ImageService, T> call, Supplier<T> fallbackCall) {
+        if (!acquire()) {
+            shed.increment();
+            return fallbackCall.get();
+        }
+        try {
+            return call.apply(delegate);
+        } catch (SdkServiceException e) {
+            if (!isThrottling(e)) {
+                throw e;
+            }
+            throttled.increment();
+            bucket.drain();
+            log.warn("Image recognition throttled, using fallback");
+            return fallbackCall.get();
+        }
+    }
+
+    private boolean acquire() {
+        if (bucket.tryAcquire()) {
+            return true;
+        }
+        queued.increment();
+        try {
+            return bucket.tryAcquire(maxWaitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean isThrottling(SdkServiceException e) {
+        return e instanceof ThrottlingException || e instanceof ProvisionedThroughputExceededException || e.isThrottlingException();
+    }
+
+    /**
+     * @return Number of calls that found the bucket empty and had to wait
+     */
+    public long getQueuedCount() {
+        return queued.sum();
+    }
+
+    /**
+     * @return Number of calls answered by the fallback because no token arrived in time
+     */
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * @return Number of calls the wrapped service rejected with a throttling error
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+}
@@ -0,0 +1,291 @@
+package com.udacity.catpoint.image.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * ImageService decorator that protects callers from a slow or failing remote service.
+ *
+ * Every call gets a deadline. Calls that miss it or throw are answered by the fallback service instead,
+ * and after enough consecutive failures a circuit breaker sends everything to the fallback until the
+ * primary service has had time to recover. With hedging enabled, a second identical call is started
+ * when the first one is slower than the recent 95th percentile latency, and whichever answers first wins.
+ * Once a scan has its answer, or has given up on the delegate, the delegate calls still running for it
+ * are interrupted and no hedged call can start for it any more.
+ */
+public class ResilientImageService implements ImageService, AutoCloseable {
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = 2_000;
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_OPEN_MILLIS = 30_000;
+    //hedging waits until there are enough samples for the percentile to mean something
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    private final Logger log = LoggerFactory.getLogger(ResilientImageService.class);
+
+    private final ImageService delegate;
+    private final ImageService fallback;
+    private final long timeoutMillis;
+    private final boolean hedge;
+    private final CircuitBreaker breaker;
+    private final LatencyWindow latencies = new LatencyWindow(128);
+    private final ExecutorService executor;
+
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+
+    public ResilientImageService(ImageService delegate, ImageService fallback) {
+        this(delegate, fallback, DEFAULT_TIMEOUT_MILLIS, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MILLIS, false);
+    }
+
+    /**
+     * @param delegate Service that normally answers
+     * @param fallback Service used when the delegate is too slow, fails, or the circuit is open
+     * @param timeoutMillis Deadline for the delegate's answer, including any hedged call
+     * @param failureThreshold Consecutive failures or timeouts that open the circuit
+     * @param openMillis How long the circuit stays open before the delegate is tried again
+     * @param hedge True to send a second call when the first is slower than the recent p95 latency
+     */
+    public ResilientImageService(ImageService delegate, ImageService fallback, long timeoutMillis,
+                                 int failureThreshold, long openMillis, boolean hedge) {
+        this.delegate = delegate;
+        this.fallback = fallback;
+        this.timeoutMillis = timeoutMillis;
+        this.hedge = hedge;
+        this.breaker = new CircuitBreaker(failureThreshold, openMillis);
+        //calls that miss their deadline keep running until the client gives up, so the pool can't be bounded
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "resilient-image-service");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+        return scan(service -> service.imageContainsCat(image, confidenceThreshhold));
+    }
+
+    @Override
+    public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+        return scan(service -> service.imageContainsCat(cameraId, image, confidenceThreshhold));
+    }
+
+    /**
+     * Each call, including a hedged one, reads its own view of the buffer.
+     */
+    @Override
+    public boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+        return scan(service -> service.encodedImageContainsCat(encodedImage.duplicate(), confidenceThreshhold));
+    }
+
+    @Override
+    public LabelResult detectLabels(BufferedImage image) {
+        return scan(service -> service.detectLabels(image), () -> fallbackLabels(image));
+    }
+
+    /**
+     * A fallback that only answers yes or no can't report labels, so the degraded answer is then an
+     * empty result, as AwsImageService gives for a frame it can't encode.
+     */
+    private LabelResult fallbackLabels(BufferedImage image) {
+        try {
+            return fallback.detectLabels(image);
+        } catch (UnsupportedOperationException e) {
+            log.warn("Fallback can't report labels, answering with none", e);
+            return LabelResult.EMPTY;
+        }
+    }
+
+    private <T> T scan(Function<ImageService, T> call) {
+        return scan(call, () -> call.apply(fallback));
+    }
+
+    private <T> T scan(Function<ImageService, T> call, Supplier<T> fallbackCall) {
+        if (!breaker.tryAcquire()) {
+            fallbacks.increment();
+            return fallbackCall.get();
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> result = callDelegate(call);
+        try {
+            T answer = result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            latencies.record(System.nanoTime() - start);
+            breaker.recordSuccess();
+            return answer;
+        } catch (TimeoutException e) {
+            //completing the result interrupts the calls in flight and stops a pending hedge from starting
+            result.cancel(true);
+            timeouts.increment();
+            log.warn("Image recognition timed out after {}ms, using fallback", timeoutMillis);
+        } catch (ExecutionException e) {
+            failures.increment();
+            log.warn("Image recognition failed, using fallback", e.getCause());
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            failures.increment();
+        }
+        breaker.recordFailure();
+        fallbacks.increment();
+        return fallbackCall.get();
+    }
+
+    /**
+     * Starts the delegate call and, if hedging, schedules a second one. The returned future completes
+     * with the first successful answer, or exceptionally once every started call has failed.
+     */
+    private <T> CompletableFuture<T> callDelegate(Function<ImageService, T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        DelegateCalls<T> calls = new DelegateCalls<>(call, result);
+        result.whenComplete((answer, e) -> calls.finish());
+        calls.start();
+
+        long hedgeDelayNanos = latencies.percentile(0.95, MIN_HEDGE_SAMPLES);
+        if (hedge && hedgeDelayNanos > 0) {
+            CompletableFuture.delayedExecutor(hedgeDelayNanos, TimeUnit.NANOSECONDS, executor).execute(() -> {
+                if (calls.start()) {
+                    hedges.increment();
+                }
+            });
+        }
+        return result;
+    }
+
+    public CircuitBreaker.State getCircuitState() {
+        return breaker.getState();
+    }
+
+    /**
+     * @return Number of calls that missed their deadline
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return Number of calls where the delegate threw
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * @return Number of calls answered by the fallback service
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    /**
+     * @return Number of hedged second calls that were sent
+     */
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The delegate calls started for one scan. The first answer completes the result, as does the last
+     * failure. Once the result is complete for any reason, including the caller giving up, the calls
+     * still running are interrupted and start refuses to begin another.
+     */
+    private class DelegateCalls<T> {
+        private final Function<ImageService, T> call;
+        private final CompletableFuture<T> result;
+        private final List<Future<?>> running = new ArrayList<>(2);
+        private int outstanding;
+        private boolean finished;
+
+        DelegateCalls(Function<ImageService, T> call, CompletableFuture<T> result) {
+            this.call = call;
+            this.result = result;
+        }
+
+        /**
+         * @return false if the scan is already finished and no call was started
+         */
+        synchronized boolean start() {
+            if (finished) {
+                return false;
+            }
+            outstanding++;
+            running.add(executor.submit(this::run));
+            return true;
+        }
+
+        private void run() {
+            try {
+                result.complete(call.apply(delegate));
+            } catch (RuntimeException e) {
+                failed(e);
+            }
+        }
+
+        private synchronized void failed(RuntimeException e) {
+            if (--outstanding == 0) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        synchronized void finish() {
+            finished = true;
+            for (Future<?> future : running) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Fixed-size ring of the most recent successful call latencies.
+     */
+    private static class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * @return the requested percentile in nanoseconds, or 0 if fewer than minSamples were recorded
+         */
+        synchronized long percentile(double percentile, int minSamples) {
+            if (size < minSamples) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(percentile * size) - 1];
+        }
+    }
+}
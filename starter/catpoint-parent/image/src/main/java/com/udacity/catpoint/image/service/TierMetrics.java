@@ -0,0 +1,50 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the decisions made by one stage of a recognition pipeline and how long they took.
+ * Safe to update from several threads at once.
+ */
+public class TierMetrics {
+
+    private final String name;
+    private final LongAdder decisions = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    public TierMetrics(String name) {
+        this.name = name;
+    }
+
+    public void record(long elapsedNanos) {
+        decisions.increment();
+        totalNanos.add(elapsedNanos);
+        maxNanos.accumulate(elapsedNanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDecisions() {
+        return decisions.sum();
+    }
+
+    public double getMeanLatencyMillis() {
+        long count = decisions.sum();
+        return count == 0 ? 0.0 : (double) totalNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxLatencyMillis() {
+        return (double) maxNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d decisions, mean %.2fms, max %.2fms",
+                name, getDecisions(), getMeanLatencyMillis(), getMaxLatencyMillis());
+    }
+}
@@ -0,0 +1,81 @@
+package com.udacity.catpoint.image.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket rate limiter. Tokens refill continuously at permitsPerSecond up to burst. Waiting callers
+ * reserve their token up front, so they are served in the order they arrived and never all wake at once.
+ */
+public class TokenBucket {
+
+    private final double burst;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param permitsPerSecond Sustained rate
+     * @param burst Number of permits that can be taken at once after an idle period
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate must be positive and burst at least 1");
+        }
+        this.burst = burst;
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * @return true if a permit was taken without waiting
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * Takes a permit, waiting up to maxWaitMillis for one to become available.
+     * @return true if a permit was taken, false if it would have taken longer than maxWaitMillis
+     */
+    public boolean tryAcquire(long maxWaitMillis) throws InterruptedException {
+        long waitNanos = reserve(TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+        if (waitNanos < 0) {
+            return false;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return true;
+    }
+
+    /**
+     * Empties the bucket, e.g. after the remote service reported throttling despite the limit.
+     * Outstanding reservations are kept.
+     */
+    public synchronized void drain() {
+        refill();
+        tokens = Math.min(tokens, 0);
+    }
+
+    /**
+     * @return nanoseconds the caller has to wait for its reserved permit, or -1 if that exceeds maxWaitNanos
+     */
+    private synchronized long reserve(long maxWaitNanos) {
+        refill();
+        long waitNanos = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+        if (waitNanos > maxWaitNanos) {
+            return -1;
+        }
+        //may go negative: later callers then wait for the tokens already promised to earlier ones
+        tokens -= 1;
+        return waitNanos;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
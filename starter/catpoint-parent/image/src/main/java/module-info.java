@@ -6,4 +6,12 @@ module com.udacity.catpoint.image {
     requires software.amazon.awssdk.regions;
     requires software.amazon.awssdk.services.rekognition;
     exports com.udacity.catpoint.image.service;
+    exports com.udacity.catpoint.image.classifier;
+    exports com.udacity.catpoint.image.preprocess;
+    uses com.udacity.catpoint.image.service.ImageService;
+    //LocalImageService is experimental, see its class doc before selecting it on its own
+    provides com.udacity.catpoint.image.service.ImageService with
+            com.udacity.catpoint.image.service.FakeImageService,
+            com.udacity.catpoint.image.service.LocalImageService,
+            com.udacity.catpoint.image.service.AwsImageService;
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.udacity.catpoint.image.classifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CatClassifierTrainerTest {
+
+    private static float[] features(int rgb) {
+        BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return CatFeatures.extract(image);
+    }
+
+//    On a tiny set where orange frames are cats and blue ones aren't, the trained model separates them, including unseen shades.
+    @Test
+    void train_separableColors_modelSeparatesThem() {
+        List<CatClassifierTrainer.Example> examples = new ArrayList<>();
+        examples.add(new CatClassifierTrainer.Example(Path.of("orange1.png"), features(0xff8000), true));
+        examples.add(new CatClassifierTrainer.Example(Path.of("orange2.png"), features(0xe09020), true));
+        examples.add(new CatClassifierTrainer.Example(Path.of("blue1.png"), features(0x0040ff), false));
+        examples.add(new CatClassifierTrainer.Example(Path.of("blue2.png"), features(0x2020c0), false));
+
+        CatModel model = CatClassifierTrainer.train(examples);
+        for (CatClassifierTrainer.Example example : examples) {
+            assertEquals(example.cat(), model.probability(example.features()) >= 0.5f, example.image().toString());
+        }
+        assertTrue(model.probability(features(0xf08810)) >= 0.5f);
+        assertTrue(model.probability(features(0x1030e0)) < 0.5f);
+    }
+
+//    Without examples the model has nothing to learn and stays undecided.
+    @Test
+    void train_noExamples_undecided() {
+        assertEquals(0.5f, CatClassifierTrainer.train(List.of()).probability(features(0xff8000)));
+    }
+}
@@ -0,0 +1,93 @@
+package com.udacity.catpoint.image.classifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+public class CatFeaturesTest {
+
+    private static BufferedImage filled(int width, int height, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+
+    private static float sum(float[] features, int from, int to) {
+        float sum = 0f;
+        for (int i = from; i < to; i++) {
+            sum += features[i];
+        }
+        return sum;
+    }
+
+//    Any image gives a full-length vector: a color histogram summing to 1, orientations summing to 1 and edge stats in range.
+    @Test
+    void extract_noise_lengthAndRanges() {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(300, 225, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+
+        float[] features = CatFeatures.extract(image);
+        assertEquals(CatFeatures.LENGTH, features.length);
+        for (float feature : features) {
+            assertTrue(feature >= 0f && feature <= (float) Math.sqrt(2), "feature out of range: " + feature);
+        }
+        assertEquals(1f, sum(features, 0, 64), 1e-4f);
+        assertEquals(1f, sum(features, 64, 72), 1e-4f);
+        assertTrue(features[72] > 0f);
+        assertTrue(features[73] >= 0f && features[73] <= 1f);
+    }
+
+//    A single-color image fills one histogram bin and has no edges.
+    @Test
+    void extract_uniformRed_oneBinNoEdges() {
+        float[] features = CatFeatures.extract(filled(64, 48, 0xff0000));
+        assertEquals(1f, features[3 * 16]);
+        assertEquals(1f, sum(features, 0, 64));
+        assertEquals(0f, sum(features, 64, CatFeatures.LENGTH));
+    }
+
+//    A dark-to-light step from left to right is a purely horizontal gradient, so all edge weight lands in the first bin.
+    @Test
+    void extract_verticalEdge_firstOrientationBin() {
+        BufferedImage image = filled(64, 48, 0x000000);
+        for (int y = 0; y < 48; y++) {
+            for (int x = 32; x < 64; x++) {
+                image.setRGB(x, y, 0xffffff);
+            }
+        }
+
+        float[] features = CatFeatures.extract(image);
+        assertEquals(1f, features[64], 1e-6f);
+        assertEquals(0f, sum(features, 65, 72), 1e-6f);
+        assertEquals(0.5f, features[3 * 16 + 3 * 4 + 3]);
+        assertTrue(features[73] > 0f);
+    }
+
+//    Large frames are sampled with a stride: with every third column red and the rest blue, only red columns are visited.
+    @Test
+    void extract_largeFrame_strideSampled() {
+        //1200x1000 is ten times the sample budget, so the stride is 3
+        BufferedImage image = new BufferedImage(1200, 1000, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x % 3 == 0 ? 0xff0000 : 0x0000ff);
+            }
+        }
+
+        float[] features = CatFeatures.extract(image);
+        assertEquals(1f, features[3 * 16]);
+        assertEquals(0f, features[3]);
+    }
+}
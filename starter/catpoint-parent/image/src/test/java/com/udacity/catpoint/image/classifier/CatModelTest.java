@@ -0,0 +1,57 @@
+package com.udacity.catpoint.image.classifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class CatModelTest {
+
+    private static float[] weights() {
+        float[] weights = new float[CatFeatures.LENGTH];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = (i % 7 - 3) / 3.0f;
+        }
+        return weights;
+    }
+
+//    A saved model loads back with the same weights and bias, so it scores features the same.
+    @Test
+    void saveAndLoad_roundTrip_sameProbabilities() throws IOException {
+        CatModel model = new CatModel(weights(), -0.25f);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        model.save(out);
+        CatModel loaded = CatModel.load(new ByteArrayInputStream(out.toByteArray()));
+
+        float[] features = CatFeatures.extract(new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB));
+        assertEquals(model.probability(features), loaded.probability(features));
+        assertEquals(model.probability(new float[CatFeatures.LENGTH]), loaded.probability(new float[CatFeatures.LENGTH]));
+    }
+
+//    With no weights the probability is the logistic of the bias.
+    @Test
+    void probability_zeroWeights_logisticOfBias() {
+        assertEquals(0.5f, new CatModel(new float[CatFeatures.LENGTH], 0f).probability(weights()));
+        assertEquals(1 / (1 + Math.exp(-2)), new CatModel(new float[CatFeatures.LENGTH], 2f).probability(weights()), 1e-6);
+    }
+
+//    The bundled model loads and scores a frame between 0 and 1.
+    @Test
+    void loadDefault_bundledModel_scoresFrame() {
+        float probability = CatModel.loadDefault().probability(
+                CatFeatures.extract(new BufferedImage(300, 225, BufferedImage.TYPE_INT_RGB)));
+        assertTrue(probability > 0f && probability < 1f, "probability " + probability);
+    }
+
+//    A model file with the wrong number of weights is rejected.
+    @Test
+    void load_wrongWeightCount_throws() {
+        byte[] file = "bias=0\nweights=1.0,2.0\n".getBytes(StandardCharsets.ISO_8859_1);
+        assertThrows(IllegalArgumentException.class, () -> CatModel.load(new ByteArrayInputStream(file)));
+    }
+}
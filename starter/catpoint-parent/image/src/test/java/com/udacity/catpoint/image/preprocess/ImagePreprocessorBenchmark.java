@@ -0,0 +1,78 @@
+package com.udacity.catpoint.image.preprocess;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ImagePreprocessor against the Image.getScaledInstance(SCALE_SMOOTH) path that ImagePanel used
+ * for thumbnails, and measures the full upload preparation (downscale + adaptive JPEG).
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.image.preprocess.ImagePreprocessorBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ImagePreprocessorBenchmark {
+
+    private static final int THUMB_WIDTH = 300;
+    private static final int THUMB_HEIGHT = 225;
+
+    @Param({"TYPE_3BYTE_BGR", "TYPE_INT_RGB"})
+    public String imageType;
+
+    private BufferedImage frame;
+    private ImagePreprocessor preprocessor;
+
+    @Setup
+    public void setup() {
+        int type = imageType.equals("TYPE_3BYTE_BGR") ? BufferedImage.TYPE_3BYTE_BGR : BufferedImage.TYPE_INT_RGB;
+        frame = new BufferedImage(1920, 1080, type);
+        Random random = new Random(42);
+        for (int y = 0; y < frame.getHeight(); y++) {
+            for (int x = 0; x < frame.getWidth(); x++) {
+                frame.setRGB(x, y, random.nextInt());
+            }
+        }
+        preprocessor = new ImagePreprocessor(1024, 1024, false, 256 * 1024);
+    }
+
+    @Benchmark
+    public BufferedImage scaledInstanceThumbnail() {
+        //getScaledInstance is lazy, so render it the way the Swing label would
+        Image scaled = new ImageIcon(frame.getScaledInstance(THUMB_WIDTH, THUMB_HEIGHT, Image.SCALE_SMOOTH)).getImage();
+        BufferedImage thumbnail = new BufferedImage(THUMB_WIDTH, THUMB_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = thumbnail.createGraphics();
+        g.drawImage(scaled, 0, 0, null);
+        g.dispose();
+        return thumbnail;
+    }
+
+    @Benchmark
+    public BufferedImage preprocessorThumbnail() {
+        return ImagePreprocessor.resize(frame, THUMB_WIDTH, THUMB_HEIGHT);
+    }
+
+    @Benchmark
+    public BufferedImage preprocessorGrayscale() {
+        return ImagePreprocessor.toGrayscale(frame);
+    }
+
+    @Benchmark
+    public byte[] prepareForUpload() {
+        return preprocessor.prepareForUpload(frame);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ImagePreprocessorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
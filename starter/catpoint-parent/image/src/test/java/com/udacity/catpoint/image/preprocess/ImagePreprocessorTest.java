@@ -0,0 +1,150 @@
+package com.udacity.catpoint.image.preprocess;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+public class ImagePreprocessorTest {
+
+    private static BufferedImage filled(int width, int height, int type, int rgb) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage noise(int width, int height) {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage decode(byte[] jpeg) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertNotNull(image);
+        return image;
+    }
+
+    private static void assertChannelsClose(int expected, int actual, int tolerance) {
+        for (int shift = 0; shift <= 16; shift += 8) {
+            int e = (expected >> shift) & 0xff;
+            int a = (actual >> shift) & 0xff;
+            assertTrue(Math.abs(e - a) <= tolerance, String.format("expected %06x but was %06x", expected & 0xffffff, actual & 0xffffff));
+        }
+    }
+
+//    Frames larger than the box are scaled down to fit it, keeping their aspect ratio.
+    @ParameterizedTest
+    @CsvSource({"640, 480, 320, 320, 320, 240", "480, 640, 320, 320, 240, 320", "100, 400, 50, 50, 13, 50", "1000, 1, 10, 10, 10, 1"})
+    void downscale_largerThanBox_fitsKeepingAspectRatio(int width, int height, int maxWidth, int maxHeight,
+                                                          int expectedWidth, int expectedHeight) {
+        BufferedImage scaled = ImagePreprocessor.downscale(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB),
+                maxWidth, maxHeight);
+        assertEquals(expectedWidth, scaled.getWidth());
+        assertEquals(expectedHeight, scaled.getHeight());
+    }
+
+//    Frames that already fit are returned as they are.
+    @Test
+    void downscale_alreadyFits_sameImage() {
+        BufferedImage image = new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB);
+        assertSame(image, ImagePreprocessor.downscale(image, 300, 225));
+    }
+
+//    Each output pixel is the area-weighted average of the source pixels it covers, including partial ones.
+    @Test
+    void resize_threeToTwo_areaWeighted() {
+        BufferedImage image = new BufferedImage(3, 1, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x000000);
+        image.setRGB(1, 0, 0x5a5a5a);
+        image.setRGB(2, 0, 0xb4b4b4);
+
+        BufferedImage resized = ImagePreprocessor.resize(image, 2, 1);
+        assertEquals(0x1e1e1e, resized.getRGB(0, 0) & 0xffffff);
+        assertEquals(0x969696, resized.getRGB(1, 0) & 0xffffff);
+    }
+
+//    Every source layout, including the raster fast paths, keeps its channels in order.
+    @ParameterizedTest
+    @ValueSource(ints = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_INT_BGR})
+    void resize_sourceLayout_channelsKept(int type) {
+        BufferedImage resized = ImagePreprocessor.resize(filled(40, 30, type, 0xff204080), 7, 5);
+        assertEquals(BufferedImage.TYPE_INT_RGB, resized.getType());
+        assertEquals(7, resized.getWidth());
+        assertEquals(5, resized.getHeight());
+        for (int y = 0; y < 5; y++) {
+            for (int x = 0; x < 7; x++) {
+                assertEquals(0x204080, resized.getRGB(x, y) & 0xffffff);
+            }
+        }
+    }
+
+//    Grayscale output is single-channel with BT.601 luma.
+    @Test
+    void toGrayscale_primaries_bt601Luma() {
+        BufferedImage image = new BufferedImage(4, 1, BufferedImage.TYPE_3BYTE_BGR);
+        image.setRGB(0, 0, 0xff0000);
+        image.setRGB(1, 0, 0x00ff00);
+        image.setRGB(2, 0, 0x0000ff);
+        image.setRGB(3, 0, 0xffffff);
+
+        BufferedImage gray = ImagePreprocessor.toGrayscale(image);
+        assertEquals(BufferedImage.TYPE_BYTE_GRAY, gray.getType());
+        assertEquals(76, gray.getRaster().getSample(0, 0, 0));
+        assertEquals(150, gray.getRaster().getSample(1, 0, 0));
+        assertEquals(29, gray.getRaster().getSample(2, 0, 0));
+        assertEquals(255, gray.getRaster().getSample(3, 0, 0));
+    }
+
+//    Encoded JPEGs decode with ImageIO to the same size and close to the same colors, with or without alpha.
+    @ParameterizedTest
+    @ValueSource(ints = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB})
+    void encodeJpeg_roundTrip_sameSizeAndColor(int type) throws IOException {
+        BufferedImage decoded = decode(ImagePreprocessor.encodeJpeg(filled(48, 32, type, 0xff3c78b4), 0.9f));
+        assertEquals(48, decoded.getWidth());
+        assertEquals(32, decoded.getHeight());
+        assertChannelsClose(0x3c78b4, decoded.getRGB(24, 16), 4);
+    }
+
+//    The highest quality that fits the budget is used, and the lowest one when nothing fits.
+    @Test
+    void encodeJpeg_byteBudget_qualityPicked() throws IOException {
+        BufferedImage image = noise(64, 64);
+        byte[] best = ImagePreprocessor.encodeJpeg(image, 0.9f);
+        byte[] worst = ImagePreprocessor.encodeJpeg(image, 0.3f);
+        assertTrue(worst.length < best.length);
+
+        assertEquals(best.length, ImagePreprocessor.encodeJpeg(image, best.length).length);
+        assertEquals(worst.length, ImagePreprocessor.encodeJpeg(image, 1).length);
+        decode(ImagePreprocessor.encodeJpeg(image, 1));
+    }
+
+//    Upload preparation downscales, drops color and encodes in one step.
+    @Test
+    void prepareForUpload_largeColorFrame_smallGrayJpeg() throws IOException {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(400, 400, true, 100_000);
+        BufferedImage decoded = decode(preprocessor.prepareForUpload(filled(800, 600, BufferedImage.TYPE_INT_RGB, 0xff0000)));
+
+        assertEquals(400, decoded.getWidth());
+        assertEquals(300, decoded.getHeight());
+        assertEquals(1, decoded.getRaster().getNumBands());
+        assertTrue(Math.abs(76 - decoded.getRaster().getSample(200, 150, 0)) <= 2);
+    }
+}
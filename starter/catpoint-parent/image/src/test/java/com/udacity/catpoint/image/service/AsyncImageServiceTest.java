@@ -0,0 +1,92 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncImageServiceTest {
+
+    private static List<BufferedImage> frames(int count) {
+        BufferedImage image = new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB);
+        return Collections.nCopies(count, image);
+    }
+
+//    A batch whose scans complete inline is launched from a loop, so a long one doesn't overflow the stack.
+    @Test
+    void imageContainsCatAsync_batchCompletingInline_allScanned() throws Exception {
+        AtomicInteger scans = new AtomicInteger();
+        ImageService inline = new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                return scans.incrementAndGet() % 2 == 0;
+            }
+
+            @Override
+            public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+                return CompletableFuture.completedFuture(imageContainsCat(image, confidenceThreshhold));
+            }
+        };
+
+        List<Boolean> results = inline.imageContainsCatAsync(frames(100_000), 50.0f, 4).get(10, TimeUnit.SECONDS);
+        assertEquals(100_000, results.size());
+        assertEquals(100_000, scans.get());
+        assertFalse(results.get(0));
+        assertTrue(results.get(1));
+    }
+
+//    A batch on the service's own pool never has more than maxConcurrency scans in flight and keeps input order.
+    @Test
+    void imageContainsCatAsync_batchOnPool_boundedAndOrdered() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        List<BufferedImage> images = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            images.add(new BufferedImage(i + 1, 1, BufferedImage.TYPE_INT_RGB));
+        }
+        ImageService remote = (image, confidenceThreshhold) -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            inFlight.decrementAndGet();
+            return image.getWidth() % 3 == 0;
+        };
+
+        try (AsyncImageService service = new AsyncImageService(remote, 8)) {
+            List<Boolean> results = service.imageContainsCatAsync(images, 50.0f, 3).get(10, TimeUnit.SECONDS);
+            for (int i = 0; i < images.size(); i++) {
+                assertEquals((i + 1) % 3 == 0, results.get(i));
+            }
+        }
+        assertTrue(maxInFlight.get() <= 3);
+    }
+
+//    A scan that throws before returning its future fails the batch instead of leaving it pending.
+    @Test
+    void imageContainsCatAsync_scanThrows_batchFails() {
+        ImageService failing = new ImageService() {
+            @Override
+            public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+                return true;
+            }
+
+            @Override
+            public CompletableFuture<Boolean> imageContainsCatAsync(BufferedImage image, float confidenceThreshhold) {
+                throw new IllegalStateException("no executor");
+            }
+        };
+
+        CompletableFuture<List<Boolean>> results = failing.imageContainsCatAsync(frames(3), 50.0f, 2);
+        assertTrue(results.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,164 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.*;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.rekognition.model.RekognitionException;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs AwsImageService against a local HTTP stand-in for Rekognition, wired in through aws.endpoint,
+ * on its own and behind the decorators that protect the app from it.
+ */
+public class AwsImageServiceTest {
+    private static final String CAT_LABELS = "{\"Labels\":[{\"Name\":\"Cat\",\"Confidence\":97.5}]}";
+    private static final String BAD_IMAGE = "{\"__type\":\"InvalidParameterException\",\"message\":\"bad image\"}";
+    private static final String THROTTLED = "{\"__type\":\"ThrottlingException\",\"message\":\"Rate exceeded\"}";
+    private static final ImageService NO_CAT = (image, confidenceThreshhold) -> false;
+    private static final ImageService ALWAYS_CAT = (image, confidenceThreshhold) -> true;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger slowRequestsLeft = new AtomicInteger();
+    private volatile long slowMillis;
+    private volatile int status = 200;
+    private volatile String body = CAT_LABELS;
+    private volatile String target;
+
+    private final BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+
+    @BeforeEach
+    void init() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/", this::respond);
+        server.start();
+    }
+
+    @AfterEach
+    void clean() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        target = exchange.getRequestHeaders().getFirst("X-Amz-Target");
+        exchange.getRequestBody().readAllBytes();
+        if (slowRequestsLeft.getAndDecrement() > 0) {
+            try {
+                Thread.sleep(slowMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/x-amz-json-1.1");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private void fail(int status, String body) {
+        this.status = status;
+        this.body = body;
+    }
+
+    private AwsImageService awsImageService(Long timeoutMillis) {
+        Properties props = new Properties();
+        props.setProperty("aws.id", "test");
+        props.setProperty("aws.secret", "test");
+        props.setProperty("aws.region", "us-east-1");
+        props.setProperty("aws.endpoint", "http://localhost:" + server.getAddress().getPort());
+        if (timeoutMillis != null) {
+            props.setProperty("aws.timeout.millis", timeoutMillis.toString());
+        }
+        return new AwsImageService(props);
+    }
+
+    //    Requests go to aws.endpoint, and the labels in the response answer both questions.
+    @Test
+    void endpointOverride_catLabel_answered() {
+        AwsImageService service = awsImageService(null);
+        assertTrue(service.imageContainsCat(frame, 90.0f));
+        assertFalse(service.imageContainsCat(frame, 99.0f));
+        assertEquals(97.5f, service.detectLabels(frame).confidenceOf("Cat"));
+        assertEquals(3, requests.get());
+        assertEquals("RekognitionService.DetectLabels", target);
+    }
+
+    //    aws.timeout.millis bounds the whole call, so a stalled response fails the call instead of blocking it.
+    @Test
+    void timeoutMillis_slowResponse_callFailsAtTimeout() {
+        slowRequestsLeft.set(Integer.MAX_VALUE);
+        slowMillis = 5_000;
+        AwsImageService service = awsImageService(300L);
+        long start = System.nanoTime();
+        assertThrows(SdkClientException.class, () -> service.imageContainsCat(frame, 50.0f));
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(3_000));
+    }
+
+    //    A client error reaches the caller as a Rekognition exception, without retries.
+    @Test
+    void clientError_rekognitionExceptionNotRetried() {
+        fail(400, BAD_IMAGE);
+        RekognitionException e = assertThrows(RekognitionException.class,
+                () -> awsImageService(null).imageContainsCat(frame, 50.0f));
+        assertEquals(400, e.statusCode());
+        assertEquals(1, requests.get());
+    }
+
+    //    Behind the resilient decorator a response slower than the deadline is answered by the fallback without waiting for it.
+    @Test
+    void behindResilient_slowResponse_fallbackAnswers() {
+        slowRequestsLeft.set(1);
+        slowMillis = 2_000;
+        try (ResilientImageService service = new ResilientImageService(awsImageService(null), ALWAYS_CAT, 300, 5, 30_000, false)) {
+            long start = System.nanoTime();
+            assertTrue(service.imageContainsCat(frame, 99.0f));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1_500));
+            assertEquals(1, service.getTimeoutCount());
+            assertEquals(1, service.getFallbackCount());
+        }
+    }
+
+    //    Behind the resilient decorator SDK errors are answered by the fallback, and enough of them open the circuit.
+    @Test
+    void behindResilient_clientErrors_circuitOpens() {
+        fail(400, BAD_IMAGE);
+        try (ResilientImageService service = new ResilientImageService(awsImageService(null), ALWAYS_CAT, 5_000, 3, 30_000, false)) {
+            for (int i = 0; i < 6; i++) {
+                assertTrue(service.imageContainsCat(frame, 50.0f));
+            }
+            assertEquals(3, requests.get());
+            assertEquals(3, service.getFailureCount());
+            assertEquals(CircuitBreaker.State.OPEN, service.getCircuitState());
+        }
+    }
+
+    //    Behind the rate limiter a throttling response from Rekognition is answered by the fallback and counted.
+    @Test
+    void behindRateLimited_throttled_fallbackAnswers() {
+        fail(400, THROTTLED);
+        RateLimitedImageService service = new RateLimitedImageService(awsImageService(null), NO_CAT, 100, 10, 0);
+        assertFalse(service.imageContainsCat(frame, 50.0f));
+        assertEquals(1, service.getThrottledCount());
+        assertTrue(requests.get() >= 1);
+    }
+}
@@ -0,0 +1,157 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingImageServiceTest {
+    private static final int MAX_DISTANCE = 4;
+    private static final int CELL = 4;
+
+    @TempDir
+    Path directory;
+
+    private final AtomicInteger remoteCalls = new AtomicInteger();
+    private final ImageService remote = (image, confidenceThreshhold) -> {
+        remoteCalls.incrementAndGet();
+        return true;
+    };
+
+    private CachingImageService cache(int maxEntries, int maxDistance, Path diskCache, int maxDiskEntries) {
+        return new CachingImageService(remote, maxEntries, Duration.ofMinutes(10), maxDistance, diskCache, maxDiskEntries);
+    }
+
+    /**
+     * Builds a frame from the 9x8 grid the hash samples, with a random grey level per cell.
+     */
+    private static int[] grid(long seed) {
+        Random random = new Random(seed);
+        int[] grid = new int[9 * 8];
+        for (int i = 0; i < grid.length; i++) {
+            grid[i] = 10 + random.nextInt(236);
+        }
+        return grid;
+    }
+
+    private static BufferedImage frame(int[] grid) {
+        BufferedImage image = new BufferedImage(9 * CELL, 8 * CELL, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int grey = grid[(y / CELL) * 9 + x / CELL];
+                image.setRGB(x, y, grey << 16 | grey << 8 | grey);
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage frame(long seed) {
+        return frame(grid(seed));
+    }
+
+    /**
+     * Same frame with the top left cell moved to the other side of its neighbour, flipping exactly one hash bit.
+     */
+    private static BufferedImage nearDuplicate(long seed) {
+        int[] grid = grid(seed);
+        grid[0] = grid[0] > grid[1] ? 0 : 255;
+        return frame(grid);
+    }
+
+//    A repeated frame is answered from memory without calling the wrapped service again.
+    @Test
+    void imageContainsCat_repeatedFrame_memoryHit() {
+        CachingImageService service = cache(16, MAX_DISTANCE, null, 16);
+        assertTrue(service.imageContainsCat(frame(1), 50.0f));
+        assertTrue(service.imageContainsCat(frame(1), 50.0f));
+
+        assertEquals(1, remoteCalls.get());
+        assertEquals(1, service.getMemoryHitCount());
+        assertEquals(1, service.getMissCount());
+    }
+
+//    A frame whose hash is within maxDistance bits of a cached one is a hit, and one with maxDistance 0 is not.
+    @Test
+    void imageContainsCat_nearDuplicate_hitOnlyWithinDistance() {
+        int distance = PerceptualHash.distance(PerceptualHash.of(frame(2)), PerceptualHash.of(nearDuplicate(2)));
+        assertEquals(1, distance);
+
+        CachingImageService tolerant = cache(16, MAX_DISTANCE, null, 16);
+        tolerant.imageContainsCat(frame(2), 50.0f);
+        tolerant.imageContainsCat(nearDuplicate(2), 50.0f);
+        assertEquals(1, tolerant.getMemoryHitCount());
+
+        CachingImageService exact = cache(16, 0, null, 16);
+        exact.imageContainsCat(frame(2), 50.0f);
+        exact.imageContainsCat(nearDuplicate(2), 50.0f);
+        assertEquals(0, exact.getHitCount());
+        assertEquals(3, remoteCalls.get());
+    }
+
+//    A different frame, or the same frame at another threshhold, goes to the wrapped service.
+    @Test
+    void imageContainsCat_otherFrameOrThreshhold_miss() {
+        assertTrue(PerceptualHash.distance(PerceptualHash.of(frame(3)), PerceptualHash.of(frame(4))) > MAX_DISTANCE);
+
+        CachingImageService service = cache(16, MAX_DISTANCE, null, 16);
+        service.imageContainsCat(frame(3), 50.0f);
+        service.imageContainsCat(frame(4), 50.0f);
+        service.imageContainsCat(frame(3), 60.0f);
+
+        assertEquals(0, service.getHitCount());
+        assertEquals(3, service.getMissCount());
+        assertEquals(3, remoteCalls.get());
+    }
+
+//    Frames evicted from memory are no longer found, either exactly or as near duplicates.
+    @Test
+    void imageContainsCat_evictedFromMemory_miss() {
+        CachingImageService service = cache(2, MAX_DISTANCE, null, 16);
+        service.imageContainsCat(frame(5), 50.0f);
+        service.imageContainsCat(frame(6), 50.0f);
+        service.imageContainsCat(frame(7), 50.0f);
+
+        service.imageContainsCat(nearDuplicate(5), 50.0f);
+        service.imageContainsCat(frame(7), 50.0f);
+        assertEquals(1, service.getHitCount());
+        assertEquals(4, remoteCalls.get());
+    }
+
+//    Results written to the disk tier answer frames seen by a cache opened later on the same file.
+    @Test
+    void imageContainsCat_reopenedDiskTier_diskHit() {
+        Path file = directory.resolve("recognition.cache");
+        cache(16, MAX_DISTANCE, file, 16).imageContainsCat(frame(8), 50.0f);
+
+        CachingImageService reopened = cache(16, MAX_DISTANCE, file, 16);
+        assertTrue(reopened.imageContainsCat(frame(8), 50.0f));
+        assertEquals(1, reopened.getDiskHitCount());
+        assertEquals(1, remoteCalls.get());
+    }
+
+//    The disk tier keeps only the newest maxDiskEntries results, and its file is compacted instead of growing.
+    @Test
+    void imageContainsCat_diskTierBeyondCap_oldestDroppedAndFileCompacted() throws IOException {
+        Path file = directory.resolve("recognition.cache");
+        CachingImageService service = cache(16, MAX_DISTANCE, file, 4);
+        for (int seed = 100; seed < 120; seed++) {
+            service.imageContainsCat(frame(seed), 50.0f);
+        }
+        assertTrue(Files.readAllLines(file).size() < 8);
+        assertFalse(Files.exists(directory.resolve("recognition.cache.tmp")));
+
+        CachingImageService reopened = cache(16, MAX_DISTANCE, file, 4);
+        reopened.imageContainsCat(frame(119), 50.0f);
+        reopened.imageContainsCat(frame(100), 50.0f);
+        assertEquals(1, reopened.getDiskHitCount());
+        assertEquals(1, reopened.getMissCount());
+    }
+}
@@ -0,0 +1,121 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CascadingImageServiceTest {
+
+    private final AtomicInteger remoteCalls = new AtomicInteger();
+    private final AtomicInteger encodedRemoteCalls = new AtomicInteger();
+    private boolean remoteAnswer = true;
+
+    private final ImageService remote = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            remoteCalls.incrementAndGet();
+            return remoteAnswer;
+        }
+
+        @Override
+        public boolean encodedImageContainsCat(ByteBuffer encodedImage, float confidenceThreshhold) {
+            encodedRemoteCalls.incrementAndGet();
+            return remoteAnswer;
+        }
+    };
+
+    /**
+     * Local classifier whose confidence is the image's width, so each test picks the score it needs.
+     */
+    private static final LocalImageService LOCAL = new LocalImageService(null) {
+        @Override
+        public float catConfidence(BufferedImage image) {
+            return image.getWidth();
+        }
+    };
+
+    private static BufferedImage scored(int confidence) {
+        return new BufferedImage(confidence, 1, BufferedImage.TYPE_INT_RGB);
+    }
+
+//    Confidences outside the band around the threshhold are answered locally, and the band's edges go to the remote service.
+    @ParameterizedTest
+    @CsvSource({"10, false, 0", "19, false, 0", "20, true, 1", "79, true, 1", "80, true, 0", "95, true, 0"})
+    void imageContainsCat_localConfidence_remoteOnlyInsideBand(int confidence, boolean expected, int expectedRemoteCalls) {
+        CascadingImageService service = new CascadingImageService(LOCAL, remote, 30, 30);
+        assertEquals(expected, service.imageContainsCat(scored(confidence), 50.0f));
+        assertEquals(expectedRemoteCalls, remoteCalls.get());
+        assertEquals(1 - expectedRemoteCalls, service.getLocalMetrics().getDecisions());
+        assertEquals(expectedRemoteCalls, service.getRemoteMetrics().getDecisions());
+    }
+
+//    With the shadow margin nothing is decided locally, and each remote answer is compared with the local guess.
+    @Test
+    void imageContainsCat_shadowMargin_everyFrameRemoteAndAgreementCounted() {
+        CascadingImageService service = new CascadingImageService(LOCAL, remote,
+                CascadingImageService.SHADOW_MARGIN, CascadingImageService.SHADOW_MARGIN);
+        remoteAnswer = true;
+        service.imageContainsCat(scored(1), 50.0f);
+        service.imageContainsCat(scored(100), 50.0f);
+        remoteAnswer = false;
+        service.imageContainsCat(scored(30), 50.0f);
+
+        assertEquals(3, remoteCalls.get());
+        assertEquals(0, service.getLocalMetrics().getDecisions());
+        assertEquals(2, service.getLocalAgreementCount());
+        assertEquals(1, service.getLocalDisagreementCount());
+    }
+
+//    Encoded frames are decoded for the local classifier, and the original bytes go to the remote service.
+    @Test
+    void encodedImageContainsCat_insideBand_bytesForwarded() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(scored(60), "png", png);
+        CascadingImageService service = new CascadingImageService(LOCAL, remote);
+
+        remoteAnswer = false;
+        assertFalse(service.encodedImageContainsCat(ByteBuffer.wrap(png.toByteArray()), 50.0f));
+        assertEquals(1, encodedRemoteCalls.get());
+        assertEquals(0, remoteCalls.get());
+        assertEquals(1, service.getLocalDisagreementCount());
+    }
+
+//    A failing remote call is still timed, and not counted as an agreement either way.
+    @Test
+    void imageContainsCat_remoteFails_errorPropagatedAndTimed() {
+        ImageService failing = (image, confidenceThreshhold) -> {
+            throw new IllegalStateException("remote down");
+        };
+        CascadingImageService service = new CascadingImageService(LOCAL, failing);
+
+        assertThrows(IllegalStateException.class, () -> service.imageContainsCat(scored(50), 50.0f));
+        assertEquals(1, service.getRemoteMetrics().getDecisions());
+        assertEquals(0, service.getLocalAgreementCount() + service.getLocalDisagreementCount());
+    }
+
+//    The convenience constructor never trusts the local model on its own, however sure it is.
+    @Test
+    void imageContainsCat_defaultMargins_everyFrameRemote() {
+        CascadingImageService service = new CascadingImageService(LOCAL, remote);
+        service.imageContainsCat(scored(1), 50.0f);
+        service.imageContainsCat(scored(100), 50.0f);
+
+        assertEquals(2, remoteCalls.get());
+        assertEquals(0, service.getLocalMetrics().getDecisions());
+    }
+
+//    Negative margins are rejected.
+    @Test
+    void constructor_negativeMargin_throws() {
+        assertThrows(IllegalArgumentException.class, () -> new CascadingImageService(LOCAL, remote, -1, 30));
+    }
+}
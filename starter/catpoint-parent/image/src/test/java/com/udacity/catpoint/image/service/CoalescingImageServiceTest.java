@@ -0,0 +1,144 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CoalescingImageServiceTest {
+    private static final int CALLERS = 8;
+
+    private final AtomicInteger remoteCalls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ExecutorService executor;
+
+    @BeforeEach
+    void init() {
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void clean() {
+        executor.shutdownNow();
+    }
+
+    private ImageService blockingRemote(boolean fail) {
+        return blockingRemote(fail ? new IllegalStateException("remote failed") : null);
+    }
+
+    private ImageService blockingRemote(Throwable failure) {
+        return (image, confidenceThreshhold) -> {
+            remoteCalls.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure instanceof RuntimeException e) {
+                throw e;
+            }
+            if (failure instanceof Error e) {
+                throw e;
+            }
+            return true;
+        };
+    }
+
+    private static BufferedImage frame(int rgb) {
+        BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(5, 5, rgb);
+        return image;
+    }
+
+    private List<CompletableFuture<Boolean>> scanConcurrently(CoalescingImageService service, BufferedImage image) throws InterruptedException {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> service.imageContainsCat(image, 50.0f), executor));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (service.getCoalescedCount() < CALLERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        return results;
+    }
+
+    //    Identical frames scanned at the same time share one remote call.
+    @Test
+    void identicalFrames_scannedConcurrently_oneRemoteCall() throws InterruptedException {
+        CoalescingImageService service = new CoalescingImageService(blockingRemote(false));
+        List<CompletableFuture<Boolean>> results = scanConcurrently(service, frame(0xffffff));
+        results.forEach(result -> assertTrue(result.join()));
+        assertEquals(1, remoteCalls.get());
+        assertEquals(1, service.getCallCount());
+        assertEquals(CALLERS - 1, service.getCoalescedCount());
+    }
+
+    //    A failure reaches every caller that was waiting on the shared call.
+    @Test
+    void identicalFrames_remoteFails_allCallersSeeException() throws InterruptedException {
+        CoalescingImageService service = new CoalescingImageService(blockingRemote(true));
+        List<CompletableFuture<Boolean>> results = scanConcurrently(service, frame(0xffffff));
+        for (CompletableFuture<Boolean> result : results) {
+            CompletionException e = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+        assertEquals(1, remoteCalls.get());
+    }
+
+    //    An error from the shared call reaches the waiting callers too, instead of leaving them blocked.
+    @Test
+    void identicalFrames_remoteThrowsError_allCallersSeeIt() throws InterruptedException {
+        CoalescingImageService service = new CoalescingImageService(blockingRemote(new AssertionError("remote broke")));
+        List<CompletableFuture<Boolean>> results = scanConcurrently(service, frame(0xffffff));
+        for (CompletableFuture<Boolean> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(AssertionError.class, e.getCause());
+        }
+        assertEquals(1, remoteCalls.get());
+    }
+
+    //    The same frame from two cameras is scanned for each, so camera-aware services see both.
+    @Test
+    void identicalFrames_differentCameras_separateRemoteCalls() throws Exception {
+        CoalescingImageService service = new CoalescingImageService(blockingRemote(false));
+        BufferedImage image = frame(0xffffff);
+        CompletableFuture<Boolean> front = CompletableFuture.supplyAsync(() -> service.imageContainsCat("front", image, 50.0f), executor);
+        CompletableFuture<Boolean> back = CompletableFuture.supplyAsync(() -> service.imageContainsCat("back", image, 50.0f), executor);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (remoteCalls.get() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        assertTrue(front.get(5, TimeUnit.SECONDS));
+        assertTrue(back.get(5, TimeUnit.SECONDS));
+        assertEquals(2, remoteCalls.get());
+        assertEquals(0, service.getCoalescedCount());
+    }
+
+    //    Different frames, or the same frame at another threshhold, are never coalesced.
+    @Test
+    void differentFramesOrThreshholds_separateRemoteCalls() {
+        release.countDown();
+        CoalescingImageService service = new CoalescingImageService(blockingRemote(false));
+        BufferedImage image = frame(0xffffff);
+        assertNotEquals(CoalescingImageService.hash(image), CoalescingImageService.hash(frame(0xfffffe)));
+        service.imageContainsCat(image, 50.0f);
+        service.imageContainsCat(frame(0xfffffe), 50.0f);
+        service.imageContainsCat(image, 60.0f);
+        assertEquals(3, remoteCalls.get());
+        assertEquals(0, service.getCoalescedCount());
+    }
+}
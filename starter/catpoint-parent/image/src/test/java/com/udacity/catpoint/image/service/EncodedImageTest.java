@@ -0,0 +1,86 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EncodedImageTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<BufferedImage> scanned = new ArrayList<>();
+    private final ImageService service = (image, confidenceThreshhold) -> {
+        scanned.add(image);
+        return true;
+    };
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(1, 1, 0xff0000);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+//    Encoded bytes in the middle of a heap buffer are decoded from the buffer's position, which isn't moved.
+    @Test
+    void encodedImageContainsCat_slicedHeapBuffer_decodedInPlace() throws IOException {
+        byte[] png = png(12, 7);
+        byte[] padded = new byte[png.length + 10];
+        System.arraycopy(png, 0, padded, 5, png.length);
+        ByteBuffer buffer = ByteBuffer.wrap(padded, 5, png.length);
+
+        assertTrue(service.encodedImageContainsCat(buffer, 50.0f));
+        assertEquals(5, buffer.position());
+        assertEquals(12, scanned.get(0).getWidth());
+        assertEquals(0xff0000, scanned.get(0).getRGB(1, 1) & 0xffffff);
+    }
+
+//    Direct buffers, which have no backing array, are decoded too.
+    @Test
+    void encodedImageContainsCat_directBuffer_decoded() throws IOException {
+        byte[] png = png(3, 9);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(png.length).put(png).flip();
+
+        assertTrue(service.encodedImageContainsCat(buffer, 50.0f));
+        assertEquals(0, buffer.position());
+        assertEquals(9, scanned.get(0).getHeight());
+    }
+
+//    An image file is mapped and scanned from its bytes.
+    @Test
+    void imageFileContainsCat_pngFile_scanned() throws IOException {
+        Path file = directory.resolve("frame.png");
+        Files.write(file, png(20, 15));
+
+        assertTrue(service.imageFileContainsCat(file, 50.0f));
+        assertEquals(20, scanned.get(0).getWidth());
+    }
+
+//    Bytes that aren't an image ImageIO can read are rejected rather than scanned.
+    @Test
+    void encodedImageContainsCat_unsupportedBytes_throws() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[]{1, 2, 3, 4});
+        assertThrows(IllegalArgumentException.class, () -> service.encodedImageContainsCat(buffer, 50.0f));
+        assertTrue(scanned.isEmpty());
+    }
+
+//    A missing file fails with an unchecked I/O error.
+    @Test
+    void imageFileContainsCat_missingFile_throws() {
+        assertThrows(UncheckedIOException.class, () -> service.imageFileContainsCat(directory.resolve("missing.png"), 50.0f));
+    }
+}
@@ -0,0 +1,143 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+public class FrameDifferenceImageServiceTest {
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    private final List<String> scannedCameras = new ArrayList<>();
+    private final ImageService remote = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            return imageContainsCat(null, image, confidenceThreshhold);
+        }
+
+        @Override
+        public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+            scannedCameras.add(cameraId);
+            return true;
+        }
+    };
+
+    private FrameDifferenceImageService service;
+
+    @BeforeEach
+    void init() {
+        service = new FrameDifferenceImageService(remote);
+    }
+
+    /**
+     * A grey gradient scene, with every pixel shifted by noise and an optional bright square in the top left.
+     */
+    private static BufferedImage scene(int noise, int objectSize) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int grey = x < objectSize && y < objectSize ? 255 : 60 + x + noise;
+                image.setRGB(x, y, grey << 16 | grey << 8 | grey);
+            }
+        }
+        return image;
+    }
+
+//    An unchanged frame from the same camera is answered with the previous result.
+    @Test
+    void imageContainsCat_unchangedFrame_skipped() {
+        assertTrue(service.imageContainsCat("front", scene(0, 0), 50.0f));
+        assertTrue(service.imageContainsCat("front", scene(0, 0), 50.0f));
+
+        assertEquals(1, service.getScannedCount());
+        assertEquals(1, service.getSkippedCount());
+        assertEquals(List.of("front"), scannedCameras);
+    }
+
+//    Uniform noise below the threshold is skipped, while a small object in one corner is scanned.
+    @Test
+    void imageContainsCat_noiseSkippedObjectScanned() {
+        service.imageContainsCat("front", scene(0, 0), 50.0f);
+        service.imageContainsCat("front", scene(5, 0), 50.0f);
+        service.imageContainsCat("front", scene(0, 8), 50.0f);
+
+        assertEquals(2, service.getScannedCount());
+        assertEquals(1, service.getSkippedCount());
+    }
+
+//    Each camera keeps its own reference frame, and its id reaches the wrapped service.
+    @Test
+    void imageContainsCat_twoCameras_eachScanned() {
+        service.imageContainsCat("front", scene(0, 0), 50.0f);
+        service.imageContainsCat("back", scene(0, 0), 50.0f);
+        service.imageContainsCat("back", scene(0, 0), 50.0f);
+
+        assertEquals(List.of("front", "back"), scannedCameras);
+        assertEquals(1, service.getSkippedCount());
+    }
+
+//    A frame asked about at another threshhold, or after the camera is reset, is scanned again.
+    @Test
+    void imageContainsCat_otherThreshholdOrReset_scanned() {
+        service.imageContainsCat("front", scene(0, 0), 50.0f);
+        service.imageContainsCat("front", scene(0, 0), 60.0f);
+        service.reset("front");
+        service.imageContainsCat("front", scene(0, 0), 60.0f);
+
+        assertEquals(3, service.getScannedCount());
+        assertEquals(0, service.getSkippedCount());
+    }
+
+//    Frames without a camera id, decoded or encoded, share the default camera.
+    @Test
+    void encodedImageContainsCat_sameFrameAsDefaultCamera_skipped() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(scene(0, 0), "png", png);
+
+        service.imageContainsCat(scene(0, 0), 50.0f);
+        assertTrue(service.encodedImageContainsCat(ByteBuffer.wrap(png.toByteArray()), 50.0f));
+        assertEquals(List.of(FrameDifferenceImageService.DEFAULT_CAMERA), scannedCameras);
+        assertEquals(1, service.getSkippedCount());
+    }
+
+    private static Stream<Arguments> decorators() {
+        LocalImageService unsure = new LocalImageService(null) {
+            @Override
+            public float catConfidence(BufferedImage image) {
+                return 50.0f;
+            }
+        };
+        return Stream.of(
+                Arguments.of("caching", (Function<ImageService, ImageService>) CachingImageService::new),
+                Arguments.of("cascading", (Function<ImageService, ImageService>) remote -> new CascadingImageService(unsure, remote)),
+                Arguments.of("coalescing", (Function<ImageService, ImageService>) CoalescingImageService::new),
+                Arguments.of("async", (Function<ImageService, ImageService>) remote -> new AsyncImageService(remote, 1)),
+                Arguments.of("resilient", (Function<ImageService, ImageService>) remote -> new ResilientImageService(remote, remote)),
+                Arguments.of("rateLimited", (Function<ImageService, ImageService>)
+                        remote -> new RateLimitedImageService(remote, remote, 100, 10, 100)));
+    }
+
+//    Decorators in front of frame differencing pass the camera id on, so cameras don't share a reference frame.
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("decorators")
+    void imageContainsCat_behindDecorator_cameraIdKept(String name, Function<ImageService, ImageService> decorator) {
+        ImageService decorated = decorator.apply(service);
+        decorated.imageContainsCat("front", scene(0, 0), 50.0f);
+        service.imageContainsCat("back", scene(0, 0), 50.0f);
+
+        assertEquals(List.of("front", "back"), scannedCameras);
+    }
+}
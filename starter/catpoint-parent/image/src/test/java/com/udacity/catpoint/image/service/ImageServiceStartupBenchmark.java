@@ -0,0 +1,66 @@
+package com.udacity.catpoint.image.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.image.BufferedImage;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start cost of getting an ImageService ready, each measured once in a fresh JVM.
+ * The *FirstFrame benchmarks include scanning one frame; the AWS ones only cover startup, since a scan
+ * needs real credentials, and build the client from dummy properties. Compares constructing the service
+ * directly with choosing it through ImageServices, which only creates it on the first scan.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.image.service.ImageServiceStartupBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class ImageServiceStartupBenchmark {
+
+    private final BufferedImage frame = new BufferedImage(300, 225, BufferedImage.TYPE_INT_RGB);
+
+    @Benchmark
+    public boolean eagerFakeFirstFrame() {
+        return new FakeImageService().imageContainsCat(frame, 50.0f);
+    }
+
+    @Benchmark
+    public boolean lazyFakeFirstFrame() {
+        return ImageServices.load("FakeImageService").imageContainsCat(frame, 50.0f);
+    }
+
+    @Benchmark
+    public boolean eagerLocalFirstFrame() {
+        return new LocalImageService().imageContainsCat(frame, 50.0f);
+    }
+
+    @Benchmark
+    public boolean lazyLocalFirstFrame() {
+        return ImageServices.load("LocalImageService").imageContainsCat(frame, 50.0f);
+    }
+
+    @Benchmark
+    public ImageService eagerAwsStartup() {
+        Properties props = new Properties();
+        props.setProperty("aws.id", "startup");
+        props.setProperty("aws.secret", "startup");
+        props.setProperty("aws.region", "us-east-2");
+        return new AwsImageService(props);
+    }
+
+    @Benchmark
+    public ImageService lazyAwsStartup() {
+        return ImageServices.load("AwsImageService");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ImageServiceStartupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+public class ImageServicesTest {
+
+    private final BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+
+    @AfterEach
+    void clearProperty() {
+        System.clearProperty(ImageServices.PROPERTY);
+        System.clearProperty(ImageServices.EAGER_PROPERTY);
+    }
+
+    //    Every bundled implementation is registered.
+    @Test
+    void availableProviders_bundledServices() {
+        assertEquals(List.of("FakeImageService", "LocalImageService", "AwsImageService"),
+                ImageServices.availableProviders());
+    }
+
+    //    Implementations are chosen by simple or fully qualified class name.
+    @ParameterizedTest
+    @ValueSource(strings = {"LocalImageService", "com.udacity.catpoint.image.service.LocalImageService"})
+    void load_byName_thatImplementation(String name) {
+        assertEquals(LocalImageService.class, ((LazyImageService) ImageServices.load(name)).getProviderType());
+        assertInstanceOf(LocalImageService.class, ImageServices.load(name, true));
+    }
+
+    //    The chosen implementation is only created by the first scan.
+    @Test
+    void load_lazy_createdOnFirstScan() {
+        LazyImageService service = (LazyImageService) ImageServices.load("LocalImageService");
+        assertFalse(service.isCreated());
+        service.detectLabels(frame);
+        assertTrue(service.isCreated());
+    }
+
+    //    The system property picks the implementation, FakeImageService is used without it, and the eager property creates it at once.
+    @Test
+    void load_systemProperty_chosenOrFake() {
+        assertEquals(FakeImageService.class, ((LazyImageService) ImageServices.load()).getProviderType());
+        System.setProperty(ImageServices.PROPERTY, "LocalImageService");
+        assertEquals(LocalImageService.class, ((LazyImageService) ImageServices.load()).getProviderType());
+        System.setProperty(ImageServices.EAGER_PROPERTY, "true");
+        assertInstanceOf(LocalImageService.class, ImageServices.load());
+    }
+
+    //    An unknown name is rejected with the names that would have worked, even when loading lazily.
+    @Test
+    void load_unknownName_throwsListingAvailable() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ImageServices.load("CloudImageService"));
+        assertTrue(e.getMessage().contains("LocalImageService"), e.getMessage());
+    }
+
+    //    AwsImageService without config.properties fails when it is loaded eagerly, saying what is missing.
+    @Test
+    void load_eagerAwsWithoutConfig_failsClearly() {
+        assertNull(getClass().getClassLoader().getResource("config.properties"));
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> ImageServices.load("AwsImageService", true));
+        assertTrue(e.getMessage().contains("config.properties"), e.getMessage());
+    }
+
+    //    Loaded lazily, the same failure comes from the first scan, and the next scan tries again.
+    @Test
+    void load_lazyAwsWithoutConfig_firstScanFailsClearly() {
+        ImageService service = ImageServices.load("AwsImageService");
+        for (int i = 0; i < 2; i++) {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> service.imageContainsCat(frame, 50.0f));
+            assertTrue(e.getMessage().contains("config.properties"), e.getMessage());
+        }
+        assertFalse(((LazyImageService) service).isCreated());
+    }
+}
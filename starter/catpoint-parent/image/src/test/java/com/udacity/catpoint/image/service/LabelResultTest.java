@@ -0,0 +1,53 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.awt.image.BufferedImage;
+
+public class LabelResultTest {
+    private final LabelResult result = new LabelResult(
+            new String[]{"Animal", "Cat", "Dog", "Pet"}, new float[]{88.0f, 72.5f, 40.0f, 91.0f}, 10.0f);
+
+    //    Labels are ranked from most to least confident.
+    @Test
+    void labels_sortedByConfidence() {
+        assertEquals(4, result.size());
+        assertEquals("Pet", result.getName(0));
+        assertEquals(91.0f, result.getConfidence(0));
+        assertEquals("Dog", result.getName(3));
+    }
+
+    //    One result answers threshhold questions for any label.
+    @Test
+    void containsCat_differentThreshholds_answeredFromSameResult() {
+        assertTrue(result.containsCat(50.0f));
+        assertTrue(result.containsCat(72.5f));
+        assertFalse(result.containsCat(80.0f));
+        assertTrue(result.contains("DOG", 30.0f));
+        assertFalse(result.contains("bird", 0.0f));
+        assertEquals(0f, result.confidenceOf("bird"));
+    }
+
+    //    The bundled services that don't call out report their cat confidence as a label.
+    @Test
+    void bundledServices_detectLabels_catLabel() {
+        LocalImageService local = new LocalImageService(null) {
+            @Override
+            public float catConfidence(BufferedImage image) {
+                return 64.0f;
+            }
+        };
+        BufferedImage frame = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        assertEquals(64.0f, local.detectLabels(frame).confidenceOf("Cat"));
+        LabelResult fake = new FakeImageService().detectLabels(frame);
+        assertEquals(1, fake.size());
+        assertEquals("Cat", fake.getName(0));
+    }
+
+    @Test
+    void mismatchedArrays_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LabelResult(new String[]{"Cat"}, new float[0], 0f));
+    }
+}
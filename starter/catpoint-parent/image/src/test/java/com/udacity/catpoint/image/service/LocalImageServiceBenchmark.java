@@ -0,0 +1,47 @@
+package com.udacity.catpoint.image.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the local classifier takes to score a single 300x225 camera frame on one thread.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.image.service.LocalImageServiceBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LocalImageServiceBenchmark {
+
+    private LocalImageService imageService;
+    private BufferedImage frame;
+
+    @Setup
+    public void setup() {
+        imageService = new LocalImageService();
+        frame = new BufferedImage(300, 225, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < frame.getHeight(); y++) {
+            for (int x = 0; x < frame.getWidth(); x++) {
+                frame.setRGB(x, y, random.nextInt());
+            }
+        }
+    }
+
+    @Benchmark
+    public float catConfidence() {
+        return imageService.catConfidence(frame);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(LocalImageServiceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
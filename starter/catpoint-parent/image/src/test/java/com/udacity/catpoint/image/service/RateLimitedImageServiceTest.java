@@ -0,0 +1,79 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import software.amazon.awssdk.services.rekognition.model.ThrottlingException;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RateLimitedImageServiceTest {
+    private static final ImageService FALLBACK = (image, confidenceThreshhold) -> false;
+
+    private final AtomicInteger remoteCalls = new AtomicInteger();
+    private final ImageService remote = (image, confidenceThreshhold) -> {
+        remoteCalls.incrementAndGet();
+        return true;
+    };
+    private final BufferedImage frame = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+
+    //    Without a wait budget, calls beyond the burst are shed to the fallback.
+    @Test
+    void burstExceeded_noWait_extraCallsShed() {
+        RateLimitedImageService service = new RateLimitedImageService(remote, FALLBACK, 1.0, 2, 0);
+        int cats = 0;
+        for (int i = 0; i < 5; i++) {
+            cats += service.imageContainsCat(frame, 50.0f) ? 1 : 0;
+        }
+        assertEquals(2, cats);
+        assertEquals(2, remoteCalls.get());
+        assertEquals(3, service.getShedCount());
+    }
+
+    //    With a wait budget, calls beyond the burst queue for a token and still reach the remote service.
+    @Test
+    void burstExceeded_withWait_callsQueuedAtRate() {
+        RateLimitedImageService service = new RateLimitedImageService(remote, FALLBACK, 20.0, 1, 1_000);
+        long start = System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(service.imageContainsCat(frame, 50.0f));
+        }
+        //two refills at 20 per second take 100ms
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(90));
+        assertEquals(3, remoteCalls.get());
+        assertEquals(2, service.getQueuedCount());
+        assertEquals(0, service.getShedCount());
+    }
+
+    //    A throttling error is answered by the fallback instead of reaching the caller.
+    @Test
+    void remoteThrottles_fallbackAnswers() {
+        ImageService throttling = (image, confidenceThreshhold) -> {
+            throw ThrottlingException.builder().message("Rate exceeded").build();
+        };
+        RateLimitedImageService service = new RateLimitedImageService(throttling, FALLBACK, 10.0, 5, 0);
+        assertFalse(service.imageContainsCat(frame, 50.0f));
+        assertEquals(1, service.getThrottledCount());
+    }
+
+    //    Other errors are not the limiter's business and still reach the caller.
+    @Test
+    void remoteFails_otherError_propagates() {
+        ImageService failing = (image, confidenceThreshhold) -> {
+            throw new IllegalStateException("remote failed");
+        };
+        RateLimitedImageService service = new RateLimitedImageService(failing, FALLBACK, 10.0, 5, 0);
+        assertThrows(IllegalStateException.class, () -> service.imageContainsCat(frame, 50.0f));
+    }
+
+    //    A shed label call whose fallback only answers yes or no gets an empty result instead of an error.
+    @Test
+    void detectLabels_shedToYesNoFallback_emptyResult() {
+        RateLimitedImageService service = new RateLimitedImageService(new FakeImageService(), FALLBACK, 1.0, 1, 0);
+        assertEquals(1, service.detectLabels(frame).size());
+        assertSame(LabelResult.EMPTY, service.detectLabels(frame));
+        assertEquals(1, service.getShedCount());
+    }
+}
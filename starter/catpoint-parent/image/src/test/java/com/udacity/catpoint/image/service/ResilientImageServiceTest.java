@@ -0,0 +1,175 @@
+package com.udacity.catpoint.image.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs ResilientImageService against a stand-in remote service whose latency and failures each test controls.
+ */
+public class ResilientImageServiceTest {
+    private static final ImageService NO_CAT = (image, confidenceThreshhold) -> false;
+    private static final ImageService ALWAYS_CAT = (image, confidenceThreshhold) -> true;
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger interrupted = new AtomicInteger();
+    private final AtomicInteger slowCallsLeft = new AtomicInteger();
+    private volatile long latencyMillis;
+    private volatile long slowMillis;
+    private volatile boolean failing;
+
+    private final BufferedImage frame = new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB);
+
+    //answers "cat" after its latency, or throws; calls interrupted while waiting are counted
+    private final ImageService remote = (image, confidenceThreshhold) -> {
+        calls.incrementAndGet();
+        try {
+            Thread.sleep(slowCallsLeft.getAndDecrement() > 0 ? slowMillis : latencyMillis);
+        } catch (InterruptedException e) {
+            interrupted.incrementAndGet();
+            throw new IllegalStateException("interrupted");
+        }
+        if (failing) {
+            throw new IllegalStateException("remote failed");
+        }
+        return true;
+    };
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    //    A healthy remote service answers directly.
+    @Test
+    void remoteAnswers_catLabel_returnsTrue() {
+        try (ResilientImageService service = new ResilientImageService(remote, NO_CAT)) {
+            assertTrue(service.imageContainsCat(frame, 50.0f));
+            assertEquals(0, service.getFallbackCount());
+            assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitState());
+        }
+    }
+
+    //    A call slower than the deadline is answered by the fallback without waiting for it, and is interrupted.
+    @Test
+    void remoteTooSlow_deadlineMissed_fallbackAnswersAndCallCancelled() throws InterruptedException {
+        slowCallsLeft.set(1);
+        slowMillis = 5_000;
+        try (ResilientImageService service = new ResilientImageService(remote, NO_CAT, 200, 5, 30_000, false)) {
+            long start = System.nanoTime();
+            assertFalse(service.imageContainsCat(frame, 50.0f));
+            assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(2_000));
+            assertEquals(1, service.getTimeoutCount());
+            assertEquals(1, service.getFallbackCount());
+            await(() -> interrupted.get() == 1);
+        }
+    }
+
+    //    After enough consecutive failures the remote service is no longer called.
+    @Test
+    void remoteFailing_thresholdReached_circuitOpens() {
+        failing = true;
+        try (ResilientImageService service = new ResilientImageService(remote, ALWAYS_CAT, 2_000, 3, 30_000, false)) {
+            for (int i = 0; i < 6; i++) {
+                assertTrue(service.imageContainsCat(frame, 50.0f));
+            }
+            assertEquals(3, calls.get());
+            assertEquals(3, service.getFailureCount());
+            assertEquals(6, service.getFallbackCount());
+            assertEquals(CircuitBreaker.State.OPEN, service.getCircuitState());
+        }
+    }
+
+    //    Once the open period is over a successful trial call closes the circuit again.
+    @Test
+    void circuitOpen_remoteRecovers_circuitCloses() throws InterruptedException {
+        failing = true;
+        try (ResilientImageService service = new ResilientImageService(remote, NO_CAT, 2_000, 1, 200, false)) {
+            assertFalse(service.imageContainsCat(frame, 50.0f));
+            assertEquals(CircuitBreaker.State.OPEN, service.getCircuitState());
+            failing = false;
+            Thread.sleep(300);
+            assertTrue(service.imageContainsCat(frame, 50.0f));
+            assertEquals(CircuitBreaker.State.CLOSED, service.getCircuitState());
+        }
+    }
+
+    //    Label detection goes through the same deadline and fallback as the yes or no question.
+    @Test
+    void detectLabels_remoteFailing_fallbackLabels() {
+        failing = true;
+        try (ResilientImageService service = new ResilientImageService(remote, new LocalImageService(null) {
+            @Override
+            public float catConfidence(BufferedImage image) {
+                return 42.0f;
+            }
+        })) {
+            assertEquals(42.0f, service.detectLabels(frame).confidenceOf("Cat"));
+            assertEquals(1, service.getFallbackCount());
+        }
+    }
+
+    //    A fallback that only answers yes or no gives an empty label result rather than an error.
+    @Test
+    void detectLabels_remoteFailingAndYesNoFallback_emptyResult() {
+        failing = true;
+        try (ResilientImageService service = new ResilientImageService(remote, ALWAYS_CAT)) {
+            assertSame(LabelResult.EMPTY, service.detectLabels(frame));
+            assertEquals(1, service.getFallbackCount());
+        }
+    }
+
+    /**
+     * Sends enough quick calls for the hedging percentile to be computed.
+     */
+    private void warmUp(ResilientImageService service) {
+        for (int i = 0; i < 25; i++) {
+            assertTrue(service.imageContainsCat(frame, 50.0f));
+        }
+    }
+
+    //    With hedging, a call stuck well past the usual latency is raced by a second call that wins, and the loser is interrupted.
+    @Test
+    void hedgingEnabled_slowCall_secondCallAnswersAndFirstCancelled() throws InterruptedException {
+        latencyMillis = 5;
+        try (ResilientImageService service = new ResilientImageService(remote, NO_CAT, 1_500, 5, 30_000, true)) {
+            warmUp(service);
+            //a warm-up call slower than its own p95 may already have been hedged
+            long hedgesBefore = service.getHedgeCount();
+            int interruptedBefore = interrupted.get();
+            slowCallsLeft.set(1);
+            slowMillis = 3_000;
+            assertTrue(service.imageContainsCat(frame, 50.0f));
+            assertEquals(hedgesBefore + 1, service.getHedgeCount());
+            assertEquals(0, service.getTimeoutCount());
+            assertEquals(0, service.getFallbackCount());
+            await(() -> interrupted.get() == interruptedBefore + 1);
+        }
+    }
+
+    //    When the primary and hedged calls both miss the deadline, both are interrupted and nothing more is started.
+    @Test
+    void hedgingEnabled_bothCallsMissDeadline_allCancelled() throws InterruptedException {
+        latencyMillis = 5;
+        try (ResilientImageService service = new ResilientImageService(remote, NO_CAT, 300, 5, 30_000, true)) {
+            warmUp(service);
+            int callsBefore = calls.get();
+            int interruptedBefore = interrupted.get();
+            slowCallsLeft.set(2);
+            slowMillis = 5_000;
+            assertFalse(service.imageContainsCat(frame, 50.0f));
+            assertEquals(1, service.getTimeoutCount());
+
+            await(() -> interrupted.get() == interruptedBefore + 2);
+            assertEquals(callsBefore + 2, calls.get());
+        }
+    }
+}
@@ -1,11 +1,182 @@
 package com.udacity.catpoint.security.application;
 
+import com.udacity.catpoint.image.service.AwsImageService;
+import com.udacity.catpoint.image.service.CascadingImageService;
+import com.udacity.catpoint.image.service.CoalescingImageService;
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.ImageServices;
+import com.udacity.catpoint.image.service.LocalImageService;
+import com.udacity.catpoint.image.service.RateLimitedImageService;
+import com.udacity.catpoint.image.service.ResilientImageService;
+import com.udacity.catpoint.security.data.JdbcSecurityRepository;
+import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.security.data.WriteBehindSecurityRepository;
+import com.udacity.catpoint.security.service.CameraIngestionService;
+import com.udacity.catpoint.security.service.SecurityEventLoop;
+import com.udacity.catpoint.security.service.SecurityService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 /**
  * This is the main class that launches the application.
+ *
+ * Setting the catpoint.cameras system property runs without the GUI and scans the frames the cameras
+ * write to disk instead, e.g. -Dcatpoint.cameras=front=/var/cameras/front,back=/var/cameras/back
+ *
+ * State is kept in an H2 database, ~/.catpoint/catpoint.mv.db unless -Dcatpoint.database names another
+ * file (without the .mv.db extension).
+ *
+ * The image service named by catpoint.imageService is created on the first scan. Set
+ * -Dcatpoint.imageService.eager=true to create it at startup, so a misconfigured one fails there.
+ *
+ * Setting catpoint.cascadeMargin puts the local classifier in front of the configured image service,
+ * answering frames it is that sure about on its own, e.g. -Dcatpoint.cascadeMargin=100 to only compare
+ * its answers with the remote ones. See CascadingImageService before narrowing the margin.
+ *
+ * AwsImageService is called with a deadline and a circuit breaker. Frames it is too slow for, fails on,
+ * or that arrive while the circuit is open are answered by the service named in catpoint.remoteFallback,
+ * FakeImageService unless set. catpoint.remoteTimeoutMillis sets the deadline, e.g.
+ * -Dcatpoint.remoteFallback=LocalImageService -Dcatpoint.remoteTimeoutMillis=1500
+ * Calls to it are also kept under catpoint.remoteRateLimit calls per second (5 unless set), the fallback
+ * answering the ones over the limit, and identical frames scanned at the same time share one call.
+ *
+ * The headless mode runs until the JVM is stopped. A single shutdown hook then stops ingestion and the
+ * event loop, so nothing changes state any more, before it flushes queued writes and closes the database.
  */
 public class CatpointApp {
-    public static void main(String[] args) {
-        CatpointGui gui = new CatpointGui();
-        gui.setVisible(true);
+    private static final int DECODE_THREADS = 2;
+    private static final int QUEUE_CAPACITY = 8;
+    private static final long STATS_INTERVAL_MILLIS = 30_000;
+    private static final long FLUSH_INTERVAL_MILLIS = 200;
+    private static final long REMOTE_TIMEOUT_MILLIS = 2_000;
+    private static final int REMOTE_FAILURE_THRESHOLD = 5;
+    private static final long REMOTE_OPEN_MILLIS = 30_000;
+    private static final double REMOTE_RATE_LIMIT = 5;
+    //a call waits this long for the rate limit, well inside its deadline, before the fallback answers it
+    private static final long REMOTE_MAX_WAIT_MILLIS = 500;
+
+    private static final Logger log = LoggerFactory.getLogger(CatpointApp.class);
+
+    /**
+     * The sensor database and the write-behind queue in front of it. Closing flushes the queue, then
+     * closes the database.
+     */
+    record Persistence(WriteBehindSecurityRepository queue, JdbcSecurityRepository database) implements AutoCloseable {
+        @Override
+        public void close() {
+            try {
+                queue.close();
+            } finally {
+                database.close();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String cameras = System.getProperty("catpoint.cameras");
+        if (cameras == null) {
+            CatpointGui gui = new CatpointGui();
+            gui.setVisible(true);
+            return;
+        }
+
+        Persistence persistence = openPersistence();
+        ImageService imageService = openImageService();
+        SecurityService securityService = new SecurityService(persistence.queue(), imageService);
+        SecurityEventLoop eventLoop = new SecurityEventLoop(securityService);
+        CameraIngestionService ingestion = new CameraIngestionService(eventLoop, DECODE_THREADS, QUEUE_CAPACITY);
+        //the stats loop below never returns, so this hook is what closes everything, producers first
+        closeOnShutdown(ingestion, eventLoop, securityService, persistence);
+        for (String camera : cameras.split(",")) {
+            String[] parts = camera.split("=", 2);
+            ingestion.addCamera(parts[0].trim(), Path.of(parts[1].trim()));
+        }
+        ingestion.start();
+        WriteBehindSecurityRepository queue = persistence.queue();
+        while (true) {
+            Thread.sleep(STATS_INTERVAL_MILLIS);
+            ingestion.getStats().forEach(stats -> log.info("{}", stats));
+            log.info("repository: {} queued, {} flushes, mean {}ms, max {}ms",
+                    queue.getQueueDepth(), queue.getFlushCount(),
+                    String.format("%.2f", queue.getMeanFlushLatencyMillis()),
+                    String.format("%.2f", queue.getMaxFlushLatencyMillis()));
+            if (imageService instanceof CascadingImageService cascade) {
+                cascade.getMetrics().forEach(metrics -> log.info("{}", metrics));
+                log.info("local classifier: {} agreed, {} disagreed with remote",
+                        cascade.getLocalAgreementCount(), cascade.getLocalDisagreementCount());
+            }
+        }
+    }
+
+    /**
+     * Registers one shutdown hook that closes the resources in the order given, so producers can be
+     * stopped before what they write to. A resource that fails to close is logged and the rest are
+     * still closed.
+     */
+    static void closeOnShutdown(AutoCloseable... resources) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (AutoCloseable resource : resources) {
+                try {
+                    resource.close();
+                } catch (Exception e) {
+                    log.error("Unable to close {} on shutdown", resource, e);
+                }
+            }
+        }, "catpoint-shutdown"));
+    }
+
+    /**
+     * Returns the image service named by -Dcatpoint.imageService, protected by a deadline, a rate limit
+     * and a fallback when it is remote, and behind the local classifier when -Dcatpoint.cascadeMargin is set.
+     */
+    static ImageService openImageService() {
+        String name = ImageServices.selectedProvider();
+        ImageService remote = ImageServices.load(name);
+        if (isRemote(name)) {
+            ImageService fallback = ImageServices.load(
+                    System.getProperty("catpoint.remoteFallback", FakeImageService.class.getSimpleName()));
+            double rate = Double.parseDouble(System.getProperty("catpoint.remoteRateLimit", Double.toString(REMOTE_RATE_LIMIT)));
+            //throttled calls are answered inside the deadline, so they don't count against the circuit breaker
+            remote = new RateLimitedImageService(remote, fallback, rate, (int) Math.max(1, Math.ceil(rate)), REMOTE_MAX_WAIT_MILLIS);
+            remote = new ResilientImageService(remote, fallback,
+                    Long.getLong("catpoint.remoteTimeoutMillis", REMOTE_TIMEOUT_MILLIS),
+                    REMOTE_FAILURE_THRESHOLD, REMOTE_OPEN_MILLIS, false);
+            remote = new CoalescingImageService(remote);
+        }
+        String margin = System.getProperty("catpoint.cascadeMargin");
+        if (margin == null) {
+            return remote;
+        }
+        float band = Float.parseFloat(margin);
+        return new CascadingImageService(new LocalImageService(), remote, band, band);
+    }
+
+    private static boolean isRemote(String name) {
+        return name.equals(AwsImageService.class.getSimpleName()) || name.equals(AwsImageService.class.getName());
+    }
+
+    /**
+     * Opens the sensor database behind a write-behind queue. The caller closes it, after everything that
+     * writes to it. A database created by this call is seeded with whatever earlier versions kept in
+     * user preferences.
+     */
+    static Persistence openPersistence() {
+        Path file = Path.of(System.getProperty("catpoint.database",
+                Path.of(System.getProperty("user.home"), ".catpoint", "catpoint").toString()));
+        boolean created = !Files.exists(file.resolveSibling(file.getFileName() + ".mv.db"));
+        JdbcSecurityRepository database = new JdbcSecurityRepository(file);
+        if (created) {
+            PretendDatabaseSecurityRepositoryImpl preferences = new PretendDatabaseSecurityRepositoryImpl();
+            database.updateSensors(preferences.getSensors());
+            database.setAlarmStatus(preferences.getAlarmStatus());
+            database.setArmingStatus(preferences.getArmingStatus());
+        }
+        WriteBehindSecurityRepository queue = new WriteBehindSecurityRepository(
+                database, WriteBehindSecurityRepository.Durability.INTERVAL, FLUSH_INTERVAL_MILLIS);
+        return new Persistence(queue, database);
     }
 }
@@ -1,9 +1,9 @@
 package com.udacity.catpoint.security.application;
 
-import com.udacity.catpoint.image.service.ImageService;
-import com.udacity.catpoint.security.data.PretendDatabaseSecurityRepositoryImpl;
+import com.udacity.catpoint.image.service.AsyncImageService;
 import com.udacity.catpoint.security.data.SecurityRepository;
-import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.SnapshotSecurityRepository;
+import com.udacity.catpoint.security.service.SecurityEventLoop;
 import com.udacity.catpoint.security.service.SecurityService;
 import net.miginfocom.swing.MigLayout;
 
@@ -16,19 +16,27 @@ import javax.swing.*;
  * all our dependencies and providing them to other classes as necessary.
  */
 public class CatpointGui extends JFrame {
-    private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
-    private ImageService imageService = new FakeImageService();
+    //the database is written in the background rather than on the event dispatch thread
+    private CatpointApp.Persistence persistence = CatpointApp.openPersistence();
+    //sensor list refreshes read the current snapshot instead of copying the sensor set
+    private SecurityRepository securityRepository = new SnapshotSecurityRepository(persistence.queue());
+    //the implementation comes from -Dcatpoint.imageService and is created on the first scan
+    private AsyncImageService imageService = new AsyncImageService(CatpointApp.openImageService(), 4);
     private SecurityService securityService = new SecurityService(securityRepository, imageService);
+    //every change goes through one writer thread, so clicks and scan results never race
+    private SecurityEventLoop eventLoop = new SecurityEventLoop(securityService);
     private DisplayPanel displayPanel = new DisplayPanel(securityService);
-    private ControlPanel controlPanel = new ControlPanel(securityService);
-    private SensorPanel sensorPanel = new SensorPanel(securityService);
-    private ImagePanel imagePanel = new ImagePanel(securityService);
+    private ControlPanel controlPanel = new ControlPanel(securityService, eventLoop);
+    private SensorPanel sensorPanel = new SensorPanel(securityService, eventLoop);
+    private ImagePanel imagePanel = new ImagePanel(securityService, eventLoop);
 
     public CatpointGui() {
         setLocation(100, 100);
         setSize(600, 850);
         setTitle("Very Secure App");
+        //EXIT_ON_CLOSE exits the JVM, whose hook stops the event loop before it flushes queued writes
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        CatpointApp.closeOnShutdown(eventLoop, securityService, imageService, persistence);
 
         JPanel mainPanel = new JPanel();
         mainPanel.setLayout(new MigLayout());
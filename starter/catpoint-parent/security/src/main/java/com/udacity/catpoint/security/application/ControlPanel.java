@@ -1,6 +1,7 @@
 package com.udacity.catpoint.security.application;
 
 import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.service.SecurityEventLoop;
 import com.udacity.catpoint.security.service.SecurityService;
 import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
@@ -16,13 +17,18 @@ import java.util.stream.Collectors;
 public class ControlPanel extends JPanel {
 
     private SecurityService securityService;
+    private SecurityEventLoop eventLoop;
     private Map<ArmingStatus, JButton> buttonMap;
 
 
-    public ControlPanel(SecurityService securityService) {
+    /**
+     * @param eventLoop Applies the arming status changes; securityService is only read
+     */
+    public ControlPanel(SecurityService securityService, SecurityEventLoop eventLoop) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
+        this.eventLoop = eventLoop;
 
         JLabel panelLabel = new JLabel("System Control");
         panelLabel.setFont(StyleService.HEADING_FONT);
@@ -36,7 +42,7 @@ public class ControlPanel extends JPanel {
         //add an action listener to each button that applies its arming status and recolors all the buttons
         buttonMap.forEach((k, v) -> {
             v.addActionListener(e -> {
-                securityService.setArmingStatus(k);
+                eventLoop.setArmingStatus(k);
                 buttonMap.forEach((status, button) -> button.setBackground(status == k ? status.getColor() : null));
             });
         });
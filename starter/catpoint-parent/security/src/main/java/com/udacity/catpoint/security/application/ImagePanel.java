@@ -1,6 +1,8 @@
 package com.udacity.catpoint.security.application;
 
+import com.udacity.catpoint.image.preprocess.ImagePreprocessor;
 import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.service.SecurityEventLoop;
 import com.udacity.catpoint.security.service.SecurityService;
 import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
@@ -11,24 +13,32 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 /** Panel containing the 'camera' output. Allows users to 'refresh' the camera
  * by uploading their own picture, and 'scan' the picture, sending it for image analysis
  */
 public class ImagePanel extends JPanel implements StatusListener {
     private SecurityService securityService;
+    private SecurityEventLoop eventLoop;
 
     private JLabel cameraHeader;
     private JLabel cameraLabel;
     private BufferedImage currentCameraImage;
+    private Path currentCameraFile;
 
     private int IMAGE_WIDTH = 300;
     private int IMAGE_HEIGHT = 225;
 
-    public ImagePanel(SecurityService securityService) {
+    /**
+     * @param eventLoop Applies the scan results
+     */
+    public ImagePanel(SecurityService securityService, SecurityEventLoop eventLoop) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
+        this.eventLoop = eventLoop;
         securityService.addStatusListener(this);
 
         cameraHeader = new JLabel("Camera Feed");
@@ -50,10 +60,16 @@ public class ImagePanel extends JPanel implements StatusListener {
                 return;
             }
             try {
-                currentCameraImage = ImageIO.read(chooser.getSelectedFile());
-                Image tmp = new ImageIcon(currentCameraImage).getImage();
-                cameraLabel.setIcon(new ImageIcon(tmp.getScaledInstance(IMAGE_WIDTH, IMAGE_HEIGHT, Image.SCALE_SMOOTH)));
-            } catch (IOException |NullPointerException ioe) {
+                //only replace the current picture once the new one has decoded, so a bad file leaves it as it was
+                BufferedImage image = ImageIO.read(chooser.getSelectedFile());
+                if(image == null) {
+                    JOptionPane.showMessageDialog(null, "Invalid image selected.");
+                    return;
+                }
+                cameraLabel.setIcon(new ImageIcon(ImagePreprocessor.resize(image, IMAGE_WIDTH, IMAGE_HEIGHT)));
+                currentCameraImage = image;
+                currentCameraFile = chooser.getSelectedFile().toPath();
+            } catch (IOException ioe) {
                 JOptionPane.showMessageDialog(null, "Invalid image selected.");
             }
             repaint();
@@ -62,7 +78,18 @@ public class ImagePanel extends JPanel implements StatusListener {
         //button that sends the image to the image service
         JButton scanPictureButton = new JButton("Scan Picture");
         scanPictureButton.addActionListener(e -> {
-            securityService.processImage(currentCameraImage);
+            //scan off the EDT and apply the result on the event loop, so the UI stays responsive
+            scanPictureButton.setEnabled(false);
+            //send the original file bytes when we have them, so they don't get decoded and re-encoded again
+            CompletableFuture<Boolean> scan = currentCameraFile != null
+                    ? securityService.processImageAsync(currentCameraFile, eventLoop::execute)
+                    : securityService.processImageAsync(currentCameraImage, eventLoop::execute);
+            scan.whenComplete((cat, error) -> SwingUtilities.invokeLater(() -> {
+                scanPictureButton.setEnabled(true);
+                if(error != null) {
+                    JOptionPane.showMessageDialog(null, "Unable to scan picture.");
+                }
+            }));
         });
 
         add(cameraHeader, "span 3, wrap");
@@ -78,11 +105,10 @@ public class ImagePanel extends JPanel implements StatusListener {
 
     @Override
     public void catDetected(boolean catDetected) {
-        if(catDetected) {
-            cameraHeader.setText("DANGER - CAT DETECTED");
-        } else {
-            cameraHeader.setText("Camera Feed - No Cats Detected");
-        }
+        //listeners are called off the EDT
+        SwingUtilities.invokeLater(() -> cameraHeader.setText(catDetected
+                ? "DANGER - CAT DETECTED"
+                : "Camera Feed - No Cats Detected"));
     }
 
     @Override
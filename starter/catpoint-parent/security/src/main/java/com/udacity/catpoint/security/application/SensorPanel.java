@@ -3,6 +3,7 @@ package com.udacity.catpoint.security.application;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.Sensor;
 import com.udacity.catpoint.security.data.SensorType;
+import com.udacity.catpoint.security.service.SecurityEventLoop;
 import com.udacity.catpoint.security.service.SecurityService;
 import com.udacity.catpoint.security.service.StyleService;
 import net.miginfocom.swing.MigLayout;
@@ -16,6 +17,7 @@ import javax.swing.*;
 public class SensorPanel extends JPanel implements StatusListener{
 
     private SecurityService securityService;
+    private SecurityEventLoop eventLoop;
 
     private JLabel panelLabel = new JLabel("Sensor Management");
     private JLabel newSensorName = new JLabel("Name:");
@@ -27,10 +29,14 @@ public class SensorPanel extends JPanel implements StatusListener{
     private JPanel sensorListPanel;
     private JPanel newSensorPanel;
 
-    public SensorPanel(SecurityService securityService) {
+    /**
+     * @param eventLoop Applies the sensor changes; securityService is only read
+     */
+    public SensorPanel(SecurityService securityService, SecurityEventLoop eventLoop) {
         super();
         setLayout(new MigLayout());
         this.securityService = securityService;
+        this.eventLoop = eventLoop;
         securityService.addStatusListener(this);
 
         panelLabel.setFont(StyleService.HEADING_FONT);
@@ -89,35 +95,39 @@ public class SensorPanel extends JPanel implements StatusListener{
     }
 
     /**
-     * Asks the securityService to change a sensor activation status and then rebuilds the current sensor list
+     * Asks the event loop to change a sensor activation status and then rebuilds the current sensor list
      * @param sensor The sensor to update
      * @param isActive The sensor's activation status
      */
     private void setSensorActivity(Sensor sensor, Boolean isActive) {
-        securityService.changeSensorActivationStatus(sensor, isActive);
-        updateSensorList(sensorListPanel);
+        eventLoop.changeSensorActivationStatus(sensor, isActive, this::sensorListChanged);
     }
 
     /**
-     * Adds a sensor to the securityService and then rebuilds the sensor list
+     * Adds a sensor through the event loop and then rebuilds the sensor list
      * @param sensor The sensor to add
      */
     private void addSensor(Sensor sensor) {
         if(securityService.getSensors().size() < 4) {
-            securityService.addSensor(sensor);
-            updateSensorList(sensorListPanel);
+            eventLoop.addSensor(sensor, this::sensorListChanged);
         } else {
             JOptionPane.showMessageDialog(null, "To add more than 4 sensors, please subscribe to our Premium Membership!");
         }
     }
 
     /**
-     * Remove a sensor from the securityService and then rebuild the sensor list
+     * Remove a sensor through the event loop and then rebuild the sensor list
      * @param sensor The sensor to remove
      */
     private void removeSensor(Sensor sensor) {
-        securityService.removeSensor(sensor);
-        updateSensorList(sensorListPanel);
+        eventLoop.removeSensor(sensor, this::sensorListChanged);
+    }
+
+    /**
+     * Event loop callback; rebuilds the sensor list on the EDT once the change has been applied.
+     */
+    private void sensorListChanged(AlarmStatus status, Throwable error) {
+        SwingUtilities.invokeLater(() -> updateSensorList(sensorListPanel));
     }
 
     @Override
@@ -132,6 +142,7 @@ public class SensorPanel extends JPanel implements StatusListener{
 
     @Override
     public void sensorStatusChanged() {
-        updateSensorList(sensorListPanel);
+        //listeners are called off the EDT
+        SwingUtilities.invokeLater(() -> updateSensorList(sensorListPanel));
     }
 }
@@ -0,0 +1,404 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * In-memory repository for sites with very many sensors. Sensors are stored as columns rather than as
+ * objects: ids as pairs of longs, active flags in a bitset, types as bytes and zones as indexes into a
+ * small zone table. An open-addressing index over the id column finds a sensor's row without boxing.
+ *
+ * Sensor objects are only created when a caller asks for them, as views that read and write the columns
+ * directly, so changing a view changes the stored sensor straight away. A view of a removed sensor
+ * throws IllegalStateException when used.
+ *
+ * Nothing is persisted, and like the other repositories this one is not thread-safe.
+ */
+public class ColumnarSecurityRepository implements SecurityRepository {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final SensorType[] TYPES = SensorType.values();
+
+    //row r's id is ids[2r] (most significant bits) and ids[2r + 1] (least significant bits)
+    private long[] ids = new long[INITIAL_CAPACITY * 2];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private short[] zones = new short[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private final BitSet active = new BitSet();
+    private int size;
+
+    //linear-probing index of row + 1 by id, 0 marks an empty slot. Kept at most half full.
+    private int[] index = new int[INITIAL_CAPACITY * 2];
+
+    private final List<String> zoneNames = new ArrayList<>();
+    private final Map<String, Short> zoneIds = new HashMap<>();
+
+    private int activeCount;
+    private final int[] activeByType = new int[TYPES.length];
+    private int[] activeByZone = new int[4];
+
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        put(sensor);
+    }
+
+    private void put(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        addRow(id.getMostSignificantBits(), id.getLeastSignificantBits(), sensor.getName(), sensor.getSensorType(),
+                sensor.getZone(), Boolean.TRUE.equals(sensor.getActive()));
+    }
+
+    /**
+     * Adds or overwrites a sensor from its fields, so loaders can fill the columns without creating a
+     * Sensor or UUID per row.
+     */
+    void addRow(long mostSigBits, long leastSigBits, String name, SensorType sensorType, String zone, boolean isActive) {
+        int slot = slotOf(mostSigBits, leastSigBits);
+        if (slot >= 0) {
+            int row = index[slot] - 1;
+            names[row] = name;
+            setType(row, sensorType);
+            setZone(row, zone);
+            setActive(row, isActive);
+            return;
+        }
+        ensureCapacity(size + 1);
+        int row = size++;
+        ids[2 * row] = mostSigBits;
+        ids[2 * row + 1] = leastSigBits;
+        names[row] = name;
+        types[row] = (byte) sensorType.ordinal();
+        zones[row] = zoneId(zone);
+        insertIntoIndex(row);
+        setActive(row, isActive);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        int slot = slotOf(sensor.getSensorId());
+        if (slot < 0) {
+            return;
+        }
+        int row = index[slot] - 1;
+        setActive(row, false);
+        removeFromIndex(slot);
+        //fill the hole with the last row, so the columns stay dense
+        int last = size - 1;
+        if (row != last) {
+            int lastSlot = slotOf(ids[2 * last], ids[2 * last + 1]);
+            ids[2 * row] = ids[2 * last];
+            ids[2 * row + 1] = ids[2 * last + 1];
+            names[row] = names[last];
+            types[row] = types[last];
+            zones[row] = zones[last];
+            active.set(row, active.get(last));
+            index[lastSlot] = row + 1;
+        }
+        names[last] = null;
+        active.clear(last);
+        size--;
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        if (sensor instanceof SensorView view && view.owner() == this) {
+            return; //changes to views are already in the columns
+        }
+        put(sensor);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    /**
+     * @return a new set of views over every stored sensor
+     */
+    @Override
+    public Set<Sensor> getSensors() {
+        Set<Sensor> sensors = new HashSet<>(size * 4 / 3 + 1);
+        for (int row = 0; row < size; row++) {
+            sensors.add(new SensorView(idOf(row), row));
+        }
+        return sensors;
+    }
+
+    /**
+     * @return a view of the sensor with the given id, or null if there is none
+     */
+    public Sensor getSensor(UUID sensorId) {
+        int slot = slotOf(sensorId);
+        return slot < 0 ? null : new SensorView(sensorId, index[slot] - 1);
+    }
+
+    /**
+     * @return a view of the sensor in the given row, for writers that walk every row in order
+     */
+    Sensor sensorAt(int row) {
+        return new SensorView(idOf(row), row);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return activeCount;
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return activeByType[sensorType.ordinal()];
+    }
+
+    @Override
+    public int getActiveSensorCount(String zone) {
+        Short zoneId = zoneIds.get(zone);
+        return zoneId == null ? 0 : activeByZone[zoneId];
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public void cleanAll() {
+        ids = new long[INITIAL_CAPACITY * 2];
+        types = new byte[INITIAL_CAPACITY];
+        zones = new short[INITIAL_CAPACITY];
+        names = new String[INITIAL_CAPACITY];
+        index = new int[INITIAL_CAPACITY * 2];
+        active.clear();
+        size = 0;
+        zoneNames.clear();
+        zoneIds.clear();
+        activeCount = 0;
+        Arrays.fill(activeByType, 0);
+        activeByZone = new int[4];
+        alarmStatus = AlarmStatus.NO_ALARM;
+        armingStatus = ArmingStatus.DISARMED;
+    }
+
+    private void setActive(int row, boolean value) {
+        if (active.get(row) == value) {
+            return;
+        }
+        active.set(row, value);
+        int delta = value ? 1 : -1;
+        activeCount += delta;
+        activeByType[types[row]] += delta;
+        activeByZone[zones[row]] += delta;
+    }
+
+    private void setType(int row, SensorType sensorType) {
+        byte type = (byte) sensorType.ordinal();
+        if (active.get(row)) {
+            activeByType[types[row]]--;
+            activeByType[type]++;
+        }
+        types[row] = type;
+    }
+
+    private void setZone(int row, String zone) {
+        short zoneId = zoneId(zone);
+        if (active.get(row)) {
+            activeByZone[zones[row]]--;
+            activeByZone[zoneId]++;
+        }
+        zones[row] = zoneId;
+    }
+
+    private short zoneId(String zone) {
+        Short zoneId = zoneIds.get(zone);
+        if (zoneId != null) {
+            return zoneId;
+        }
+        if (zoneNames.size() > Short.MAX_VALUE) {
+            throw new IllegalStateException("Too many zones");
+        }
+        short newId = (short) zoneNames.size();
+        zoneNames.add(zone);
+        zoneIds.put(zone, newId);
+        if (newId == activeByZone.length) {
+            activeByZone = Arrays.copyOf(activeByZone, newId * 2);
+        }
+        return newId;
+    }
+
+    private UUID idOf(int row) {
+        return new UUID(ids[2 * row], ids[2 * row + 1]);
+    }
+
+    private void ensureCapacity(int rows) {
+        if (rows <= names.length) {
+            return;
+        }
+        int capacity = Math.max(rows, names.length * 2);
+        ids = Arrays.copyOf(ids, capacity * 2);
+        types = Arrays.copyOf(types, capacity);
+        zones = Arrays.copyOf(zones, capacity);
+        names = Arrays.copyOf(names, capacity);
+    }
+
+    private static int hash(long mostSigBits, long leastSigBits) {
+        long h = (mostSigBits ^ leastSigBits) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slotOf(UUID sensorId) {
+        return slotOf(sensorId.getMostSignificantBits(), sensorId.getLeastSignificantBits());
+    }
+
+    /**
+     * @return the index slot holding the row with this id, or -1 if there is none
+     */
+    private int slotOf(long mostSigBits, long leastSigBits) {
+        int mask = index.length - 1;
+        for (int slot = hash(mostSigBits, leastSigBits) & mask; ; slot = (slot + 1) & mask) {
+            int entry = index[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            int row = entry - 1;
+            if (ids[2 * row] == mostSigBits && ids[2 * row + 1] == leastSigBits) {
+                return slot;
+            }
+        }
+    }
+
+    private void insertIntoIndex(int row) {
+        if (size * 2 > index.length) {
+            index = new int[index.length * 2];
+            for (int r = 0; r < size; r++) {
+                if (r != row) {
+                    place(r);
+                }
+            }
+        }
+        place(row);
+    }
+
+    private void place(int row) {
+        int mask = index.length - 1;
+        int slot = hash(ids[2 * row], ids[2 * row + 1]) & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = row + 1;
+    }
+
+    /**
+     * Empties a slot and shifts later entries of the same probe run back, so lookups never stop early.
+     */
+    private void removeFromIndex(int slot) {
+        int mask = index.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; index[next] != 0; next = (next + 1) & mask) {
+            int row = index[next] - 1;
+            int home = hash(ids[2 * row], ids[2 * row + 1]) & mask;
+            //the entry may move into the hole only if the hole lies between its home slot and where it is now
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                index[hole] = index[next];
+                hole = next;
+            }
+        }
+        index[hole] = 0;
+    }
+
+    /**
+     * Sensor whose state lives in the repository's columns. It remembers its row, and finds it again
+     * through the index if removals have moved it.
+     */
+    private final class SensorView extends Sensor {
+        private transient int row;
+
+        SensorView(UUID sensorId, int row) {
+            super(sensorId);
+            this.row = row;
+        }
+
+        ColumnarSecurityRepository owner() {
+            return ColumnarSecurityRepository.this;
+        }
+
+        private int row() {
+            UUID id = getSensorId();
+            if (row >= size || ids[2 * row] != id.getMostSignificantBits() || ids[2 * row + 1] != id.getLeastSignificantBits()) {
+                int slot = slotOf(id);
+                if (slot < 0) {
+                    throw new IllegalStateException("Sensor " + id + " has been removed");
+                }
+                row = index[slot] - 1;
+            }
+            return row;
+        }
+
+        @Override
+        public String getName() {
+            return names[row()];
+        }
+
+        @Override
+        public void setName(String name) {
+            names[row()] = name;
+        }
+
+        @Override
+        public Boolean getActive() {
+            return active.get(row());
+        }
+
+        @Override
+        public void setActive(Boolean active) {
+            ColumnarSecurityRepository.this.setActive(row(), Boolean.TRUE.equals(active));
+        }
+
+        @Override
+        public SensorType getSensorType() {
+            return TYPES[types[row()]];
+        }
+
+        @Override
+        public void setSensorType(SensorType sensorType) {
+            setType(row(), sensorType);
+        }
+
+        @Override
+        public String getZone() {
+            return zoneNames.get(zones[row()]);
+        }
+
+        @Override
+        public void setZone(String zone) {
+            ColumnarSecurityRepository.this.setZone(row(), zone);
+        }
+
+        @Override
+        public void setSensorId(UUID sensorId) {
+            throw new UnsupportedOperationException("A stored sensor's id can't change");
+        }
+    }
+}
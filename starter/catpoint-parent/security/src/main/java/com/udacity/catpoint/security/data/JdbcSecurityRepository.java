@@ -0,0 +1,337 @@
+package com.udacity.catpoint.security.data;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Repository backed by an embedded SQL database, an H2 file unless another JDBC url is given. Sensors
+ * are rows of a sensor table with indexes on (active, sensor_type) and (active, zone), so the active
+ * counts the service asks for are answered by the database from an index instead of by copying and
+ * filtering every sensor. The statuses are the single row of a system_state table; they are read once
+ * when the repository opens and kept in memory, and every change is written through.
+ *
+ * One connection is held for the repository's lifetime and every statement is prepared once on it and
+ * reused. Single writes commit on their own, while updateSensors sends the whole batch with JDBC batching
+ * in one transaction.
+ *
+ * SQL errors are rethrown as IllegalStateException. Like the other repositories this one is not
+ * thread-safe.
+ */
+public class JdbcSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS sensor ("
+                    + "sensor_id UUID PRIMARY KEY, "
+                    + "name VARCHAR NOT NULL, "
+                    + "sensor_type VARCHAR(16) NOT NULL, "
+                    + "zone VARCHAR NOT NULL, "
+                    + "active BOOLEAN NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS sensor_active_type ON sensor (active, sensor_type)",
+            "CREATE INDEX IF NOT EXISTS sensor_active_zone ON sensor (active, zone)",
+            "CREATE TABLE IF NOT EXISTS system_state ("
+                    + "id INT PRIMARY KEY, "
+                    + "alarm_status VARCHAR(16) NOT NULL, "
+                    + "arming_status VARCHAR(16) NOT NULL)"
+    };
+    private static final int STATE_ROW = 1;
+
+    private final Connection connection;
+    private final PreparedStatement insertSensor;
+    private final PreparedStatement updateSensor;
+    private final PreparedStatement deleteSensor;
+    private final PreparedStatement selectSensors;
+    private final PreparedStatement countSensors;
+    private final PreparedStatement countActive;
+    private final PreparedStatement countActiveByType;
+    private final PreparedStatement countActiveByZone;
+    private final PreparedStatement updateState;
+
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    /**
+     * Opens an H2 database file that stays open until {@link #close()}, so writes flushed by other
+     * shutdown hooks still reach it.
+     *
+     * @param database H2 database file, without the .mv.db extension H2 adds
+     */
+    public JdbcSecurityRepository(Path database) {
+        this("jdbc:h2:file:" + database.toAbsolutePath() + ";DB_CLOSE_ON_EXIT=FALSE");
+    }
+
+    /**
+     * @param url JDBC url of a database that understands H2's SQL dialect
+     */
+    public JdbcSecurityRepository(String url) {
+        try {
+            connection = DriverManager.getConnection(url);
+        } catch (SQLException e) {
+            throw failure("open sensor database " + url, e);
+        }
+        try {
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : SCHEMA) {
+                    statement.execute(sql);
+                }
+            }
+            insertSensor = connection.prepareStatement(
+                    "INSERT INTO sensor (name, sensor_type, zone, active, sensor_id) VALUES (?, ?, ?, ?, ?)");
+            updateSensor = connection.prepareStatement(
+                    "UPDATE sensor SET name = ?, sensor_type = ?, zone = ?, active = ? WHERE sensor_id = ?");
+            deleteSensor = connection.prepareStatement("DELETE FROM sensor WHERE sensor_id = ?");
+            selectSensors = connection.prepareStatement("SELECT sensor_id, name, sensor_type, zone, active FROM sensor");
+            countSensors = connection.prepareStatement("SELECT COUNT(*) FROM sensor");
+            countActive = connection.prepareStatement("SELECT COUNT(*) FROM sensor WHERE active");
+            countActiveByType = connection.prepareStatement("SELECT COUNT(*) FROM sensor WHERE active AND sensor_type = ?");
+            countActiveByZone = connection.prepareStatement("SELECT COUNT(*) FROM sensor WHERE active AND zone = ?");
+            updateState = connection.prepareStatement(
+                    "UPDATE system_state SET alarm_status = ?, arming_status = ? WHERE id = " + STATE_ROW);
+            loadState();
+        } catch (SQLException e) {
+            try {
+                connection.close();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw failure("set up sensor database " + url, e);
+        }
+    }
+
+    private void loadState() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet state = statement.executeQuery(
+                     "SELECT alarm_status, arming_status FROM system_state WHERE id = " + STATE_ROW)) {
+            if (state.next()) {
+                alarmStatus = AlarmStatus.valueOf(state.getString(1));
+                armingStatus = ArmingStatus.valueOf(state.getString(2));
+                return;
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO system_state (id, alarm_status, arming_status) VALUES (" + STATE_ROW + ", ?, ?)")) {
+            insert.setString(1, alarmStatus.name());
+            insert.setString(2, armingStatus.name());
+            insert.executeUpdate();
+        }
+    }
+
+    /**
+     * Adds the sensor, or overwrites it if a sensor with its id is already stored.
+     */
+    @Override
+    public void addSensor(Sensor sensor) {
+        updateSensor(sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        try {
+            deleteSensor.setObject(1, sensor.getSensorId());
+            deleteSensor.executeUpdate();
+        } catch (SQLException e) {
+            throw failure("remove sensor " + sensor.getSensorId(), e);
+        }
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        try {
+            bind(updateSensor, sensor);
+            if (updateSensor.executeUpdate() == 0) {
+                bind(insertSensor, sensor);
+                insertSensor.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw failure("write sensor " + sensor.getSensorId(), e);
+        }
+    }
+
+    /**
+     * Sends every update as one JDBC batch, then inserts the sensors that weren't stored yet as a second
+     * batch, all in one transaction.
+     */
+    @Override
+    public void updateSensors(Collection<Sensor> sensors) {
+        if (sensors.isEmpty()) {
+            return;
+        }
+        try {
+            connection.setAutoCommit(false);
+            try {
+                List<Sensor> batch = new ArrayList<>(sensors);
+                for (Sensor sensor : batch) {
+                    bind(updateSensor, sensor);
+                    updateSensor.addBatch();
+                }
+                int[] updated = updateSensor.executeBatch();
+                boolean inserting = false;
+                for (int i = 0; i < updated.length; i++) {
+                    if (updated[i] == 0) {
+                        bind(insertSensor, batch.get(i));
+                        insertSensor.addBatch();
+                        inserting = true;
+                    }
+                }
+                if (inserting) {
+                    insertSensor.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw failure("write " + sensors.size() + " sensors", e);
+        }
+    }
+
+    /**
+     * Binds the sensor to a statement whose parameters are name, type, zone, active and id, in that order.
+     */
+    private static void bind(PreparedStatement statement, Sensor sensor) throws SQLException {
+        statement.setString(1, sensor.getName());
+        statement.setString(2, sensor.getSensorType().name());
+        statement.setString(3, sensor.getZone());
+        statement.setBoolean(4, Boolean.TRUE.equals(sensor.getActive()));
+        statement.setObject(5, sensor.getSensorId());
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        writeState(alarmStatus, armingStatus);
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        writeState(alarmStatus, armingStatus);
+        this.armingStatus = armingStatus;
+    }
+
+    private void writeState(AlarmStatus alarmStatus, ArmingStatus armingStatus) {
+        try {
+            updateState.setString(1, alarmStatus.name());
+            updateState.setString(2, armingStatus.name());
+            updateState.executeUpdate();
+        } catch (SQLException e) {
+            throw failure("write system state", e);
+        }
+    }
+
+    /**
+     * @return a new set of plain sensors read from the database; changes reach it through updateSensor
+     */
+    @Override
+    public Set<Sensor> getSensors() {
+        try (ResultSet rows = selectSensors.executeQuery()) {
+            Set<Sensor> sensors = new HashSet<>();
+            while (rows.next()) {
+                Sensor sensor = new Sensor(rows.getObject(1, UUID.class));
+                sensor.setName(rows.getString(2));
+                sensor.setSensorType(SensorType.valueOf(rows.getString(3)));
+                sensor.setZone(rows.getString(4));
+                sensor.setActive(rows.getBoolean(5));
+                sensors.add(sensor);
+            }
+            return sensors;
+        } catch (SQLException e) {
+            throw failure("read sensors", e);
+        }
+    }
+
+    /**
+     * @return number of stored sensors
+     */
+    public int size() {
+        return count(countSensors);
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return count(countActive);
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        try {
+            countActiveByType.setString(1, sensorType.name());
+        } catch (SQLException e) {
+            throw failure("count active sensors", e);
+        }
+        return count(countActiveByType);
+    }
+
+    @Override
+    public int getActiveSensorCount(String zone) {
+        try {
+            countActiveByZone.setString(1, zone);
+        } catch (SQLException e) {
+            throw failure("count active sensors", e);
+        }
+        return count(countActiveByZone);
+    }
+
+    private static int count(PreparedStatement query) {
+        try (ResultSet result = query.executeQuery()) {
+            result.next();
+            return result.getInt(1);
+        } catch (SQLException e) {
+            throw failure("count sensors", e);
+        }
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Deletes every sensor and puts the statuses back to their defaults.
+     */
+    @Override
+    public void cleanAll() {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM sensor");
+        } catch (SQLException e) {
+            throw failure("clear sensors", e);
+        }
+        writeState(AlarmStatus.NO_ALARM, ArmingStatus.DISARMED);
+        alarmStatus = AlarmStatus.NO_ALARM;
+        armingStatus = ArmingStatus.DISARMED;
+    }
+
+    /**
+     * Closes the connection, and with it every prepared statement. With H2 the database file is closed
+     * once its last connection is.
+     */
+    @Override
+    public void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw failure("close sensor database", e);
+        }
+    }
+
+    private static IllegalStateException failure(String action, SQLException e) {
+        return new IllegalStateException("Unable to " + action, e);
+    }
+}
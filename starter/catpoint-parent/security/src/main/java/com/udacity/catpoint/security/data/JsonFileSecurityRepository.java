@@ -0,0 +1,160 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+
+/**
+ * Columnar repository persisted to a JSON file. At startup the file is read with Gson's streaming
+ * reader and each sensor goes straight into the columns, so the counts and the id index are ready once
+ * the file has been read, without a Sensor object having been created. Sensors are only created, as
+ * views, when a caller asks for them.
+ *
+ * The file looks like {"alarmStatus": ..., "armingStatus": ..., "sensors": [...]}, with each sensor
+ * written as Gson would write it. A bare array of sensors, such as the one the preferences repository
+ * keeps, is read as well.
+ *
+ * Every change rewrites the whole file, to a temporary file that is then moved into place. For large
+ * sites, wrap this in a WriteBehindSecurityRepository so that bursts of changes cost one rewrite.
+ */
+public class JsonFileSecurityRepository extends ColumnarSecurityRepository {
+
+    static final String ALARM_STATUS = "alarmStatus";
+    static final String ARMING_STATUS = "armingStatus";
+    static final String SENSORS = "sensors";
+
+    private final SensorTypeAdapter adapter = new SensorTypeAdapter();
+    private final Path file;
+    private final Path temp;
+
+    /**
+     * @param file JSON file to load from, if it exists, and to save to
+     */
+    public JsonFileSecurityRepository(Path file) {
+        this.file = file;
+        this.temp = file.resolveSibling(file.getFileName() + ".tmp");
+        if (Files.exists(file)) {
+            try (JsonReader in = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+                load(in);
+            } catch (IOException ioe) {
+                throw new UncheckedIOException("Unable to load sensors from " + file, ioe);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                //an unknown status name, or a value where the reader expected something else
+                throw new UncheckedIOException("Unable to load sensors from " + file, new MalformedJsonException(e.getMessage(), e));
+            }
+        }
+    }
+
+    private void load(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.BEGIN_ARRAY) {
+            loadSensors(in);
+            return;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case ALARM_STATUS -> super.setAlarmStatus(AlarmStatus.valueOf(in.nextString()));
+                case ARMING_STATUS -> super.setArmingStatus(ArmingStatus.valueOf(in.nextString()));
+                case SENSORS -> loadSensors(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    private void loadSensors(JsonReader in) throws IOException {
+        SensorTypeAdapter.Fields fields = new SensorTypeAdapter.Fields();
+        in.beginArray();
+        while (in.hasNext()) {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            SensorTypeAdapter.readFields(in, fields);
+            addRow(fields.mostSigBits, fields.leastSigBits, fields.name, fields.sensorType,
+                    fields.zone == null ? Sensor.DEFAULT_ZONE : fields.zone, fields.active);
+        }
+        in.endArray();
+    }
+
+    /**
+     * Writes the current state to the file.
+     */
+    public void save() {
+        try {
+            try (JsonWriter out = new JsonWriter(Files.newBufferedWriter(temp, StandardCharsets.UTF_8))) {
+                out.beginObject();
+                out.name(ALARM_STATUS).value(getAlarmStatus().name());
+                out.name(ARMING_STATUS).value(getArmingStatus().name());
+                out.name(SENSORS).beginArray();
+                for (int row = 0; row < size(); row++) {
+                    adapter.write(out, sensorAt(row));
+                }
+                out.endArray();
+                out.endObject();
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to save sensors to " + file, ioe);
+        }
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        super.addSensor(sensor);
+        save();
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        super.removeSensor(sensor);
+        save();
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        super.updateSensor(sensor);
+        save();
+    }
+
+    /**
+     * Applies every change, then rewrites the file once.
+     */
+    @Override
+    public void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(super::updateSensor);
+        save();
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        super.setAlarmStatus(alarmStatus);
+        save();
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        super.setArmingStatus(armingStatus);
+        save();
+    }
+
+    @Override
+    public void cleanAll() {
+        super.cleanAll();
+        save();
+    }
+}
@@ -0,0 +1,444 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Repository whose state lives in a memory-mapped file of fixed-size sensor records, behind a header
+ * holding the alarm and arming status. Changing a sensor writes its few changed bytes straight into
+ * its record, with nothing serialized and no system call, so persisting an activation change costs
+ * about as much as a field write. Opening the repository walks the records once; there is nothing
+ * to parse.
+ *
+ * Names and zones live in a second mapped file, an append-only string heap that records point into.
+ * A renamed sensor gets a new string and the old one is left behind; zones are written once each.
+ *
+ * How soon writes reach the storage device depends on the {@link Durability} mode. A record's flags
+ * byte is written last, so a new record only counts once it is complete.
+ */
+public class MappedSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    /**
+     * When changes are forced from the mapping to the storage device. Either way they are in the
+     * operating system's page cache as soon as the write returns, so they survive the process crashing.
+     */
+    public enum Durability {
+        //every write forces the bytes it changed before returning
+        EVERY_WRITE,
+        //a background thread forces everything changed since its last pass, once per interval
+        INTERVAL
+    }
+
+    static final String TABLE_FILE = "sensors.table";
+    static final String STRINGS_FILE = "sensors.strings";
+    private static final long DEFAULT_FORCE_INTERVAL_MILLIS = 1000;
+
+    //header layout
+    private static final int MAGIC = 0x43504d53; //CPMS
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_FORMAT = 4;
+    private static final int HEADER_ALARM = 8;
+    private static final int HEADER_ARMING = 9;
+    private static final int HEADER_SLOTS = 12;
+    private static final int HEADER_STRINGS_END = 16;
+    private static final int HEADER = 64;
+
+    //record layout
+    private static final int RECORD_ID_HIGH = 0;
+    private static final int RECORD_ID_LOW = 8;
+    private static final int RECORD_VERSION = 16;
+    private static final int RECORD_NAME = 24;
+    private static final int RECORD_ZONE = 32;
+    private static final int RECORD_TYPE = 40;
+    private static final int RECORD_FLAGS = 41;
+    private static final int RECORD = 48;
+
+    private static final byte USED = 1;
+    private static final byte ACTIVE = 2;
+    private static final long NO_STRING = -1;
+
+    private static final int INITIAL_RECORDS = 1024;
+    private static final int INITIAL_STRINGS = 64 * 1024;
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private final Path directory;
+    private final Durability durability;
+    private final FileChannel tableChannel;
+    private final FileChannel stringsChannel;
+    private volatile MappedByteBuffer table;
+    private volatile MappedByteBuffer strings;
+    private final ScheduledExecutorService forcer;
+    //set by writers, cleared by the forcer before it forces
+    private volatile boolean dirty;
+    //header fields other than the statuses changed since the last EVERY_WRITE force
+    private boolean headerChanged;
+
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final Map<String, Long> zoneOffsets = new HashMap<>();
+    private final SensorCounters activeSensors = new SensorCounters();
+    private int slots;
+    private long stringsEnd;
+
+    /**
+     * Opens the repository in the directory, creating it if needed, forcing changes once a second.
+     */
+    public MappedSecurityRepository(Path directory) {
+        this(directory, Durability.INTERVAL, DEFAULT_FORCE_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param directory Where the table and string files live
+     * @param durability When changes are forced to the storage device
+     * @param forceIntervalMillis Time between forces in INTERVAL mode, ignored otherwise
+     */
+    public MappedSecurityRepository(Path directory, Durability durability, long forceIntervalMillis) {
+        this.directory = directory;
+        this.durability = durability;
+        try {
+            Files.createDirectories(directory);
+            tableChannel = FileChannel.open(directory.resolve(TABLE_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            stringsChannel = FileChannel.open(directory.resolve(STRINGS_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean created = tableChannel.size() == 0;
+            table = tableChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(tableChannel.size(), HEADER + (long) INITIAL_RECORDS * RECORD));
+            strings = stringsChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    Math.max(stringsChannel.size(), INITIAL_STRINGS));
+            if (created) {
+                writeHeader();
+            } else {
+                load();
+            }
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open sensor table in " + directory, ioe);
+        }
+        if (durability == Durability.INTERVAL) {
+            forcer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "sensor-table-force");
+                t.setDaemon(true);
+                return t;
+            });
+            forcer.scheduleWithFixedDelay(this::forceIfDirty, forceIntervalMillis, forceIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            forcer = null;
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        Entry entry = entries.get(sensor.getSensorId());
+        if (entry == null) {
+            Integer free = freeSlots.poll();
+            entry = new Entry(free != null ? free : newSlot());
+            entries.put(sensor.getSensorId(), entry);
+            int base = base(entry.slot);
+            table.putLong(base + RECORD_ID_HIGH, sensor.getSensorId().getMostSignificantBits());
+            table.putLong(base + RECORD_ID_LOW, sensor.getSensorId().getLeastSignificantBits());
+            table.putLong(base + RECORD_VERSION, 0);
+            table.putLong(base + RECORD_NAME, NO_STRING);
+            table.putLong(base + RECORD_ZONE, NO_STRING);
+        }
+        write(entry, sensor);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        Entry entry = entries.remove(sensor.getSensorId());
+        if (entry == null) {
+            return;
+        }
+        activeSensors.untrack(sensor);
+        int base = base(entry.slot);
+        table.put(base + RECORD_FLAGS, (byte) 0);
+        freeSlots.push(entry.slot);
+        written(base, RECORD);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        Entry entry = entries.get(sensor.getSensorId());
+        if (entry == null) {
+            addSensor(sensor);
+            return;
+        }
+        write(entry, sensor);
+    }
+
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        table.put(HEADER_ALARM, (byte) alarmStatus.ordinal());
+        written(0, HEADER);
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        table.put(HEADER_ARMING, (byte) armingStatus.ordinal());
+        written(0, HEADER);
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        Set<Sensor> sensors = new HashSet<>();
+        entries.values().forEach(entry -> sensors.add(entry.sensor));
+        return sensors;
+    }
+
+    /**
+     * @return number of times the sensor's record has been written since it was added, or -1 if there is no such sensor
+     */
+    public synchronized long getSensorVersion(UUID sensorId) {
+        Entry entry = entries.get(sensorId);
+        return entry == null ? -1 : table.getLong(base(entry.slot) + RECORD_VERSION);
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount() {
+        return activeSensors.getActiveCount();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(SensorType sensorType) {
+        return activeSensors.getActiveCount(sensorType);
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(String zone) {
+        return activeSensors.getActiveCount(zone);
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return ALARM_STATUSES[table.get(HEADER_ALARM)];
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return ARMING_STATUSES[table.get(HEADER_ARMING)];
+    }
+
+    @Override
+    public synchronized void cleanAll() {
+        entries.clear();
+        freeSlots.clear();
+        zoneOffsets.clear();
+        activeSensors.clear();
+        slots = 0;
+        stringsEnd = 0;
+        writeHeader();
+    }
+
+    /**
+     * Forces any changes not yet on the storage device, then releases the files.
+     */
+    @Override
+    public void close() throws IOException {
+        if (forcer != null) {
+            forcer.shutdownNow();
+        }
+        synchronized (this) {
+            table.force();
+            strings.force();
+            tableChannel.close();
+            stringsChannel.close();
+        }
+    }
+
+    private void writeHeader() {
+        table.putInt(HEADER_MAGIC, MAGIC);
+        table.putInt(HEADER_FORMAT, FORMAT_VERSION);
+        table.put(HEADER_ALARM, (byte) AlarmStatus.NO_ALARM.ordinal());
+        table.put(HEADER_ARMING, (byte) ArmingStatus.DISARMED.ordinal());
+        table.putInt(HEADER_SLOTS, slots);
+        table.putLong(HEADER_STRINGS_END, stringsEnd);
+        written(0, HEADER);
+    }
+
+    private void load() throws IOException {
+        if (table.getInt(HEADER_MAGIC) != MAGIC || table.getInt(HEADER_FORMAT) != FORMAT_VERSION) {
+            throw new IOException(directory.resolve(TABLE_FILE) + " is not a sensor table");
+        }
+        slots = table.getInt(HEADER_SLOTS);
+        stringsEnd = table.getLong(HEADER_STRINGS_END);
+        for (int slot = 0; slot < slots; slot++) {
+            int base = base(slot);
+            if ((table.get(base + RECORD_FLAGS) & USED) == 0) {
+                freeSlots.push(slot);
+                continue;
+            }
+            Sensor sensor = new Sensor(new UUID(table.getLong(base + RECORD_ID_HIGH), table.getLong(base + RECORD_ID_LOW)));
+            sensor.setSensorType(SENSOR_TYPES[table.get(base + RECORD_TYPE)]);
+            sensor.setActive((table.get(base + RECORD_FLAGS) & ACTIVE) != 0);
+            sensor.setName(readString(table.getLong(base + RECORD_NAME)));
+            long zoneOffset = table.getLong(base + RECORD_ZONE);
+            sensor.setZone(readString(zoneOffset));
+            zoneOffsets.putIfAbsent(sensor.getZone(), zoneOffset);
+            Entry entry = new Entry(slot);
+            entry.sensor = sensor;
+            entry.name = sensor.getName();
+            entry.zone = sensor.getZone();
+            entries.put(sensor.getSensorId(), entry);
+            activeSensors.track(sensor);
+        }
+    }
+
+    /**
+     * Writes the sensor's changed fields into its record, the flags last.
+     */
+    private void write(Entry entry, Sensor sensor) {
+        int base = base(entry.slot);
+        if (entry.sensor == null || !Objects.equals(entry.name, sensor.getName())) {
+            table.putLong(base + RECORD_NAME, appendString(sensor.getName()));
+            entry.name = sensor.getName();
+        }
+        if (!Objects.equals(entry.zone, sensor.getZone())) {
+            Long zoneOffset = zoneOffsets.get(sensor.getZone());
+            if (zoneOffset == null) {
+                zoneOffset = appendString(sensor.getZone());
+                zoneOffsets.put(sensor.getZone(), zoneOffset);
+            }
+            table.putLong(base + RECORD_ZONE, zoneOffset);
+            entry.zone = sensor.getZone();
+        }
+        entry.sensor = sensor;
+        table.put(base + RECORD_TYPE, (byte) sensor.getSensorType().ordinal());
+        table.putLong(base + RECORD_VERSION, table.getLong(base + RECORD_VERSION) + 1);
+        table.put(base + RECORD_FLAGS, (byte) (USED | (Boolean.TRUE.equals(sensor.getActive()) ? ACTIVE : 0)));
+        activeSensors.track(sensor);
+        written(base, RECORD);
+    }
+
+    private int newSlot() {
+        int slot = slots;
+        long needed = HEADER + (long) (slot + 1) * RECORD;
+        if (needed > table.capacity()) {
+            table = remap(tableChannel, Math.max(needed, HEADER + 2L * (table.capacity() - HEADER)));
+        }
+        slots++;
+        table.putInt(HEADER_SLOTS, slots);
+        headerChanged = true;
+        return slot;
+    }
+
+    /**
+     * @return offset of the string in the heap, or NO_STRING for null
+     */
+    private long appendString(String value) {
+        if (value == null) {
+            return NO_STRING;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long offset = stringsEnd;
+        long needed = offset + Integer.BYTES + bytes.length;
+        if (needed > strings.capacity()) {
+            strings = remap(stringsChannel, Math.max(needed, 2L * strings.capacity()));
+        }
+        strings.putInt((int) offset, bytes.length);
+        strings.put((int) offset + Integer.BYTES, bytes);
+        if (durability == Durability.EVERY_WRITE) {
+            strings.force((int) offset, Integer.BYTES + bytes.length);
+        }
+        //the heap's end moves only once the string is in place
+        stringsEnd = needed;
+        table.putLong(HEADER_STRINGS_END, stringsEnd);
+        headerChanged = true;
+        return offset;
+    }
+
+    private String readString(long offset) {
+        if (offset == NO_STRING) {
+            return null;
+        }
+        int length = strings.getInt((int) offset);
+        byte[] bytes = new byte[length];
+        strings.get((int) offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private MappedByteBuffer remap(FileChannel channel, long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Sensor table files are limited to 2 GB");
+        }
+        try {
+            //the old mapping stays valid until collected, so the forcer may still use it meanwhile
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to grow sensor table in " + directory, ioe);
+        }
+    }
+
+    /**
+     * Applies the durability mode to bytes just written to the table.
+     */
+    private void written(int offset, int length) {
+        if (durability == Durability.EVERY_WRITE) {
+            table.force(offset, length);
+            if (headerChanged && offset != 0) {
+                table.force(0, HEADER);
+            }
+            headerChanged = false;
+        } else {
+            dirty = true;
+        }
+    }
+
+    private void forceIfDirty() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        try {
+            strings.force();
+            table.force();
+        } catch (UncheckedIOException ioe) {
+            //try again next interval
+            dirty = true;
+        }
+    }
+
+    private static int base(int slot) {
+        return HEADER + slot * RECORD;
+    }
+
+    /**
+     * Where a sensor's record is, and the name and zone last written to it.
+     */
+    private static final class Entry {
+        final int slot;
+        Sensor sensor;
+        String name;
+        String zone;
+
+        Entry(int slot) {
+            this.slot = slot;
+        }
+    }
+}
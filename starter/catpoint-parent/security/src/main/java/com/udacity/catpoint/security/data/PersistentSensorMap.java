@@ -0,0 +1,350 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Immutable map of sensors by id, stored as a hash array mapped trie. Every change returns a new map
+ * that shares all untouched branches with the old one, so a change costs a handful of small array
+ * copies rather than a copy of the whole map, and two versions can be compared by skipping the
+ * branches they share.
+ */
+final class PersistentSensorMap implements Iterable<Sensor> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    static final PersistentSensorMap EMPTY = new PersistentSensorMap(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentSensorMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    Sensor get(UUID sensorId) {
+        return root == null ? null : root.get(sensorId, sensorId.hashCode(), 0);
+    }
+
+    /**
+     * @return a map holding the sensor in place of any sensor with the same id
+     */
+    PersistentSensorMap with(Sensor sensor) {
+        UUID id = sensor.getSensorId();
+        boolean added = get(id) == null;
+        Node node = root == null ? BitmapNode.EMPTY : root;
+        return new PersistentSensorMap(node.put(sensor, id.hashCode(), 0), added ? size + 1 : size);
+    }
+
+    PersistentSensorMap without(UUID sensorId) {
+        if (get(sensorId) == null) {
+            return this;
+        }
+        return new PersistentSensorMap(root.remove(sensorId, sensorId.hashCode(), 0), size - 1);
+    }
+
+    /**
+     * Adds to changed the id of every sensor that was added, removed or replaced between this map and other.
+     */
+    void diff(PersistentSensorMap other, Set<UUID> changed) {
+        diff(root, other.root, changed);
+    }
+
+    @Override
+    public void forEach(Consumer<? super Sensor> action) {
+        if (root != null) {
+            root.forEach(action);
+        }
+    }
+
+    @Override
+    public Iterator<Sensor> iterator() {
+        return new TrieIterator(root);
+    }
+
+    private static void diff(Object a, Object b, Set<UUID> changed) {
+        if (a == b) {
+            return;
+        }
+        if (a instanceof BitmapNode x && b instanceof BitmapNode y) {
+            for (int bits = x.bitmap | y.bitmap; bits != 0; bits &= bits - 1) {
+                int bit = bits & -bits;
+                diff(x.child(bit), y.child(bit), changed);
+            }
+            return;
+        }
+        //a sensor against a branch, or two collision nodes: compare their sensors by id
+        Map<UUID, Sensor> before = new HashMap<>();
+        collect(a, before);
+        Map<UUID, Sensor> after = new HashMap<>();
+        collect(b, after);
+        before.forEach((id, sensor) -> {
+            if (after.get(id) != sensor) {
+                changed.add(id);
+            }
+        });
+        after.keySet().forEach(id -> {
+            if (!before.containsKey(id)) {
+                changed.add(id);
+            }
+        });
+    }
+
+    private static void collect(Object entry, Map<UUID, Sensor> into) {
+        if (entry instanceof Sensor sensor) {
+            into.put(sensor.getSensorId(), sensor);
+        } else if (entry instanceof Node node) {
+            node.forEach(sensor -> into.put(sensor.getSensorId(), sensor));
+        }
+    }
+
+    private interface Node {
+        Sensor get(UUID id, int hash, int shift);
+
+        Node put(Sensor sensor, int hash, int shift);
+
+        /**
+         * @return the node without the sensor, or null if nothing is left
+         */
+        Node remove(UUID id, int hash, int shift);
+
+        void forEach(Consumer<? super Sensor> action);
+    }
+
+    /**
+     * Up to 32 entries, one per 5 bit slice of the hash, each a Sensor or a child Node. Only occupied
+     * slots take space, found by counting the bits below theirs.
+     */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        final int bitmap;
+        final Object[] entries;
+
+        BitmapNode(int bitmap, Object[] entries) {
+            this.bitmap = bitmap;
+            this.entries = entries;
+        }
+
+        Object child(int bit) {
+            return (bitmap & bit) == 0 ? null : entries[Integer.bitCount(bitmap & (bit - 1))];
+        }
+
+        @Override
+        public Sensor get(UUID id, int hash, int shift) {
+            Object entry = child(bit(hash, shift));
+            if (entry instanceof Sensor sensor) {
+                return sensor.getSensorId().equals(id) ? sensor : null;
+            }
+            return entry == null ? null : ((Node) entry).get(id, hash, shift + BITS);
+        }
+
+        @Override
+        public Node put(Sensor sensor, int hash, int shift) {
+            int bit = bit(hash, shift);
+            int position = Integer.bitCount(bitmap & (bit - 1));
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[entries.length + 1];
+                System.arraycopy(entries, 0, copy, 0, position);
+                copy[position] = sensor;
+                System.arraycopy(entries, position, copy, position + 1, entries.length - position);
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object entry = entries[position];
+            Object replacement;
+            if (entry instanceof Node node) {
+                replacement = node.put(sensor, hash, shift + BITS);
+            } else {
+                Sensor existing = (Sensor) entry;
+                replacement = existing.getSensorId().equals(sensor.getSensorId())
+                        ? sensor
+                        : branch(existing, sensor, hash, shift + BITS);
+            }
+            Object[] copy = entries.clone();
+            copy[position] = replacement;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        public Node remove(UUID id, int hash, int shift) {
+            int bit = bit(hash, shift);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int position = Integer.bitCount(bitmap & (bit - 1));
+            Object entry = entries[position];
+            Object replacement = null;
+            if (entry instanceof Node node) {
+                Node child = node.remove(id, hash, shift + BITS);
+                //pull a lone sensor back up, so every sensor sits as high in the trie as it can
+                replacement = child instanceof BitmapNode b && b.entries.length == 1 && b.entries[0] instanceof Sensor
+                        ? b.entries[0]
+                        : child instanceof CollisionNode c && c.sensors.length == 1 ? c.sensors[0] : child;
+            } else if (!((Sensor) entry).getSensorId().equals(id)) {
+                return this;
+            }
+            if (replacement != null) {
+                Object[] copy = entries.clone();
+                copy[position] = replacement;
+                return new BitmapNode(bitmap, copy);
+            }
+            if (entries.length == 1) {
+                return null;
+            }
+            Object[] copy = new Object[entries.length - 1];
+            System.arraycopy(entries, 0, copy, 0, position);
+            System.arraycopy(entries, position + 1, copy, position, entries.length - position - 1);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+
+        @Override
+        public void forEach(Consumer<? super Sensor> action) {
+            for (Object entry : entries) {
+                if (entry instanceof Sensor sensor) {
+                    action.accept(sensor);
+                } else {
+                    ((Node) entry).forEach(action);
+                }
+            }
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & MASK);
+        }
+
+        private static Node branch(Sensor a, Sensor b, int hash, int shift) {
+            int hashA = a.getSensorId().hashCode();
+            if (hashA == hash || shift >= Integer.SIZE) {
+                return new CollisionNode(new Sensor[]{a, b});
+            }
+            return EMPTY.put(a, hashA, shift).put(b, hash, shift);
+        }
+    }
+
+    /**
+     * Sensors whose ids have the same 32 bit hash.
+     */
+    private static final class CollisionNode implements Node {
+        final Sensor[] sensors;
+
+        CollisionNode(Sensor[] sensors) {
+            this.sensors = sensors;
+        }
+
+        @Override
+        public Sensor get(UUID id, int hash, int shift) {
+            for (Sensor sensor : sensors) {
+                if (sensor.getSensorId().equals(id)) {
+                    return sensor;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Node put(Sensor sensor, int hash, int shift) {
+            for (int i = 0; i < sensors.length; i++) {
+                if (sensors[i].getSensorId().equals(sensor.getSensorId())) {
+                    Sensor[] copy = sensors.clone();
+                    copy[i] = sensor;
+                    return new CollisionNode(copy);
+                }
+            }
+            Sensor[] copy = Arrays.copyOf(sensors, sensors.length + 1);
+            copy[sensors.length] = sensor;
+            return new CollisionNode(copy);
+        }
+
+        @Override
+        public Node remove(UUID id, int hash, int shift) {
+            for (int i = 0; i < sensors.length; i++) {
+                if (sensors[i].getSensorId().equals(id)) {
+                    if (sensors.length == 1) {
+                        return null;
+                    }
+                    Sensor[] copy = new Sensor[sensors.length - 1];
+                    System.arraycopy(sensors, 0, copy, 0, i);
+                    System.arraycopy(sensors, i + 1, copy, i, sensors.length - i - 1);
+                    return new CollisionNode(copy);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public void forEach(Consumer<? super Sensor> action) {
+            for (Sensor sensor : sensors) {
+                action.accept(sensor);
+            }
+        }
+    }
+
+    /**
+     * Depth-first walk over the trie, keeping one array position per level.
+     */
+    private static final class TrieIterator implements Iterator<Sensor> {
+        private final Deque<Object[]> arrays = new ArrayDeque<>();
+        private final Deque<int[]> positions = new ArrayDeque<>();
+        private Sensor next;
+
+        TrieIterator(Node root) {
+            if (root != null) {
+                push(root);
+            }
+            advance();
+        }
+
+        private void push(Node node) {
+            arrays.push(node instanceof BitmapNode b ? b.entries : ((CollisionNode) node).sensors);
+            positions.push(new int[]{0});
+        }
+
+        private void advance() {
+            next = null;
+            while (!arrays.isEmpty()) {
+                Object[] array = arrays.peek();
+                int[] position = positions.peek();
+                if (position[0] == array.length) {
+                    arrays.pop();
+                    positions.pop();
+                    continue;
+                }
+                Object entry = array[position[0]++];
+                if (entry instanceof Sensor sensor) {
+                    next = sensor;
+                    return;
+                }
+                push((Node) entry);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Sensor next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Sensor sensor = next;
+            advance();
+            return sensor;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
 
 import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
@@ -18,6 +19,7 @@ import java.util.prefs.Preferences;
 public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository{
 
     private Set<Sensor> sensors;
+    private final SensorCounters activeSensors = new SensorCounters();
     private AlarmStatus alarmStatus;
     private ArmingStatus armingStatus;
 
@@ -44,6 +46,7 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
             }.getType();
             sensors = gson.fromJson(sensorString, type);
         }
+        sensors.forEach(activeSensors::track);
     }
     @Override
     public void cleanAll() throws BackingStoreException {
@@ -54,12 +57,14 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     @Override
     public void addSensor(Sensor sensor) {
         sensors.add(sensor);
+        activeSensors.track(sensor);
         prefs.put(SENSORS, gson.toJson(sensors));
     }
 
     @Override
     public void removeSensor(Sensor sensor) {
         sensors.remove(sensor);
+        activeSensors.untrack(sensor);
         prefs.put(SENSORS, gson.toJson(sensors));
     }
 
@@ -67,9 +72,20 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
     public void updateSensor(Sensor sensor) {
         sensors.remove(sensor);
         sensors.add(sensor);
+        activeSensors.track(sensor);
         prefs.put(SENSORS, gson.toJson(sensors));
     }
 
+    @Override
+    public void updateSensors(Collection<Sensor> sensors) {
+        for (Sensor sensor : sensors) {
+            this.sensors.remove(sensor);
+            this.sensors.add(sensor);
+            activeSensors.track(sensor);
+        }
+        prefs.put(SENSORS, gson.toJson(this.sensors));
+    }
+
     @Override
     public void setAlarmStatus(AlarmStatus alarmStatus) {
         this.alarmStatus = alarmStatus;
@@ -87,6 +103,21 @@ public class PretendDatabaseSecurityRepositoryImpl implements SecurityRepository
         return new HashSet<>(sensors);
     }
 
+    @Override
+    public int getActiveSensorCount() {
+        return activeSensors.getActiveCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return activeSensors.getActiveCount(sensorType);
+    }
+
+    @Override
+    public int getActiveSensorCount(String zone) {
+        return activeSensors.getActiveCount(zone);
+    }
+
     @Override
     public AlarmStatus getAlarmStatus() {
         return alarmStatus;
@@ -0,0 +1,53 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.UUID;
+
+/**
+ * Sensor published by SnapshotSecurityRepository. Snapshots are shared between readers and must never
+ * change, so every setter throws; change a {@link Sensor#copy()} and write it back through the repository.
+ * The state is kept in Sensor's own fields, so the sensor serializes like any other.
+ */
+final class ReadOnlySensor extends Sensor {
+
+    ReadOnlySensor(Sensor sensor) {
+        super(sensor.getSensorId());
+        super.setName(sensor.getName());
+        super.setSensorType(sensor.getSensorType());
+        super.setZone(sensor.getZone());
+        super.setActive(sensor.getActive());
+    }
+
+    @Override
+    public boolean isReadOnly() {
+        return true;
+    }
+
+    @Override
+    public void setName(String name) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setActive(Boolean active) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setSensorType(SensorType sensorType) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setZone(String zone) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setSensorId(UUID sensorId) {
+        throw readOnly();
+    }
+
+    private UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Sensor " + getSensorId() + " belongs to a snapshot; change a copy instead");
+    }
+}
@@ -1,5 +1,6 @@
 package com.udacity.catpoint.security.data;
 
+import java.util.Collection;
 import java.util.Set;
 import java.util.prefs.BackingStoreException;
 
@@ -10,6 +11,13 @@ public interface SecurityRepository {
     void addSensor(Sensor sensor);
     void removeSensor(Sensor sensor);
     void updateSensor(Sensor sensor);
+
+    /**
+     * Updates several sensors at once. Implementations that persist state should write it once for the whole batch.
+     */
+    default void updateSensors(Collection<Sensor> sensors) {
+        sensors.forEach(this::updateSensor);
+    }
     void setAlarmStatus(AlarmStatus alarmStatus);
     void setArmingStatus(ArmingStatus armingStatus);
     Set<Sensor> getSensors();
@@ -17,5 +25,20 @@ public interface SecurityRepository {
     ArmingStatus getArmingStatus();
     void cleanAll() throws BackingStoreException;
 
+    /**
+     * Implementations should keep this count as sensors change rather than scanning getSensors().
+     * @return number of active sensors
+     */
+    default int getActiveSensorCount() {
+        return (int) getSensors().stream().filter(Sensor::getActive).count();
+    }
+
+    default int getActiveSensorCount(SensorType sensorType) {
+        return (int) getSensors().stream().filter(s -> s.getActive() && s.getSensorType() == sensorType).count();
+    }
+
+    default int getActiveSensorCount(String zone) {
+        return (int) getSensors().stream().filter(s -> s.getActive() && s.getZone().equals(zone)).count();
+    }
 
 }
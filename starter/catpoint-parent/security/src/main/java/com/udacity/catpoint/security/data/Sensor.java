@@ -3,36 +3,76 @@ package com.udacity.catpoint.security.data;
 
 import com.google.common.collect.ComparisonChain;
 
-import java.util.Objects;
 import java.util.UUID;
 
 /**
  * Sensor POJO. Needs to know how to sort itself for display purposes.
  */
 public class Sensor implements Comparable<Sensor> {
+    /**
+     * Zone of sensors created without one, and of sensors saved before zones existed
+     */
+    public static final String DEFAULT_ZONE = "home";
+
     private UUID sensorId;
     private String name;
     private Boolean active;
     private SensorType sensorType;
+    private String zone;
 
     public Sensor(String name, SensorType sensorType) {
+        this(name, sensorType, DEFAULT_ZONE);
+    }
+
+    /**
+     * @param zone Part of the premises the sensor covers, e.g. "garage"
+     */
+    public Sensor(String name, SensorType sensorType, String zone) {
         this.name = name;
         this.sensorType = sensorType;
+        this.zone = zone;
         this.sensorId = UUID.randomUUID();
         this.active = Boolean.FALSE;
     }
 
+    /**
+     * For views whose state lives elsewhere and is reached through overridden accessors.
+     */
+    Sensor(UUID sensorId) {
+        this.sensorId = sensorId;
+    }
+
+    /**
+     * @return a plain, changeable sensor with the same id and state, e.g. for repositories that keep a
+     * copy of their own or for changing a read-only sensor
+     */
+    public Sensor copy() {
+        Sensor copy = new Sensor(getSensorId());
+        copy.setName(getName());
+        copy.setSensorType(getSensorType());
+        copy.setZone(getZone());
+        copy.setActive(getActive());
+        return copy;
+    }
+
+    /**
+     * @return true if the sensor is a repository's published state, such as a SensorSnapshot's, whose setters throw
+     */
+    public boolean isReadOnly() {
+        return false;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Sensor sensor = (Sensor) o;
-        return sensorId.equals(sensor.sensorId);
+        //views of a stored sensor are equal to the sensor itself
+        if (!(o instanceof Sensor sensor)) return false;
+        return getSensorId().equals(sensor.getSensorId());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(sensorId);
+        return getSensorId().hashCode();
     }
 
     public String getName() {
@@ -59,6 +99,15 @@ public class Sensor implements Comparable<Sensor> {
         this.sensorType = sensorType;
     }
 
+    public String getZone() {
+        //sensors deserialized from before zones existed have none
+        return zone == null ? DEFAULT_ZONE : zone;
+    }
+
+    public void setZone(String zone) {
+        this.zone = zone;
+    }
+
     public UUID getSensorId() {
         return sensorId;
     }
@@ -70,9 +119,9 @@ public class Sensor implements Comparable<Sensor> {
     @Override
     public int compareTo(Sensor o) {
         return ComparisonChain.start()
-                .compare(this.name, o.name)
-                .compare(this.sensorType.toString(), o.sensorType.toString())
-                .compare(this.sensorId, o.sensorId)
+                .compare(getName(), o.getName())
+                .compare(getSensorType().toString(), o.getSensorType().toString())
+                .compare(getSensorId(), o.getSensorId())
                 .result();
     }
 }
@@ -0,0 +1,86 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Running count of active sensors, overall, per sensor type and per zone, so repositories can answer
+ * "is anything active?" without copying and scanning every sensor.
+ *
+ * Counters remember how each active sensor was counted, so a sensor whose flag, type or zone was changed
+ * in place before being passed to {@link #track(Sensor)} is still moved between counts correctly.
+ * Not thread-safe; repositories update it under whatever guards their sensor collection.
+ */
+public class SensorCounters {
+
+    private final Map<UUID, Counted> counted = new HashMap<>();
+    private final int[] byType = new int[SensorType.values().length];
+    private final Map<String, Integer> byZone = new HashMap<>();
+
+    /**
+     * Counts the sensor according to its current state. Call whenever a sensor is added or updated.
+     */
+    public void track(Sensor sensor) {
+        Counted before = counted.get(sensor.getSensorId());
+        if (!Boolean.TRUE.equals(sensor.getActive())) {
+            if (before != null) {
+                counted.remove(sensor.getSensorId());
+                decrement(before);
+            }
+            return;
+        }
+        if (before != null && before.type() == sensor.getSensorType() && before.zone().equals(sensor.getZone())) {
+            return;
+        }
+        if (before != null) {
+            decrement(before);
+        }
+        Counted now = new Counted(sensor.getSensorType(), sensor.getZone());
+        counted.put(sensor.getSensorId(), now);
+        increment(now);
+    }
+
+    /**
+     * Stops counting the sensor. Call when a sensor is removed.
+     */
+    public void untrack(Sensor sensor) {
+        Counted before = counted.remove(sensor.getSensorId());
+        if (before != null) {
+            decrement(before);
+        }
+    }
+
+    public void clear() {
+        counted.clear();
+        byZone.clear();
+        Arrays.fill(byType, 0);
+    }
+
+    public int getActiveCount() {
+        return counted.size();
+    }
+
+    public int getActiveCount(SensorType sensorType) {
+        return byType[sensorType.ordinal()];
+    }
+
+    public int getActiveCount(String zone) {
+        return byZone.getOrDefault(zone, 0);
+    }
+
+    private void increment(Counted c) {
+        byType[c.type().ordinal()]++;
+        byZone.merge(c.zone(), 1, Integer::sum);
+    }
+
+    private void decrement(Counted c) {
+        byType[c.type().ordinal()]--;
+        //drop empty zones so the map doesn't keep every zone ever seen
+        byZone.computeIfPresent(c.zone(), (zone, count) -> count == 1 ? null : count - 1);
+    }
+
+    private record Counted(SensorType type, String zone) {
+    }
+}
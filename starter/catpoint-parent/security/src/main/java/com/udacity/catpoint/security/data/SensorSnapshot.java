@@ -0,0 +1,97 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * One version of the sensor set published by SnapshotSecurityRepository. A snapshot never changes
+ * once published, so it can be read from any thread and kept as long as needed without copying.
+ *
+ * The sensors in a snapshot are the repository's own read-only copies, whose setters throw. Change a
+ * sensor through SecurityService, or write a changed copy to the repository, which publishes a new version.
+ */
+public final class SensorSnapshot {
+
+    private final long version;
+    private final PersistentSensorMap sensors;
+    private final Set<Sensor> view;
+
+    SensorSnapshot(long version, PersistentSensorMap sensors) {
+        this.version = version;
+        this.sensors = sensors;
+        this.view = Collections.unmodifiableSet(new SensorSetView(sensors));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return an unmodifiable set backed by the snapshot; nothing is copied
+     */
+    public Set<Sensor> getSensors() {
+        return view;
+    }
+
+    /**
+     * @return the sensor with this id, or null if the snapshot has none
+     */
+    public Sensor getSensor(UUID sensorId) {
+        return sensors.get(sensorId);
+    }
+
+    public int size() {
+        return sensors.size();
+    }
+
+    /**
+     * Compares two snapshots, skipping every part of the trie they share, so the cost follows the
+     * number of changes rather than the number of sensors.
+     * @param earlier Another snapshot from the same repository
+     * @return ids of the sensors added, removed or changed between earlier and this snapshot
+     */
+    public Set<UUID> changesSince(SensorSnapshot earlier) {
+        Set<UUID> changed = new HashSet<>();
+        earlier.sensors.diff(sensors, changed);
+        return changed;
+    }
+
+    SensorSnapshot with(Sensor sensor) {
+        return new SensorSnapshot(version + 1, sensors.with(sensor));
+    }
+
+    SensorSnapshot without(UUID sensorId) {
+        return new SensorSnapshot(version + 1, sensors.without(sensorId));
+    }
+
+    PersistentSensorMap map() {
+        return sensors;
+    }
+
+    private static final class SensorSetView extends AbstractSet<Sensor> {
+        private final PersistentSensorMap sensors;
+
+        SensorSetView(PersistentSensorMap sensors) {
+            this.sensors = sensors;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Sensor sensor && sensors.get(sensor.getSensorId()) != null;
+        }
+
+        @Override
+        public Iterator<Sensor> iterator() {
+            return sensors.iterator();
+        }
+
+        @Override
+        public int size() {
+            return sensors.size();
+        }
+    }
+}
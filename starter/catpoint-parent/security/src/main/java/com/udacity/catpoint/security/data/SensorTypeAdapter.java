@@ -0,0 +1,157 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Hand-written Gson adapter for sensors. It uses the field names Gson's reflection would, so it reads
+ * and writes the same JSON as new Gson().toJson(sensor), but without reflection and, through
+ * readFields, without creating a Sensor or UUID per object read.
+ */
+public class SensorTypeAdapter extends TypeAdapter<Sensor> {
+
+    static final String SENSOR_ID = "sensorId";
+    static final String NAME = "name";
+    static final String ACTIVE = "active";
+    static final String SENSOR_TYPE = "sensorType";
+    static final String ZONE = "zone";
+
+    private static final int UUID_LENGTH = 36;
+
+    @Override
+    public void write(JsonWriter out, Sensor sensor) throws IOException {
+        if (sensor == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(SENSOR_ID).value(sensor.getSensorId().toString());
+        out.name(NAME).value(sensor.getName());
+        out.name(ACTIVE).value(Boolean.TRUE.equals(sensor.getActive()));
+        out.name(SENSOR_TYPE).value(sensor.getSensorType().name());
+        out.name(ZONE).value(sensor.getZone());
+        out.endObject();
+    }
+
+    @Override
+    public Sensor read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Fields fields = new Fields();
+        readFields(in, fields);
+        Sensor sensor = new Sensor(new UUID(fields.mostSigBits, fields.leastSigBits));
+        sensor.setName(fields.name);
+        sensor.setSensorType(fields.sensorType);
+        sensor.setZone(fields.zone);
+        sensor.setActive(fields.active);
+        return sensor;
+    }
+
+    /**
+     * Fields of one sensor object, reused from one object to the next by bulk loaders.
+     */
+    static final class Fields {
+        long mostSigBits;
+        long leastSigBits;
+        String name;
+        SensorType sensorType;
+        //null if the object has none, as in JSON written before zones existed
+        String zone;
+        boolean active;
+    }
+
+    /**
+     * Reads the next sensor object into fields, overwriting whatever they held. Unknown names are
+     * skipped, and a missing active flag reads as inactive.
+     *
+     * @throws MalformedJsonException if the object has no id or type, or one of them can't be parsed
+     */
+    static void readFields(JsonReader in, Fields fields) throws IOException {
+        boolean hasId = false;
+        fields.name = null;
+        fields.sensorType = null;
+        fields.zone = null;
+        fields.active = false;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case SENSOR_ID -> {
+                    readId(in.nextString(), fields);
+                    hasId = true;
+                }
+                case NAME -> fields.name = in.nextString();
+                case ACTIVE -> fields.active = in.nextBoolean();
+                case SENSOR_TYPE -> fields.sensorType = readType(in.nextString());
+                case ZONE -> fields.zone = in.nextString();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (!hasId || fields.sensorType == null) {
+            throw new MalformedJsonException("Sensor has no " + (hasId ? SENSOR_TYPE : SENSOR_ID));
+        }
+    }
+
+    private static SensorType readType(String value) throws MalformedJsonException {
+        try {
+            return SensorType.valueOf(value);
+        } catch (IllegalArgumentException e) {
+            throw new MalformedJsonException("Unknown sensor type " + value, e);
+        }
+    }
+
+    /**
+     * Parses the canonical 8-4-4-4-12 form straight into the two halves, and anything else through
+     * UUID.fromString.
+     */
+    private static void readId(String value, Fields fields) throws MalformedJsonException {
+        if (value.length() == UUID_LENGTH) {
+            long mostSigBits = 0;
+            long leastSigBits = 0;
+            int digits = 0;
+            for (int i = 0; i < UUID_LENGTH; i++) {
+                char c = value.charAt(i);
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    if (c != '-') {
+                        break;
+                    }
+                    continue;
+                }
+                int digit = Character.digit(c, 16);
+                if (digit < 0) {
+                    break;
+                }
+                if (digits++ < 16) {
+                    mostSigBits = mostSigBits << 4 | digit;
+                } else {
+                    leastSigBits = leastSigBits << 4 | digit;
+                }
+            }
+            if (digits == 32) {
+                fields.mostSigBits = mostSigBits;
+                fields.leastSigBits = leastSigBits;
+                return;
+            }
+        }
+        try {
+            UUID id = UUID.fromString(value);
+            fields.mostSigBits = id.getMostSignificantBits();
+            fields.leastSigBits = id.getLeastSignificantBits();
+        } catch (IllegalArgumentException e) {
+            throw new MalformedJsonException("Invalid sensor id " + value, e);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.udacity.catpoint.security.data;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.prefs.BackingStoreException;
+
+/**
+ * SecurityRepository decorator that publishes the sensor set as versioned, immutable snapshots.
+ * Reading the sensors is a single volatile load of the current snapshot, with no copying, so UI
+ * refreshes and other readers no longer allocate a new set each time. The sensors handed out are
+ * read-only; changing one means writing a changed copy back. Every write goes to the wrapped
+ * repository and then publishes a new version that shares all untouched parts of the previous one.
+ *
+ * Writes are serialized; reads can come from any thread. Recent versions are kept so callers can ask
+ * which sensors changed since a version they saw.
+ */
+public class SnapshotSecurityRepository implements SecurityRepository {
+
+    private static final int HISTORY = 64;
+
+    private final SecurityRepository delegate;
+    private volatile SensorSnapshot current;
+    //the last HISTORY snapshots, by version modulo HISTORY
+    private final AtomicReferenceArray<SensorSnapshot> history = new AtomicReferenceArray<>(HISTORY);
+
+    public SnapshotSecurityRepository(SecurityRepository delegate) {
+        this.delegate = delegate;
+        PersistentSensorMap sensors = PersistentSensorMap.EMPTY;
+        for (Sensor sensor : delegate.getSensors()) {
+            sensors = sensors.with(new ReadOnlySensor(sensor));
+        }
+        publish(new SensorSnapshot(0, sensors));
+    }
+
+    /**
+     * @return the current version of the sensor set
+     */
+    public SensorSnapshot snapshot() {
+        return current;
+    }
+
+    /**
+     * @param version A version previously read from a snapshot
+     * @return ids of the sensors added, removed or changed since that version, or null if the version
+     * is too old to be compared and the whole current snapshot should be read instead
+     */
+    public Set<UUID> changesSince(long version) {
+        SensorSnapshot latest = current;
+        SensorSnapshot earlier = history.get((int) (version % HISTORY));
+        if (earlier == null || earlier.getVersion() != version || latest.getVersion() - version >= HISTORY) {
+            return null;
+        }
+        return latest.changesSince(earlier);
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        delegate.addSensor(sensor);
+        publish(current.with(new ReadOnlySensor(sensor)));
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        delegate.removeSensor(sensor);
+        publish(current.without(sensor.getSensorId()));
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        delegate.updateSensor(sensor);
+        publish(current.with(new ReadOnlySensor(sensor)));
+    }
+
+    /**
+     * Publishes a single new version for the whole batch.
+     */
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        delegate.updateSensors(sensors);
+        SensorSnapshot snapshot = current;
+        PersistentSensorMap map = snapshot.map();
+        for (Sensor sensor : sensors) {
+            map = map.with(new ReadOnlySensor(sensor));
+        }
+        publish(new SensorSnapshot(snapshot.getVersion() + 1, map));
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        delegate.setAlarmStatus(alarmStatus);
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        delegate.setArmingStatus(armingStatus);
+    }
+
+    /**
+     * @return the current snapshot's sensors, unmodifiable and not copied
+     */
+    @Override
+    public Set<Sensor> getSensors() {
+        return current.getSensors();
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return delegate.getActiveSensorCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return delegate.getActiveSensorCount(sensorType);
+    }
+
+    @Override
+    public int getActiveSensorCount(String zone) {
+        return delegate.getActiveSensorCount(zone);
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return delegate.getAlarmStatus();
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return delegate.getArmingStatus();
+    }
+
+    @Override
+    public synchronized void cleanAll() throws BackingStoreException {
+        delegate.cleanAll();
+        publish(new SensorSnapshot(current.getVersion() + 1, PersistentSensorMap.EMPTY));
+    }
+
+    private void publish(SensorSnapshot snapshot) {
+        history.set((int) (snapshot.getVersion() % HISTORY), snapshot);
+        current = snapshot;
+    }
+}
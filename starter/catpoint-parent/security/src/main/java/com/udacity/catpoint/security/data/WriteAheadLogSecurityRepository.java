@@ -0,0 +1,504 @@
+package com.udacity.catpoint.security.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * File-backed repository that keeps its state in memory and persists every change as a small binary
+ * record appended to a log, so a write costs the size of the change rather than the size of the whole
+ * sensor set. Once the log holds more records than there are sensors (and at least compactAfterRecords),
+ * it is compacted: the current state is written to a snapshot file and the log starts over. At startup
+ * the snapshot is loaded and the log replayed on top of it.
+ *
+ * Every record is framed as [payload length][CRC32 of payload][payload]. A record cut short by a crash,
+ * or one whose checksum doesn't match, ends the log; it and anything after it are discarded on recovery.
+ * The snapshot is a log of its own, written to a temporary file and moved into place, so it is always
+ * complete. Replaying the old log over a new snapshot, if a crash comes between the two, is harmless.
+ * A change reaches the in-memory state only after its record is in the log, so a failed write changes nothing.
+ */
+public class WriteAheadLogSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    static final String LOG_FILE = "sensors.log";
+    static final String SNAPSHOT_FILE = "sensors.snapshot";
+    private static final String SNAPSHOT_TEMP_FILE = SNAPSHOT_FILE + ".tmp";
+    private static final int DEFAULT_COMPACT_AFTER_RECORDS = 10_000;
+
+    //record kinds
+    private static final byte UPSERT = 1;
+    private static final byte DELETE = 2;
+    private static final byte ALARM = 3;
+    private static final byte ARMING = 4;
+
+    private static final int FRAME_HEADER = Integer.BYTES * 2;
+    //names and zones are written with a short length, so no record can legitimately be larger
+    private static final int MAX_PAYLOAD = 1 + 16 + 2 + 2 * (Short.BYTES + 0xFFFF);
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final SensorType[] SENSOR_TYPES = SensorType.values();
+
+    private final Path directory;
+    private final boolean force;
+    private final int compactAfterRecords;
+    private final FileChannel log;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer out = ByteBuffer.allocate(FLUSH_THRESHOLD);
+    private long logRecords;
+
+    private final Map<UUID, Sensor> sensors = new HashMap<>();
+    private final SensorCounters activeSensors = new SensorCounters();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    /**
+     * Opens the repository in the directory, creating it if needed. Writes reach the operating system
+     * before each call returns, so they survive the process crashing but not the machine.
+     */
+    public WriteAheadLogSecurityRepository(Path directory) {
+        this(directory, false, DEFAULT_COMPACT_AFTER_RECORDS);
+    }
+
+    /**
+     * @param directory Where the log and snapshot files live
+     * @param force True to flush every write to the storage device before returning, so it survives power loss
+     * @param compactAfterRecords The log is never compacted while it holds fewer records than this
+     */
+    public WriteAheadLogSecurityRepository(Path directory, boolean force, int compactAfterRecords) {
+        this.directory = directory;
+        this.force = force;
+        this.compactAfterRecords = compactAfterRecords;
+        try {
+            Files.createDirectories(directory);
+            Files.deleteIfExists(directory.resolve(SNAPSHOT_TEMP_FILE));
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            if (Files.exists(snapshot)) {
+                try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                    replay(channel);
+                }
+                logRecords = 0;
+            }
+            log = FileChannel.open(directory.resolve(LOG_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long end = replay(log);
+            //drop a torn or corrupt tail, so new records follow the last good one
+            if (log.size() > end) {
+                log.truncate(end);
+            }
+            log.position(end);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to open sensor log in " + directory, ioe);
+        }
+    }
+
+    @Override
+    public synchronized void addSensor(Sensor sensor) {
+        encodeUpsert(sensor);
+        append();
+        sensors.put(sensor.getSensorId(), sensor);
+        activeSensors.track(sensor);
+        appended(1);
+    }
+
+    @Override
+    public synchronized void removeSensor(Sensor sensor) {
+        encodeDelete(sensor.getSensorId());
+        append();
+        sensors.remove(sensor.getSensorId());
+        activeSensors.untrack(sensor);
+        appended(1);
+    }
+
+    @Override
+    public synchronized void updateSensor(Sensor sensor) {
+        encodeUpsert(sensor);
+        append();
+        sensors.put(sensor.getSensorId(), sensor);
+        activeSensors.track(sensor);
+        appended(1);
+    }
+
+    /**
+     * Appends the whole batch with a single write, and a single flush when forcing writes.
+     */
+    @Override
+    public synchronized void updateSensors(Collection<Sensor> sensors) {
+        try {
+            for (Sensor sensor : sensors) {
+                encodeUpsert(sensor);
+            }
+        } catch (RuntimeException e) {
+            //none of the batch is written if one sensor can't be encoded
+            out.clear();
+            throw e;
+        }
+        append();
+        for (Sensor sensor : sensors) {
+            this.sensors.put(sensor.getSensorId(), sensor);
+            activeSensors.track(sensor);
+        }
+        appended(sensors.size());
+    }
+
+    @Override
+    public synchronized void setAlarmStatus(AlarmStatus alarmStatus) {
+        encodeStatus(ALARM, alarmStatus.ordinal());
+        append();
+        this.alarmStatus = alarmStatus;
+        appended(1);
+    }
+
+    @Override
+    public synchronized void setArmingStatus(ArmingStatus armingStatus) {
+        encodeStatus(ARMING, armingStatus.ordinal());
+        append();
+        this.armingStatus = armingStatus;
+        appended(1);
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return new HashSet<>(sensors.values());
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount() {
+        return activeSensors.getActiveCount();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(SensorType sensorType) {
+        return activeSensors.getActiveCount(sensorType);
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(String zone) {
+        return activeSensors.getActiveCount(zone);
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public synchronized void cleanAll() {
+        sensors.clear();
+        activeSensors.clear();
+        alarmStatus = AlarmStatus.NO_ALARM;
+        armingStatus = ArmingStatus.DISARMED;
+        try {
+            Files.deleteIfExists(directory.resolve(SNAPSHOT_FILE));
+            log.truncate(0);
+            log.position(0);
+            logRecords = 0;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to clear sensor log in " + directory, ioe);
+        }
+    }
+
+    /**
+     * Writes the current state to a new snapshot and empties the log. Runs on its own once the log
+     * grows past the compaction threshold.
+     */
+    public synchronized void compact() {
+        Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+        out.clear();
+        try {
+            try (FileChannel snapshot = FileChannel.open(temp,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                encodeStatus(ALARM, alarmStatus.ordinal());
+                encodeStatus(ARMING, armingStatus.ordinal());
+                for (Sensor sensor : sensors.values()) {
+                    encodeUpsert(sensor);
+                    if (out.position() >= FLUSH_THRESHOLD) {
+                        write(snapshot);
+                    }
+                }
+                write(snapshot);
+                snapshot.force(true);
+            }
+            Files.move(temp, directory.resolve(SNAPSHOT_FILE),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            log.truncate(0);
+            log.position(0);
+            logRecords = 0;
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Unable to compact sensor log in " + directory, ioe);
+        }
+    }
+
+    /**
+     * @return number of records in the log since the last compaction
+     */
+    public synchronized long getLogRecordCount() {
+        return logRecords;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.close();
+    }
+
+    /**
+     * Writes the encoded records to the log. Callers change their in-memory state only once this returns,
+     * so a failed write leaves both the state and the log as they were.
+     */
+    private void append() {
+        long end = -1;
+        try {
+            end = log.position();
+            write(log);
+            if (force) {
+                log.force(false);
+            }
+        } catch (IOException ioe) {
+            UncheckedIOException failure = new UncheckedIOException("Unable to append to sensor log in " + directory, ioe);
+            //drop whatever part of the records reached the log, so later records don't follow a torn one
+            if (end >= 0) {
+                try {
+                    log.truncate(end);
+                    log.position(end);
+                } catch (IOException truncateFailure) {
+                    failure.addSuppressed(truncateFailure);
+                }
+            }
+            throw failure;
+        }
+    }
+
+    /**
+     * Counts records applied after a successful append, then compacts if the log has grown past the threshold.
+     */
+    private void appended(int records) {
+        logRecords += records;
+        if (logRecords >= Math.max(compactAfterRecords, sensors.size())) {
+            compact();
+        }
+    }
+
+    /**
+     * Writes out's records to the channel. The buffer is emptied even when the write fails, so a partly
+     * written record is never written again in front of the next ones.
+     */
+    private void write(FileChannel channel) throws IOException {
+        out.flip();
+        try {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        } finally {
+            out.clear();
+        }
+    }
+
+    private void encodeUpsert(Sensor sensor) {
+        byte[] name = sensor.getName() == null ? null : sensor.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] zone = sensor.getZone().getBytes(StandardCharsets.UTF_8);
+        //checked before the record is started, so a rejected sensor leaves no partial record in out
+        checkLength(name);
+        checkLength(zone);
+        int start = beginRecord(1 + 16 + 2 + Short.BYTES * 2 + (name == null ? 0 : name.length) + zone.length);
+        out.put(UPSERT);
+        out.putLong(sensor.getSensorId().getMostSignificantBits());
+        out.putLong(sensor.getSensorId().getLeastSignificantBits());
+        out.put((byte) sensor.getSensorType().ordinal());
+        out.put((byte) (Boolean.TRUE.equals(sensor.getActive()) ? 1 : 0));
+        putString(name);
+        putString(zone);
+        endRecord(start);
+    }
+
+    private void encodeDelete(UUID sensorId) {
+        int start = beginRecord(1 + 16);
+        out.put(DELETE);
+        out.putLong(sensorId.getMostSignificantBits());
+        out.putLong(sensorId.getLeastSignificantBits());
+        endRecord(start);
+    }
+
+    private void encodeStatus(byte kind, int ordinal) {
+        int start = beginRecord(2);
+        out.put(kind);
+        out.put((byte) ordinal);
+        endRecord(start);
+    }
+
+    private static void checkLength(byte[] bytes) {
+        if (bytes != null && bytes.length >= 0xFFFF) {
+            throw new IllegalArgumentException("Sensor names and zones must be shorter than 65535 bytes");
+        }
+    }
+
+    private void putString(byte[] bytes) {
+        if (bytes == null) {
+            out.putShort((short) -1);
+            return;
+        }
+        out.putShort((short) bytes.length);
+        out.put(bytes);
+    }
+
+    /**
+     * Makes room for a record and skips its header, filled in by endRecord.
+     * @return position of the record's header
+     */
+    private int beginRecord(int maxPayload) {
+        if (out.remaining() < FRAME_HEADER + maxPayload) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + FRAME_HEADER + maxPayload));
+            out.flip();
+            larger.put(out);
+            out = larger;
+        }
+        int start = out.position();
+        out.position(start + FRAME_HEADER);
+        return start;
+    }
+
+    private void endRecord(int start) {
+        int length = out.position() - start - FRAME_HEADER;
+        crc.reset();
+        crc.update(out.array(), start + FRAME_HEADER, length);
+        out.putInt(start, length);
+        out.putInt(start + Integer.BYTES, (int) crc.getValue());
+    }
+
+    /**
+     * Applies every intact record in the file, from the start, counting them in logRecords.
+     * @return position just past the last intact record
+     */
+    private long replay(FileChannel channel) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(FLUSH_THRESHOLD).flip();
+        byte[] payload = new byte[256];
+        long position = 0;
+        long size = channel.size();
+        channel.position(0);
+        while (true) {
+            if (!fill(channel, in, FRAME_HEADER)) {
+                return position;
+            }
+            int length = in.getInt();
+            int checksum = in.getInt();
+            if (length <= 0 || length > MAX_PAYLOAD || position + FRAME_HEADER + length > size) {
+                return position;
+            }
+            if (in.capacity() < length) {
+                in = grow(in, length);
+            }
+            if (!fill(channel, in, length)) {
+                return position;
+            }
+            if (payload.length < length) {
+                payload = new byte[Math.max(length, payload.length * 2)];
+            }
+            in.get(payload, 0, length);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum || !apply(ByteBuffer.wrap(payload, 0, length))) {
+                return position;
+            }
+            position += FRAME_HEADER + length;
+            logRecords++;
+        }
+    }
+
+    /**
+     * Makes sure the buffer, ready for reading, holds at least the needed bytes.
+     * @return false if the file ends first
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer in, int needed) throws IOException {
+        if (in.remaining() >= needed) {
+            return true;
+        }
+        in.compact();
+        while (in.position() < needed) {
+            if (channel.read(in) < 0) {
+                in.flip();
+                return false;
+            }
+        }
+        in.flip();
+        return true;
+    }
+
+    private static ByteBuffer grow(ByteBuffer in, int needed) {
+        ByteBuffer larger = ByteBuffer.allocate(needed);
+        larger.put(in);
+        larger.flip();
+        return larger;
+    }
+
+    /**
+     * @return false if the record doesn't make sense, which ends the log like a bad checksum
+     */
+    private boolean apply(ByteBuffer record) {
+        switch (record.get()) {
+            case UPSERT -> {
+                Sensor sensor = new Sensor(new UUID(record.getLong(), record.getLong()));
+                int type = record.get();
+                if (type < 0 || type >= SENSOR_TYPES.length) {
+                    return false;
+                }
+                sensor.setSensorType(SENSOR_TYPES[type]);
+                sensor.setActive(record.get() != 0);
+                sensor.setName(getString(record));
+                sensor.setZone(getString(record));
+                sensors.put(sensor.getSensorId(), sensor);
+                activeSensors.track(sensor);
+            }
+            case DELETE -> {
+                Sensor sensor = sensors.remove(new UUID(record.getLong(), record.getLong()));
+                if (sensor != null) {
+                    activeSensors.untrack(sensor);
+                }
+            }
+            case ALARM -> {
+                int ordinal = record.get();
+                if (ordinal < 0 || ordinal >= ALARM_STATUSES.length) {
+                    return false;
+                }
+                alarmStatus = ALARM_STATUSES[ordinal];
+            }
+            case ARMING -> {
+                int ordinal = record.get();
+                if (ordinal < 0 || ordinal >= ARMING_STATUSES.length) {
+                    return false;
+                }
+                armingStatus = ARMING_STATUSES[ordinal];
+            }
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getString(ByteBuffer record) {
+        int length = record.getShort() & 0xFFFF;
+        if (length == 0xFFFF) {
+            return null;
+        }
+        String value = new String(record.array(), record.arrayOffset() + record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+}
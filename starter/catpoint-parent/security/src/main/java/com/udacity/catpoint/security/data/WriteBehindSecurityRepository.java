@@ -0,0 +1,440 @@
+package com.udacity.catpoint.security.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.prefs.BackingStoreException;
+
+/**
+ * SecurityRepository decorator that takes persistence off the caller's thread. Reads are answered from
+ * memory and writes return as soon as memory is updated; the writes are queued and later sent to the
+ * wrapped repository in batches. Queued writes to the same sensor are merged, so a sensor toggled many
+ * times between flushes is written once, and all queued sensor updates go to the wrapped repository's
+ * updateSensors as one batch.
+ *
+ * The queue holds copies of the sensors as they were when written. Call {@link #close()} (or
+ * {@link #closeOnShutdown()}) so queued writes are flushed before the application exits. Closing
+ * doesn't close the wrapped repository.
+ *
+ * In INTERVAL mode a failed background flush is logged when it starts failing and again when it
+ * recovers; the writes stay queued and are retried every interval. Writes close() can't flush are logged
+ * as lost.
+ */
+public class WriteBehindSecurityRepository implements SecurityRepository, AutoCloseable {
+
+    /**
+     * When queued writes are sent to the wrapped repository.
+     */
+    public enum Durability {
+        //every write is flushed before it returns, together with any others queued meanwhile
+        SYNC,
+        //a background thread flushes once per interval
+        INTERVAL,
+        //only flush() and close() flush
+        ON_CLOSE
+    }
+
+    private enum Kind {
+        ADD,
+        UPDATE,
+        REMOVE,
+        //removed and added again since the last flush
+        REPLACE
+    }
+
+    private record Write(Kind kind, Sensor sensor) {
+    }
+
+    private final Logger log = LoggerFactory.getLogger(WriteBehindSecurityRepository.class);
+
+    private final SecurityRepository delegate;
+    private final Durability durability;
+    private final ScheduledExecutorService flusher;
+    //serializes flushes, so batches reach the wrapped repository in order
+    private final Object flushLock = new Object();
+
+    //memory, guarded by this
+    private final Map<UUID, Sensor> sensors = new HashMap<>();
+    private final SensorCounters activeSensors = new SensorCounters();
+    private AlarmStatus alarmStatus;
+    private ArmingStatus armingStatus;
+
+    //writes not yet flushed, guarded by this
+    private Map<UUID, Write> pending = new LinkedHashMap<>();
+    private AlarmStatus pendingAlarmStatus;
+    private ArmingStatus pendingArmingStatus;
+
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private final LongAccumulator maxFlushNanos = new LongAccumulator(Math::max, 0L);
+    //background flushes failed in a row; only used on the flusher thread
+    private long failingFlushes;
+
+    /**
+     * @param delegate Repository the writes are sent to; its current state is read once, here
+     * @param durability When queued writes are flushed
+     * @param flushIntervalMillis Time between flushes in INTERVAL mode, ignored otherwise
+     */
+    public WriteBehindSecurityRepository(SecurityRepository delegate, Durability durability, long flushIntervalMillis) {
+        this.delegate = delegate;
+        this.durability = durability;
+        for (Sensor sensor : delegate.getSensors()) {
+            sensors.put(sensor.getSensorId(), sensor);
+            activeSensors.track(sensor);
+        }
+        alarmStatus = delegate.getAlarmStatus();
+        armingStatus = delegate.getArmingStatus();
+        if (durability == Durability.INTERVAL) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "repository-write-behind");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        synchronized (this) {
+            Kind kind = sensors.containsKey(sensor.getSensorId()) ? Kind.UPDATE : Kind.ADD;
+            sensors.put(sensor.getSensorId(), sensor);
+            activeSensors.track(sensor);
+            enqueue(kind, sensor);
+        }
+        written();
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        synchronized (this) {
+            sensors.remove(sensor.getSensorId());
+            activeSensors.untrack(sensor);
+            enqueue(Kind.REMOVE, sensor);
+        }
+        written();
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        synchronized (this) {
+            sensors.put(sensor.getSensorId(), sensor);
+            activeSensors.track(sensor);
+            enqueue(Kind.UPDATE, sensor);
+        }
+        written();
+    }
+
+    @Override
+    public void updateSensors(Collection<Sensor> sensors) {
+        synchronized (this) {
+            for (Sensor sensor : sensors) {
+                this.sensors.put(sensor.getSensorId(), sensor);
+                activeSensors.track(sensor);
+                enqueue(Kind.UPDATE, sensor);
+            }
+        }
+        written();
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        synchronized (this) {
+            this.alarmStatus = alarmStatus;
+            countQueued(pendingAlarmStatus != null);
+            pendingAlarmStatus = alarmStatus;
+        }
+        written();
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        synchronized (this) {
+            this.armingStatus = armingStatus;
+            countQueued(pendingArmingStatus != null);
+            pendingArmingStatus = armingStatus;
+        }
+        written();
+    }
+
+    @Override
+    public synchronized Set<Sensor> getSensors() {
+        return new HashSet<>(sensors.values());
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount() {
+        return activeSensors.getActiveCount();
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(SensorType sensorType) {
+        return activeSensors.getActiveCount(sensorType);
+    }
+
+    @Override
+    public synchronized int getActiveSensorCount(String zone) {
+        return activeSensors.getActiveCount(zone);
+    }
+
+    @Override
+    public synchronized AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public synchronized ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    /**
+     * Drops the queued writes and clears the wrapped repository right away, whatever the durability.
+     */
+    @Override
+    public void cleanAll() throws BackingStoreException {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pending = new LinkedHashMap<>();
+                pendingAlarmStatus = null;
+                pendingArmingStatus = null;
+                sensors.clear();
+                activeSensors.clear();
+            }
+            delegate.cleanAll();
+        }
+    }
+
+    /**
+     * Sends every queued write to the wrapped repository. If the wrapped repository fails, the writes
+     * go back on the queue, behind any newer writes to the same sensors, and the failure is rethrown.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<UUID, Write> writes;
+            AlarmStatus alarm;
+            ArmingStatus arming;
+            synchronized (this) {
+                if (pending.isEmpty() && pendingAlarmStatus == null && pendingArmingStatus == null) {
+                    return;
+                }
+                writes = pending;
+                alarm = pendingAlarmStatus;
+                arming = pendingArmingStatus;
+                pending = new LinkedHashMap<>();
+                pendingAlarmStatus = null;
+                pendingArmingStatus = null;
+            }
+            long start = System.nanoTime();
+            try {
+                apply(writes, alarm, arming);
+            } catch (RuntimeException e) {
+                failedFlushes.increment();
+                requeue(writes, alarm, arming);
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+            flushes.increment();
+            flushed.add(writes.size() + (alarm != null ? 1 : 0) + (arming != null ? 1 : 0));
+            totalFlushNanos.add(elapsed);
+            maxFlushNanos.accumulate(elapsed);
+        }
+    }
+
+    /**
+     * Stops the background flushes and flushes whatever is still queued.
+     */
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Closing with {} writes not flushed to {}; they are lost", getQueueDepth(), delegate, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Closes the repository when the JVM shuts down, so writes still queued at exit aren't lost.
+     */
+    public void closeOnShutdown() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "repository-write-behind-close"));
+    }
+
+    /**
+     * @return number of writes waiting to be flushed, after merging
+     */
+    public synchronized int getQueueDepth() {
+        return pending.size() + (pendingAlarmStatus != null ? 1 : 0) + (pendingArmingStatus != null ? 1 : 0);
+    }
+
+    public long getQueuedWriteCount() {
+        return queued.sum();
+    }
+
+    /**
+     * @return number of writes folded into a write already queued for the same sensor or status
+     */
+    public long getMergedWriteCount() {
+        return merged.sum();
+    }
+
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    /**
+     * @return number of merged writes sent to the wrapped repository
+     */
+    public long getFlushedWriteCount() {
+        return flushed.sum();
+    }
+
+    public long getFailedFlushCount() {
+        return failedFlushes.sum();
+    }
+
+    public double getMeanFlushLatencyMillis() {
+        long count = flushes.sum();
+        return count == 0 ? 0.0 : (double) totalFlushNanos.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxFlushLatencyMillis() {
+        return (double) maxFlushNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private void written() {
+        if (durability == Durability.SYNC) {
+            flush();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            //the writes are back on the queue and are tried again next interval
+            if (failingFlushes++ == 0) {
+                log.warn("Flush to {} failed, {} writes queued and retried every interval", delegate, getQueueDepth(), e);
+            } else {
+                log.debug("Flush to {} failed again, {} writes queued", delegate, getQueueDepth(), e);
+            }
+            return;
+        }
+        if (failingFlushes > 0) {
+            log.info("Flush to {} recovered after {} failed attempts", delegate, failingFlushes);
+            failingFlushes = 0;
+        }
+    }
+
+    private void countQueued(boolean mergedWithQueued) {
+        queued.increment();
+        if (mergedWithQueued) {
+            merged.increment();
+        }
+    }
+
+    private void enqueue(Kind kind, Sensor sensor) {
+        countQueued(queue(new Write(kind, sensor.copy())));
+    }
+
+    /**
+     * Queues the write, merged with any write already queued for its sensor.
+     * @return true if it was merged
+     */
+    private boolean queue(Write write) {
+        UUID sensorId = write.sensor().getSensorId();
+        Write older = pending.get(sensorId);
+        Write combined = older == null ? write : merge(older, write);
+        if (combined == null) {
+            //added and removed again before reaching the wrapped repository
+            pending.remove(sensorId);
+        } else {
+            pending.put(sensorId, combined);
+        }
+        return older != null;
+    }
+
+    /**
+     * @return one write with the effect of older followed by newer, or null if together they do nothing
+     */
+    private static Write merge(Write older, Write newer) {
+        boolean removed = newer.kind() == Kind.REMOVE;
+        Kind kind = switch (older.kind()) {
+            case ADD -> removed ? null : Kind.ADD;
+            case UPDATE -> removed ? Kind.REMOVE : Kind.UPDATE;
+            case REMOVE, REPLACE -> removed ? Kind.REMOVE : Kind.REPLACE;
+        };
+        return kind == null ? null : new Write(kind, newer.sensor());
+    }
+
+    private void apply(Map<UUID, Write> writes, AlarmStatus alarm, ArmingStatus arming) {
+        List<Sensor> updates = new ArrayList<>();
+        for (Write write : writes.values()) {
+            switch (write.kind()) {
+                case ADD -> delegate.addSensor(write.sensor());
+                case UPDATE -> updates.add(write.sensor());
+                case REMOVE -> delegate.removeSensor(write.sensor());
+                case REPLACE -> {
+                    delegate.removeSensor(write.sensor());
+                    delegate.addSensor(write.sensor());
+                }
+            }
+        }
+        if (!updates.isEmpty()) {
+            delegate.updateSensors(updates);
+        }
+        if (alarm != null) {
+            delegate.setAlarmStatus(alarm);
+        }
+        if (arming != null) {
+            delegate.setArmingStatus(arming);
+        }
+    }
+
+    /**
+     * Puts the writes of a failed flush back on the queue, ahead of anything written since.
+     */
+    private synchronized void requeue(Map<UUID, Write> writes, AlarmStatus alarm, ArmingStatus arming) {
+        Map<UUID, Write> newer = pending;
+        pending = new LinkedHashMap<>();
+        for (Write write : writes.values()) {
+            //the failed flush may have added the sensor already, so a later remove must still reach the wrapped repository
+            pending.put(write.sensor().getSensorId(), write.kind() == Kind.ADD ? new Write(Kind.REPLACE, write.sensor()) : write);
+        }
+        newer.values().forEach(this::queue);
+        if (pendingAlarmStatus == null) {
+            pendingAlarmStatus = alarm;
+        }
+        if (pendingArmingStatus == null) {
+            pendingArmingStatus = arming;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+
+/**
+ * The alarm rules as a transition table. For every combination of arming status, alarm status and
+ * event, the table holds the next arming and alarm status and the side effects SecurityService has
+ * to carry out. Looking up a transition is one array read, with no branching on the rules and no
+ * allocation.
+ *
+ * A transition is packed into an int; use the static accessors to read it.
+ */
+public final class AlarmStateMachine {
+
+    /**
+     * Things that can happen to the system. Conditions the rules depend on, such as whether other
+     * sensors are still active, are part of the event, so the table needs no other input.
+     */
+    public enum Event {
+        SENSOR_ACTIVATED,
+        //a sensor was deactivated while at least one other sensor is still active
+        SENSOR_DEACTIVATED,
+        LAST_SENSOR_DEACTIVATED,
+        CAT_DETECTED_SENSORS_ACTIVE,
+        CAT_DETECTED_NO_SENSORS_ACTIVE,
+        NO_CAT_SENSORS_ACTIVE,
+        NO_CAT_NO_SENSORS_ACTIVE,
+        DISARM,
+        ARM_HOME,
+        ARM_HOME_CAT_DETECTED,
+        ARM_AWAY
+    }
+
+    private static final ArmingStatus[] ARMING_STATUSES = ArmingStatus.values();
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+    private static final Event[] EVENTS = Event.values();
+
+    //packed transition layout
+    private static final int ALARM_MASK = 0x3;
+    private static final int ARMING_SHIFT = 2;
+    private static final int ARMING_MASK = 0x3;
+    private static final int SET_ALARM = 1 << 4;
+    private static final int RESET_SENSORS = 1 << 5;
+
+    private static final int[] TABLE = new int[ARMING_STATUSES.length * ALARM_STATUSES.length * EVENTS.length];
+
+    static {
+        for (ArmingStatus arming : ARMING_STATUSES) {
+            for (AlarmStatus alarm : ALARM_STATUSES) {
+                for (Event event : EVENTS) {
+                    TABLE[index(arming, alarm, event)] = rule(arming, alarm, event);
+                }
+            }
+        }
+    }
+
+    private AlarmStateMachine() {
+    }
+
+    /**
+     * @return the packed transition for the event in the given state
+     */
+    public static int transition(ArmingStatus armingStatus, AlarmStatus alarmStatus, Event event) {
+        return TABLE[index(armingStatus, alarmStatus, event)];
+    }
+
+    public static AlarmStatus nextAlarmStatus(int transition) {
+        return ALARM_STATUSES[transition & ALARM_MASK];
+    }
+
+    public static ArmingStatus nextArmingStatus(int transition) {
+        return ARMING_STATUSES[(transition >>> ARMING_SHIFT) & ARMING_MASK];
+    }
+
+    /**
+     * @return true if the alarm status has to be set, and listeners notified, even if it doesn't change
+     */
+    public static boolean setsAlarmStatus(int transition) {
+        return (transition & SET_ALARM) != 0;
+    }
+
+    /**
+     * @return true if every sensor has to be deactivated
+     */
+    public static boolean resetsSensors(int transition) {
+        return (transition & RESET_SENSORS) != 0;
+    }
+
+    public static Event catScan(boolean cat, boolean anySensorActive) {
+        if (cat) {
+            return anySensorActive ? Event.CAT_DETECTED_SENSORS_ACTIVE : Event.CAT_DETECTED_NO_SENSORS_ACTIVE;
+        }
+        return anySensorActive ? Event.NO_CAT_SENSORS_ACTIVE : Event.NO_CAT_NO_SENSORS_ACTIVE;
+    }
+
+    public static Event arming(ArmingStatus armingStatus, boolean catDetected) {
+        return switch (armingStatus) {
+            case DISARMED -> Event.DISARM;
+            case ARMED_HOME -> catDetected ? Event.ARM_HOME_CAT_DETECTED : Event.ARM_HOME;
+            case ARMED_AWAY -> Event.ARM_AWAY;
+        };
+    }
+
+    private static int index(ArmingStatus arming, AlarmStatus alarm, Event event) {
+        return (arming.ordinal() * ALARM_STATUSES.length + alarm.ordinal()) * EVENTS.length + event.ordinal();
+    }
+
+    /**
+     * The rules the table is built from. Only run while building the table.
+     */
+    private static int rule(ArmingStatus arming, AlarmStatus alarm, Event event) {
+        return switch (event) {
+            //no problem if the system is disarmed
+            case SENSOR_ACTIVATED -> arming == ArmingStatus.DISARMED
+                    ? unchanged(arming, alarm)
+                    : setAlarm(arming, alarm == AlarmStatus.NO_ALARM ? AlarmStatus.PENDING_ALARM : AlarmStatus.ALARM);
+            case SENSOR_DEACTIVATED, NO_CAT_SENSORS_ACTIVE -> unchanged(arming, alarm);
+            case LAST_SENSOR_DEACTIVATED ->
+                    setAlarm(arming, alarm == AlarmStatus.ALARM ? AlarmStatus.PENDING_ALARM : AlarmStatus.NO_ALARM);
+            case CAT_DETECTED_SENSORS_ACTIVE -> arming == ArmingStatus.ARMED_HOME
+                    ? setAlarm(arming, AlarmStatus.ALARM)
+                    : unchanged(arming, alarm);
+            case CAT_DETECTED_NO_SENSORS_ACTIVE ->
+                    setAlarm(arming, arming == ArmingStatus.ARMED_HOME ? AlarmStatus.ALARM : AlarmStatus.NO_ALARM);
+            case NO_CAT_NO_SENSORS_ACTIVE -> setAlarm(arming, AlarmStatus.NO_ALARM);
+            case DISARM -> setAlarm(ArmingStatus.DISARMED, AlarmStatus.NO_ALARM);
+            case ARM_HOME_CAT_DETECTED -> setAlarm(ArmingStatus.ARMED_HOME, AlarmStatus.ALARM) | RESET_SENSORS;
+            case ARM_HOME -> unchanged(ArmingStatus.ARMED_HOME, alarm) | RESET_SENSORS;
+            case ARM_AWAY -> unchanged(ArmingStatus.ARMED_AWAY, alarm) | RESET_SENSORS;
+        };
+    }
+
+    private static int unchanged(ArmingStatus arming, AlarmStatus alarm) {
+        return (arming.ordinal() << ARMING_SHIFT) | alarm.ordinal();
+    }
+
+    private static int setAlarm(ArmingStatus arming, AlarmStatus alarm) {
+        return unchanged(arming, alarm) | SET_ALARM;
+    }
+}
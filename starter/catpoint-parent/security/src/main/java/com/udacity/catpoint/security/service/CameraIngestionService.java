@@ -0,0 +1,298 @@
+package com.udacity.catpoint.security.service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless camera ingestion. Watches one directory per camera for new image files, decodes them on a
+ * worker pool and scans them on a single processing thread. Scan results are applied to the
+ * SecurityService through a SecurityEventLoop, so they are ordered with any other changes made through it.
+ *
+ * Every camera has its own bounded queue of decoded frames. When a camera produces frames faster than
+ * they can be scanned, the oldest queued frame is dropped, so the system always works on recent frames
+ * and memory use stays bounded.
+ *
+ * A file is only decoded once it has had no create or modify events for a settle period, so a frame
+ * that is still being written isn't read half way and a burst of events decodes it once. Frames from
+ * one camera may finish decoding out of order on the worker pool; a frame older than one already queued
+ * for its camera is discarded, so each camera's frames reach the SecurityService in the order they settled.
+ */
+public class CameraIngestionService implements AutoCloseable {
+
+    private static final long DEFAULT_SETTLE_MILLIS = 100;
+
+    private final SecurityEventLoop eventLoop;
+    //true when the loop was created here rather than shared, so closing ingestion closes it too
+    private final boolean ownsEventLoop;
+    private final int queueCapacity;
+    private final long settleNanos;
+    private final WatchService watchService;
+    private final ExecutorService decoders;
+    private final Thread watcherThread;
+    private final Thread processorThread;
+
+    private final Map<WatchKey, Camera> camerasByKey = new ConcurrentHashMap<>();
+    private final List<Camera> cameras = new CopyOnWriteArrayList<>();
+    //files with recent events, in the order they were first seen; only used by the watcher thread
+    private final Map<Path, PendingFile> pendingFiles = new LinkedHashMap<>();
+    private final Semaphore framesAvailable = new Semaphore(0);
+    private volatile boolean running = true;
+
+    /**
+     * @param securityService Service that scans the frames
+     * @param decodeThreads Number of threads used to decode image files
+     * @param queueCapacity Maximum number of decoded frames waiting to be scanned, per camera
+     */
+    public CameraIngestionService(SecurityService securityService, int decodeThreads, int queueCapacity) throws IOException {
+        this(securityService, decodeThreads, queueCapacity, DEFAULT_SETTLE_MILLIS);
+    }
+
+    /**
+     * @param securityService Service that scans the frames, through an event loop of its own
+     * @param decodeThreads Number of threads used to decode image files
+     * @param queueCapacity Maximum number of decoded frames waiting to be scanned, per camera
+     * @param settleMillis How long a file must go without events before it is decoded
+     */
+    public CameraIngestionService(SecurityService securityService, int decodeThreads, int queueCapacity,
+                                  long settleMillis) throws IOException {
+        this(new SecurityEventLoop(securityService), true, decodeThreads, queueCapacity, settleMillis);
+    }
+
+    /**
+     * @param eventLoop Loop that applies the scan results; it stays open when ingestion is closed
+     * @param decodeThreads Number of threads used to decode image files
+     * @param queueCapacity Maximum number of decoded frames waiting to be scanned, per camera
+     */
+    public CameraIngestionService(SecurityEventLoop eventLoop, int decodeThreads, int queueCapacity) throws IOException {
+        this(eventLoop, false, decodeThreads, queueCapacity, DEFAULT_SETTLE_MILLIS);
+    }
+
+    private CameraIngestionService(SecurityEventLoop eventLoop, boolean ownsEventLoop, int decodeThreads,
+                                   int queueCapacity, long settleMillis) throws IOException {
+        this.eventLoop = eventLoop;
+        this.ownsEventLoop = ownsEventLoop;
+        this.queueCapacity = queueCapacity;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMillis);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.decoders = Executors.newFixedThreadPool(decodeThreads, r -> {
+            Thread thread = new Thread(r, "camera-decoder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watcherThread = new Thread(this::watch, "camera-watcher");
+        this.processorThread = new Thread(this::process, "camera-processor");
+        watcherThread.setDaemon(true);
+        processorThread.setDaemon(true);
+    }
+
+    /**
+     * Starts watching the directory for new frames from the camera.
+     * @param cameraId Name used for the camera's statistics and passed to the SecurityService
+     * @param directory Directory the camera writes its image files to
+     */
+    public void addCamera(String cameraId, Path directory) throws IOException {
+        WatchKey key = directory.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Camera camera = new Camera(cameraId, directory, new ArrayBlockingQueue<>(queueCapacity));
+        camerasByKey.put(key, camera);
+        cameras.add(camera);
+    }
+
+    public void start() {
+        watcherThread.start();
+        processorThread.start();
+    }
+
+    /**
+     * @return current statistics for every camera
+     */
+    public List<CameraStats> getStats() {
+        return cameras.stream().map(Camera::stats).toList();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        watchService.close();
+        decoders.shutdownNow();
+        processorThread.interrupt();
+        if (ownsEventLoop) {
+            try {
+                eventLoop.close();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void watch() {
+        //wake up a few times per settle period while files are waiting to settle
+        long pollNanos = Math.max(1, settleNanos / 4);
+        try {
+            while (running) {
+                WatchKey key = pendingFiles.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(pollNanos, TimeUnit.NANOSECONDS);
+                if (key != null) {
+                    Camera camera = camerasByKey.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (camera != null && event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                            Path file = camera.directory().resolve((Path) event.context());
+                            //every event restarts the file's settle period
+                            PendingFile pending = pendingFiles.get(file);
+                            if (pending == null) {
+                                pendingFiles.put(file, new PendingFile(camera, file, System.nanoTime()));
+                            } else {
+                                pending.lastEventNanos = System.nanoTime();
+                            }
+                        }
+                    }
+                    key.reset();
+                }
+                handOffSettled();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //shutting down
+        }
+    }
+
+    /**
+     * Sends every file that has had no events for the settle period to the decoders, numbering each
+     * camera's files in hand-off order. The entry is removed only once the file is handed off, so an
+     * event that arrives while it is being decoded waits for the file to settle again.
+     */
+    private void handOffSettled() {
+        long now = System.nanoTime();
+        Iterator<PendingFile> it = pendingFiles.values().iterator();
+        while (it.hasNext()) {
+            PendingFile pending = it.next();
+            if (now - pending.lastEventNanos >= settleNanos) {
+                long sequence = pending.camera.handedOff().incrementAndGet();
+                decoders.execute(() -> decode(pending.camera, pending.file, sequence));
+                it.remove();
+            }
+        }
+    }
+
+    private void decode(Camera camera, Path file, long sequence) {
+        BufferedImage frame;
+        try {
+            frame = ImageIO.read(file.toFile());
+        } catch (IOException ioe) {
+            frame = null;
+        }
+        if (frame == null) {
+            //not an image, or still being written; a later modify event will pick it up
+            return;
+        }
+        camera.received().incrementAndGet();
+        boolean dropped = false;
+        synchronized (camera) {
+            if (sequence < camera.lastQueued().get()) {
+                //a newer frame from this camera finished decoding first
+                camera.dropped().incrementAndGet();
+                return;
+            }
+            camera.lastQueued().set(sequence);
+            while (!camera.queue().offer(frame)) {
+                if (camera.queue().poll() != null) {
+                    camera.dropped().incrementAndGet();
+                    dropped = true;
+                }
+            }
+        }
+        if (!dropped) {
+            framesAvailable.release();
+        }
+    }
+
+    private void process() {
+        int next = 0;
+        try {
+            while (running) {
+                framesAvailable.acquire();
+                //visit cameras round-robin so one busy camera can't starve the others
+                for (int i = 0; i < cameras.size(); i++) {
+                    Camera camera = cameras.get((next + i) % cameras.size());
+                    BufferedImage frame = camera.queue().poll();
+                    if (frame != null) {
+                        next = (next + i + 1) % cameras.size();
+                        try {
+                            //waiting for the result keeps the processed and failed counts accurate
+                            eventLoop.processImage(camera.cameraId(), frame).join();
+                            camera.processed().incrementAndGet();
+                        } catch (RuntimeException e) {
+                            //a failed scan shouldn't stop the other cameras
+                            camera.failed().incrementAndGet();
+                        }
+                        break;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            //shutting down
+        }
+    }
+
+    /**
+     * Snapshot of one camera's ingestion counters.
+     * @param received Frames decoded from the camera's directory
+     * @param processed Frames scanned by the SecurityService
+     * @param dropped Frames discarded because the camera's queue was full or a newer frame was already queued
+     * @param failed Frames whose scan threw an exception
+     * @param queueDepth Frames currently waiting to be scanned
+     * @param framesPerSecond Average number of frames scanned per second since the camera was added
+     */
+    public record CameraStats(String cameraId, long received, long processed, long dropped, long failed,
+                              int queueDepth, double framesPerSecond) {
+    }
+
+    private static final class PendingFile {
+        private final Camera camera;
+        private final Path file;
+        private long lastEventNanos;
+
+        PendingFile(Camera camera, Path file, long lastEventNanos) {
+            this.camera = camera;
+            this.file = file;
+            this.lastEventNanos = lastEventNanos;
+        }
+    }
+
+    private record Camera(String cameraId, Path directory, BlockingQueue<BufferedImage> queue,
+                          AtomicLong received, AtomicLong processed, AtomicLong dropped, AtomicLong failed,
+                          AtomicLong handedOff, AtomicLong lastQueued, long startNanos) {
+
+        Camera(String cameraId, Path directory, BlockingQueue<BufferedImage> queue) {
+            this(cameraId, directory, queue, new AtomicLong(), new AtomicLong(), new AtomicLong(), new AtomicLong(),
+                    new AtomicLong(), new AtomicLong(), System.nanoTime());
+        }
+
+        CameraStats stats() {
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            return new CameraStats(cameraId, received.get(), processed.get(), dropped.get(), failed.get(),
+                    queue.size(), seconds > 0 ? processed.get() / seconds : 0.0);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.Sensor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+
+/**
+ * Makes SecurityService safe to drive from many threads. Every state change is submitted as an event
+ * and applied, one at a time and in submission order, by a single writer thread that owns the
+ * SecurityService. The state machine rules themselves are unchanged; they simply never run concurrently.
+ *
+ * Events travel through a ring buffer whose slots are allocated once, up front. Producers claim a slot
+ * with one compare-and-set, fill it in and publish it; nothing on the path between producers and the
+ * writer thread takes a lock. A producer that finds the ring full waits for the writer to free a slot.
+ * Closing sets a flag in the same counter, so every claim either happens before the close, and is
+ * applied before the writer stops, or is refused.
+ *
+ * Callers get a future, or pass a callback, completed on the writer thread with the alarm status the
+ * event left behind. Callbacks should be quick, since the next event waits for them, and must not
+ * submit events themselves: the writer can't wait for a free slot it would have to free. Anything an
+ * event or callback throws, errors included, is reported to the callback or logged, and the loop goes on.
+ *
+ * An idle writer parks until a producer publishes an event and unparks it.
+ */
+public class SecurityEventLoop implements AutoCloseable {
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    //set in claimed once the loop is closed; the remaining bits still count the claimed sequences
+    private static final long CLOSED = Long.MIN_VALUE;
+    private static final int SPINS_BEFORE_PARK = 100;
+
+    private final Logger log = LoggerFactory.getLogger(SecurityEventLoop.class);
+
+    private enum Type {
+        SENSOR_ACTIVATION, ARMING_STATUS, ALARM_STATUS, CAT_DETECTED, ADD_SENSOR, REMOVE_SENSOR, TASK
+    }
+
+    private static final class Event {
+        Type type;
+        Sensor sensor;
+        boolean flag;
+        ArmingStatus armingStatus;
+        AlarmStatus alarmStatus;
+        Runnable task;
+        BiConsumer<AlarmStatus, Throwable> callback;
+    }
+
+    private final SecurityService securityService;
+    private final Event[] slots;
+    private final int mask;
+    //published.get(i) holds the sequence number of the event currently in slot i, once it is ready
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean writerParked;
+
+    public SecurityEventLoop(SecurityService securityService) {
+        this(securityService, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param securityService Service whose state this loop owns. It must not be changed other than through the loop.
+     * @param capacity Number of ring slots, rounded up to a power of two
+     */
+    public SecurityEventLoop(SecurityService securityService, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.securityService = securityService;
+        this.slots = new Event[size];
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Event();
+            published.set(i, -1);
+        }
+        this.writer = new Thread(this::run, "security-event-loop");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public CompletableFuture<AlarmStatus> changeSensorActivationStatus(Sensor sensor, boolean active) {
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        changeSensorActivationStatus(sensor, active, completing(future));
+        return future;
+    }
+
+    /**
+     * @param callback Called on the writer thread with the resulting alarm status or the error; may be null
+     */
+    public void changeSensorActivationStatus(Sensor sensor, boolean active, BiConsumer<AlarmStatus, Throwable> callback) {
+        long sequence = claim();
+        Event event = slots[(int) sequence & mask];
+        event.type = Type.SENSOR_ACTIVATION;
+        event.sensor = sensor;
+        event.flag = active;
+        event.callback = callback;
+        publish(sequence);
+    }
+
+    public CompletableFuture<AlarmStatus> addSensor(Sensor sensor) {
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        addSensor(sensor, completing(future));
+        return future;
+    }
+
+    /**
+     * @param callback Called on the writer thread with the resulting alarm status or the error; may be null
+     */
+    public void addSensor(Sensor sensor, BiConsumer<AlarmStatus, Throwable> callback) {
+        long sequence = claim();
+        Event event = slots[(int) sequence & mask];
+        event.type = Type.ADD_SENSOR;
+        event.sensor = sensor;
+        event.callback = callback;
+        publish(sequence);
+    }
+
+    public CompletableFuture<AlarmStatus> removeSensor(Sensor sensor) {
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        removeSensor(sensor, completing(future));
+        return future;
+    }
+
+    /**
+     * @param callback Called on the writer thread with the resulting alarm status or the error; may be null
+     */
+    public void removeSensor(Sensor sensor, BiConsumer<AlarmStatus, Throwable> callback) {
+        long sequence = claim();
+        Event event = slots[(int) sequence & mask];
+        event.type = Type.REMOVE_SENSOR;
+        event.sensor = sensor;
+        event.callback = callback;
+        publish(sequence);
+    }
+
+    public CompletableFuture<AlarmStatus> setArmingStatus(ArmingStatus armingStatus) {
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        setArmingStatus(armingStatus, completing(future));
+        return future;
+    }
+
+    /**
+     * @param callback Called on the writer thread with the resulting alarm status or the error; may be null
+     */
+    public void setArmingStatus(ArmingStatus armingStatus, BiConsumer<AlarmStatus, Throwable> callback) {
+        long sequence = claim();
+        Event event = slots[(int) sequence & mask];
+        event.type = Type.ARMING_STATUS;
+        event.armingStatus = armingStatus;
+        event.callback = callback;
+        publish(sequence);
+    }
+
+    public CompletableFuture<AlarmStatus> setAlarmStatus(AlarmStatus alarmStatus) {
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        setAlarmStatus(alarmStatus, completing(future));
+        return future;
+    }
+
+    /**
+     * @param callback Called on the writer thread with the resulting alarm status or the error; may be null
+     */
+    public void setAlarmStatus(AlarmStatus alarmStatus, BiConsumer<AlarmStatus, Throwable> callback) {
+        long sequence = claim();
+        Event event = slots[(int) sequence & mask];
+        event.type = Type.ALARM_STATUS;
+        event.alarmStatus = alarmStatus;
+        event.callback = callback;
+        publish(sequence);
+    }
+
+    /**
+     * Applies the result of an image scan. The scan itself should run before submitting, off the writer thread.
+     */
+    public CompletableFuture<AlarmStatus> catDetected(boolean cat) {
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        catDetected(cat, completing(future));
+        return future;
+    }
+
+    /**
+     * @param callback Called on the writer thread with the resulting alarm status or the error; may be null
+     */
+    public void catDetected(boolean cat, BiConsumer<AlarmStatus, Throwable> callback) {
+        long sequence = claim();
+        Event event = slots[(int) sequence & mask];
+        event.type = Type.CAT_DETECTED;
+        event.flag = cat;
+        event.callback = callback;
+        publish(sequence);
+    }
+
+    /**
+     * Scans the frame on the calling thread, then applies the result on the writer thread.
+     * @param cameraId Identifies the camera that produced the frame
+     */
+    public CompletableFuture<AlarmStatus> processImage(String cameraId, BufferedImage image) {
+        return catDetected(securityService.scan(cameraId, image));
+    }
+
+    /**
+     * Runs the task on the writer thread, in order with the events, e.g. as the callback executor of
+     * {@link SecurityService#processImageAsync(Path, java.util.concurrent.Executor)}.
+     */
+    public void execute(Runnable task) {
+        long sequence = claim();
+        Event event = slots[(int) sequence & mask];
+        event.type = Type.TASK;
+        event.task = task;
+        event.callback = null;
+        publish(sequence);
+    }
+
+    /**
+     * Stops accepting events, applies the ones already submitted and stops the writer thread.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (Thread.currentThread() == writer) {
+            throw new IllegalStateException("Event loop can't be closed from its own thread");
+        }
+        claimed.getAndUpdate(sequence -> sequence | CLOSED);
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+    }
+
+    private static BiConsumer<AlarmStatus, Throwable> completing(CompletableFuture<AlarmStatus> future) {
+        return (status, error) -> {
+            if (error == null) {
+                future.complete(status);
+            } else {
+                future.completeExceptionally(error);
+            }
+        };
+    }
+
+    private long claim() {
+        if (Thread.currentThread() == writer) {
+            //with the ring full, the writer would wait for itself to free a slot
+            throw new IllegalStateException("Events can't be submitted from the event loop's own thread");
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if ((sequence & CLOSED) != 0) {
+                throw new IllegalStateException("Event loop is closed");
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        //wait until the writer has moved past the event that last used this slot
+        while (sequence - consumed >= slots.length) {
+            //yield rather than spin, so waiting producers don't starve the writer of a core
+            Thread.yield();
+        }
+        return sequence;
+    }
+
+    private void publish(long sequence) {
+        published.set((int) sequence & mask, sequence);
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void run() {
+        long next = 0;
+        int idle = 0;
+        //close() flags claimed before clearing running, so the count read here is final
+        while (running || next < (claimed.get() & ~CLOSED)) {
+            int index = (int) next & mask;
+            if (published.get(index) != next) {
+                if (++idle < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                } else {
+                    writerParked = true;
+                    //check again after announcing the park, so a publish in between can't be missed
+                    if (published.get(index) != next && running) {
+                        //publish() and close() unpark the writer, so there's no need to wake up and poll
+                        LockSupport.park(this);
+                    }
+                    writerParked = false;
+                }
+                continue;
+            }
+            idle = 0;
+            apply(slots[index]);
+            consumed = ++next;
+        }
+    }
+
+    private void apply(Event event) {
+        BiConsumer<AlarmStatus, Throwable> callback = event.callback;
+        AlarmStatus result = null;
+        Throwable error = null;
+        try {
+            switch (event.type) {
+                case SENSOR_ACTIVATION -> securityService.changeSensorActivationStatus(event.sensor, event.flag);
+                case ARMING_STATUS -> securityService.setArmingStatus(event.armingStatus);
+                case ALARM_STATUS -> securityService.setAlarmStatus(event.alarmStatus);
+                case CAT_DETECTED -> securityService.catDetected(event.flag);
+                case ADD_SENSOR -> securityService.addSensor(event.sensor);
+                case REMOVE_SENSOR -> securityService.removeSensor(event.sensor);
+                case TASK -> event.task.run();
+            }
+            result = securityService.getAlarmStatus();
+        } catch (Throwable e) {
+            //errors too: a dead writer would leave every later future incomplete
+            error = e;
+            if (callback == null) {
+                log.warn("Event {} failed", event.type, e);
+            }
+        }
+        //drop references so the slot doesn't keep sensors or callbacks alive
+        event.sensor = null;
+        event.armingStatus = null;
+        event.alarmStatus = null;
+        event.task = null;
+        event.callback = null;
+        if (callback != null) {
+            try {
+                callback.accept(result, error);
+            } catch (Throwable e) {
+                //a misbehaving callback must not stop the loop
+                log.warn("Callback for event {} failed", event.type, e);
+            }
+        }
+    }
+}
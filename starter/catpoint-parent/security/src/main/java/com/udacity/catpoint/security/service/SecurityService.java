@@ -1,15 +1,25 @@
 package com.udacity.catpoint.security.service;
 
 import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.LabelResult;
 import com.udacity.catpoint.security.application.StatusListener;
 import com.udacity.catpoint.security.data.AlarmStatus;
 import com.udacity.catpoint.security.data.ArmingStatus;
 import com.udacity.catpoint.security.data.SecurityRepository;
 import com.udacity.catpoint.security.data.Sensor;
+import com.udacity.catpoint.security.data.SensorType;
 
 import java.awt.image.BufferedImage;
-import java.util.HashSet;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 
 /**
  * Service that receives information about changes to the security system. Responsible for
@@ -17,64 +27,87 @@ import java.util.Set;
  *
  * This is the class that should contain most of the business logic for our system, and it is the
  * class you will be writing unit tests for.
+ *
+ * Closing the service closes the StatusDispatcher it created; a dispatcher passed in is left to its owner.
  */
-public class SecurityService {
+public class SecurityService implements AutoCloseable {
+    private static final float CAT_CONFIDENCE_THRESHOLD = 50.0f;
+
     private final ImageService imageService;
     private final SecurityRepository securityRepository;
-    private Set<StatusListener> statusListeners = new HashSet<>();
+    private final StatusDispatcher statusDispatcher;
+    //only set by the constructor that creates the dispatcher
+    private boolean ownsStatusDispatcher;
+    private final Map<String, LabelResult> lastLabelResults = new ConcurrentHashMap<>();
     private boolean catDetection;
 
     public SecurityService(SecurityRepository securityRepository, ImageService imageService) {
+        this(securityRepository, imageService, new StatusDispatcher());
+        this.ownsStatusDispatcher = true;
+    }
+
+    /**
+     * @param statusDispatcher Delivers status changes to the registered listeners. The caller keeps
+     *                         ownership and closes it; closing this service doesn't.
+     */
+    public SecurityService(SecurityRepository securityRepository, ImageService imageService, StatusDispatcher statusDispatcher) {
         this.securityRepository = securityRepository;
         this.imageService = imageService;
+        this.statusDispatcher = Objects.requireNonNull(statusDispatcher, "statusDispatcher");
         this.catDetection=false;
     }
 
+    /**
+     * Closes the StatusDispatcher if this service created it, delivering the notifications already queued.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (ownsStatusDispatcher) {
+            statusDispatcher.close();
+        }
+    }
+
     /**
      * Sets the current arming status for the system. Changing the arming status
      * may update both the alarm status.
      * @param armingStatus
      */
     public void setArmingStatus(ArmingStatus armingStatus) {
-        if(armingStatus == ArmingStatus.DISARMED) {
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        }else{
-            if(catDetection && armingStatus== ArmingStatus.ARMED_HOME){
-                setAlarmStatus(AlarmStatus.ALARM);
-            }
-            Set<Sensor> sensorSet = getSensors();
-            sensorSet.forEach(sensor -> changeSensorActivationStatus(sensor,false));
+        int transition = AlarmStateMachine.transition(getArmingStatus(), getAlarmStatus(),
+                AlarmStateMachine.arming(armingStatus, catDetection));
+        if(AlarmStateMachine.setsAlarmStatus(transition)) {
+            setAlarmStatus(AlarmStateMachine.nextAlarmStatus(transition));
         }
-        securityRepository.setArmingStatus(armingStatus);
-        statusListeners.forEach(StatusListener::sensorStatusChanged);
+        if(AlarmStateMachine.resetsSensors(transition)) {
+            //one batch, so the sensors are written once rather than once per sensor
+            changeSensorActivationStatus(getSensors(), false);
+        }
+        securityRepository.setArmingStatus(AlarmStateMachine.nextArmingStatus(transition));
+        statusDispatcher.sensorStatusChanged();
     }
 
     /**
      * Internal method that handles alarm status changes based on whether
-     * the camera currently shows a cat.
+     * the camera currently shows a cat. Package-private so SecurityEventLoop can apply scan results.
      * @param cat True if a cat is detected, otherwise false.
      */
-    private void catDetected(Boolean cat) {
+    void catDetected(Boolean cat) {
         catDetection = cat;
-        if(cat && getArmingStatus() == ArmingStatus.ARMED_HOME) {
-            setAlarmStatus(AlarmStatus.ALARM);
-        }else if(getSensors().stream().noneMatch(Sensor::getActive)){
-            setAlarmStatus(AlarmStatus.NO_ALARM);
-        }
-
-        statusListeners.forEach(sl -> sl.catDetected(cat));
+        apply(AlarmStateMachine.catScan(cat, securityRepository.getActiveSensorCount() > 0));
+        statusDispatcher.catDetected(cat);
     }
 
     /**
      * Register the StatusListener for alarm system updates from within the SecurityService.
+     * Listeners are called asynchronously by the StatusDispatcher, not on the thread making the change.
      * @param statusListener
      */
     public void addStatusListener(StatusListener statusListener) {
-        statusListeners.add(statusListener);
+        statusDispatcher.addStatusListener(statusListener);
     }
 
     public void removeStatusListener(StatusListener statusListener) {
-        statusListeners.remove(statusListener);
+        statusDispatcher.removeStatusListener(statusListener);
     }
 
     /**
@@ -83,51 +116,86 @@ public class SecurityService {
      */
     public void setAlarmStatus(AlarmStatus status) {
         securityRepository.setAlarmStatus(status);
-        statusListeners.forEach(sl -> sl.notify(status));
+        statusDispatcher.notify(status);
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been activated.
+     * Internal method that applies an event's alarm status change, if it has one.
      */
-    private void handleSensorActivated() {
-        if(securityRepository.getArmingStatus() == ArmingStatus.DISARMED) {
-            return; //no problem if the system is disarmed
-        }
-        switch(securityRepository.getAlarmStatus()) {
-            case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            default -> setAlarmStatus(AlarmStatus.ALARM); //PENDING_ALARM
+    private void apply(AlarmStateMachine.Event event) {
+        int transition = AlarmStateMachine.transition(getArmingStatus(), getAlarmStatus(), event);
+        if(AlarmStateMachine.setsAlarmStatus(transition)) {
+            setAlarmStatus(AlarmStateMachine.nextAlarmStatus(transition));
         }
     }
 
     /**
-     * Internal method for updating the alarm status when a sensor has been deactivated
+     * Change the activation status for the specified sensor and update alarm status if necessary.
+     * A read-only sensor, such as one read from a snapshot, is left as it is and a changed copy is stored.
+     * @param sensor
+     * @param active
      */
-    private void handleSensorDeactivated() {
-        switch(securityRepository.getAlarmStatus()) {
-            case ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
-            default -> setAlarmStatus(AlarmStatus.NO_ALARM); //PENDING_ALARM
+    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
+        if(!sensor.getActive() && active) {
+            apply(AlarmStateMachine.Event.SENSOR_ACTIVATED);
+        } else if (sensor.getActive() && !active) {
+            //the repository still counts the sensor being deactivated
+            apply(securityRepository.getActiveSensorCount() <= 1
+                    ? AlarmStateMachine.Event.LAST_SENSOR_DEACTIVATED
+                    : AlarmStateMachine.Event.SENSOR_DEACTIVATED);
         }
+        Sensor changed = writable(sensor);
+        changed.setActive(active);
+        securityRepository.updateSensor(changed);
     }
 
-    private boolean hasAnySensorActive(Sensor sensor){
-        Set<Sensor> allSensor = getSensors();
-        allSensor.remove(sensor);
-        return allSensor.stream().noneMatch(Sensor::getActive);
+    /**
+     * @return the sensor itself, or a copy of it if it is a repository's read-only published state
+     */
+    private static Sensor writable(Sensor sensor) {
+        return sensor.isReadOnly() ? sensor.copy() : sensor;
     }
 
     /**
-     * Change the activation status for the specified sensor and update alarm status if necessary.
-     * @param sensor
+     * Change the activation status for several sensors at once. The alarm status ends up the same as
+     * changing them one at a time, but it is set, and listeners notified, at most once, and the
+     * repository persists the sensors in a single write. Read-only sensors are copied, as for a single sensor.
+     * @param sensors Sensors known to the repository
      * @param active
      */
-    public void changeSensorActivationStatus(Sensor sensor, Boolean active) {
-        if(!sensor.getActive() && active) {
-            handleSensorActivated();
-        } else if (sensor.getActive() && !active && hasAnySensorActive(sensor)) {
-            handleSensorDeactivated();
+    public void changeSensorActivationStatus(Collection<Sensor> sensors, Boolean active) {
+        ArmingStatus armingStatus = securityRepository.getArmingStatus();
+        AlarmStatus alarmStatus = securityRepository.getAlarmStatus();
+        int activeSensors = securityRepository.getActiveSensorCount();
+        boolean transitioned = false;
+        List<Sensor> changed = new ArrayList<>(sensors.size());
+        //walk the same transitions as the single-sensor path, without writing each intermediate status
+        for (Sensor sensor : sensors) {
+            AlarmStateMachine.Event event = null;
+            if(!sensor.getActive() && active) {
+                event = AlarmStateMachine.Event.SENSOR_ACTIVATED;
+                activeSensors++;
+            } else if (sensor.getActive() && !active) {
+                event = activeSensors <= 1
+                        ? AlarmStateMachine.Event.LAST_SENSOR_DEACTIVATED
+                        : AlarmStateMachine.Event.SENSOR_DEACTIVATED;
+                activeSensors--;
+            }
+            if(event != null) {
+                int transition = AlarmStateMachine.transition(armingStatus, alarmStatus, event);
+                if(AlarmStateMachine.setsAlarmStatus(transition)) {
+                    alarmStatus = AlarmStateMachine.nextAlarmStatus(transition);
+                    transitioned = true;
+                }
+            }
+            Sensor writable = writable(sensor);
+            writable.setActive(active);
+            changed.add(writable);
+        }
+        securityRepository.updateSensors(changed);
+        if(transitioned) {
+            setAlarmStatus(alarmStatus);
         }
-        sensor.setActive(active);
-        securityRepository.updateSensor(sensor);
     }
 
     /**
@@ -136,7 +204,96 @@ public class SecurityService {
      * @param currentCameraImage
      */
     public void processImage(BufferedImage currentCameraImage) {
-        catDetected(imageService.imageContainsCat(currentCameraImage, 50.0f));
+        catDetected(imageService.imageContainsCat(currentCameraImage, CAT_CONFIDENCE_THRESHOLD));
+    }
+
+    /**
+     * Send an image from a specific camera to the SecurityService for processing. Image services
+     * that keep per-camera state, such as frame-difference gating, use the camera id to tell feeds apart.
+     * @param cameraId Identifies the camera that produced the frame
+     * @param currentCameraImage
+     */
+    public void processImage(String cameraId, BufferedImage currentCameraImage) {
+        catDetected(scan(cameraId, currentCameraImage));
+    }
+
+    /**
+     * Asks the ImageService whether the frame shows a cat, without changing any state. Package-private
+     * so SecurityEventLoop can scan on the caller's thread and apply the result on its own.
+     */
+    boolean scan(String cameraId, BufferedImage currentCameraImage) {
+        return imageService.imageContainsCat(cameraId, currentCameraImage, CAT_CONFIDENCE_THRESHOLD);
+    }
+
+    /**
+     * Send an image from a specific camera to the SecurityService for label detection. The full set of
+     * labels is kept as the camera's last result, so later questions about the same frame, such as a
+     * different confidence or another animal, are answered without scanning it again.
+     * @param cameraId Identifies the camera that produced the frame
+     * @param currentCameraImage
+     * @return the labels detected in the image
+     */
+    public LabelResult processImageLabels(String cameraId, BufferedImage currentCameraImage) {
+        LabelResult labels = imageService.detectLabels(currentCameraImage);
+        lastLabelResults.put(cameraId, labels);
+        catDetected(labels.containsCat(CAT_CONFIDENCE_THRESHOLD));
+        return labels;
+    }
+
+    /**
+     * @param cameraId Identifies the camera
+     * @return the labels detected in the camera's most recent frame sent to processImageLabels, or null if there was none
+     */
+    public LabelResult getLastLabelResult(String cameraId) {
+        return lastLabelResults.get(cameraId);
+    }
+
+    /**
+     * Non-blocking version of {@link #processImage(BufferedImage)}. The alarm status is updated
+     * on the thread that completes the scan.
+     * @param currentCameraImage
+     * @return future completed with true if a cat was detected, after the alarm status has been updated
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage) {
+        return processImageAsync(currentCameraImage, Runnable::run);
+    }
+
+    /**
+     * Non-blocking version of {@link #processImage(BufferedImage)}. The alarm status is updated
+     * on the provided executor, for example SwingUtilities::invokeLater for UI callers.
+     * @param currentCameraImage
+     * @param callbackExecutor Executor used to apply the cat detection result
+     * @return future completed with true if a cat was detected, after the alarm status has been updated
+     */
+    public CompletableFuture<Boolean> processImageAsync(BufferedImage currentCameraImage, Executor callbackExecutor) {
+        return imageService.imageContainsCatAsync(currentCameraImage, CAT_CONFIDENCE_THRESHOLD)
+                .thenApplyAsync(cat -> {
+                    catDetected(cat);
+                    return cat;
+                }, callbackExecutor);
+    }
+
+    /**
+     * Send an encoded image file to the SecurityService for processing. The file's bytes are passed to
+     * the ImageService as-is, so services that accept encoded images never have to decode and re-encode them.
+     * @param imageFile Path to a JPEG or PNG camera frame
+     */
+    public void processImage(Path imageFile) {
+        catDetected(imageService.imageFileContainsCat(imageFile, CAT_CONFIDENCE_THRESHOLD));
+    }
+
+    /**
+     * Non-blocking version of {@link #processImage(Path)}. The alarm status is updated on the provided executor.
+     * @param imageFile Path to a JPEG or PNG camera frame
+     * @param callbackExecutor Executor used to apply the cat detection result
+     * @return future completed with true if a cat was detected, after the alarm status has been updated
+     */
+    public CompletableFuture<Boolean> processImageAsync(Path imageFile, Executor callbackExecutor) {
+        return imageService.imageFileContainsCatAsync(imageFile, CAT_CONFIDENCE_THRESHOLD)
+                .thenApplyAsync(cat -> {
+                    catDetected(cat);
+                    return cat;
+                }, callbackExecutor);
     }
 
     public AlarmStatus getAlarmStatus() {
@@ -158,4 +315,16 @@ public class SecurityService {
     public ArmingStatus getArmingStatus() {
         return securityRepository.getArmingStatus();
     }
+
+    public int getActiveSensorCount() {
+        return securityRepository.getActiveSensorCount();
+    }
+
+    public int getActiveSensorCount(SensorType sensorType) {
+        return securityRepository.getActiveSensorCount(sensorType);
+    }
+
+    public int getActiveSensorCount(String zone) {
+        return securityRepository.getActiveSensorCount(zone);
+    }
 }
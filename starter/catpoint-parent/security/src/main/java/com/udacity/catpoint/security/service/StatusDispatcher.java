@@ -0,0 +1,161 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Delivers StatusListener callbacks off the thread that changed the system state.
+ *
+ * Alarm status changes and cat detection go through a priority lane, so a new alarm status is never
+ * held up behind a slow UI refresh, and the two reach listeners in the order they happened: a cat that
+ * raises the alarm is reported before the alarm itself. Sensor updates go through a second lane and are
+ * coalesced: any number of sensorStatusChanged calls within the coalescing window reach each listener
+ * as a single call at the end of it. They are not ordered with the other two.
+ *
+ * Listeners are kept in a copy-on-write list, so they can be added or removed at any time, including
+ * from inside a callback. Callbacks run on the dispatcher's threads; Swing listeners should hand their
+ * work to the event dispatch thread. A listener that throws is logged and skipped.
+ */
+public class StatusDispatcher implements AutoCloseable {
+
+    private static final long DEFAULT_COALESCE_MILLIS = 50;
+    private static final long IDLE_THREAD_SECONDS = 30;
+
+    private final Logger log = LoggerFactory.getLogger(StatusDispatcher.class);
+
+    private final CopyOnWriteArrayList<StatusListener> listeners = new CopyOnWriteArrayList<>();
+    private final ThreadPoolExecutor alarmLane;
+    private final ScheduledThreadPoolExecutor updateLane;
+    private final long coalesceMillis;
+    private final AtomicBoolean sensorChangePending = new AtomicBoolean();
+
+    private final LongAdder sensorChanges = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public StatusDispatcher() {
+        this(DEFAULT_COALESCE_MILLIS);
+    }
+
+    /**
+     * @param coalesceMillis How long sensorStatusChanged calls are collected before listeners are told once
+     */
+    public StatusDispatcher(long coalesceMillis) {
+        this.coalesceMillis = coalesceMillis;
+        //both lanes keep one thread at most and let it go when idle, so unused dispatchers cost nothing
+        this.alarmLane = new ThreadPoolExecutor(1, 1, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemon("status-alarm", Thread.MAX_PRIORITY),
+                new ThreadPoolExecutor.DiscardPolicy());
+        this.alarmLane.allowCoreThreadTimeOut(true);
+        this.updateLane = new ScheduledThreadPoolExecutor(1, daemon("status-update", Thread.NORM_PRIORITY),
+                new ThreadPoolExecutor.DiscardPolicy());
+        this.updateLane.setKeepAliveTime(IDLE_THREAD_SECONDS, TimeUnit.SECONDS);
+        this.updateLane.allowCoreThreadTimeOut(true);
+    }
+
+    public void addStatusListener(StatusListener statusListener) {
+        listeners.addIfAbsent(statusListener);
+    }
+
+    public void removeStatusListener(StatusListener statusListener) {
+        listeners.remove(statusListener);
+    }
+
+    /**
+     * Tells every listener the new alarm status, through the priority lane. Statuses arrive in the order
+     * they were set, and in order with cat detection.
+     */
+    public void notify(AlarmStatus status) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        alarmLane.execute(() -> deliver(listener -> listener.notify(status)));
+    }
+
+    /**
+     * Tells every listener whether a cat was detected, through the priority lane, in order with alarm statuses.
+     */
+    public void catDetected(boolean cat) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        alarmLane.execute(() -> deliver(listener -> listener.catDetected(cat)));
+    }
+
+    /**
+     * Schedules a sensorStatusChanged call at the end of the coalescing window, unless one is already scheduled.
+     */
+    public void sensorStatusChanged() {
+        sensorChanges.increment();
+        if (listeners.isEmpty()) {
+            return;
+        }
+        if (sensorChangePending.compareAndSet(false, true)) {
+            updateLane.schedule(this::deliverSensorStatusChanged, coalesceMillis, TimeUnit.MILLISECONDS);
+        } else {
+            coalesced.increment();
+        }
+    }
+
+    /**
+     * @return Number of sensorStatusChanged calls received
+     */
+    public long getSensorStatusChangedCount() {
+        return sensorChanges.sum();
+    }
+
+    /**
+     * @return Number of sensorStatusChanged calls merged into one that was already scheduled
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Stops accepting callbacks and waits briefly for the ones already queued, including a scheduled sensor update.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        alarmLane.shutdown();
+        updateLane.shutdown();
+        alarmLane.awaitTermination(1, TimeUnit.SECONDS);
+        updateLane.awaitTermination(1 + coalesceMillis / 1000, TimeUnit.SECONDS);
+    }
+
+    private void deliverSensorStatusChanged() {
+        //clear the flag first, so a change made while listeners are refreshing schedules another pass
+        sensorChangePending.set(false);
+        deliver(StatusListener::sensorStatusChanged);
+    }
+
+    private void deliver(Consumer<StatusListener> callback) {
+        for (StatusListener listener : listeners) {
+            try {
+                callback.accept(listener);
+            } catch (RuntimeException e) {
+                //a misbehaving listener must not keep the others from hearing about the change
+                log.warn("Status listener {} failed", listener, e);
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(String name, int priority) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,291 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import com.udacity.catpoint.security.data.ArmingStatus;
+import com.udacity.catpoint.security.data.SecurityRepository;
+import com.udacity.catpoint.security.data.Sensor;
+
+import java.awt.image.BufferedImage;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Security system for sites split into zones. Every zone has its own SecurityService, repository and
+ * arming and alarm status, owned by its own SecurityEventLoop thread, so events for different zones are
+ * applied in parallel and never wait for each other. A zone is created when its first sensor is added,
+ * with the arming status last set for the whole site; every other call must name an existing zone.
+ *
+ * The site's alarm status is the most severe status of any zone. It is kept up to date from per-status
+ * zone counts, adjusted only when a zone's alarm status actually changes, so the common case of an event
+ * that leaves its zone's status alone costs nothing beyond the zone itself.
+ *
+ * Site listeners hear about a cat from the zone's thread once the scan result is applied, before the
+ * alarm status it causes.
+ */
+public class ZonedSecurityService implements AutoCloseable {
+
+    private static final float CAT_CONFIDENCE_THRESHOLD = 50.0f;
+    private static final AlarmStatus[] ALARM_STATUSES = AlarmStatus.values();
+
+    private final Function<String, SecurityRepository> repositoryFactory;
+    private final ImageService imageService;
+    private final Map<String, Zone> zones = new ConcurrentHashMap<>();
+    private final StatusDispatcher statusDispatcher = new StatusDispatcher();
+    //shared by the zones' services; nothing listens to a single zone, so it never starts a thread
+    private final StatusDispatcher zoneDispatcher = new StatusDispatcher();
+    //held while creating a zone or arming every zone, so a new zone can't miss a site-wide arming
+    private final Object zoneLock = new Object();
+    //set by the site-wide setArmingStatus, null until then; guarded by zoneLock
+    private ArmingStatus siteArmingStatus;
+
+    //number of zones in each alarm status, guarded by itself
+    private final int[] zonesByStatus = new int[ALARM_STATUSES.length];
+    private volatile AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+
+    /**
+     * @param repositoryFactory Creates the repository for a new zone, given the zone's name
+     * @param imageService Service used to scan camera images
+     */
+    public ZonedSecurityService(Function<String, SecurityRepository> repositoryFactory, ImageService imageService) {
+        this.repositoryFactory = repositoryFactory;
+        this.imageService = imageService;
+    }
+
+    /**
+     * Adds the sensor to the zone named by {@link Sensor#getZone()}, creating the zone if needed.
+     * @return future completed with the zone's alarm status once the sensor is added
+     */
+    public CompletableFuture<AlarmStatus> addSensor(Sensor sensor) {
+        Zone zone = zoneOrCreate(sensor.getZone());
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        zone.loop.addSensor(sensor, zone.tracking(future));
+        return future;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the sensor's zone doesn't exist
+     */
+    public CompletableFuture<AlarmStatus> removeSensor(Sensor sensor) {
+        Zone zone = zone(sensor.getZone());
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        zone.loop.removeSensor(sensor, zone.tracking(future));
+        return future;
+    }
+
+    /**
+     * @return future completed with the sensor's zone alarm status once the change is applied
+     * @throws IllegalArgumentException if the sensor's zone doesn't exist
+     */
+    public CompletableFuture<AlarmStatus> changeSensorActivationStatus(Sensor sensor, boolean active) {
+        Zone zone = zone(sensor.getZone());
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        zone.loop.changeSensorActivationStatus(sensor, active, zone.tracking(future));
+        return future;
+    }
+
+    /**
+     * Arms or disarms a single zone.
+     * @return future completed with the zone's alarm status once the change is applied
+     * @throws IllegalArgumentException if there is no such zone
+     */
+    public CompletableFuture<AlarmStatus> setArmingStatus(String zoneName, ArmingStatus armingStatus) {
+        Zone zone = zone(zoneName);
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        zone.loop.setArmingStatus(armingStatus, zone.tracking(future));
+        return future;
+    }
+
+    /**
+     * Arms or disarms every zone, including zones created later. The zones apply the change in parallel.
+     * @return future completed with the site's alarm status once every zone has applied the change
+     */
+    public CompletableFuture<AlarmStatus> setArmingStatus(ArmingStatus armingStatus) {
+        CompletableFuture<?>[] futures;
+        synchronized (zoneLock) {
+            siteArmingStatus = armingStatus;
+            futures = zones.keySet().stream()
+                    .map(zone -> setArmingStatus(zone, armingStatus))
+                    .toArray(CompletableFuture[]::new);
+        }
+        return CompletableFuture.allOf(futures).thenApply(v -> getAlarmStatus());
+    }
+
+    /**
+     * Applies a scan result from one of the zone's cameras.
+     * @throws IllegalArgumentException if there is no such zone
+     */
+    public CompletableFuture<AlarmStatus> catDetected(String zoneName, boolean cat) {
+        Zone zone = zone(zoneName);
+        CompletableFuture<AlarmStatus> future = new CompletableFuture<>();
+        zone.loop.catDetected(cat, zone.tracking(future, cat));
+        return future;
+    }
+
+    /**
+     * Scans an image from one of the zone's cameras on the calling thread, then applies the result to the zone.
+     * @throws IllegalArgumentException if there is no such zone
+     */
+    public CompletableFuture<AlarmStatus> processImage(String zoneName, BufferedImage currentCameraImage) {
+        zone(zoneName);
+        return catDetected(zoneName, imageService.imageContainsCat(zoneName, currentCameraImage, CAT_CONFIDENCE_THRESHOLD));
+    }
+
+    /**
+     * @return the most severe alarm status of any zone
+     */
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    /**
+     * @return the zone's alarm status, or null if there is no such zone
+     */
+    public AlarmStatus getAlarmStatus(String zoneName) {
+        Zone zone = zones.get(zoneName);
+        return zone == null ? null : zone.alarmStatus;
+    }
+
+    /**
+     * @return the zone's arming status as last applied, or null if there is no such zone
+     */
+    public ArmingStatus getArmingStatus(String zoneName) {
+        Zone zone = zones.get(zoneName);
+        return zone == null ? null : zone.securityService.getArmingStatus();
+    }
+
+    public Set<String> getZones() {
+        return Set.copyOf(zones.keySet());
+    }
+
+    /**
+     * Register a listener for changes to the site's alarm status and for cat detections in any zone.
+     */
+    public void addStatusListener(StatusListener statusListener) {
+        statusDispatcher.addStatusListener(statusListener);
+    }
+
+    public void removeStatusListener(StatusListener statusListener) {
+        statusDispatcher.removeStatusListener(statusListener);
+    }
+
+    /**
+     * Applies the events already submitted to every zone and stops the zones' threads.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        for (Zone zone : zones.values()) {
+            zone.loop.close();
+        }
+        zoneDispatcher.close();
+        statusDispatcher.close();
+    }
+
+    /**
+     * @throws IllegalArgumentException if there is no such zone; only adding a sensor creates one
+     */
+    private Zone zone(String name) {
+        Zone zone = zones.get(name);
+        if (zone == null) {
+            throw new IllegalArgumentException("No zone named " + name + ", zones: " + getZones());
+        }
+        return zone;
+    }
+
+    private Zone zoneOrCreate(String name) {
+        Zone zone = zones.get(name);
+        if (zone != null) {
+            return zone;
+        }
+        synchronized (zoneLock) {
+            return zones.computeIfAbsent(name, this::createZone);
+        }
+    }
+
+    /**
+     * Called with zoneLock held. The zone's first event is the last site-wide arming, if there was one.
+     */
+    private Zone createZone(String name) {
+        SecurityService securityService = new SecurityService(repositoryFactory.apply(name), imageService, zoneDispatcher);
+        Zone zone = new Zone(securityService);
+        synchronized (zonesByStatus) {
+            zonesByStatus[zone.alarmStatus.ordinal()]++;
+            updateAlarmStatus();
+        }
+        if (siteArmingStatus != null) {
+            zone.loop.setArmingStatus(siteArmingStatus, zone.tracking(new CompletableFuture<>()));
+        }
+        return zone;
+    }
+
+    /**
+     * Moves a zone between status counts. Called on the zone's own thread, only when its status changed.
+     */
+    private void zoneStatusChanged(AlarmStatus from, AlarmStatus to) {
+        synchronized (zonesByStatus) {
+            zonesByStatus[from.ordinal()]--;
+            zonesByStatus[to.ordinal()]++;
+            updateAlarmStatus();
+        }
+    }
+
+    private void updateAlarmStatus() {
+        //statuses are declared from least to most severe
+        AlarmStatus worst = AlarmStatus.NO_ALARM;
+        for (AlarmStatus status : ALARM_STATUSES) {
+            if (zonesByStatus[status.ordinal()] > 0) {
+                worst = status;
+            }
+        }
+        if (worst != alarmStatus) {
+            alarmStatus = worst;
+            statusDispatcher.notify(worst);
+        }
+    }
+
+    private final class Zone {
+        final SecurityService securityService;
+        final SecurityEventLoop loop;
+        //only written on the zone's event loop thread, after the zone is created
+        volatile AlarmStatus alarmStatus;
+
+        Zone(SecurityService securityService) {
+            this.securityService = securityService;
+            this.loop = new SecurityEventLoop(securityService);
+            this.alarmStatus = securityService.getAlarmStatus();
+        }
+
+        /**
+         * @return callback that records the zone's new status, then completes the future
+         */
+        BiConsumer<AlarmStatus, Throwable> tracking(CompletableFuture<AlarmStatus> future) {
+            return tracking(future, null);
+        }
+
+        /**
+         * @param cat Scan result to tell the site's listeners about, before the status it causes; null for other events
+         */
+        BiConsumer<AlarmStatus, Throwable> tracking(CompletableFuture<AlarmStatus> future, Boolean cat) {
+            return (status, error) -> {
+                if (error != null) {
+                    future.completeExceptionally(error);
+                    return;
+                }
+                if (cat != null) {
+                    statusDispatcher.catDetected(cat);
+                }
+                AlarmStatus previous = alarmStatus;
+                if (status != previous) {
+                    alarmStatus = status;
+                    zoneStatusChanged(previous, status);
+                }
+                future.complete(status);
+            };
+        }
+    }
+}
@@ -5,5 +5,7 @@ module com.udacity.catpoint.security {
     requires com.google.common;
     requires com.google.gson;
     requires java.prefs;
+    requires java.sql;
+    requires org.slf4j;
     opens com.udacity.catpoint.security.data to com.google.gson;
 }
\ No newline at end of file
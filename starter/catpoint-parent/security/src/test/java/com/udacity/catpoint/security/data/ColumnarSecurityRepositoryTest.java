@@ -0,0 +1,131 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarSecurityRepositoryTest {
+
+    private ColumnarSecurityRepository repository;
+
+    @BeforeEach
+    void init() {
+        repository = new ColumnarSecurityRepository();
+    }
+
+//    Views handed out by the repository show the stored sensor and are equal to the original.
+    @Test
+    void getSensors_addedSensor_viewMatchesOriginal() {
+        Sensor sensor = new Sensor("garage door", SensorType.DOOR, "garage");
+        sensor.setActive(true);
+        repository.addSensor(sensor);
+        Sensor view = repository.getSensors().iterator().next();
+        assertEquals(sensor, view);
+        assertEquals(sensor.hashCode(), view.hashCode());
+        assertEquals("garage door", view.getName());
+        assertEquals(SensorType.DOOR, view.getSensorType());
+        assertEquals("garage", view.getZone());
+        assertTrue(view.getActive());
+        assertEquals(0, sensor.compareTo(view));
+    }
+
+//    Changing a view changes the stored sensor and its counts without an update call.
+    @Test
+    void setActive_onView_columnsAndCountsUpdated() {
+        Sensor sensor = new Sensor("window", SensorType.WINDOW);
+        repository.addSensor(sensor);
+        Sensor view = repository.getSensor(sensor.getSensorId());
+        view.setActive(true);
+        assertEquals(1, repository.getActiveSensorCount());
+        assertEquals(1, repository.getActiveSensorCount(SensorType.WINDOW));
+        assertEquals(1, repository.getActiveSensorCount(Sensor.DEFAULT_ZONE));
+        view.setZone("attic");
+        assertEquals(0, repository.getActiveSensorCount(Sensor.DEFAULT_ZONE));
+        assertEquals(1, repository.getActiveSensorCount("attic"));
+        assertTrue(repository.getSensor(sensor.getSensorId()).getActive());
+    }
+
+//    A plain sensor changed and passed to updateSensor is copied into its row.
+    @Test
+    void updateSensor_plainSensor_copiedIntoColumns() {
+        Sensor sensor = new Sensor("motion", SensorType.MOTION);
+        repository.addSensor(sensor);
+        sensor.setActive(true);
+        sensor.setSensorType(SensorType.DOOR);
+        repository.updateSensor(sensor);
+        assertEquals(1, repository.size());
+        assertEquals(1, repository.getActiveSensorCount(SensorType.DOOR));
+        assertEquals(0, repository.getActiveSensorCount(SensorType.MOTION));
+        assertEquals(SensorType.DOOR, repository.getSensor(sensor.getSensorId()).getSensorType());
+    }
+
+//    A view keeps pointing at its sensor after removals move it to another row, and fails once it's removed itself.
+    @Test
+    void removeSensor_rowsMoved_viewsFollowTheirSensor() {
+        Sensor first = new Sensor("first", SensorType.DOOR);
+        Sensor last = new Sensor("last", SensorType.WINDOW);
+        repository.addSensor(first);
+        repository.addSensor(new Sensor("middle", SensorType.MOTION));
+        repository.addSensor(last);
+        Sensor lastView = repository.getSensor(last.getSensorId());
+        Sensor firstView = repository.getSensor(first.getSensorId());
+        repository.removeSensor(first);
+        assertEquals("last", lastView.getName());
+        assertEquals(2, repository.size());
+        assertNull(repository.getSensor(first.getSensorId()));
+        assertThrows(IllegalStateException.class, firstView::getName);
+    }
+
+//    Random adds, updates and removals agree with a plain map of sensors, including the counts.
+    @Test
+    void randomOperations_matchReferenceModel() {
+        Random random = new Random(17);
+        Map<UUID, Sensor> model = new HashMap<>();
+        List<Sensor> known = new ArrayList<>();
+        String[] zones = {"home", "garage", "attic"};
+        for (int i = 0; i < 20_000; i++) {
+            int op = random.nextInt(10);
+            if (op < 4 || known.isEmpty()) {
+                Sensor sensor = new Sensor("s" + i, SensorType.values()[random.nextInt(3)], zones[random.nextInt(3)]);
+                sensor.setActive(random.nextBoolean());
+                known.add(sensor);
+                model.put(sensor.getSensorId(), sensor);
+                repository.addSensor(sensor);
+            } else if (op < 8) {
+                Sensor sensor = known.get(random.nextInt(known.size()));
+                sensor.setActive(!sensor.getActive());
+                sensor.setZone(zones[random.nextInt(3)]);
+                if (model.containsKey(sensor.getSensorId())) {
+                    repository.updateSensor(sensor);
+                }
+            } else {
+                Sensor sensor = known.remove(random.nextInt(known.size()));
+                model.remove(sensor.getSensorId());
+                repository.removeSensor(sensor);
+            }
+        }
+        assertEquals(model.size(), repository.size());
+        assertEquals(model.values().stream().filter(Sensor::getActive).count(), repository.getActiveSensorCount());
+        for (SensorType type : SensorType.values()) {
+            assertEquals(model.values().stream().filter(s -> s.getActive() && s.getSensorType() == type).count(),
+                    repository.getActiveSensorCount(type));
+        }
+        for (String zone : zones) {
+            assertEquals(model.values().stream().filter(s -> s.getActive() && s.getZone().equals(zone)).count(),
+                    repository.getActiveSensorCount(zone));
+        }
+        for (Sensor sensor : model.values()) {
+            Sensor view = repository.getSensor(sensor.getSensorId());
+            assertEquals(sensor.getActive(), view.getActive());
+            assertEquals(sensor.getZone(), view.getZone());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JdbcSecurityRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private JdbcSecurityRepository repository;
+
+    @AfterEach
+    void clean() {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    private JdbcSecurityRepository reopen() {
+        if (repository != null) {
+            repository.close();
+        }
+        repository = new JdbcSecurityRepository(directory.resolve("catpoint"));
+        return repository;
+    }
+
+    private Map<UUID, Sensor> sensorsById() {
+        Map<UUID, Sensor> sensors = new HashMap<>();
+        repository.getSensors().forEach(sensor -> sensors.put(sensor.getSensorId(), sensor));
+        return sensors;
+    }
+
+    private static void assertSameSensor(Sensor expected, Sensor actual) {
+        assertEquals(expected.getSensorId(), actual.getSensorId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getSensorType(), actual.getSensorType());
+        assertEquals(expected.getZone(), actual.getZone());
+        assertEquals(expected.getActive(), actual.getActive());
+    }
+
+//    Sensors, statuses and counts written before closing are all there after reopening.
+    @Test
+    void reopen_afterChanges_stateRecovered() {
+        reopen();
+        Sensor door = new Sensor("front door", SensorType.DOOR, "hall");
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        Sensor removed = new Sensor("motion", SensorType.MOTION);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        repository.addSensor(removed);
+        door.setActive(true);
+        repository.updateSensor(door);
+        repository.removeSensor(removed);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        reopen();
+        Map<UUID, Sensor> sensors = sensorsById();
+        assertEquals(2, sensors.size());
+        assertSameSensor(door, sensors.get(door.getSensorId()));
+        assertSameSensor(window, sensors.get(window.getSensorId()));
+        assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+        assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+    }
+
+//    Active counts by type and by zone come from the database and follow every write.
+    @Test
+    void getActiveSensorCount_afterToggles_countedByDatabase() {
+        reopen();
+        Sensor door = new Sensor("door", SensorType.DOOR, "hall");
+        Sensor backDoor = new Sensor("back door", SensorType.DOOR, "kitchen");
+        Sensor window = new Sensor("window", SensorType.WINDOW, "hall");
+        for (Sensor sensor : List.of(door, backDoor, window)) {
+            sensor.setActive(true);
+            repository.addSensor(sensor);
+        }
+        backDoor.setActive(false);
+        repository.updateSensor(backDoor);
+
+        assertEquals(2, repository.getActiveSensorCount());
+        assertEquals(1, repository.getActiveSensorCount(SensorType.DOOR));
+        assertEquals(1, repository.getActiveSensorCount(SensorType.WINDOW));
+        assertEquals(0, repository.getActiveSensorCount(SensorType.MOTION));
+        assertEquals(2, repository.getActiveSensorCount("hall"));
+        assertEquals(0, repository.getActiveSensorCount("kitchen"));
+        assertEquals(3, repository.size());
+    }
+
+//    A batch of updates and new sensors is written in full, and adding a stored sensor again overwrites it.
+    @Test
+    void updateSensors_storedAndNewSensors_allWritten() {
+        reopen();
+        Sensor stored = new Sensor("stored", SensorType.DOOR);
+        repository.addSensor(stored);
+        stored.setActive(true);
+        stored.setName("renamed");
+        Sensor added = new Sensor("added", SensorType.MOTION, "loft");
+        repository.updateSensors(List.of(stored, added));
+        repository.addSensor(added);
+
+        Map<UUID, Sensor> sensors = sensorsById();
+        assertEquals(2, sensors.size());
+        assertSameSensor(stored, sensors.get(stored.getSensorId()));
+        assertSameSensor(added, sensors.get(added.getSensorId()));
+    }
+
+//    A batch that fails part way writes nothing.
+    @Test
+    void updateSensors_invalidSensor_batchRolledBack() {
+        reopen();
+        Sensor stored = new Sensor("stored", SensorType.DOOR);
+        repository.addSensor(stored);
+        stored.setActive(true);
+        Sensor unnamed = new Sensor(null, SensorType.WINDOW);
+
+        assertThrows(IllegalStateException.class, () -> repository.updateSensors(List.of(stored, unnamed)));
+        assertEquals(1, repository.size());
+        assertEquals(0, repository.getActiveSensorCount());
+
+        repository.updateSensor(stored);
+        assertEquals(1, repository.getActiveSensorCount());
+    }
+
+//    Clearing the repository removes every sensor and puts the statuses back to their defaults.
+    @Test
+    void cleanAll_reopensEmpty() {
+        reopen();
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.cleanAll();
+
+        reopen();
+        assertTrue(repository.getSensors().isEmpty());
+        assertEquals(ArmingStatus.DISARMED, repository.getArmingStatus());
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+    }
+}
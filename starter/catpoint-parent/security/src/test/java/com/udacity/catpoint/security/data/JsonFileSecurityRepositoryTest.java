@@ -0,0 +1,134 @@
+package com.udacity.catpoint.security.data;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonFileSecurityRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private Path file() {
+        return directory.resolve("sensors.json");
+    }
+
+    private static void assertSameSensor(Sensor expected, Sensor actual) {
+        assertEquals(expected.getSensorId(), actual.getSensorId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getSensorType(), actual.getSensorType());
+        assertEquals(expected.getZone(), actual.getZone());
+        assertEquals(expected.getActive(), actual.getActive());
+    }
+
+//    Sensors, statuses and counts saved by one repository are all there in the next one opened on the file.
+    @Test
+    void open_afterChanges_stateRecovered() {
+        JsonFileSecurityRepository repository = new JsonFileSecurityRepository(file());
+        Sensor door = new Sensor("front \"door\"", SensorType.DOOR, "hall");
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        Sensor removed = new Sensor("motion", SensorType.MOTION);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        repository.addSensor(removed);
+        door.setActive(true);
+        repository.updateSensor(door);
+        repository.removeSensor(removed);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        JsonFileSecurityRepository reopened = new JsonFileSecurityRepository(file());
+        assertEquals(2, reopened.size());
+        assertEquals(1, reopened.getActiveSensorCount());
+        assertEquals(1, reopened.getActiveSensorCount(SensorType.DOOR));
+        assertEquals(1, reopened.getActiveSensorCount("hall"));
+        assertEquals(ArmingStatus.ARMED_HOME, reopened.getArmingStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, reopened.getAlarmStatus());
+        assertSameSensor(door, reopened.getSensor(door.getSensorId()));
+        assertSameSensor(window, reopened.getSensor(window.getSensorId()));
+        assertNull(reopened.getSensor(removed.getSensorId()));
+    }
+
+//    Changes made through a loaded sensor's view are saved by updateSensor.
+    @Test
+    void updateSensor_loadedView_saved() {
+        Sensor sensor = new Sensor("garage", SensorType.DOOR);
+        new JsonFileSecurityRepository(file()).addSensor(sensor);
+
+        JsonFileSecurityRepository repository = new JsonFileSecurityRepository(file());
+        Sensor view = repository.getSensor(sensor.getSensorId());
+        view.setActive(true);
+        view.setZone("drive");
+        repository.updateSensor(view);
+
+        JsonFileSecurityRepository reopened = new JsonFileSecurityRepository(file());
+        assertTrue(reopened.getSensor(sensor.getSensorId()).getActive());
+        assertEquals(1, reopened.getActiveSensorCount("drive"));
+    }
+
+//    A bare array of sensors as Gson writes them loads, including sensors saved before zones existed.
+    @Test
+    void open_gsonSensorArray_loaded() throws IOException {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        Files.writeString(file(), "[{\"sensorId\":\"" + first + "\",\"name\":\"door\",\"active\":true,\"sensorType\":\"DOOR\",\"zone\":\"hall\"},"
+                + "{\"sensorId\":\"" + second + "\",\"name\":\"old window\",\"active\":false,\"sensorType\":\"WINDOW\",\"legacy\":[1,{\"x\":null}]}]",
+                StandardCharsets.UTF_8);
+
+        JsonFileSecurityRepository repository = new JsonFileSecurityRepository(file());
+        assertEquals(2, repository.size());
+        assertEquals(1, repository.getActiveSensorCount("hall"));
+        assertEquals(Sensor.DEFAULT_ZONE, repository.getSensor(second).getZone());
+        assertEquals("old window", repository.getSensor(second).getName());
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+    }
+
+//    The adapter writes the fields Gson's reflection would, and reads back the sensor it wrote.
+    @Test
+    void sensorTypeAdapter_roundTrip_sameSensor() throws IOException {
+        SensorTypeAdapter adapter = new SensorTypeAdapter();
+        Sensor sensor = new Sensor("motion", SensorType.MOTION, "loft");
+        sensor.setActive(true);
+        StringWriter json = new StringWriter();
+        adapter.write(new JsonWriter(json), sensor);
+        for (String name : List.of("sensorId", "name", "active", "sensorType", "zone")) {
+            assertTrue(json.toString().contains("\"" + name + "\""), name);
+        }
+        assertSameSensor(sensor, adapter.read(new JsonReader(new StringReader(json.toString()))));
+    }
+
+//    Sensor ids that aren't UUIDs make the file unreadable rather than being skipped.
+    @Test
+    void open_invalidSensorId_throws() throws IOException {
+        Files.writeString(file(), "{\"sensors\":[{\"sensorId\":\"not-a-uuid\",\"sensorType\":\"DOOR\"}]}", StandardCharsets.UTF_8);
+        assertThrows(UncheckedIOException.class, () -> new JsonFileSecurityRepository(file()));
+    }
+
+//    With no file yet the repository starts empty, and clearing it saves an empty file.
+    @Test
+    void cleanAll_reopensEmpty() {
+        JsonFileSecurityRepository repository = new JsonFileSecurityRepository(file());
+        assertEquals(0, repository.size());
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.cleanAll();
+
+        JsonFileSecurityRepository reopened = new JsonFileSecurityRepository(file());
+        assertEquals(0, reopened.size());
+        assertEquals(ArmingStatus.DISARMED, reopened.getArmingStatus());
+        assertFalse(Files.exists(directory.resolve("sensors.json.tmp")));
+    }
+}
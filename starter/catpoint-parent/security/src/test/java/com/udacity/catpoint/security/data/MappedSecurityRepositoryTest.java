@@ -0,0 +1,179 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedSecurityRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedSecurityRepository repository;
+
+    @AfterEach
+    void clean() throws IOException {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    private MappedSecurityRepository reopen(MappedSecurityRepository.Durability durability) throws IOException {
+        if (repository != null) {
+            repository.close();
+        }
+        repository = new MappedSecurityRepository(directory, durability, 10);
+        return repository;
+    }
+
+    private Map<UUID, Sensor> sensorsById() {
+        Map<UUID, Sensor> sensors = new HashMap<>();
+        repository.getSensors().forEach(sensor -> sensors.put(sensor.getSensorId(), sensor));
+        return sensors;
+    }
+
+    private static void assertSameSensor(Sensor expected, Sensor actual) {
+        assertEquals(expected.getSensorId(), actual.getSensorId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getSensorType(), actual.getSensorType());
+        assertEquals(expected.getZone(), actual.getZone());
+        assertEquals(expected.getActive(), actual.getActive());
+    }
+
+//    Sensors, statuses and counts written before closing are all there after reopening.
+    @Test
+    void reopen_afterChanges_stateRecovered() throws IOException {
+        reopen(MappedSecurityRepository.Durability.INTERVAL);
+        Sensor door = new Sensor("front door", SensorType.DOOR, "hall");
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        Sensor removed = new Sensor("motion", SensorType.MOTION);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        repository.addSensor(removed);
+        door.setActive(true);
+        repository.updateSensor(door);
+        repository.removeSensor(removed);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        reopen(MappedSecurityRepository.Durability.INTERVAL);
+        Map<UUID, Sensor> sensors = sensorsById();
+        assertEquals(2, sensors.size());
+        assertSameSensor(door, sensors.get(door.getSensorId()));
+        assertSameSensor(window, sensors.get(window.getSensorId()));
+        assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+        assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+        assertEquals(1, repository.getActiveSensorCount());
+        assertEquals(1, repository.getActiveSensorCount(SensorType.DOOR));
+        assertEquals(1, repository.getActiveSensorCount("hall"));
+        assertEquals(2, repository.getSensorVersion(door.getSensorId()));
+    }
+
+//    Every write to a record bumps its version, including ones that change nothing but the active flag.
+    @Test
+    void updateSensor_activeToggled_versionBumped() throws IOException {
+        reopen(MappedSecurityRepository.Durability.EVERY_WRITE);
+        Sensor sensor = new Sensor("garage", SensorType.DOOR);
+        repository.addSensor(sensor);
+        for (int i = 0; i < 10; i++) {
+            sensor.setActive(!sensor.getActive());
+            repository.updateSensor(sensor);
+        }
+        assertEquals(11, repository.getSensorVersion(sensor.getSensorId()));
+        assertEquals(-1, repository.getSensorVersion(UUID.randomUUID()));
+
+        reopen(MappedSecurityRepository.Durability.EVERY_WRITE);
+        assertEquals(11, repository.getSensorVersion(sensor.getSensorId()));
+        assertFalse(repository.getSensors().iterator().next().getActive());
+    }
+
+//    Tables and string heaps larger than their first mapping grow and are read back in full.
+    @Test
+    void addSensor_pastInitialMapping_allRecovered() throws IOException {
+        reopen(MappedSecurityRepository.Durability.INTERVAL);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            Sensor sensor = new Sensor("sensor with a rather long descriptive name " + i,
+                    SensorType.values()[i % SensorType.values().length], "zone" + i % 7);
+            sensor.setActive(i % 2 == 0);
+            sensors.add(sensor);
+            repository.addSensor(sensor);
+        }
+
+        reopen(MappedSecurityRepository.Durability.INTERVAL);
+        Map<UUID, Sensor> recovered = sensorsById();
+        assertEquals(3000, recovered.size());
+        for (Sensor sensor : sensors) {
+            assertSameSensor(sensor, recovered.get(sensor.getSensorId()));
+        }
+        assertEquals(1500, repository.getActiveSensorCount());
+    }
+
+//    A removed sensor's record is reused by the next sensor added.
+    @Test
+    void addSensor_afterRemove_slotReused() throws IOException {
+        reopen(MappedSecurityRepository.Durability.INTERVAL);
+        Sensor first = new Sensor("first", SensorType.DOOR);
+        Sensor second = new Sensor("second", SensorType.WINDOW);
+        repository.addSensor(first);
+        repository.addSensor(second);
+        repository.removeSensor(first);
+        Sensor third = new Sensor("third", SensorType.MOTION, "loft");
+        repository.addSensor(third);
+
+        reopen(MappedSecurityRepository.Durability.INTERVAL);
+        Map<UUID, Sensor> sensors = sensorsById();
+        assertEquals(2, sensors.size());
+        assertSameSensor(second, sensors.get(second.getSensorId()));
+        assertSameSensor(third, sensors.get(third.getSensorId()));
+        assertEquals(1, repository.getSensorVersion(third.getSensorId()));
+    }
+
+//    Renaming a sensor writes the new name, which is what's read back.
+    @Test
+    void updateSensor_renamed_newNameRecovered() throws IOException {
+        reopen(MappedSecurityRepository.Durability.INTERVAL);
+        Sensor sensor = new Sensor("old name", SensorType.DOOR);
+        repository.addSensor(sensor);
+        sensor.setName("new name");
+        sensor.setZone("porch");
+        repository.updateSensor(sensor);
+
+        reopen(MappedSecurityRepository.Durability.INTERVAL);
+        assertSameSensor(sensor, repository.getSensors().iterator().next());
+    }
+
+//    Clearing the repository leaves an empty table behind.
+    @Test
+    void cleanAll_reopensEmpty() throws IOException {
+        reopen(MappedSecurityRepository.Durability.INTERVAL);
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.cleanAll();
+        repository.addSensor(new Sensor("window", SensorType.WINDOW));
+
+        reopen(MappedSecurityRepository.Durability.INTERVAL);
+        assertEquals(1, repository.getSensors().size());
+        assertEquals("window", repository.getSensors().iterator().next().getName());
+        assertEquals(ArmingStatus.DISARMED, repository.getArmingStatus());
+    }
+
+//    A file that isn't a sensor table is refused rather than read as one.
+    @Test
+    void open_notASensorTable_throws() throws IOException {
+        Files.write(directory.resolve(MappedSecurityRepository.TABLE_FILE), new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(UncheckedIOException.class, () -> new MappedSecurityRepository(directory));
+    }
+}
@@ -0,0 +1,89 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PersistentSensorMapTest {
+
+//    Ids with the same hash are kept apart, found and removed individually.
+    @Test
+    void with_collidingHashes_allSensorsKept() {
+        Sensor a = sensor(new UUID(1L, 0L));
+        Sensor b = sensor(new UUID(0L, 1L));
+        Sensor c = sensor(new UUID(2L, 3L));
+        assertEquals(a.getSensorId().hashCode(), b.getSensorId().hashCode());
+        PersistentSensorMap map = PersistentSensorMap.EMPTY.with(a).with(b).with(c);
+        assertEquals(3, map.size());
+        assertSame(a, map.get(a.getSensorId()));
+        assertSame(b, map.get(b.getSensorId()));
+        PersistentSensorMap withoutA = map.without(a.getSensorId());
+        assertNull(withoutA.get(a.getSensorId()));
+        assertSame(b, withoutA.get(b.getSensorId()));
+        assertSame(a, map.get(a.getSensorId()));
+    }
+
+//    Random puts and removals match a HashMap, old versions stay intact, and diffs find exactly the changed ids.
+    @Test
+    void randomOperations_matchReferenceModel() {
+        Random random = new Random(18);
+        Map<UUID, Sensor> model = new HashMap<>();
+        List<UUID> ids = new ArrayList<>();
+        PersistentSensorMap map = PersistentSensorMap.EMPTY;
+        for (int round = 0; round < 50; round++) {
+            PersistentSensorMap before = map;
+            Map<UUID, Sensor> modelBefore = new HashMap<>(model);
+            Set<UUID> touched = new HashSet<>();
+            for (int i = 0; i < 200; i++) {
+                if (ids.isEmpty() || random.nextInt(3) > 0) {
+                    //small id space, so updates and short hash prefixes collide often
+                    UUID id = new UUID(random.nextInt(4), random.nextInt(2000));
+                    Sensor sensor = sensor(id);
+                    map = map.with(sensor);
+                    model.put(id, sensor);
+                    ids.add(id);
+                    touched.add(id);
+                } else {
+                    UUID id = ids.get(random.nextInt(ids.size()));
+                    map = map.without(id);
+                    if (model.remove(id) != null) {
+                        touched.add(id);
+                    }
+                }
+            }
+            PersistentSensorMap after = map;
+            assertEquals(model.size(), after.size());
+            model.forEach((id, sensor) -> assertSame(sensor, after.get(id)));
+            Set<Sensor> iterated = new HashSet<>();
+            after.forEach(iterated::add);
+            after.iterator().forEachRemaining(sensor -> assertTrue(iterated.contains(sensor)));
+            assertEquals(model.size(), iterated.size());
+            assertEquals(modelBefore.size(), before.size());
+            modelBefore.forEach((id, sensor) -> assertSame(sensor, before.get(id)));
+            Set<UUID> changed = new HashSet<>();
+            before.diff(after, changed);
+            Set<UUID> expected = new HashSet<>();
+            touched.forEach(id -> {
+                if (modelBefore.get(id) != model.get(id)) {
+                    expected.add(id);
+                }
+            });
+            assertEquals(expected, changed);
+        }
+    }
+
+    private static Sensor sensor(UUID id) {
+        Sensor sensor = new Sensor("sensor", SensorType.DOOR);
+        sensor.setSensorId(id);
+        return sensor;
+    }
+}
@@ -0,0 +1,80 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SensorCountersTest {
+
+    private SensorCounters counters;
+
+    @BeforeEach
+    void init() {
+        counters = new SensorCounters();
+    }
+
+//    Active sensors are counted overall, by type and by zone; inactive ones are not.
+    @Test
+    void track_mixedSensors_countedByTypeAndZone() {
+        Sensor door = active(new Sensor("door", SensorType.DOOR));
+        Sensor window = active(new Sensor("window", SensorType.WINDOW, "garage"));
+        Sensor motion = new Sensor("motion", SensorType.MOTION, "garage");
+        counters.track(door);
+        counters.track(window);
+        counters.track(motion);
+        assertEquals(2, counters.getActiveCount());
+        assertEquals(1, counters.getActiveCount(SensorType.DOOR));
+        assertEquals(0, counters.getActiveCount(SensorType.MOTION));
+        assertEquals(1, counters.getActiveCount(Sensor.DEFAULT_ZONE));
+        assertEquals(1, counters.getActiveCount("garage"));
+        assertEquals(0, counters.getActiveCount("attic"));
+    }
+
+//    Tracking the same active sensor twice counts it once.
+    @Test
+    void track_sameSensorTwice_countedOnce() {
+        Sensor door = active(new Sensor("door", SensorType.DOOR));
+        counters.track(door);
+        counters.track(door);
+        assertEquals(1, counters.getActiveCount());
+        assertEquals(1, counters.getActiveCount(SensorType.DOOR));
+    }
+
+//    A sensor changed in place before being tracked again moves between counts.
+    @Test
+    void track_typeAndZoneChangedInPlace_countsMoved() {
+        Sensor sensor = active(new Sensor("door", SensorType.DOOR));
+        counters.track(sensor);
+        sensor.setSensorType(SensorType.WINDOW);
+        sensor.setZone("garage");
+        counters.track(sensor);
+        assertEquals(1, counters.getActiveCount());
+        assertEquals(0, counters.getActiveCount(SensorType.DOOR));
+        assertEquals(1, counters.getActiveCount(SensorType.WINDOW));
+        assertEquals(0, counters.getActiveCount(Sensor.DEFAULT_ZONE));
+        assertEquals(1, counters.getActiveCount("garage"));
+    }
+
+//    Deactivating or removing a sensor takes it out of every count.
+    @Test
+    void trackAndUntrack_deactivatedAndRemoved_countsBackToZero() {
+        Sensor door = active(new Sensor("door", SensorType.DOOR));
+        Sensor window = active(new Sensor("window", SensorType.WINDOW));
+        counters.track(door);
+        counters.track(window);
+        door.setActive(false);
+        counters.track(door);
+        counters.untrack(window);
+        counters.untrack(window);
+        assertEquals(0, counters.getActiveCount());
+        assertEquals(0, counters.getActiveCount(SensorType.DOOR));
+        assertEquals(0, counters.getActiveCount(SensorType.WINDOW));
+        assertEquals(0, counters.getActiveCount(Sensor.DEFAULT_ZONE));
+    }
+
+    private static Sensor active(Sensor sensor) {
+        sensor.setActive(true);
+        return sensor;
+    }
+}
@@ -0,0 +1,108 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotSecurityRepositoryTest {
+
+    private SnapshotSecurityRepository repository;
+    private Sensor door;
+    private Sensor window;
+
+    @BeforeEach
+    void init() {
+        repository = new SnapshotSecurityRepository(new ColumnarSecurityRepository());
+        door = new Sensor("door", SensorType.DOOR);
+        window = new Sensor("window", SensorType.WINDOW);
+    }
+
+//    Reading the sensors twice without a write in between returns the same set, not a copy.
+    @Test
+    void getSensors_noWrites_sameSetReturned() {
+        repository.addSensor(door);
+        assertSame(repository.getSensors(), repository.getSensors());
+        assertTrue(repository.getSensors().contains(door));
+        assertThrows(UnsupportedOperationException.class, () -> repository.getSensors().add(window));
+    }
+
+//    Sensors handed out by a snapshot can't be changed in place, but their copies can be written back.
+    @Test
+    void getSensors_sensorsReadOnly_copyWrittenBack() {
+        repository.addSensor(door);
+        SensorSnapshot before = repository.snapshot();
+        Sensor stored = before.getSensor(door.getSensorId());
+        assertTrue(stored.isReadOnly());
+        assertThrows(UnsupportedOperationException.class, () -> stored.setActive(true));
+
+        Sensor copy = stored.copy();
+        assertFalse(copy.isReadOnly());
+        copy.setActive(true);
+        repository.updateSensor(copy);
+        assertFalse(before.getSensor(door.getSensorId()).getActive());
+        assertTrue(repository.snapshot().getSensor(door.getSensorId()).getActive());
+    }
+
+//    A snapshot keeps showing its version after later writes, while new snapshots see the changes.
+    @Test
+    void snapshot_laterWrites_earlierSnapshotUnchanged() {
+        repository.addSensor(door);
+        SensorSnapshot before = repository.snapshot();
+        door.setActive(true);
+        repository.updateSensor(door);
+        repository.addSensor(window);
+        assertEquals(1, before.size());
+        assertFalse(before.getSensor(door.getSensorId()).getActive());
+        assertNull(before.getSensor(window.getSensorId()));
+        SensorSnapshot after = repository.snapshot();
+        assertEquals(before.getVersion() + 2, after.getVersion());
+        assertTrue(after.getSensor(door.getSensorId()).getActive());
+        assertEquals(2, after.size());
+    }
+
+//    Changes since a version list exactly the sensors written after it; a batch is a single version.
+    @Test
+    void changesSince_writesAfterVersion_onlyThoseSensorsReported() {
+        Sensor motion = new Sensor("motion", SensorType.MOTION);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        repository.addSensor(motion);
+        long version = repository.snapshot().getVersion();
+        window.setActive(true);
+        motion.setActive(true);
+        repository.updateSensors(List.of(window, motion));
+        repository.removeSensor(door);
+        assertEquals(version + 2, repository.snapshot().getVersion());
+        assertEquals(Set.of(door.getSensorId(), window.getSensorId(), motion.getSensorId()), repository.changesSince(version));
+        assertEquals(Set.of(door.getSensorId()), repository.changesSince(version + 1));
+        assertEquals(Set.of(), repository.changesSince(version + 2));
+    }
+
+//    Versions older than the kept history can't be compared.
+    @Test
+    void changesSince_versionTooOld_null() {
+        repository.addSensor(door);
+        long version = repository.snapshot().getVersion();
+        for (int i = 0; i < 100; i++) {
+            door.setActive(i % 2 == 0);
+            repository.updateSensor(door);
+        }
+        assertNull(repository.changesSince(version));
+        assertEquals(Set.<UUID>of(), repository.changesSince(repository.snapshot().getVersion()));
+    }
+
+//    Counts come from the wrapped repository and follow writes made through the snapshots.
+    @Test
+    void getActiveSensorCount_delegated() {
+        door.setActive(true);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        assertEquals(1, repository.getActiveSensorCount());
+        assertEquals(1, repository.getActiveSensorCount(SensorType.DOOR));
+    }
+}
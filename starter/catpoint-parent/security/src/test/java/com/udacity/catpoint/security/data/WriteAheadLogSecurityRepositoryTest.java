@@ -0,0 +1,219 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteAheadLogSecurityRepositoryTest {
+
+    @TempDir
+    Path directory;
+
+    private WriteAheadLogSecurityRepository repository;
+
+    @AfterEach
+    void clean() throws IOException {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    private WriteAheadLogSecurityRepository reopen(int compactAfterRecords) throws IOException {
+        if (repository != null) {
+            repository.close();
+        }
+        repository = new WriteAheadLogSecurityRepository(directory, false, compactAfterRecords);
+        return repository;
+    }
+
+    private static void assertSameSensor(Sensor expected, Sensor actual) {
+        assertEquals(expected.getSensorId(), actual.getSensorId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getSensorType(), actual.getSensorType());
+        assertEquals(expected.getZone(), actual.getZone());
+        assertEquals(expected.getActive(), actual.getActive());
+    }
+
+//    Sensors, statuses and counts written before closing are all there after reopening.
+    @Test
+    void reopen_afterChanges_stateRecovered() throws IOException {
+        reopen(1000);
+        Sensor door = new Sensor("front door", SensorType.DOOR, "hall");
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        Sensor removed = new Sensor("motion", SensorType.MOTION);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        repository.addSensor(removed);
+        door.setActive(true);
+        repository.updateSensor(door);
+        repository.removeSensor(removed);
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        reopen(1000);
+        assertEquals(2, repository.getSensors().size());
+        for (Sensor sensor : repository.getSensors()) {
+            assertSameSensor(sensor.equals(door) ? door : window, sensor);
+        }
+        assertEquals(ArmingStatus.ARMED_AWAY, repository.getArmingStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        assertEquals(1, repository.getActiveSensorCount());
+        assertEquals(1, repository.getActiveSensorCount("hall"));
+        assertEquals(5 + 2, repository.getLogRecordCount());
+    }
+
+//    Once the log holds more records than the threshold and the sensor count, it is folded into a snapshot.
+    @Test
+    void updateSensor_pastThreshold_compactedAndRecovered() throws IOException {
+        reopen(10);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.DOOR);
+            sensors.add(sensor);
+            repository.addSensor(sensor);
+        }
+        for (int i = 0; i < 23; i++) {
+            Sensor sensor = sensors.get(i % sensors.size());
+            sensor.setActive(!sensor.getActive());
+            repository.updateSensor(sensor);
+        }
+        assertTrue(Files.exists(directory.resolve(WriteAheadLogSecurityRepository.SNAPSHOT_FILE)));
+        assertEquals(8, repository.getLogRecordCount());
+
+        reopen(10);
+        assertEquals(8, repository.getLogRecordCount());
+        assertEquals(5, repository.getSensors().size());
+        for (Sensor sensor : repository.getSensors()) {
+            assertSameSensor(sensors.get(sensors.indexOf(sensor)), sensor);
+        }
+        assertEquals(sensors.stream().filter(Sensor::getActive).count(), repository.getActiveSensorCount());
+    }
+
+//    A record cut short by a crash is dropped, and records written after reopening follow the last good one.
+    @Test
+    void reopen_tornLastRecord_droppedAndLogContinues() throws IOException {
+        reopen(1000);
+        Sensor kept = new Sensor("kept", SensorType.DOOR);
+        Sensor torn = new Sensor("torn", SensorType.WINDOW);
+        repository.addSensor(kept);
+        repository.addSensor(torn);
+        repository.close();
+        Path log = directory.resolve(WriteAheadLogSecurityRepository.LOG_FILE);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        reopen(1000);
+        assertEquals(1, repository.getSensors().size());
+        assertSameSensor(kept, repository.getSensors().iterator().next());
+        Sensor later = new Sensor("later", SensorType.MOTION);
+        repository.addSensor(later);
+
+        reopen(1000);
+        assertEquals(2, repository.getSensors().size());
+        assertTrue(repository.getSensors().contains(later));
+    }
+
+//    A record whose checksum doesn't match ends the log; nothing after it is applied.
+    @Test
+    void reopen_corruptRecord_laterRecordsIgnored() throws IOException {
+        reopen(1000);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        long firstRecordEnd = Files.size(directory.resolve(WriteAheadLogSecurityRepository.LOG_FILE));
+        repository.addSensor(new Sensor("corrupted", SensorType.DOOR));
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        repository.close();
+        byte[] bytes = Files.readAllBytes(directory.resolve(WriteAheadLogSecurityRepository.LOG_FILE));
+        bytes[(int) firstRecordEnd + 12] ^= 0x55;
+        Files.write(directory.resolve(WriteAheadLogSecurityRepository.LOG_FILE), bytes);
+
+        reopen(1000);
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        assertTrue(repository.getSensors().isEmpty());
+        assertEquals(firstRecordEnd, Files.size(directory.resolve(WriteAheadLogSecurityRepository.LOG_FILE)));
+    }
+
+//    A batch update is recovered in full.
+    @Test
+    void updateSensors_batch_recovered() throws IOException {
+        reopen(1000);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length], "zone" + i % 3);
+            sensors.add(sensor);
+            repository.addSensor(sensor);
+            sensor.setActive(true);
+        }
+        repository.updateSensors(sensors);
+
+        reopen(1000);
+        assertEquals(50, repository.getActiveSensorCount());
+        assertEquals(17, repository.getActiveSensorCount("zone0"));
+    }
+
+//    A batch with a sensor that can't be encoded changes nothing, and leaves nothing behind for the next write.
+    @Test
+    void updateSensors_unencodableSensor_nothingChangedAndLogIntact() throws IOException {
+        reopen(1000);
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        repository.addSensor(door);
+        Sensor active = new Sensor("window", SensorType.WINDOW);
+        active.setActive(true);
+        Sensor tooLong = new Sensor("x".repeat(0xFFFF), SensorType.MOTION);
+
+        assertThrows(IllegalArgumentException.class, () -> repository.updateSensors(List.of(active, tooLong)));
+        assertEquals(Set.of(door), repository.getSensors());
+        assertEquals(0, repository.getActiveSensorCount());
+        assertEquals(1, repository.getLogRecordCount());
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+
+        reopen(1000);
+        assertEquals(Set.of(door), repository.getSensors());
+        assertEquals(AlarmStatus.ALARM, repository.getAlarmStatus());
+    }
+
+//    A change whose record can't be written to the log isn't applied in memory either.
+    @Test
+    void addSensor_logWriteFails_stateUnchanged() throws IOException {
+        reopen(1000);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.close();
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        door.setActive(true);
+
+        assertThrows(UncheckedIOException.class, () -> repository.addSensor(door));
+        assertThrows(UncheckedIOException.class, () -> repository.setArmingStatus(ArmingStatus.DISARMED));
+        assertTrue(repository.getSensors().isEmpty());
+        assertEquals(0, repository.getActiveSensorCount());
+        assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+        assertEquals(1, repository.getLogRecordCount());
+    }
+
+//    Clearing the repository removes the snapshot and the log.
+    @Test
+    void cleanAll_afterCompaction_reopensEmpty() throws IOException {
+        reopen(1000);
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        repository.compact();
+        repository.addSensor(new Sensor("window", SensorType.WINDOW));
+        repository.cleanAll();
+
+        reopen(1000);
+        assertTrue(repository.getSensors().isEmpty());
+        assertEquals(ArmingStatus.DISARMED, repository.getArmingStatus());
+        assertEquals(AlarmStatus.NO_ALARM, repository.getAlarmStatus());
+    }
+}
@@ -0,0 +1,309 @@
+package com.udacity.catpoint.security.data;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WriteBehindSecurityRepositoryTest {
+
+    private RecordingRepository delegate;
+    private WriteBehindSecurityRepository repository;
+
+    @BeforeEach
+    void init() {
+        delegate = new RecordingRepository();
+    }
+
+    @AfterEach
+    void clean() {
+        if (repository != null) {
+            delegate.failing = false;
+            repository.close();
+        }
+    }
+
+    private WriteBehindSecurityRepository open(WriteBehindSecurityRepository.Durability durability) {
+        repository = new WriteBehindSecurityRepository(delegate, durability, 10);
+        return repository;
+    }
+
+//    Reads see writes at once, while the wrapped repository sees nothing until a flush.
+    @Test
+    void updateSensor_beforeFlush_readFromMemoryOnly() {
+        open(WriteBehindSecurityRepository.Durability.ON_CLOSE);
+        Sensor sensor = new Sensor("door", SensorType.DOOR, "hall");
+        repository.addSensor(sensor);
+        sensor.setActive(true);
+        repository.updateSensor(sensor);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+
+        assertTrue(repository.getSensors().contains(sensor));
+        assertEquals(1, repository.getActiveSensorCount());
+        assertEquals(1, repository.getActiveSensorCount("hall"));
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+        assertTrue(delegate.calls.isEmpty());
+        assertEquals(2, repository.getQueueDepth());
+
+        repository.flush();
+        assertEquals(List.of("add", "alarm"), delegate.calls);
+        assertTrue(delegate.sensors.get(sensor.getSensorId()).getActive());
+        assertEquals(AlarmStatus.PENDING_ALARM, delegate.alarmStatus);
+        assertEquals(0, repository.getQueueDepth());
+    }
+
+//    Many writes to the same sensors between flushes reach the wrapped repository as one batch, holding each sensor's last state.
+    @Test
+    void updateSensor_repeatedWrites_mergedIntoOneBatch() {
+        delegate.addSensor(new Sensor("window", SensorType.WINDOW));
+        delegate.addSensor(new Sensor("motion", SensorType.MOTION));
+        delegate.calls.clear();
+        open(WriteBehindSecurityRepository.Durability.ON_CLOSE);
+        List<Sensor> sensors = new ArrayList<>(repository.getSensors());
+        for (int i = 0; i < 9; i++) {
+            Sensor sensor = sensors.get(i % 2);
+            sensor.setActive(!sensor.getActive());
+            repository.updateSensor(sensor);
+        }
+        repository.flush();
+
+        assertEquals(List.of("updateSensors:2"), delegate.calls);
+        assertEquals(9, repository.getQueuedWriteCount());
+        assertEquals(7, repository.getMergedWriteCount());
+        assertEquals(2, repository.getFlushedWriteCount());
+        assertEquals(1, repository.getFlushCount());
+        for (Sensor sensor : sensors) {
+            assertEquals(sensor.getActive(), delegate.sensors.get(sensor.getSensorId()).getActive());
+        }
+    }
+
+//    The queue keeps the sensor as it was written, not as the caller changes it afterwards.
+    @Test
+    void flush_sensorChangedAfterWrite_writtenStateFlushed() {
+        open(WriteBehindSecurityRepository.Durability.ON_CLOSE);
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        repository.addSensor(sensor);
+        sensor.setActive(true);
+        repository.flush();
+        assertFalse(delegate.sensors.get(sensor.getSensorId()).getActive());
+    }
+
+//    A sensor added and removed again between flushes never reaches the wrapped repository.
+    @Test
+    void removeSensor_afterUnflushedAdd_nothingWritten() {
+        open(WriteBehindSecurityRepository.Durability.ON_CLOSE);
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        repository.addSensor(sensor);
+        repository.updateSensor(sensor);
+        repository.removeSensor(sensor);
+        repository.flush();
+        assertTrue(delegate.calls.isEmpty());
+    }
+
+//    A sensor removed and added again between flushes is removed, then added, in the wrapped repository.
+    @Test
+    void addSensor_afterUnflushedRemove_replaced() {
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        delegate.addSensor(sensor);
+        delegate.calls.clear();
+        open(WriteBehindSecurityRepository.Durability.ON_CLOSE);
+        repository.removeSensor(sensor);
+        sensor.setName("front door");
+        repository.addSensor(sensor);
+        repository.flush();
+        assertEquals(List.of("remove", "add"), delegate.calls);
+        assertEquals("front door", delegate.sensors.get(sensor.getSensorId()).getName());
+    }
+
+//    In sync mode every write has reached the wrapped repository when it returns.
+    @Test
+    void setArmingStatus_sync_writtenBeforeReturning() {
+        open(WriteBehindSecurityRepository.Durability.SYNC);
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertEquals(ArmingStatus.ARMED_HOME, delegate.armingStatus);
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        assertEquals(1, delegate.sensors.size());
+        assertEquals(2, repository.getFlushCount());
+    }
+
+//    In interval mode the background thread flushes without being asked.
+    @Test
+    void updateSensor_interval_flushedInBackground() throws InterruptedException {
+        open(WriteBehindSecurityRepository.Durability.INTERVAL);
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        repository.addSensor(sensor);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, repository.getQueueDepth());
+        assertTrue(delegate.sensors.containsKey(sensor.getSensorId()));
+        assertTrue(repository.getMaxFlushLatencyMillis() >= repository.getMeanFlushLatencyMillis());
+    }
+
+//    Writes from a failed flush go back on the queue, and newer writes to the same sensor win.
+    @Test
+    void flush_delegateFails_writesRequeued() {
+        open(WriteBehindSecurityRepository.Durability.ON_CLOSE);
+        Sensor door = new Sensor("door", SensorType.DOOR);
+        Sensor window = new Sensor("window", SensorType.WINDOW);
+        repository.addSensor(door);
+        repository.addSensor(window);
+        repository.setAlarmStatus(AlarmStatus.ALARM);
+        delegate.failing = true;
+        assertThrows(IllegalStateException.class, repository::flush);
+        assertEquals(1, repository.getFailedFlushCount());
+        assertEquals(3, repository.getQueueDepth());
+
+        window.setActive(true);
+        repository.updateSensor(window);
+        repository.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        delegate.failing = false;
+        repository.flush();
+        assertEquals(2, delegate.sensors.size());
+        assertTrue(delegate.sensors.get(window.getSensorId()).getActive());
+        assertEquals(AlarmStatus.PENDING_ALARM, delegate.alarmStatus);
+    }
+
+//    In interval mode the background thread keeps retrying failed writes and flushes them once the wrapped repository recovers.
+    @Test
+    void interval_delegateFailsThenRecovers_writesFlushed() throws InterruptedException {
+        delegate.failing = true;
+        open(WriteBehindSecurityRepository.Durability.INTERVAL);
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        repository.addSensor(sensor);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (repository.getFailedFlushCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(repository.getFailedFlushCount() >= 2);
+        assertEquals(1, repository.getQueueDepth());
+
+        delegate.failing = false;
+        while (repository.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, repository.getQueueDepth());
+        assertTrue(delegate.sensors.containsKey(sensor.getSensorId()));
+    }
+
+//    Closing while the wrapped repository fails reports the failure instead of dropping the writes silently.
+    @Test
+    void close_delegateFails_failureRethrown() {
+        open(WriteBehindSecurityRepository.Durability.ON_CLOSE);
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        delegate.failing = true;
+        assertThrows(IllegalStateException.class, repository::close);
+        assertEquals(1, repository.getQueueDepth());
+    }
+
+//    Closing flushes whatever is still queued.
+    @Test
+    void close_pendingWrites_flushed() {
+        open(WriteBehindSecurityRepository.Durability.ON_CLOSE);
+        repository.addSensor(new Sensor("door", SensorType.DOOR));
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        repository.close();
+        assertEquals(1, delegate.sensors.size());
+        assertEquals(ArmingStatus.ARMED_AWAY, delegate.armingStatus);
+    }
+
+//    The wrapped repository's state is read once, when the decorator is created.
+    @Test
+    void open_existingState_loaded() {
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        sensor.setActive(true);
+        delegate.addSensor(sensor);
+        delegate.setArmingStatus(ArmingStatus.ARMED_HOME);
+        delegate.setAlarmStatus(AlarmStatus.PENDING_ALARM);
+        open(WriteBehindSecurityRepository.Durability.ON_CLOSE);
+        assertEquals(Set.of(sensor), repository.getSensors());
+        assertEquals(1, repository.getActiveSensorCount());
+        assertEquals(ArmingStatus.ARMED_HOME, repository.getArmingStatus());
+        assertEquals(AlarmStatus.PENDING_ALARM, repository.getAlarmStatus());
+    }
+
+    /**
+     * Keeps state in memory and records which methods were called. Can be made to fail every write.
+     */
+    private static class RecordingRepository implements SecurityRepository {
+        final Map<UUID, Sensor> sensors = new HashMap<>();
+        final List<String> calls = new ArrayList<>();
+        AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+        ArmingStatus armingStatus = ArmingStatus.DISARMED;
+        volatile boolean failing;
+
+        private void call(String name) {
+            if (failing) {
+                throw new IllegalStateException("unavailable");
+            }
+            calls.add(name);
+        }
+
+        @Override
+        public void addSensor(Sensor sensor) {
+            call("add");
+            sensors.put(sensor.getSensorId(), sensor);
+        }
+
+        @Override
+        public void removeSensor(Sensor sensor) {
+            call("remove");
+            sensors.remove(sensor.getSensorId());
+        }
+
+        @Override
+        public void updateSensor(Sensor sensor) {
+            call("update");
+            sensors.put(sensor.getSensorId(), sensor);
+        }
+
+        @Override
+        public void updateSensors(Collection<Sensor> sensors) {
+            call("updateSensors:" + sensors.size());
+            sensors.forEach(sensor -> this.sensors.put(sensor.getSensorId(), sensor));
+        }
+
+        @Override
+        public void setAlarmStatus(AlarmStatus alarmStatus) {
+            call("alarm");
+            this.alarmStatus = alarmStatus;
+        }
+
+        @Override
+        public void setArmingStatus(ArmingStatus armingStatus) {
+            call("arming");
+            this.armingStatus = armingStatus;
+        }
+
+        @Override
+        public Set<Sensor> getSensors() {
+            return new HashSet<>(sensors.values());
+        }
+
+        @Override
+        public AlarmStatus getAlarmStatus() {
+            return alarmStatus;
+        }
+
+        @Override
+        public ArmingStatus getArmingStatus() {
+            return armingStatus;
+        }
+
+        @Override
+        public void cleanAll() {
+            sensors.clear();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event cost of the alarm rules. tableTransition looks each event up in AlarmStateMachine;
+ * conditionalTransition decides the same events with the nested conditionals SecurityService used
+ * before; the service* benchmarks apply a sensor toggle or a scan result through SecurityService,
+ * repository reads and writes included.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.security.service.AlarmStateMachineBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlarmStateMachineBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    //random states and events, so branch prediction can't learn a single path
+    private final ArmingStatus[] armingStatuses = new ArmingStatus[EVENTS];
+    private final AlarmStatus[] alarmStatuses = new AlarmStatus[EVENTS];
+    private final AlarmStateMachine.Event[] events = new AlarmStateMachine.Event[EVENTS];
+    private int next;
+
+    private SecurityService securityService;
+    private Sensor sensor;
+    private boolean cat;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        for (int i = 0; i < EVENTS; i++) {
+            armingStatuses[i] = ArmingStatus.values()[random.nextInt(ArmingStatus.values().length)];
+            alarmStatuses[i] = AlarmStatus.values()[random.nextInt(AlarmStatus.values().length)];
+            events[i] = AlarmStateMachine.Event.values()[random.nextInt(AlarmStateMachine.Event.values().length)];
+        }
+        InMemorySecurityRepository repository = new InMemorySecurityRepository();
+        securityService = new SecurityService(repository, new FakeImageService());
+        sensor = new Sensor("toggled", SensorType.DOOR);
+        repository.addSensor(sensor);
+        repository.addSensor(new Sensor("other", SensorType.WINDOW));
+        repository.setArmingStatus(ArmingStatus.ARMED_HOME);
+    }
+
+    @Benchmark
+    public int tableTransition() {
+        int i = next = (next + 1) & (EVENTS - 1);
+        return AlarmStateMachine.transition(armingStatuses[i], alarmStatuses[i], events[i]);
+    }
+
+    @Benchmark
+    public AlarmStatus conditionalTransition() {
+        int i = next = (next + 1) & (EVENTS - 1);
+        return conditional(armingStatuses[i], alarmStatuses[i], events[i]);
+    }
+
+    @Benchmark
+    public void serviceSensorToggle() {
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    @Benchmark
+    public void serviceCatDetected() {
+        cat = !cat;
+        securityService.catDetected(cat);
+    }
+
+    /**
+     * The alarm status the pre-table SecurityService would have set for the event, or the current one if none.
+     */
+    private static AlarmStatus conditional(ArmingStatus armingStatus, AlarmStatus alarmStatus, AlarmStateMachine.Event event) {
+        switch (event) {
+            case SENSOR_ACTIVATED:
+                if (armingStatus == ArmingStatus.DISARMED) {
+                    return alarmStatus;
+                }
+                return alarmStatus == AlarmStatus.NO_ALARM ? AlarmStatus.PENDING_ALARM : AlarmStatus.ALARM;
+            case LAST_SENSOR_DEACTIVATED:
+                return alarmStatus == AlarmStatus.ALARM ? AlarmStatus.PENDING_ALARM : AlarmStatus.NO_ALARM;
+            case CAT_DETECTED_SENSORS_ACTIVE:
+            case CAT_DETECTED_NO_SENSORS_ACTIVE:
+            case NO_CAT_SENSORS_ACTIVE:
+            case NO_CAT_NO_SENSORS_ACTIVE:
+                boolean seen = event == AlarmStateMachine.Event.CAT_DETECTED_SENSORS_ACTIVE
+                        || event == AlarmStateMachine.Event.CAT_DETECTED_NO_SENSORS_ACTIVE;
+                boolean anyActive = event == AlarmStateMachine.Event.CAT_DETECTED_SENSORS_ACTIVE
+                        || event == AlarmStateMachine.Event.NO_CAT_SENSORS_ACTIVE;
+                if (seen && armingStatus == ArmingStatus.ARMED_HOME) {
+                    return AlarmStatus.ALARM;
+                }
+                return anyActive ? alarmStatus : AlarmStatus.NO_ALARM;
+            case DISARM:
+                return AlarmStatus.NO_ALARM;
+            case ARM_HOME_CAT_DETECTED:
+                return AlarmStatus.ALARM;
+            default:
+                return alarmStatus;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AlarmStateMachineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
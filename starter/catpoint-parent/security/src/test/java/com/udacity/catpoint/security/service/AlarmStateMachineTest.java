@@ -0,0 +1,211 @@
+package com.udacity.catpoint.security.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AlarmStateMachineTest {
+    private static final int SENSORS = 3;
+    //activate each sensor, deactivate each sensor, cat seen, no cat, then one per arming status
+    private static final int OPERATIONS = SENSORS * 2 + 2 + ArmingStatus.values().length;
+
+    private StatusDispatcher statusDispatcher;
+
+    @BeforeEach
+    void init() {
+        statusDispatcher = new StatusDispatcher();
+    }
+
+    @AfterEach
+    void clean() throws InterruptedException {
+        statusDispatcher.close();
+    }
+
+    //    Every table entry has an arming and alarm status of its own to hand back.
+    @Test
+    void transition_everyStateAndEvent_nextStatusesDefined() {
+        for (ArmingStatus arming : ArmingStatus.values()) {
+            for (AlarmStatus alarm : AlarmStatus.values()) {
+                for (AlarmStateMachine.Event event : AlarmStateMachine.Event.values()) {
+                    int transition = AlarmStateMachine.transition(arming, alarm, event);
+                    assertNotNull(AlarmStateMachine.nextAlarmStatus(transition));
+                    assertNotNull(AlarmStateMachine.nextArmingStatus(transition));
+                    if (!AlarmStateMachine.setsAlarmStatus(transition)) {
+                        assertEquals(alarm, AlarmStateMachine.nextAlarmStatus(transition));
+                    }
+                }
+            }
+        }
+    }
+
+    //    From every state, every one or two operations set the same alarm statuses, in the same order, as the conditional rules did.
+    @Test
+    void securityService_everyStateAndOperationPair_matchesConditionalRules() {
+        int cases = 0;
+        for (ArmingStatus arming : ArmingStatus.values()) {
+            for (AlarmStatus alarm : AlarmStatus.values()) {
+                for (int cat = 0; cat < 2; cat++) {
+                    for (int activeMask = 0; activeMask < 1 << SENSORS; activeMask++) {
+                        for (int first = 0; first < OPERATIONS; first++) {
+                            for (int second = -1; second < OPERATIONS; second++) {
+                                int[] operations = second < 0 ? new int[]{first} : new int[]{first, second};
+                                compare(arming, alarm, cat == 1, activeMask, operations);
+                                cases++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        assertEquals(3 * 3 * 2 * 8 * OPERATIONS * (OPERATIONS + 1), cases);
+    }
+
+    private void compare(ArmingStatus arming, AlarmStatus alarm, boolean cat, int activeMask, int[] operations) {
+        RecordingRepository repository = new RecordingRepository();
+        SecurityService securityService = new SecurityService(repository, new FakeImageService(), statusDispatcher);
+        repository.setArmingStatus(arming);
+        securityService.catDetected(cat);
+        repository.setAlarmStatus(alarm);
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < SENSORS; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.DOOR);
+            sensor.setActive((activeMask & 1 << i) != 0);
+            repository.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        repository.alarmStatuses.clear();
+
+        ConditionalRules expected = new ConditionalRules(arming, alarm, cat, activeMask);
+        for (int operation : operations) {
+            expected.apply(operation);
+            if (operation < SENSORS) {
+                securityService.changeSensorActivationStatus(sensors.get(operation), true);
+            } else if (operation < SENSORS * 2) {
+                securityService.changeSensorActivationStatus(sensors.get(operation - SENSORS), false);
+            } else if (operation < SENSORS * 2 + 2) {
+                securityService.catDetected(operation == SENSORS * 2);
+            } else {
+                securityService.setArmingStatus(ArmingStatus.values()[operation - SENSORS * 2 - 2]);
+            }
+        }
+
+        String description = arming + " " + alarm + " cat=" + cat + " active=" + activeMask + " operations=" + Arrays.toString(operations);
+        assertEquals(expected.alarmStatuses, repository.alarmStatuses, description);
+        assertEquals(expected.alarm, securityService.getAlarmStatus(), description);
+        assertEquals(expected.arming, securityService.getArmingStatus(), description);
+        for (int i = 0; i < SENSORS; i++) {
+            assertEquals(expected.active[i], sensors.get(i).getActive(), description);
+        }
+        assertEquals(expected.activeCount(), securityService.getActiveSensorCount(), description);
+    }
+
+    private static class RecordingRepository extends InMemorySecurityRepository {
+        final List<AlarmStatus> alarmStatuses = new ArrayList<>();
+
+        @Override
+        public void setAlarmStatus(AlarmStatus alarmStatus) {
+            alarmStatuses.add(alarmStatus);
+            super.setAlarmStatus(alarmStatus);
+        }
+    }
+
+    /**
+     * The alarm rules as SecurityService wrote them before the transition table, over plain fields.
+     */
+    private static class ConditionalRules {
+        ArmingStatus arming;
+        AlarmStatus alarm;
+        boolean catDetection;
+        final boolean[] active = new boolean[SENSORS];
+        final List<AlarmStatus> alarmStatuses = new ArrayList<>();
+
+        ConditionalRules(ArmingStatus arming, AlarmStatus alarm, boolean catDetection, int activeMask) {
+            this.arming = arming;
+            this.alarm = alarm;
+            this.catDetection = catDetection;
+            for (int i = 0; i < SENSORS; i++) {
+                active[i] = (activeMask & 1 << i) != 0;
+            }
+        }
+
+        void apply(int operation) {
+            if (operation < SENSORS) {
+                changeSensorActivationStatus(operation, true);
+            } else if (operation < SENSORS * 2) {
+                changeSensorActivationStatus(operation - SENSORS, false);
+            } else if (operation < SENSORS * 2 + 2) {
+                catDetected(operation == SENSORS * 2);
+            } else {
+                setArmingStatus(ArmingStatus.values()[operation - SENSORS * 2 - 2]);
+            }
+        }
+
+        int activeCount() {
+            int count = 0;
+            for (boolean sensorActive : active) {
+                count += sensorActive ? 1 : 0;
+            }
+            return count;
+        }
+
+        void setArmingStatus(ArmingStatus armingStatus) {
+            if (armingStatus == ArmingStatus.DISARMED) {
+                setAlarmStatus(AlarmStatus.NO_ALARM);
+            } else {
+                if (catDetection && armingStatus == ArmingStatus.ARMED_HOME) {
+                    setAlarmStatus(AlarmStatus.ALARM);
+                }
+                for (int i = 0; i < SENSORS; i++) {
+                    changeSensorActivationStatus(i, false);
+                }
+            }
+            arming = armingStatus;
+        }
+
+        void catDetected(boolean cat) {
+            catDetection = cat;
+            if (cat && arming == ArmingStatus.ARMED_HOME) {
+                setAlarmStatus(AlarmStatus.ALARM);
+            } else if (activeCount() == 0) {
+                setAlarmStatus(AlarmStatus.NO_ALARM);
+            }
+        }
+
+        void setAlarmStatus(AlarmStatus status) {
+            alarm = status;
+            alarmStatuses.add(status);
+        }
+
+        void handleSensorActivated() {
+            if (arming == ArmingStatus.DISARMED) {
+                return;
+            }
+            switch (alarm) {
+                case NO_ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
+                default -> setAlarmStatus(AlarmStatus.ALARM); //PENDING_ALARM
+            }
+        }
+
+        void handleSensorDeactivated() {
+            switch (alarm) {
+                case ALARM -> setAlarmStatus(AlarmStatus.PENDING_ALARM);
+                default -> setAlarmStatus(AlarmStatus.NO_ALARM); //PENDING_ALARM
+            }
+        }
+
+        void changeSensorActivationStatus(int sensor, boolean sensorActive) {
+            if (!active[sensor] && sensorActive) {
+                handleSensorActivated();
+            } else if (active[sensor] && !sensorActive && activeCount() == 1) {
+                handleSensorDeactivated();
+            }
+            active[sensor] = sensorActive;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.udacity.catpoint.security.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.udacity.catpoint.image.service.ImageService;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class CameraIngestionServiceTest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path front;
+    @TempDir
+    Path back;
+
+    //scans record the camera id and the frame width, which identifies the frame
+    private final List<String> scans = new ArrayList<>();
+    private final CountDownLatch scanning = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile boolean blockFirstScan;
+    private volatile int failingWidth = -1;
+
+    private final ImageService imageService = new ImageService() {
+        @Override
+        public boolean imageContainsCat(BufferedImage image, float confidenceThreshhold) {
+            return imageContainsCat(null, image, confidenceThreshhold);
+        }
+
+        @Override
+        public boolean imageContainsCat(String cameraId, BufferedImage image, float confidenceThreshhold) {
+            scanning.countDown();
+            if (blockFirstScan) {
+                try {
+                    release.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                blockFirstScan = false;
+            }
+            if (image.getWidth() == failingWidth) {
+                throw new IllegalStateException("scan failed");
+            }
+            synchronized (scans) {
+                scans.add(cameraId + ":" + image.getWidth());
+            }
+            return false;
+        }
+    };
+
+    private SecurityService securityService;
+    private CameraIngestionService ingestion;
+
+    private CameraIngestionService start(int queueCapacity, long settleMillis) throws IOException {
+        securityService = new SecurityService(new InMemorySecurityRepository(), imageService);
+        ingestion = new CameraIngestionService(securityService, 2, queueCapacity, settleMillis);
+        ingestion.addCamera("front", front);
+        ingestion.addCamera("back", back);
+        ingestion.start();
+        return ingestion;
+    }
+
+    @AfterEach
+    void clean() throws IOException, InterruptedException {
+        release.countDown();
+        if (ingestion != null) {
+            ingestion.close();
+            securityService.close();
+        }
+    }
+
+    private static byte[] png(int width) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, 4, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private CameraIngestionService.CameraStats stats(String cameraId) {
+        return ingestion.getStats().stream().filter(s -> s.cameraId().equals(cameraId)).findFirst().orElseThrow();
+    }
+
+    private List<String> scans() {
+        synchronized (scans) {
+            return List.copyOf(scans);
+        }
+    }
+
+//    A new file fires several events but is decoded and scanned once, with its camera's id.
+    @Test
+    void newFrames_eachDecodedOnceWithCameraId() throws Exception {
+        start(4, 50);
+        Files.write(front.resolve("a.png"), png(11));
+        Files.write(back.resolve("a.png"), png(12));
+        await(() -> stats("front").processed() == 1 && stats("back").processed() == 1);
+        Files.write(front.resolve("b.png"), png(13));
+        await(() -> stats("front").processed() == 2);
+
+        assertEquals(3, scans().size());
+        assertEquals(Set.of("front:11", "back:12", "front:13"), Set.copyOf(scans()));
+        assertEquals(2, stats("front").received());
+        assertEquals(1, stats("back").received());
+    }
+
+//    A file written in pieces isn't read until it has been quiet for the settle period.
+    @Test
+    void fileWrittenInPieces_decodedOnceComplete() throws Exception {
+        start(4, 300);
+        byte[] frame = png(21);
+        try (OutputStream out = Files.newOutputStream(front.resolve("slow.png"))) {
+            out.write(frame, 0, frame.length / 2);
+            out.flush();
+            Thread.sleep(50);
+            out.write(frame, frame.length / 2, frame.length - frame.length / 2);
+        }
+        await(() -> stats("front").processed() == 1);
+        Files.write(front.resolve("next.png"), png(22));
+        await(() -> stats("front").processed() == 2);
+
+        assertEquals(List.of("front:21", "front:22"), scans());
+        assertEquals(2, stats("front").received());
+    }
+
+//    While scans are slow the oldest queued frames are dropped, and the stats count every stage.
+    @Test
+    void slowScans_oldestFramesDropped_statsCounted() throws Exception {
+        blockFirstScan = true;
+        start(2, 20);
+        Files.write(front.resolve("frame1.png"), png(1));
+        assertTrue(scanning.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        for (int width = 2; width <= 6; width++) {
+            long received = width - 1;
+            Files.write(front.resolve("frame" + width + ".png"), png(width));
+            await(() -> stats("front").received() == received + 1);
+        }
+
+        CameraIngestionService.CameraStats blocked = stats("front");
+        assertEquals(6, blocked.received());
+        assertEquals(0, blocked.processed());
+        assertEquals(3, blocked.dropped());
+        assertEquals(2, blocked.queueDepth());
+
+        release.countDown();
+        await(() -> stats("front").processed() == 3);
+        assertEquals(List.of("front:1", "front:5", "front:6"), scans());
+        CameraIngestionService.CameraStats done = stats("front");
+        assertEquals(0, done.queueDepth());
+        assertEquals(0, done.failed());
+        assertTrue(done.framesPerSecond() > 0);
+        assertEquals(0, stats("back").received());
+    }
+
+//    A scan that throws is counted as failed and later frames are still scanned.
+    @Test
+    void failingScan_countedAndNextFrameScanned() throws Exception {
+        failingWidth = 31;
+        start(4, 20);
+        Files.write(back.resolve("bad.png"), png(31));
+        await(() -> stats("back").failed() == 1);
+        Files.write(back.resolve("good.png"), png(32));
+        await(() -> stats("back").processed() == 1);
+
+        assertEquals(List.of("back:32"), scans());
+    }
+
+//    Files that aren't images are ignored rather than counted.
+    @Test
+    void notAnImage_ignored() throws Exception {
+        start(4, 20);
+        Files.writeString(front.resolve("notes.txt"), "not a frame");
+        Files.write(front.resolve("frame.png"), png(41));
+        await(() -> stats("front").processed() == 1);
+
+        assertEquals(1, stats("front").received());
+        assertEquals(List.of("front:41"), scans());
+    }
+}
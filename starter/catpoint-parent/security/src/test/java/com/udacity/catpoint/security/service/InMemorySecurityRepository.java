@@ -0,0 +1,81 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Repository for benchmarks and tests, keeping them about SecurityService rather than preferences and JSON serialization.
+ */
+class InMemorySecurityRepository implements SecurityRepository {
+    private final Set<Sensor> sensors = new HashSet<>();
+    private final SensorCounters activeSensors = new SensorCounters();
+    private AlarmStatus alarmStatus = AlarmStatus.NO_ALARM;
+    private ArmingStatus armingStatus = ArmingStatus.DISARMED;
+
+    @Override
+    public void addSensor(Sensor sensor) {
+        sensors.add(sensor);
+        activeSensors.track(sensor);
+    }
+
+    @Override
+    public void removeSensor(Sensor sensor) {
+        sensors.remove(sensor);
+        activeSensors.untrack(sensor);
+    }
+
+    @Override
+    public void updateSensor(Sensor sensor) {
+        sensors.remove(sensor);
+        sensors.add(sensor);
+        activeSensors.track(sensor);
+    }
+
+    @Override
+    public void setAlarmStatus(AlarmStatus alarmStatus) {
+        this.alarmStatus = alarmStatus;
+    }
+
+    @Override
+    public void setArmingStatus(ArmingStatus armingStatus) {
+        this.armingStatus = armingStatus;
+    }
+
+    @Override
+    public Set<Sensor> getSensors() {
+        return new HashSet<>(sensors);
+    }
+
+    @Override
+    public int getActiveSensorCount() {
+        return activeSensors.getActiveCount();
+    }
+
+    @Override
+    public int getActiveSensorCount(SensorType sensorType) {
+        return activeSensors.getActiveCount(sensorType);
+    }
+
+    @Override
+    public int getActiveSensorCount(String zone) {
+        return activeSensors.getActiveCount(zone);
+    }
+
+    @Override
+    public AlarmStatus getAlarmStatus() {
+        return alarmStatus;
+    }
+
+    @Override
+    public ArmingStatus getArmingStatus() {
+        return armingStatus;
+    }
+
+    @Override
+    public void cleanAll() {
+        sensors.clear();
+        activeSensors.clear();
+    }
+}
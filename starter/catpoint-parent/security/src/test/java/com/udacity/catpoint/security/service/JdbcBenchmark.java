@@ -0,0 +1,124 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+import java.util.stream.Stream;
+
+/**
+ * Mixed workload of nine active-sensor counts to one activation change through SecurityService, for the
+ * preferences repository, the H2 database and the H2 database behind write-behind, plus the cost of the
+ * "active doors" query pushed down to the database against filtering a getSensors() copy.
+ * Preferences can't hold a value longer than 8192 characters, about 60 sensors as JSON, so all stores are
+ * compared at 50 sensors and the database alone at 10k.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.security.service.JdbcBenchmark -Dexec.classpathScope=test
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JdbcBenchmark {
+
+    private static final SensorType[] TYPES = SensorType.values();
+    private static final int ZONES = 16;
+
+    @State(Scope.Benchmark)
+    public static class Store {
+        @Param({"prefs", "jdbc", "jdbcWriteBehind"})
+        String store;
+
+        @Param({"50"})
+        int sensors;
+
+        Path directory;
+        JdbcSecurityRepository database;
+        SecurityRepository repository;
+        SecurityService securityService;
+        List<Sensor> sensorList;
+        int next;
+
+        @Setup
+        public void setup() throws IOException, BackingStoreException {
+            directory = Files.createTempDirectory("jdbc-benchmark");
+            if (store.equals("prefs")) {
+                repository = new PretendDatabaseSecurityRepositoryImpl();
+                repository.cleanAll();
+            } else {
+                database = new JdbcSecurityRepository(directory.resolve("catpoint"));
+                repository = store.equals("jdbc") ? database
+                        : new WriteBehindSecurityRepository(database, WriteBehindSecurityRepository.Durability.INTERVAL, 200);
+            }
+            sensorList = new ArrayList<>(sensors);
+            for (int i = 0; i < sensors; i++) {
+                Sensor sensor = new Sensor("sensor" + i, TYPES[i % TYPES.length], "zone" + i % ZONES);
+                sensor.setActive(i % 2 == 0);
+                sensorList.add(sensor);
+            }
+            repository.updateSensors(sensorList);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            securityService = new SecurityService(repository, new FakeImageService());
+        }
+
+        @TearDown
+        public void tearDown() throws IOException, BackingStoreException {
+            if (repository instanceof WriteBehindSecurityRepository writeBehind) {
+                writeBehind.close();
+            }
+            repository.cleanAll();
+            if (database != null) {
+                database.close();
+            }
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(10)
+    public int mixedReadWrite(Store state) {
+        int i = state.next++;
+        Sensor sensor = state.sensorList.get(i % state.sensorList.size());
+        state.securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+        int active = 0;
+        for (int read = 0; read < 9; read++) {
+            active += read % 2 == 0
+                    ? state.repository.getActiveSensorCount(TYPES[(i + read) % TYPES.length])
+                    : state.repository.getActiveSensorCount("zone" + (i + read) % ZONES);
+        }
+        return active;
+    }
+
+    @Benchmark
+    public int activeDoorsQuery(Store state) {
+        return state.repository.getActiveSensorCount(SensorType.DOOR);
+    }
+
+    @Benchmark
+    public long activeDoorsFiltered(Store state) {
+        return state.repository.getSensors().stream()
+                .filter(sensor -> sensor.getActive() && sensor.getSensorType() == SensorType.DOOR)
+                .count();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JdbcBenchmark.class.getSimpleName()).build()).run();
+        new Runner(new OptionsBuilder().include(JdbcBenchmark.class.getSimpleName())
+                .param("store", "jdbc", "jdbcWriteBehind").param("sensors", "10000").build()).run();
+    }
+}
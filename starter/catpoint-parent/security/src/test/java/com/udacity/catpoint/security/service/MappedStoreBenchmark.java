@@ -0,0 +1,124 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Cost of persisting a sensor activation change through SecurityService with 100k sensors, for the
+ * in-memory repository, the write-ahead log and the memory-mapped table in both durability modes, and
+ * the time to open a memory-mapped table of 100k sensors.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.security.service.MappedStoreBenchmark -Dexec.classpathScope=test
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappedStoreBenchmark {
+
+    private static final int SENSORS = 100_000;
+
+    @State(Scope.Benchmark)
+    public static class Toggles {
+        @Param({"memory", "log", "mapped", "mappedEveryWrite"})
+        String store;
+
+        Path directory;
+        SecurityRepository repository;
+        SecurityService securityService;
+        List<Sensor> sensors;
+        int next;
+
+        @Setup
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("store-toggles");
+            repository = switch (store) {
+                case "memory" -> new InMemorySecurityRepository();
+                case "log" -> new WriteAheadLogSecurityRepository(directory);
+                case "mapped" -> new MappedSecurityRepository(directory);
+                default -> new MappedSecurityRepository(directory, MappedSecurityRepository.Durability.EVERY_WRITE, 0);
+            };
+            sensors = addSensors(repository);
+            repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            securityService = new SecurityService(repository, new FakeImageService());
+        }
+
+        @TearDown
+        public void tearDown() throws Exception {
+            if (repository instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Startup {
+        Path directory;
+
+        @Setup
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("store-startup");
+            try (MappedSecurityRepository repository = new MappedSecurityRepository(directory)) {
+                addSensors(repository);
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void changeSensorActivationStatus(Toggles state) {
+        Sensor sensor = state.sensors.get(state.next);
+        state.next = (state.next + 1) % state.sensors.size();
+        state.securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public int openMapped(Startup state) throws IOException {
+        try (MappedSecurityRepository repository = new MappedSecurityRepository(state.directory)) {
+            return repository.getActiveSensorCount();
+        }
+    }
+
+    private static List<Sensor> addSensors(SecurityRepository repository) {
+        List<Sensor> sensors = new ArrayList<>(SENSORS);
+        for (int i = 0; i < SENSORS; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length], "zone" + i % 16);
+            repository.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        return sensors;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MappedStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,111 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sensor toggles per second with 1, 4 and 16 producer threads, submitted through SecurityEventLoop
+ * compared with calling SecurityService under a shared lock.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.security.service.SecurityEventLoopBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityEventLoopBenchmark {
+
+    private static final int SENSORS = 64;
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        SecurityService securityService;
+        SecurityEventLoop eventLoop;
+        List<Sensor> sensors = new ArrayList<>();
+        final Object lock = new Object();
+
+        @Setup
+        public void setup() {
+            securityService = new SecurityService(new InMemorySecurityRepository(), new FakeImageService());
+            for (int i = 0; i < SENSORS; i++) {
+                Sensor sensor = new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length]);
+                sensors.add(sensor);
+                securityService.addSensor(sensor);
+            }
+            securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+            eventLoop = new SecurityEventLoop(securityService);
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            eventLoop.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        int next;
+    }
+
+    private static Sensor nextSensor(Shared shared, Producer producer) {
+        return shared.sensors.get(producer.next++ % SENSORS);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void eventLoop1(Shared shared, Producer producer) {
+        Sensor sensor = nextSensor(shared, producer);
+        shared.eventLoop.changeSensorActivationStatus(sensor, producer.next % 2 == 0, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void eventLoop4(Shared shared, Producer producer) {
+        Sensor sensor = nextSensor(shared, producer);
+        shared.eventLoop.changeSensorActivationStatus(sensor, producer.next % 2 == 0, null);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void eventLoop16(Shared shared, Producer producer) {
+        Sensor sensor = nextSensor(shared, producer);
+        shared.eventLoop.changeSensorActivationStatus(sensor, producer.next % 2 == 0, null);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void locked1(Shared shared, Producer producer) {
+        toggleLocked(shared, producer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void locked4(Shared shared, Producer producer) {
+        toggleLocked(shared, producer);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void locked16(Shared shared, Producer producer) {
+        toggleLocked(shared, producer);
+    }
+
+    private static void toggleLocked(Shared shared, Producer producer) {
+        Sensor sensor = nextSensor(shared, producer);
+        synchronized (shared.lock) {
+            shared.securityService.changeSensorActivationStatus(sensor, producer.next % 2 == 0);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SecurityEventLoopBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,200 @@
+package com.udacity.catpoint.security.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.junit.jupiter.api.*;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.prefs.BackingStoreException;
+
+public class SecurityEventLoopTest {
+    private static final int PRODUCERS = 8;
+    private static final int SENSORS = 64;
+
+    private SecurityRepository securityRepository;
+    private SecurityService securityService;
+    private SecurityEventLoop eventLoop;
+
+    @BeforeEach
+    void init() {
+        securityRepository = new InMemorySecurityRepository();
+        securityService = new SecurityService(securityRepository, new FakeImageService());
+        //a small ring makes producers wait for free slots
+        eventLoop = new SecurityEventLoop(securityService, 8);
+    }
+
+    @AfterEach
+    void clean() throws BackingStoreException, InterruptedException {
+        eventLoop.close();
+        securityService.close();
+        securityRepository.cleanAll();
+    }
+
+    //    Sensor events from many threads are all applied; none are lost to racing updates.
+    @Test
+    void concurrentSensorActivations_allApplied_alarmRaised() {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < SENSORS; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.DOOR);
+            sensors.add(sensor);
+            securityService.addSensor(sensor);
+        }
+        eventLoop.setArmingStatus(ArmingStatus.ARMED_AWAY).join();
+
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        List<CompletableFuture<AlarmStatus>> results = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int first = p;
+            results.add(CompletableFuture.supplyAsync(() -> {
+                AlarmStatus last = null;
+                for (int i = first; i < SENSORS; i += PRODUCERS) {
+                    last = eventLoop.changeSensorActivationStatus(sensors.get(i), true).join();
+                }
+                return last;
+            }, producers));
+        }
+        results.forEach(CompletableFuture::join);
+        producers.shutdown();
+
+        assertTrue(securityService.getSensors().stream().allMatch(Sensor::getActive));
+        assertEquals(SENSORS, securityService.getSensors().size());
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+    }
+
+    //    Futures complete with the alarm status each event left behind, in submission order.
+    @Test
+    void events_appliedInOrder_futuresReportStatus() {
+        Sensor sensor = new Sensor("door", SensorType.DOOR);
+        securityService.addSensor(sensor);
+        CompletableFuture<AlarmStatus> armed = eventLoop.setArmingStatus(ArmingStatus.ARMED_HOME);
+        CompletableFuture<AlarmStatus> activated = eventLoop.changeSensorActivationStatus(sensor, true);
+        CompletableFuture<AlarmStatus> cat = eventLoop.catDetected(true);
+        assertEquals(AlarmStatus.NO_ALARM, armed.join());
+        assertEquals(AlarmStatus.PENDING_ALARM, activated.join());
+        assertEquals(AlarmStatus.ALARM, cat.join());
+    }
+
+    //    A closed loop refuses new events.
+    @Test
+    void closed_submit_throws() throws InterruptedException {
+        eventLoop.close();
+        assertThrows(IllegalStateException.class, () -> eventLoop.catDetected(true));
+    }
+
+    //    Events submitted while the loop closes are either applied before close returns or refused; none are left pending.
+    @Test
+    void closeWhileSubmitting_everyEventAppliedOrRefused() throws InterruptedException {
+        ConcurrentLinkedQueue<CompletableFuture<AlarmStatus>> submitted = new ConcurrentLinkedQueue<>();
+        CountDownLatch started = new CountDownLatch(PRODUCERS);
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        for (int p = 0; p < PRODUCERS; p++) {
+            producers.execute(() -> {
+                started.countDown();
+                try {
+                    while (true) {
+                        submitted.add(eventLoop.catDetected(false));
+                    }
+                } catch (IllegalStateException e) {
+                    //closed
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(20);
+        eventLoop.close();
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertFalse(submitted.isEmpty());
+        assertTrue(submitted.stream().allMatch(f -> f.isDone() && !f.isCompletedExceptionally()));
+    }
+
+    //    Events submitted, or a close requested, from the writer thread, e.g. by a callback, are refused rather than risking a deadlock.
+    @Test
+    void submitFromWriterThread_refused() {
+        CompletableFuture<Throwable> submit = new CompletableFuture<>();
+        CompletableFuture<Throwable> close = new CompletableFuture<>();
+        eventLoop.execute(() -> {
+            submit.complete(errorOf(() -> eventLoop.catDetected(true)));
+            close.complete(errorOf(() -> {
+                eventLoop.close();
+                return null;
+            }));
+        });
+        assertInstanceOf(IllegalStateException.class, submit.orTimeout(5, TimeUnit.SECONDS).join());
+        assertInstanceOf(IllegalStateException.class, close.orTimeout(5, TimeUnit.SECONDS).join());
+        assertEquals(AlarmStatus.NO_ALARM, eventLoop.setAlarmStatus(AlarmStatus.NO_ALARM).join());
+    }
+
+    private static Throwable errorOf(Callable<?> call) {
+        try {
+            call.call();
+            return null;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+
+    //    Tasks and scans run in order with the other events, with the scan itself on the calling thread.
+    @Test
+    void executeAndProcessImage_appliedInOrder() {
+        try (SecurityService catService = new SecurityService(securityRepository, (image, confidenceThreshhold) -> true);
+             SecurityEventLoop catLoop = new SecurityEventLoop(catService, 8)) {
+            List<String> order = new ArrayList<>();
+            catLoop.setArmingStatus(ArmingStatus.ARMED_HOME);
+            catLoop.execute(() -> order.add("armed " + catService.getArmingStatus()));
+            CompletableFuture<AlarmStatus> scanned = catLoop.processImage("front", new BufferedImage(4, 4, BufferedImage.TYPE_INT_RGB));
+            catLoop.execute(() -> order.add("alarm " + catService.getAlarmStatus()));
+
+            assertEquals(AlarmStatus.ALARM, scanned.join());
+            catLoop.setAlarmStatus(AlarmStatus.NO_ALARM).join();
+            assertEquals(List.of("armed ARMED_HOME", "alarm ALARM"), order);
+        } catch (InterruptedException e) {
+            fail(e);
+        }
+    }
+
+    //    An error thrown by an event or its callback is reported or logged, and later events are still applied.
+    @Test
+    void eventOrCallbackThrowsError_loopKeepsRunning() {
+        CompletableFuture<Throwable> reported = new CompletableFuture<>();
+        eventLoop.execute(() -> {
+            throw new AssertionError("task broke");
+        });
+        eventLoop.setArmingStatus(ArmingStatus.ARMED_HOME, (status, error) -> {
+            throw new AssertionError("callback broke");
+        });
+        eventLoop.setAlarmStatus(AlarmStatus.PENDING_ALARM, (status, error) -> reported.complete(error));
+
+        assertNull(reported.orTimeout(5, TimeUnit.SECONDS).join());
+        assertEquals(AlarmStatus.PENDING_ALARM, eventLoop.setAlarmStatus(AlarmStatus.PENDING_ALARM).orTimeout(5, TimeUnit.SECONDS).join());
+        assertEquals(ArmingStatus.ARMED_HOME, securityService.getArmingStatus());
+    }
+
+    //    An idle writer parks without a timeout instead of waking up to poll, and a new event still wakes it.
+    @Test
+    void idle_writerParkedUntilEvent() throws InterruptedException {
+        eventLoop.setAlarmStatus(AlarmStatus.NO_ALARM).join();
+        Thread writer = Thread.getAllStackTraces().keySet().stream()
+                .filter(t -> t.getName().equals("security-event-loop") && t.getState() != Thread.State.TERMINATED)
+                .findFirst().orElseThrow();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writer.getState() != Thread.State.WAITING) {
+            assertNotEquals(Thread.State.TIMED_WAITING, writer.getState());
+            assertTrue(System.nanoTime() < deadline, "writer never parked");
+            Thread.sleep(5);
+        }
+        assertEquals(AlarmStatus.ALARM, eventLoop.setAlarmStatus(AlarmStatus.ALARM).orTimeout(5, TimeUnit.SECONDS).join());
+    }
+}
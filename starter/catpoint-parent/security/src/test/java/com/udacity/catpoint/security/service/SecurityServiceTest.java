@@ -14,6 +14,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import com.udacity.catpoint.image.service.FakeImageService;
 import com.udacity.catpoint.image.service.ImageService;
+import com.udacity.catpoint.image.service.LabelResult;
 import com.udacity.catpoint.security.data.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 
@@ -36,6 +37,9 @@ public class SecurityServiceTest {
 
     @Spy
     private SecurityRepository securityRepository = new PretendDatabaseSecurityRepositoryImpl();
+    //@InjectMocks picks the widest constructor, so the dispatcher has to be supplied too
+    @Spy
+    private StatusDispatcher statusDispatcher = new StatusDispatcher();
     @InjectMocks
     private SecurityService securityService;
 
@@ -44,8 +48,9 @@ public class SecurityServiceTest {
         sensor = new Sensor("door", SensorType.DOOR);
     }
     @AfterEach
-    void clean() throws BackingStoreException {
+    void clean() throws BackingStoreException, InterruptedException {
         securityRepository.cleanAll();
+        statusDispatcher.close();
     }
 
     private Set<Sensor> getSensorSet(boolean active){
@@ -257,11 +262,110 @@ private static Stream<Arguments> provideEnums() {
         securityService.processImage(mock(BufferedImage.class));
         assertEquals(securityService.getAlarmStatus(),AlarmStatus.ALARM);
     }
+//    Scanning asynchronously should apply the same alarm transition once the scan completes.
+    @Test
+    void processImageAsync_catDetected_alarmArmedHome_alarmStatusAlarm(){
+        when(imageService.imageContainsCat(any(),anyFloat())).thenReturn(true);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertTrue(securityService.processImageAsync(mock(BufferedImage.class)).join());
+        assertEquals(securityService.getAlarmStatus(),AlarmStatus.ALARM);
+    }
+    //    Labels from a camera's frame are kept, so other threshholds can be checked without scanning again.
+    @Test
+    void processImageLabels_catLabel_alarmArmedHome_lastResultKept(){
+        LabelResult labels = new LabelResult(new String[]{"Pet", "Cat"}, new float[]{91.0f, 72.5f}, 10.0f);
+        when(imageService.detectLabels(any())).thenReturn(labels);
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.processImageLabels("front", mock(BufferedImage.class));
+        assertEquals(securityService.getAlarmStatus(),AlarmStatus.ALARM);
+        assertSame(labels, securityService.getLastLabelResult("front"));
+        assertFalse(securityService.getLastLabelResult("front").containsCat(90.0f));
+        assertNull(securityService.getLastLabelResult("back"));
+        verify(imageService, times(1)).detectLabels(any());
+    }
+    //    Active sensors are counted by type and zone as they change, and arming resets the counts.
+    @Test
+    void activeSensorCount_sensorsActivatedThenArmed_countsFollow(){
+        Sensor garage = new Sensor("garage", SensorType.MOTION, "garage");
+        securityService.addSensor(sensor);
+        securityService.addSensor(garage);
+        securityService.changeSensorActivationStatus(sensor,true);
+        securityService.changeSensorActivationStatus(garage,true);
+        assertEquals(2, securityService.getActiveSensorCount());
+        assertEquals(1, securityService.getActiveSensorCount(SensorType.MOTION));
+        assertEquals(1, securityService.getActiveSensorCount("garage"));
+        assertEquals(1, securityService.getActiveSensorCount(Sensor.DEFAULT_ZONE));
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        assertEquals(0, securityService.getActiveSensorCount());
+        assertEquals(0, securityService.getActiveSensorCount("garage"));
+    }
+    //    Arming writes every sensor's reset in a single batch instead of one write per sensor.
+    @Test
+    void systemArmed_activeSensors_sensorsPersistedOnce(){
+        Set<Sensor> sensors = getSensorSet(true);
+        sensors.forEach(sensor -> securityService.addSensor(sensor));
+        securityService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        verify(securityRepository, times(1)).updateSensors(any());
+        verify(securityRepository, never()).updateSensor(any());
+        assertEquals(0, securityService.getActiveSensorCount());
+    }
+    //    Activating several sensors in one batch ends in the same alarm status as activating them one by one.
+    @Test
+    void batchActivation_alarmArmed_sameStatusAsSequential(){
+        Set<Sensor> sensors = getSensorSet(false);
+        sensors.forEach(sensor -> securityService.addSensor(sensor));
+        securityService.setArmingStatus(ArmingStatus.ARMED_HOME);
+        securityService.changeSensorActivationStatus(sensors, true);
+        assertEquals(AlarmStatus.ALARM, securityService.getAlarmStatus());
+        assertEquals(3, securityService.getActiveSensorCount());
+        securityService.changeSensorActivationStatus(sensors, false);
+        assertEquals(AlarmStatus.PENDING_ALARM, securityService.getAlarmStatus());
+        assertEquals(0, securityService.getActiveSensorCount());
+    }
+//    Behind snapshots, sensor changes and the arming reset store copies and leave earlier snapshots as they were.
+    @Test
+    void snapshotRepository_sensorChanges_earlierSnapshotsUnchanged() {
+        SnapshotSecurityRepository snapshots = new SnapshotSecurityRepository(new InMemorySecurityRepository());
+        SecurityService service = new SecurityService(snapshots, imageService, statusDispatcher);
+        service.addSensor(sensor);
+        SensorSnapshot inactive = snapshots.snapshot();
+
+        service.changeSensorActivationStatus(inactive.getSensor(sensor.getSensorId()), true);
+        SensorSnapshot active = snapshots.snapshot();
+        assertTrue(active.getSensor(sensor.getSensorId()).getActive());
+        assertFalse(inactive.getSensor(sensor.getSensorId()).getActive());
+
+        service.setArmingStatus(ArmingStatus.ARMED_HOME);
+        assertFalse(snapshots.snapshot().getSensor(sensor.getSensorId()).getActive());
+        assertTrue(active.getSensor(sensor.getSensorId()).getActive());
+        assertEquals(0, service.getActiveSensorCount());
+    }
+
+    //    Closing a service leaves a dispatcher it was given open, for its owner to close.
+    @Test
+    void close_suppliedDispatcher_leftOpen() throws InterruptedException {
+        securityService.close();
+        verify(statusDispatcher, never()).close();
+    }
+
+    //    Closing a service that made its own dispatcher shuts it down, so later changes reach no listener.
+    @Test
+    void close_ownDispatcher_closed() throws InterruptedException {
+        SecurityService service = new SecurityService(new InMemorySecurityRepository(), imageService);
+        StatusListener statusListener = mock(StatusListener.class);
+        service.addStatusListener(statusListener);
+        service.close();
+        service.setAlarmStatus(AlarmStatus.ALARM);
+        verify(statusListener, after(200).never()).notify(any());
+    }
+
     @Test
     public void addRemoveListener() {
         StatusListener statusListener = mock(StatusListener.class);
         securityService.addStatusListener(statusListener);
         securityService.removeStatusListener(statusListener);
+        verify(statusDispatcher).addStatusListener(statusListener);
+        verify(statusDispatcher).removeStatusListener(statusListener);
     }
 
     @Test
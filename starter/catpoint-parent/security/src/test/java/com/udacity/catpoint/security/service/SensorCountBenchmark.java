@@ -0,0 +1,88 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of asking whether any sensor is active, and of a full sensor toggle through SecurityService,
+ * with 10, 10k and 1M sensors. The *Counted benchmarks use the repository's running counts; the
+ * *Scanned ones copy and stream over every sensor, as SecurityService used to.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.security.service.SensorCountBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SensorCountBenchmark {
+
+    @Param({"10", "10000", "1000000"})
+    int sensorCount;
+
+    private SecurityRepository counted;
+    private SecurityRepository scanned;
+    private SecurityService countedService;
+    private SecurityService scannedService;
+    private Sensor countedSensor;
+    private Sensor scannedSensor;
+
+    @Setup
+    public void setup() {
+        counted = new InMemorySecurityRepository();
+        scanned = new ScanningSecurityRepository();
+        for (int i = 0; i < sensorCount; i++) {
+            SensorType type = SensorType.values()[i % SensorType.values().length];
+            counted.addSensor(new Sensor("sensor" + i, type));
+            scanned.addSensor(new Sensor("sensor" + i, type));
+        }
+        countedSensor = new Sensor("toggled", SensorType.DOOR);
+        scannedSensor = new Sensor("toggled", SensorType.DOOR);
+        counted.addSensor(countedSensor);
+        scanned.addSensor(scannedSensor);
+        countedService = new SecurityService(counted, new FakeImageService());
+        scannedService = new SecurityService(scanned, new FakeImageService());
+        counted.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        scanned.setArmingStatus(ArmingStatus.ARMED_AWAY);
+    }
+
+    @Benchmark
+    public boolean anyActiveCounted() {
+        return counted.getActiveSensorCount() > 0;
+    }
+
+    @Benchmark
+    public boolean anyActiveScanned() {
+        return counted.getSensors().stream().anyMatch(Sensor::getActive);
+    }
+
+    @Benchmark
+    public void toggleCounted() {
+        countedService.changeSensorActivationStatus(countedSensor, !countedSensor.getActive());
+    }
+
+    @Benchmark
+    public void toggleScanned() {
+        scannedService.changeSensorActivationStatus(scannedSensor, !scannedSensor.getActive());
+    }
+
+    /**
+     * Answers active counts by scanning every sensor, as repositories did before keeping running counts.
+     */
+    private static class ScanningSecurityRepository extends InMemorySecurityRepository {
+        @Override
+        public int getActiveSensorCount() {
+            return (int) getSensors().stream().filter(Sensor::getActive).count();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SensorCountBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,94 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Sensor toggles per second through SecurityService with sensors kept as objects in a HashSet, as the
+ * existing repositories do, compared with ColumnarSecurityRepository. main() also prints the retained
+ * heap per sensor of both stores before running the benchmarks.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.security.service.SensorStoreBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SensorStoreBenchmark {
+
+    private static final int HEAP_SAMPLE_SENSORS = 1_000_000;
+
+    @Param({"10000", "1000000"})
+    int sensorCount;
+
+    private SecurityService objectService;
+    private SecurityService columnarService;
+    private List<Sensor> objectSensors;
+    private List<Sensor> columnarSensors;
+    private int next;
+
+    @Setup
+    public void setup() {
+        SecurityRepository objects = fill(new InMemorySecurityRepository(), sensorCount);
+        ColumnarSecurityRepository columns = (ColumnarSecurityRepository) fill(new ColumnarSecurityRepository(), sensorCount);
+        objects.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        columns.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        objectService = new SecurityService(objects, new FakeImageService());
+        columnarService = new SecurityService(columns, new FakeImageService());
+        //toggle a fixed spread of sensors, the columnar ones through the views it hands out
+        objectSensors = new ArrayList<>(objects.getSensors()).subList(0, Math.min(1024, sensorCount));
+        columnarSensors = new ArrayList<>(columns.getSensors()).subList(0, Math.min(1024, sensorCount));
+    }
+
+    @Benchmark
+    public void toggleObjects() {
+        next = (next + 1) % objectSensors.size();
+        Sensor sensor = objectSensors.get(next);
+        objectService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    @Benchmark
+    public void toggleColumnar() {
+        next = (next + 1) % columnarSensors.size();
+        Sensor sensor = columnarSensors.get(next);
+        columnarService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    private static SecurityRepository fill(SecurityRepository repository, int sensors) {
+        for (int i = 0; i < sensors; i++) {
+            repository.addSensor(new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length]));
+        }
+        return repository;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void printHeapPerSensor(String name, Supplier<SecurityRepository> store) {
+        long before = usedHeap();
+        SecurityRepository repository = fill(store.get(), HEAP_SAMPLE_SENSORS);
+        long after = usedHeap();
+        System.out.printf("%s: %d bytes per sensor%n", name, (after - before) / repository.getSensors().size());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        printHeapPerSensor("objects", InMemorySecurityRepository::new);
+        printHeapPerSensor("columnar", ColumnarSecurityRepository::new);
+        new Runner(new OptionsBuilder().include(SensorStoreBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,137 @@
+package com.udacity.catpoint.security.service;
+
+import com.google.common.reflect.TypeToken;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from opening a JSON file of 10k or 1M sensors to the first frame: the active counts, and for the
+ * GUI the full sensor list. Compares the streaming, lazy JsonFileSecurityRepository with reading the
+ * whole file into a string and handing it to Gson, as the preferences repository does. Allocation per
+ * load comes from the gc profiler; main also prints each loader's peak heap.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.security.service.StartupBenchmark -Dexec.classpathScope=test
+ */
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+
+    private static final Gson GSON = new Gson();
+    private static final Type SENSOR_SET = new TypeToken<Set<Sensor>>() {}.getType();
+
+    @State(Scope.Benchmark)
+    public static class SensorFile {
+        @Param({"10000", "1000000"})
+        int sensors;
+
+        Path file;
+
+        @Setup
+        public void setup() throws IOException {
+            file = Files.createTempFile("sensors", ".json");
+            write(file, sensors);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            Files.delete(file);
+        }
+    }
+
+    @Benchmark
+    public int streamingCounts(SensorFile state) {
+        return new JsonFileSecurityRepository(state.file).getActiveSensorCount();
+    }
+
+    @Benchmark
+    public int streamingAllSensors(SensorFile state) {
+        return new JsonFileSecurityRepository(state.file).getSensors().size();
+    }
+
+    @Benchmark
+    public int gsonCounts(SensorFile state) throws IOException {
+        SensorCounters counters = new SensorCounters();
+        readWithGson(state.file).forEach(counters::track);
+        return counters.getActiveCount();
+    }
+
+    private static Set<Sensor> readWithGson(Path file) throws IOException {
+        return GSON.fromJson(Files.readString(file, StandardCharsets.UTF_8), SENSOR_SET);
+    }
+
+    /**
+     * Writes a bare array of sensors, as the preferences repository stores them, which both loaders read.
+     */
+    private static void write(Path file, int sensors) throws IOException {
+        SensorTypeAdapter adapter = new SensorTypeAdapter();
+        try (JsonWriter out = new JsonWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.beginArray();
+            for (int i = 0; i < sensors; i++) {
+                Sensor sensor = new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length], "zone" + i % 16);
+                sensor.setActive(i % 3 == 0);
+                adapter.write(out, sensor);
+            }
+            out.endArray();
+        }
+    }
+
+    /**
+     * @return the largest heap used while loading, summed over the heap pools' peaks, in megabytes
+     */
+    private static double peakHeapMegabytes(Callable<Object> load) throws Exception {
+        System.gc();
+        long before = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                before += pool.getUsage().getUsed();
+            }
+        }
+        Object loaded = load.call();
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        if (loaded == null) {
+            throw new IllegalStateException("Nothing loaded");
+        }
+        return (peak - before) / (1024.0 * 1024.0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(StartupBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+
+        for (int sensors : new int[]{10_000, 1_000_000}) {
+            Path file = Files.createTempFile("sensors", ".json");
+            try {
+                write(file, sensors);
+                System.out.printf("%d sensors: streaming peak heap %.1f MB, gson peak heap %.1f MB%n", sensors,
+                        peakHeapMegabytes(() -> new JsonFileSecurityRepository(file)),
+                        peakHeapMegabytes(() -> readWithGson(file)));
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.AlarmStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StatusDispatcherTest {
+
+    private StatusDispatcher dispatcher;
+
+    @BeforeEach
+    void init() {
+        dispatcher = new StatusDispatcher(100);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.close();
+    }
+
+//    Alarm statuses reach listeners in order, on a dispatcher thread rather than the caller's.
+    @Test
+    void notify_severalStatuses_deliveredInOrderOffCallerThread() throws InterruptedException {
+        RecordingListener listener = new RecordingListener(3);
+        dispatcher.addStatusListener(listener);
+        dispatcher.notify(AlarmStatus.PENDING_ALARM);
+        dispatcher.notify(AlarmStatus.ALARM);
+        dispatcher.notify(AlarmStatus.NO_ALARM);
+        assertTrue(listener.statuses.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of(AlarmStatus.PENDING_ALARM, AlarmStatus.ALARM, AlarmStatus.NO_ALARM), listener.received);
+        assertNotSame(Thread.currentThread(), listener.thread);
+    }
+
+//    A burst of sensor changes within the window reaches the listener once.
+    @Test
+    void sensorStatusChanged_burst_coalescedIntoOneCall() throws InterruptedException {
+        RecordingListener listener = new RecordingListener(1);
+        dispatcher.addStatusListener(listener);
+        for (int i = 0; i < 50; i++) {
+            dispatcher.sensorStatusChanged();
+        }
+        assertTrue(listener.sensorChanged.await(1, TimeUnit.SECONDS));
+        //closing runs whatever is still queued or scheduled, so a second call would have arrived by now
+        dispatcher.close();
+        assertEquals(1, listener.sensorChanges.get());
+        assertEquals(50, dispatcher.getSensorStatusChangedCount());
+        assertEquals(49, dispatcher.getCoalescedCount());
+    }
+
+//    An alarm status is delivered while a slow sensor refresh is still running.
+    @Test
+    void notify_slowSensorRefresh_notHeldBehindIt() throws InterruptedException {
+        CountDownLatch refreshing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(1) {
+            @Override
+            public void sensorStatusChanged() {
+                refreshing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        dispatcher.addStatusListener(listener);
+        dispatcher.sensorStatusChanged();
+        assertTrue(refreshing.await(1, TimeUnit.SECONDS));
+        dispatcher.notify(AlarmStatus.ALARM);
+        assertTrue(listener.statuses.await(1, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+//    A listener removing itself during dispatch doesn't stop the others, and gets nothing afterwards.
+    @Test
+    void removeStatusListener_duringDispatch_othersStillNotified() throws InterruptedException {
+        RecordingListener other = new RecordingListener(2);
+        RecordingListener once = new RecordingListener(1) {
+            @Override
+            public void notify(AlarmStatus status) {
+                super.notify(status);
+                dispatcher.removeStatusListener(this);
+            }
+        };
+        dispatcher.addStatusListener(once);
+        dispatcher.addStatusListener(other);
+        dispatcher.notify(AlarmStatus.PENDING_ALARM);
+        dispatcher.notify(AlarmStatus.ALARM);
+        assertTrue(other.statuses.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of(AlarmStatus.PENDING_ALARM), once.received);
+        assertEquals(List.of(AlarmStatus.PENDING_ALARM, AlarmStatus.ALARM), other.received);
+    }
+
+//    A listener that throws doesn't keep the next one from being called.
+    @Test
+    void catDetected_listenerThrows_othersStillNotified() throws InterruptedException {
+        dispatcher.addStatusListener(new RecordingListener(1) {
+            @Override
+            public void catDetected(boolean catDetected) {
+                throw new IllegalStateException("broken listener");
+            }
+        });
+        RecordingListener listener = new RecordingListener(1);
+        dispatcher.addStatusListener(listener);
+        dispatcher.catDetected(true);
+        assertTrue(listener.cat.await(1, TimeUnit.SECONDS));
+    }
+
+//    Cat detection and the alarm status it causes arrive in the order they happened.
+    @Test
+    void catDetectedAndNotify_interleaved_deliveredInOrder() throws InterruptedException {
+        List<String> events = new CopyOnWriteArrayList<>();
+        RecordingListener listener = new RecordingListener(2) {
+            @Override
+            public void notify(AlarmStatus status) {
+                events.add(status.name());
+                super.notify(status);
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+                events.add("cat " + catDetected);
+            }
+        };
+        dispatcher.addStatusListener(listener);
+        dispatcher.catDetected(true);
+        dispatcher.notify(AlarmStatus.ALARM);
+        dispatcher.catDetected(false);
+        dispatcher.notify(AlarmStatus.NO_ALARM);
+        assertTrue(listener.statuses.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of("cat true", "ALARM", "cat false", "NO_ALARM"), events);
+    }
+
+    private static class RecordingListener implements StatusListener {
+        final List<AlarmStatus> received = new CopyOnWriteArrayList<>();
+        final CountDownLatch statuses;
+        final CountDownLatch sensorChanged = new CountDownLatch(1);
+        final CountDownLatch cat = new CountDownLatch(1);
+        final AtomicInteger sensorChanges = new AtomicInteger();
+        volatile Thread thread;
+
+        RecordingListener(int expectedStatuses) {
+            statuses = new CountDownLatch(expectedStatuses);
+        }
+
+        @Override
+        public void notify(AlarmStatus status) {
+            thread = Thread.currentThread();
+            received.add(status);
+            statuses.countDown();
+        }
+
+        @Override
+        public void catDetected(boolean catDetected) {
+            cat.countDown();
+        }
+
+        @Override
+        public void sensorStatusChanged() {
+            sensorChanges.incrementAndGet();
+            sensorChanged.countDown();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Write latency and recovery time of WriteAheadLogSecurityRepository with 100k sensors. updateSensor
+ * appends one record, with and without forcing it to the storage device; recover opens a repository
+ * whose snapshot holds every sensor and whose log holds another 50k changes to replay.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.security.service.WriteAheadLogBenchmark -Dexec.classpathScope=test
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteAheadLogBenchmark {
+
+    private static final int SENSORS = 100_000;
+    private static final int LOG_TAIL = 50_000;
+
+    @State(Scope.Benchmark)
+    public static class Writes {
+        @Param({"false", "true"})
+        boolean force;
+
+        Path directory;
+        WriteAheadLogSecurityRepository repository;
+        List<Sensor> sensors;
+        int next;
+
+        @Setup
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("wal-writes");
+            repository = new WriteAheadLogSecurityRepository(directory, force, SENSORS);
+            sensors = addSensors(repository);
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            repository.close();
+            delete(directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Recovery {
+        Path directory;
+
+        @Setup
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("wal-recovery");
+            try (WriteAheadLogSecurityRepository repository = new WriteAheadLogSecurityRepository(directory, false, SENSORS * 2)) {
+                List<Sensor> sensors = addSensors(repository);
+                repository.compact();
+                for (int i = 0; i < LOG_TAIL; i++) {
+                    Sensor sensor = sensors.get(i * 2 % sensors.size());
+                    sensor.setActive(!sensor.getActive());
+                    repository.updateSensor(sensor);
+                }
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void updateSensor(Writes state) {
+        Sensor sensor = state.sensors.get(state.next);
+        state.next = (state.next + 1) % state.sensors.size();
+        sensor.setActive(!sensor.getActive());
+        state.repository.updateSensor(sensor);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public int recover(Recovery state) throws IOException {
+        try (WriteAheadLogSecurityRepository repository = new WriteAheadLogSecurityRepository(state.directory, false, SENSORS * 2)) {
+            return repository.getActiveSensorCount();
+        }
+    }
+
+    private static List<Sensor> addSensors(SecurityRepository repository) {
+        List<Sensor> sensors = new ArrayList<>(SENSORS);
+        for (int i = 0; i < SENSORS; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.values()[i % SensorType.values().length], "zone" + i % 16);
+            repository.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        return sensors;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WriteAheadLogBenchmark.class.getSimpleName()).build()).run();
+    }
+}
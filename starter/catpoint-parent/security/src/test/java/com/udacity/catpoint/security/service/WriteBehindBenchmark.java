@@ -0,0 +1,89 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time a sensor toggle through SecurityService holds the calling thread, with the write-ahead log
+ * forcing every write, used directly or behind WriteBehindSecurityRepository flushing every 10ms.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.security.service.WriteBehindBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBehindBenchmark {
+
+    private static final int SENSORS = 1000;
+
+    @Param({"direct", "writeBehind"})
+    String persistence;
+
+    private Path directory;
+    private WriteAheadLogSecurityRepository log;
+    private WriteBehindSecurityRepository writeBehind;
+    private SecurityService securityService;
+    private List<Sensor> sensors;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("write-behind");
+        log = new WriteAheadLogSecurityRepository(directory, true, SENSORS * 10);
+        SecurityRepository repository = log;
+        if (persistence.equals("writeBehind")) {
+            writeBehind = new WriteBehindSecurityRepository(log, WriteBehindSecurityRepository.Durability.INTERVAL, 10);
+            repository = writeBehind;
+        }
+        sensors = new ArrayList<>();
+        for (int i = 0; i < SENSORS; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.DOOR);
+            repository.addSensor(sensor);
+            sensors.add(sensor);
+        }
+        repository.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        securityService = new SecurityService(repository, new FakeImageService());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (writeBehind != null) {
+            writeBehind.close();
+            System.out.printf("%n%d flushes, mean %.2fms, max %.2fms, %d of %d writes merged%n",
+                    writeBehind.getFlushCount(), writeBehind.getMeanFlushLatencyMillis(), writeBehind.getMaxFlushLatencyMillis(),
+                    writeBehind.getMergedWriteCount(), writeBehind.getQueuedWriteCount());
+        }
+        log.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void toggle() {
+        Sensor sensor = sensors.get(next);
+        next = (next + 1) % sensors.size();
+        securityService.changeSensorActivationStatus(sensor, !sensor.getActive());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WriteBehindBenchmark.class.getSimpleName()).build()).run();
+    }
+}
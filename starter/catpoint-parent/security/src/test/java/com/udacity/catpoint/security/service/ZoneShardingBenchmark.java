@@ -0,0 +1,81 @@
+package com.udacity.catpoint.security.service;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sensor toggles per second from 8 producer threads with the site split into 1, 2, 4 and 8 zones.
+ * Each producer works in one zone, so with one zone every event goes through a single thread and with
+ * eight zones the events are spread over eight.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=com.udacity.catpoint.security.service.ZoneShardingBenchmark -Dexec.classpathScope=test
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ZoneShardingBenchmark {
+
+    private static final int SENSORS_PER_ZONE = 64;
+
+    @State(Scope.Benchmark)
+    public static class Site {
+        @Param({"1", "2", "4", "8"})
+        int zoneCount;
+
+        ZonedSecurityService zonedService;
+        List<List<Sensor>> sensorsByZone = new ArrayList<>();
+        final AtomicInteger producers = new AtomicInteger();
+
+        @Setup
+        public void setup() {
+            zonedService = new ZonedSecurityService(zone -> new InMemorySecurityRepository(), new FakeImageService());
+            for (int z = 0; z < zoneCount; z++) {
+                List<Sensor> sensors = new ArrayList<>();
+                for (int i = 0; i < SENSORS_PER_ZONE; i++) {
+                    Sensor sensor = new Sensor("sensor" + i, SensorType.MOTION, "zone" + z);
+                    sensors.add(sensor);
+                    zonedService.addSensor(sensor).join();
+                }
+                sensorsByZone.add(sensors);
+            }
+            zonedService.setArmingStatus(ArmingStatus.ARMED_AWAY).join();
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            zonedService.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        List<Sensor> sensors;
+        int next;
+
+        @Setup
+        public void setup(Site site) {
+            sensors = site.sensorsByZone.get(site.producers.getAndIncrement() % site.zoneCount);
+        }
+    }
+
+    @Benchmark
+    public void toggle(Site site, Producer producer) {
+        Sensor sensor = producer.sensors.get(producer.next++ % SENSORS_PER_ZONE);
+        site.zonedService.changeSensorActivationStatus(sensor, producer.next % 2 == 0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ZoneShardingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,190 @@
+package com.udacity.catpoint.security.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.udacity.catpoint.image.service.FakeImageService;
+import com.udacity.catpoint.security.application.StatusListener;
+import com.udacity.catpoint.security.data.*;
+import org.junit.jupiter.api.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ZonedSecurityServiceTest {
+    private static final String[] ZONES = {"home", "garage", "shed", "attic"};
+
+    private ZonedSecurityService zonedService;
+
+    @BeforeEach
+    void init() {
+        zonedService = new ZonedSecurityService(zone -> new ColumnarSecurityRepository(), new FakeImageService());
+    }
+
+    @AfterEach
+    void clean() throws InterruptedException {
+        zonedService.close();
+    }
+
+    //    Arming one zone leaves the others alone, and the site status follows the armed zone.
+    @Test
+    void singleZoneArmed_sensorActivated_onlyThatZoneAlarms() {
+        Sensor garage = new Sensor("garage door", SensorType.DOOR, "garage");
+        Sensor home = new Sensor("front door", SensorType.DOOR);
+        zonedService.addSensor(garage).join();
+        zonedService.addSensor(home).join();
+        zonedService.setArmingStatus("garage", ArmingStatus.ARMED_AWAY).join();
+
+        assertEquals(AlarmStatus.PENDING_ALARM, zonedService.changeSensorActivationStatus(garage, true).join());
+        assertEquals(AlarmStatus.NO_ALARM, zonedService.changeSensorActivationStatus(home, true).join());
+        assertEquals(AlarmStatus.PENDING_ALARM, zonedService.getAlarmStatus());
+        assertEquals(ArmingStatus.DISARMED, zonedService.getArmingStatus("home"));
+        assertEquals(ArmingStatus.ARMED_AWAY, zonedService.getArmingStatus("garage"));
+    }
+
+    //    The site status is the worst zone's, and drops back when that zone is disarmed.
+    @Test
+    void allZonesArmed_worstZoneDisarmed_siteStatusRecomputed() {
+        Sensor garage1 = new Sensor("garage door", SensorType.DOOR, "garage");
+        Sensor garage2 = new Sensor("garage window", SensorType.WINDOW, "garage");
+        Sensor home = new Sensor("front door", SensorType.DOOR);
+        List.of(garage1, garage2, home).forEach(sensor -> zonedService.addSensor(sensor).join());
+        assertEquals(AlarmStatus.NO_ALARM, zonedService.setArmingStatus(ArmingStatus.ARMED_AWAY).join());
+
+        zonedService.changeSensorActivationStatus(home, true).join();
+        zonedService.changeSensorActivationStatus(garage1, true).join();
+        zonedService.changeSensorActivationStatus(garage2, true).join();
+        assertEquals(AlarmStatus.ALARM, zonedService.getAlarmStatus());
+
+        zonedService.setArmingStatus("garage", ArmingStatus.DISARMED).join();
+        assertEquals(AlarmStatus.NO_ALARM, zonedService.getAlarmStatus("garage"));
+        assertEquals(AlarmStatus.PENDING_ALARM, zonedService.getAlarmStatus());
+    }
+
+    //    A cat only raises the alarm in the zone whose camera saw it.
+    @Test
+    void catDetected_armedHomeZone_onlyThatZoneAlarms() {
+        zonedService.addSensor(new Sensor("front door", SensorType.DOOR)).join();
+        zonedService.addSensor(new Sensor("garage door", SensorType.DOOR, "garage")).join();
+        zonedService.setArmingStatus(ArmingStatus.ARMED_HOME).join();
+        assertEquals(AlarmStatus.ALARM, zonedService.catDetected("garage", true).join());
+        assertEquals(AlarmStatus.NO_ALARM, zonedService.getAlarmStatus("home"));
+        assertEquals(AlarmStatus.ALARM, zonedService.getAlarmStatus());
+    }
+
+    //    Site listeners hear about each cat before the alarm it raises, and nothing else when the status stays.
+    @Test
+    void catDetected_siteListener_catBeforeAlarm() throws InterruptedException {
+        List<String> events = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(3);
+        zonedService.addStatusListener(new StatusListener() {
+            @Override
+            public void notify(AlarmStatus status) {
+                events.add(status.name());
+                delivered.countDown();
+            }
+
+            @Override
+            public void catDetected(boolean catDetected) {
+                events.add("cat " + catDetected);
+                delivered.countDown();
+            }
+
+            @Override
+            public void sensorStatusChanged() {
+            }
+        });
+        zonedService.addSensor(new Sensor("garage door", SensorType.DOOR, "garage")).join();
+        zonedService.setArmingStatus(ArmingStatus.ARMED_HOME).join();
+        zonedService.catDetected("garage", true).join();
+        zonedService.catDetected("garage", true).join();
+        assertTrue(delivered.await(1, TimeUnit.SECONDS));
+        assertEquals(List.of("cat true", "ALARM", "cat true"), events);
+    }
+
+    //    Only adding a sensor creates a zone; arming, scans and sensor changes for an unknown zone are rejected.
+    @Test
+    void unknownZone_rejectedWithoutCreatingIt() {
+        zonedService.addSensor(new Sensor("front door", SensorType.DOOR)).join();
+        Sensor shed = new Sensor("shed door", SensorType.DOOR, "shed");
+
+        assertThrows(IllegalArgumentException.class, () -> zonedService.setArmingStatus("garage", ArmingStatus.ARMED_AWAY));
+        assertThrows(IllegalArgumentException.class, () -> zonedService.catDetected("garage", true));
+        assertThrows(IllegalArgumentException.class, () -> zonedService.changeSensorActivationStatus(shed, true));
+        assertThrows(IllegalArgumentException.class, () -> zonedService.removeSensor(shed));
+        assertEquals(Set.of("home"), zonedService.getZones());
+        assertNull(zonedService.getArmingStatus("garage"));
+    }
+
+    //    A zone created after, or while, the whole site is armed starts out armed too.
+    @Test
+    void siteArmed_zoneCreatedAfterwards_armed() {
+        zonedService.addSensor(new Sensor("front door", SensorType.DOOR)).join();
+        CompletableFuture<AlarmStatus> arming = zonedService.setArmingStatus(ArmingStatus.ARMED_AWAY);
+        Sensor garage = new Sensor("garage door", SensorType.DOOR, "garage");
+        zonedService.addSensor(garage).join();
+        arming.join();
+
+        assertEquals(ArmingStatus.ARMED_AWAY, zonedService.getArmingStatus("garage"));
+        assertEquals(AlarmStatus.PENDING_ALARM, zonedService.changeSensorActivationStatus(garage, true).join());
+    }
+
+    //    Zones created while the site is being armed, from other threads, all end up armed.
+    @Test
+    void concurrentZoneCreation_siteArming_noZoneMissed() {
+        ExecutorService producers = Executors.newFixedThreadPool(ZONES.length);
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int z = 0; z < 32; z++) {
+            String zone = "zone" + z;
+            done.add(CompletableFuture.runAsync(() ->
+                    zonedService.addSensor(new Sensor(zone + " door", SensorType.DOOR, zone)).join(), producers));
+            if (z == 16) {
+                zonedService.setArmingStatus(ArmingStatus.ARMED_HOME).join();
+            }
+        }
+        done.forEach(CompletableFuture::join);
+        producers.shutdown();
+
+        assertEquals(32, zonedService.getZones().size());
+        for (String zone : zonedService.getZones()) {
+            assertEquals(ArmingStatus.ARMED_HOME, zonedService.getArmingStatus(zone), zone);
+        }
+    }
+
+    //    Events for many zones from many threads are all applied, and the site status matches the zones'.
+    @Test
+    void concurrentEvents_manyZones_siteStatusConsistent() {
+        List<Sensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            Sensor sensor = new Sensor("sensor" + i, SensorType.MOTION, ZONES[i % ZONES.length]);
+            sensors.add(sensor);
+            zonedService.addSensor(sensor).join();
+        }
+        zonedService.setArmingStatus(ArmingStatus.ARMED_AWAY).join();
+        zonedService.setArmingStatus("attic", ArmingStatus.DISARMED).join();
+
+        ExecutorService producers = Executors.newFixedThreadPool(ZONES.length);
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int z = 0; z < ZONES.length; z++) {
+            int zone = z;
+            done.add(CompletableFuture.runAsync(() -> {
+                for (int i = zone; i < sensors.size(); i += ZONES.length) {
+                    zonedService.changeSensorActivationStatus(sensors.get(i), true).join();
+                }
+            }, producers));
+        }
+        done.forEach(CompletableFuture::join);
+        producers.shutdown();
+
+        assertEquals(AlarmStatus.ALARM, zonedService.getAlarmStatus("home"));
+        assertEquals(AlarmStatus.NO_ALARM, zonedService.getAlarmStatus("attic"));
+        assertEquals(AlarmStatus.ALARM, zonedService.getAlarmStatus());
+        assertEquals(ZONES.length, zonedService.getZones().size());
+    }
+}